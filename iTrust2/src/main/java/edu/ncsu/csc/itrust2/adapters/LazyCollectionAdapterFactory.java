@@ -0,0 +1,49 @@
+package edu.ncsu.csc.itrust2.adapters;
+
+import java.io.IOException;
+
+import org.hibernate.Hibernate;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Serializes a lazily-loaded collection only if it has actually been loaded.
+ * A collection that was never loaded is left out of the JSON rather than
+ * making Gson try (and fail) to load it from a Session that has since been
+ * closed. Collections that are not managed by Hibernate (ie, on a new object)
+ * are always serialized, and deserialization is unchanged.
+ *
+ * Use with @JsonAdapter on any lazy collection field of an entity that is
+ * returned from the API.
+ *
+ * @author Kai Presler-Marshall
+ */
+public class LazyCollectionAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create ( final Gson gson, final TypeToken<T> type ) {
+        final TypeAdapter<T> delegate = gson.getAdapter( type );
+        return new TypeAdapter<T>() {
+            @Override
+            public void write ( final JsonWriter out, final T value ) throws IOException {
+                if ( null == value || !Hibernate.isInitialized( value ) ) {
+                    out.nullValue();
+                }
+                else {
+                    delegate.write( out, value );
+                }
+            }
+
+            @Override
+            public T read ( final JsonReader in ) throws IOException {
+                return delegate.read( in );
+            }
+        };
+    }
+
+}
@@ -4,12 +4,18 @@ import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 import javax.servlet.annotation.WebListener;
 
+import edu.ncsu.csc.itrust2.utils.AuditLogArchive;
+import edu.ncsu.csc.itrust2.utils.AuditLogIndex;
+import edu.ncsu.csc.itrust2.utils.AuditLogWriter;
+import edu.ncsu.csc.itrust2.utils.DBUtil;
 import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.IPBlockRegistry;
 
 /**
  * Simple listener that can bind actions to startup or shutdown of the web
- * application server. Used to close the database connection pool when
- * everything is finished.
+ * application server. Used to start writing (archiving and indexing) log
+ * entries and keeping track of IP bans and lockouts in the background, and to
+ * close the database connection pool when everything is finished.
  *
  * @author Kai Presler-Marshall
  *
@@ -19,16 +25,25 @@ public class ContextListener implements ServletContextListener {
 
     /**
      * Gracefully tell Hibernate to close the connections to the database rather
-     * than dropping everything on the floor.
+     * than dropping everything on the floor. Any log entries that are still
+     * waiting to be written are saved first.
      */
     @Override
     public void contextDestroyed ( final ServletContextEvent arg0 ) {
+        AuditLogArchive.stop();
+        AuditLogWriter.stop();
+        AuditLogIndex.stop();
+        IPBlockRegistry.stop();
         HibernateUtil.shutdown();
+        DBUtil.shutdown();
     }
 
     @Override
     public void contextInitialized ( final ServletContextEvent arg0 ) {
-        // There's nothing that we need to do here
+        AuditLogWriter.start();
+        AuditLogArchive.start();
+        AuditLogIndex.start();
+        IPBlockRegistry.start();
     }
 
 }
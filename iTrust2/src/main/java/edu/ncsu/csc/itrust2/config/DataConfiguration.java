@@ -18,11 +18,13 @@ import edu.ncsu.csc.itrust2.utils.DBUtil;
 public class DataConfiguration {
 
     /**
-     * Spring Bean for the DataSource used to interact with the database.
+     * Spring Bean for the DataSource used to interact with the database. This
+     * is the same connection pool that Hibernate uses; it is closed by the
+     * ContextListener once Hibernate is done with it rather than by Spring.
      *
      * @return DataSource retrieved
      */
-    @Bean
+    @Bean ( destroyMethod = "" )
     public DataSource dataSource () {
         return DBUtil.dataSource();
     }
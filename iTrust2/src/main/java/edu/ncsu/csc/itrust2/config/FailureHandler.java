@@ -15,16 +15,17 @@ import org.springframework.security.web.authentication.SimpleUrlAuthenticationFa
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
-import edu.ncsu.csc.itrust2.models.persistent.LoginAttempt;
 import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
 import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.EmailUtil;
+import edu.ncsu.csc.itrust2.utils.LoginFailureCounter;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
  * Custom AuthenticationFailureHandler to record Failed attempts, and lockout or
- * ban a user or IP if necessary.
+ * ban a user or IP if necessary. Failed attempts are only counted in memory
+ * (see {@link LoginFailureCounter}); the lockouts and bans are saved.
  *
  * @author Thomas
  *
@@ -45,8 +46,8 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
 
         if ( ae instanceof BadCredentialsException ) {
             // need to lockout IP
-            if ( LoginAttempt.getIPFailures( addr ) >= 5 ) {
-                LoginAttempt.clearIP( addr );
+            if ( LoginFailureCounter.BY_IP.get( addr ) >= 5 ) {
+                LoginFailureCounter.BY_IP.clear( addr );
                 // Check if need to ban IP
                 if ( LoginLockout.getRecentIPLockouts( addr ) >= 2 ) {
                     // BAN
@@ -87,10 +88,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
             }
             else {
                 // fail for IP
-                final LoginAttempt attempt = new LoginAttempt();
-                attempt.setTime( ZonedDateTime.now() );
-                attempt.setIp( addr );
-                attempt.save();
+                LoginFailureCounter.BY_IP.add( addr );
             }
 
             // check username
@@ -100,8 +98,8 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
 
             if ( user != null ) {
                 // check if need to lockout username
-                if ( LoginAttempt.getUserFailures( user ) >= 2 ) {
-                    LoginAttempt.clearUser( user );
+                if ( LoginFailureCounter.BY_USER.get( user.getUsername() ) >= 2 ) {
+                    LoginFailureCounter.BY_USER.clear( user.getUsername() );
                     // check if need to ban user
                     if ( LoginLockout.getRecentUserLockouts( user ) >= 2 ) {
                         LoginLockout.clearUser( user );
@@ -158,10 +156,7 @@ public class FailureHandler extends SimpleUrlAuthenticationFailureHandler {
                 }
                 else {
                     // fail for username
-                    final LoginAttempt attempt = new LoginAttempt();
-                    attempt.setTime( ZonedDateTime.now() );
-                    attempt.setUser( user );
-                    attempt.save();
+                    LoginFailureCounter.BY_USER.add( user.getUsername() );
                 }
             }
 
@@ -11,12 +11,12 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.web.filter.GenericFilterBean;
 
-import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
-import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
+import edu.ncsu.csc.itrust2.utils.IPBlockRegistry;
 
 /**
  * Custom Http Filter to redirect all requests from banned or locked out IP
- * addresses.
+ * addresses. Runs on every request, so the bans and lockouts are checked in
+ * memory (see {@link IPBlockRegistry}) rather than in the database.
  *
  * @author Thomas
  *
@@ -37,13 +37,13 @@ public class IPFilter extends GenericFilterBean {
         final String addr = request.getRemoteAddr();
 
         // Redirect all banned IPs to /login?ipbanned
-        if ( LoginBan.isIPBanned( addr )
+        if ( IPBlockRegistry.isBanned( addr )
                 && ( !relative.contains( "/login" ) || !httpRequest.getParameterMap().containsKey( "ipbanned" ) ) ) {
             httpRequest.getSession().invalidate();
             httpResponse.sendRedirect( httpRequest.getContextPath() + "/login?ipbanned" );
         }
         // redirect all locked out IPs to /login?iplocked
-        else if ( LoginLockout.isIPLocked( addr )
+        else if ( IPBlockRegistry.isLocked( addr )
                 && ( !relative.contains( "/login" ) || !httpRequest.getParameterMap().containsKey( "iplocked" ) ) ) {
             httpRequest.getSession().invalidate();
             httpResponse.sendRedirect( httpRequest.getContextPath() + "/login?iplocked" );
@@ -36,6 +36,6 @@ public class ITrust2ApplicationInitializer extends AbstractAnnotationConfigDispa
 
     @Override
     protected Filter[] getServletFilters () {
-        return new Filter[] { new HiddenHttpMethodFilter() };
+        return new Filter[] { new HiddenHttpMethodFilter(), new UnitOfWorkFilter() };
     }
 }
@@ -13,9 +13,8 @@ import org.springframework.stereotype.Component;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
 import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
-import edu.ncsu.csc.itrust2.models.persistent.LoginAttempt;
-import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+import edu.ncsu.csc.itrust2.utils.LoginFailureCounter;
 
 /**
  * Listens for AuthenticationEvents to Log them and to clear FaieldAttempts on
@@ -39,11 +38,13 @@ public class LoginAuditingListener implements ApplicationListener<ApplicationEve
             // Clear login attempts for this User and this IP. if not IP banned.
             // If IP lockout or banned, this is still called, but the redirect
             // invalidates the credentials if they happen to be correct (and
-            // bypassed the lockout page via a direct API call).
+            // bypassed the lockout page via a direct API call). Checked in the
+            // database rather than IPBlockRegistry, which may not have caught
+            // up with lockouts and bans made on other servers yet.
             final String addr = det.getRemoteAddress();
             if ( !LoginLockout.isIPLocked( addr ) && !LoginBan.isIPBanned( addr ) ) {
-                LoginAttempt.clearIP( addr );
-                LoginAttempt.clearUser( User.getByName( details.getUsername() ) );
+                LoginFailureCounter.BY_IP.clear( addr );
+                LoginFailureCounter.BY_USER.clear( details.getUsername() );
                 LoggerUtil.log( TransactionType.LOGIN_SUCCESS, details.getUsername() );
             }
 
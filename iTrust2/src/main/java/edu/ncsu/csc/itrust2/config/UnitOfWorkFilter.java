@@ -0,0 +1,143 @@
+package edu.ncsu.csc.itrust2.config;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import edu.ncsu.csc.itrust2.controllers.api.APILogEntryController;
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+import edu.ncsu.csc.itrust2.utils.UnitOfWork;
+
+/**
+ * Servlet Filter that wraps every request in a {@link UnitOfWork}, so that all
+ * of the database calls made while serving it share a single connection and
+ * transaction which is committed once, at the end of the request.
+ *
+ * The response to an API request is held back until the commit has succeeded;
+ * that way a client is never told that something was saved when the commit
+ * actually failed. Everything else (pages, scripts, stylesheets) only reads,
+ * and is passed straight through rather than being held in memory.
+ *
+ * If the database rolled back the whole transaction part way through the
+ * request (ie, on a deadlock), the request fails with 409 Conflict, and can
+ * simply be tried again; any other failure to commit is a 500.
+ *
+ * Log entry exports are the exception: they can be far too large to hold in
+ * memory, so they are streamed to the client as they are read instead. They
+ * only read from the database, so there is nothing to commit; each read they
+ * make runs in a transaction of its own.
+ *
+ * When read replicas are in use, the time of a user's last write is kept in
+ * their HTTP session, and their requests read from the primary for a short
+ * while afterwards; that way nobody saves a change and then gets a page
+ * without it because the replica has not caught up yet.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class UnitOfWorkFilter extends OncePerRequestFilter {
+
+    /** Session attribute holding when the user last wrote to the database */
+    static private final String LAST_WRITE = UnitOfWorkFilter.class.getName() + ".lastWrite";
+
+    /** Requests under this path have their responses held back */
+    static private final String API_PATH   = "/api/";
+
+    @Override
+    protected boolean shouldNotFilter ( final HttpServletRequest request ) {
+        return APILogEntryController.EXPORT_PATH.equals( path( request ) );
+    }
+
+    @Override
+    protected void doFilterInternal ( final HttpServletRequest request, final HttpServletResponse response,
+            final FilterChain chain ) throws ServletException, IOException {
+        final ContentCachingResponseWrapper wrapper = path( request ).startsWith( API_PATH )
+                ? new ContentCachingResponseWrapper( response ) : null;
+        final UnitOfWork uow = UnitOfWork.begin( wroteRecently( request ) );
+        boolean completed = false;
+        try {
+            chain.doFilter( request, null == wrapper ? response : wrapper );
+            completed = true;
+        }
+        finally {
+            if ( !completed ) {
+                uow.rollback();
+            }
+        }
+
+        try {
+            uow.commit();
+        }
+        catch ( final RuntimeException e ) {
+            e.printStackTrace( System.out );
+            if ( null != wrapper ) {
+                wrapper.resetBuffer();
+            }
+            if ( !response.isCommitted() ) {
+                response.sendError( uow.isRollbackOnly() ? HttpServletResponse.SC_CONFLICT
+                        : HttpServletResponse.SC_INTERNAL_SERVER_ERROR );
+            }
+            return;
+        }
+        if ( uow.hasWritten() && DBUtil.hasReplicas() ) {
+            final HttpSession session = request.getSession( false );
+            if ( null != session ) {
+                try {
+                    session.setAttribute( LAST_WRITE, System.currentTimeMillis() );
+                }
+                catch ( final IllegalStateException e ) {
+                    // Session was invalidated (ie, logging out); nothing to
+                    // remember
+                }
+            }
+        }
+        if ( null != wrapper ) {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Retrieves the path of a request, within the application
+     *
+     * @param request
+     *            The request being served
+     * @return The path requested
+     */
+    private String path ( final HttpServletRequest request ) {
+        return request.getRequestURI().substring( request.getContextPath().length() );
+    }
+
+    /**
+     * Checks whether the user making a request wrote to the database recently
+     * enough that a read replica may not have their change yet
+     *
+     * @param request
+     *            The request being served
+     * @return True if the request must read from the primary
+     */
+    private boolean wroteRecently ( final HttpServletRequest request ) {
+        if ( !DBUtil.hasReplicas() ) {
+            return false;
+        }
+        final HttpSession session = request.getSession( false );
+        if ( null == session ) {
+            return false;
+        }
+        try {
+            final Object lastWrite = session.getAttribute( LAST_WRITE );
+            return lastWrite instanceof Long
+                    && System.currentTimeMillis() - (Long) lastWrite < DBUtil.getReplicaStickyMillis();
+        }
+        catch ( final IllegalStateException e ) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package edu.ncsu.csc.itrust2.controllers.api;
+
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import edu.ncsu.csc.itrust2.utils.CacheStatistics;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+
+/**
+ * Provides REST endpoints that let an Admin monitor the second-level cache that
+ * holds reference data (ICD codes, drugs, LOINC codes and hospitals), and
+ * empty it if the data has been changed directly in the database.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+@RestController
+@SuppressWarnings ( { "rawtypes", "unchecked" } )
+public class APICacheController extends APIController {
+
+    /**
+     * Retrieves the hit, miss and eviction counts for every cache region
+     *
+     * @return The statistics for each region
+     */
+    @GetMapping ( BASE_PATH + "/cache" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public List<CacheStatistics> getCacheStatistics () {
+        return HibernateUtil.getCacheStatistics();
+    }
+
+    /**
+     * Empties the cache, so that everything is re-read from the database the
+     * next time it is needed.
+     *
+     * @return The result of the action
+     */
+    @DeleteMapping ( BASE_PATH + "/cache" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity evictCache () {
+        HibernateUtil.evictCaches();
+        return new ResponseEntity( successResponse( "Cache cleared" ), HttpStatus.OK );
+    }
+
+}
@@ -28,13 +28,20 @@ import com.google.gson.Gson;
  */
 public abstract class APIController {
     /** Base path of API */
-    static final protected String BASE_PATH = "/api/v1/";
+    static final protected String BASE_PATH           = "/api/v1/";
+
+    /**
+     * Response header that carries the continuation token for the next page
+     * of a paged list, if there is one. Clients send the token back to get the
+     * next page.
+     */
+    static final public String    CONTINUATION_HEADER = "X-Continuation-Token";
 
     /**
      * Used to serialize data and messages to JSON for transmitting through the
      * REST API
      */
-    static final private Gson     GSON      = new Gson();
+    static final private Gson     GSON                = new Gson();
 
     /**
      * Turns the provided object into JSON
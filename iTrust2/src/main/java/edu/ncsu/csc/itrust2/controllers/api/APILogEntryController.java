@@ -1,5 +1,11 @@
 package edu.ncsu.csc.itrust2.controllers.api;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -7,20 +13,34 @@ import java.time.ZonedDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryRequestBody;
+import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntrySearchPage;
+import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTablePage;
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTableRow;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.utils.AuditLogIndex;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -36,84 +56,99 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 @SuppressWarnings ( { "unchecked", "rawtypes" } )
 public class APILogEntryController extends APIController {
 
+    /**
+     * Path that log entries are exported from. Requests for it are streamed,
+     * so they are left alone by UnitOfWorkFilter.
+     */
+    static final public String  EXPORT_PATH = BASE_PATH + "logentries/export";
+
+    /** First line of a CSV export */
+    static final private String CSV_HEADER  = "id,time,code,description,primaryUser,secondaryUser,message\n";
+
     /**
      * Handles GET requests for the current user's log entries when searching by
      * date and using a page system.
      *
      * @param body
      *            the request body of the GET request
-     * @return ResponseEntity with an error or list of LogEntries
+     * @return ResponseEntity with an error or the page of LogEntries, along
+     *         with the total number of entries and pages
      */
     @PostMapping ( BASE_PATH + "/logentries/range" )
     public ResponseEntity getEntryByDateRange ( @RequestBody final LogEntryRequestBody body ) {
-        // If no dates are specified, get all entries, otherwise use the date
-        // range
-        List<LogEntry> entries = null;
+        // If no dates are specified, get all entries that have not been
+        // archived, otherwise use the date range
+        ZonedDateTime start = null;
+        ZonedDateTime end = null;
         try {
             if ( body.getStartDate().equals( "" ) || body.getEndDate().equals( "" ) ) {
                 throw new ParseException( "Date", 1 );
             }
 
-            // Parse in start/end dates as ZonedDateTimes 
-            // from ISO date/time or ISO date strings
-            ZonedDateTime start;
-            try {
-                start = ZonedDateTime.parse( body.getStartDate() );
-            } catch ( DateTimeParseException ex ) {
-                start = LocalDate.parse( body.getStartDate() ).atStartOfDay( ZoneId.systemDefault() );
-            }
-
-            ZonedDateTime end;
-            try {
-                end = ZonedDateTime.parse( body.getEndDate() ).plusDays( 1 );
-            } catch ( DateTimeParseException ex ) {
-                end = LocalDate.parse( body.getEndDate() ).atStartOfDay( ZoneId.systemDefault() ).plusDays( 1 );
-            }
+            start = parseDate( body.getStartDate() );
+            end = parseDate( body.getEndDate() ).plusDays( 1 );
 
             if ( start.isAfter( end ) ) {
                 return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
             }
-            entries = LogEntry.getByDateRange( start, end );
         }
         catch ( final ParseException ex ) {
-            entries = LogEntry.getAllForUser( LoggerUtil.currentUser() );
+            start = null;
+            end = null;
         }
 
-        // If the entries array is null give an error response
-        if ( entries == null ) {
-            return new ResponseEntity( errorResponse( "Error retrieving Log Entries" ),
-                    HttpStatus.INTERNAL_SERVER_ERROR );
+        if ( body.getPageLength() < 1 ) {
+            return new ResponseEntity( errorResponse( "Page length must be positive" ), HttpStatus.BAD_REQUEST );
         }
 
         // Use only log entries that are viewable by the user
-        List<LogEntry> visible;
         final User user = User.getByName( LoggerUtil.currentUser() );
-        if ( user.getRole() == Role.ROLE_PATIENT ) {
-            visible = new ArrayList<LogEntry>();
+        final boolean patient = user.getRole() == Role.ROLE_PATIENT;
 
-            for ( int i = 0; i < entries.size(); i++ ) {
-                final LogEntry le = entries.get( i );
-                if ( le.getLogCode().isPatientViewable() ) {
-                    visible.add( entries.get( i ) );
-                }
-            }
+        final long total = LogEntry.countForUser( LoggerUtil.currentUser(), start, end, patient );
+
+        // Newest entries first. The database finds the entries on the page
+        // directly, either by resuming from the previous page's continuation
+        // token or by skipping to the page number requested
+        final PageRequest request = new PageRequest( "time", false, body.getPageLength() );
+        request.setCursor( body.getCursor() );
+        final List<LogEntry> page;
+        final HttpHeaders headers = new HttpHeaders();
+        if ( null == request.getCursor() && body.getPage() < 1 ) {
+            page = new ArrayList<LogEntry>();
         }
         else {
-            visible = entries;
+            if ( null == request.getCursor() ) {
+                request.setOffset( ( body.getPage() - 1 ) * body.getPageLength() );
+            }
+            final Page<LogEntry> result;
+            try {
+                result = LogEntry.getPageForUser( LoggerUtil.currentUser(), start, end, patient, request );
+            }
+            catch ( final IllegalArgumentException e ) {
+                return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+            }
+            page = result.getItems();
+            if ( result.hasMore() ) {
+                headers.set( CONTINUATION_HEADER, result.getNextCursor() );
+            }
         }
 
-        final int numPages = 1 + visible.size() / body.getPageLength();
-
-        Collections.reverse( visible );
-
-        // Find only the entries that should show up on the page given the page
-        // and page length
-        final List<LogEntry> page = new ArrayList<LogEntry>();
-        for ( int i = 0; i < body.getPageLength(); i++ ) {
-            final int idx = ( body.getPage() - 1 ) * body.getPageLength() + i;
-            if ( idx >= 0 && visible.size() > idx ) {
-                page.add( visible.get( idx ) );
+        // Patients are shown the role of whoever else took part in each event.
+        // Look these up for the whole page at once, rather than row by row
+        final Map<String, Role> roles;
+        if ( patient ) {
+            final Set<String> others = new HashSet<String>();
+            for ( final LogEntry le : page ) {
+                final String other = otherUser( le );
+                if ( null != other ) {
+                    others.add( other );
+                }
             }
+            roles = User.getRoles( others );
+        }
+        else {
+            roles = Collections.emptyMap();
         }
 
         // Turn these log entries into proper table rows for the application to
@@ -130,20 +165,14 @@ public class APILogEntryController extends APIController {
             // text-based timezone is not included
             row.setDateTime( le.getTime().toOffsetDateTime().toString() );
             row.setTransactionType( le.getLogCode().getDescription() );
-            row.setNumPages( numPages );
 
-            if ( user.getRole() == Role.ROLE_PATIENT ) {
+            if ( patient ) {
                 row.setPatient( true );
 
-                if ( le.getPrimaryUser().equals( LoggerUtil.currentUser() ) ) {
-                    final User secondary = User.getByName( le.getSecondaryUser() );
-                    if ( secondary != null ) {
-                        row.setRole( secondary.getRole().toString() );
-                    }
-                }
-                else {
-                    final User primary = User.getByName( le.getPrimaryUser() );
-                    row.setRole( primary.getRole().toString() );
+                final String other = otherUser( le );
+                final Role role = null == other ? null : roles.get( other );
+                if ( null != role ) {
+                    row.setRole( role.toString() );
                 }
             }
 
@@ -154,7 +183,251 @@ public class APILogEntryController extends APIController {
         if ( body.page == 1 ) {
             LoggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser() );
         }
-        return new ResponseEntity( table, HttpStatus.OK );
+        return new ResponseEntity( new LogEntryTablePage( table, body.getPage(), body.getPageLength(), total ), headers,
+                HttpStatus.OK );
+    }
+
+    /**
+     * Searches the text of everybody's log entries (their users and
+     * messages), newest first. The search is made up of words, prefixes
+     * (ie `emerg*`) and phrases (ie `"emergency record"`), all of which must
+     * match; see {@link AuditLogIndex}. It can be narrowed down with
+     * `startDate` and `endDate`, in the same formats as for
+     * {@link #getEntryByDateRange}, and by the type of event with `code` (ie
+     * VIEW_DEMOGRAPHICS). Only administrators can search.
+     *
+     * @param query
+     *            What to search for
+     * @param startDate
+     *            Earliest date to include, if any
+     * @param endDate
+     *            Last date to include, if any
+     * @param code
+     *            Name of the type of event to include, if not all of them
+     * @param page
+     *            Which page of results to return, starting from 1
+     * @param pageLength
+     *            Number of results on a page
+     * @return ResponseEntity with an error or the page of LogEntries, along
+     *         with the total number found
+     */
+    @GetMapping ( BASE_PATH + "/logentries/search" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity searchEntries ( @RequestParam final String query,
+            @RequestParam ( required = false ) final String startDate,
+            @RequestParam ( required = false ) final String endDate,
+            @RequestParam ( required = false ) final String code,
+            @RequestParam ( required = false, defaultValue = "1" ) final int page,
+            @RequestParam ( required = false, defaultValue = "20" ) final int pageLength ) {
+        final ZonedDateTime start;
+        final ZonedDateTime end;
+        try {
+            start = null == startDate || startDate.isEmpty() ? null : parseDate( startDate );
+            end = null == endDate || endDate.isEmpty() ? null : parseDate( endDate ).plusDays( 1 );
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date" ), HttpStatus.BAD_REQUEST );
+        }
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+        if ( page < 1 || pageLength < 1 ) {
+            return new ResponseEntity( errorResponse( "Page and page length must be positive" ),
+                    HttpStatus.BAD_REQUEST );
+        }
+
+        final AuditLogIndex.Hits hits;
+        try {
+            final TransactionType type = null == code || code.isEmpty() ? null : TransactionType.valueOf( code );
+            hits = AuditLogIndex.search( query, start, end, type, ( page - 1 ) * pageLength, pageLength );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+
+        if ( 1 == page ) {
+            LoggerUtil.log( TransactionType.VIEW_USER_LOG, LoggerUtil.currentUser(), null, "Log entries searched" );
+        }
+        return new ResponseEntity( new LogEntrySearchPage( hits.getEntries(), page, pageLength, hits.getTotal() ),
+                HttpStatus.OK );
+    }
+
+    /**
+     * Finds the user, other than the one currently logged in, who took part in
+     * the event logged
+     *
+     * @param le
+     *            The log entry to check
+     * @return The other user, or null if there was nobody else
+     */
+    private static String otherUser ( final LogEntry le ) {
+        return LoggerUtil.currentUser().equals( le.getPrimaryUser() ) ? le.getSecondaryUser() : le.getPrimaryUser();
+    }
+
+    /**
+     * Exports log entries, oldest first, either as CSV (`format=csv`, the
+     * default) or as one JSON object per line (`format=ndjson`). Users export
+     * their own log entries, filtered the same way as in the log view;
+     * administrators can export those of any user by naming them with
+     * `user`. The range can be narrowed with `startDate` and `endDate`, in the
+     * same formats as for {@link #getEntryByDateRange}.
+     *
+     * The log entries are written to the response as they are read from the
+     * database, so an export takes the same (small) amount of memory no
+     * matter how many log entries it has.
+     *
+     * @param format
+     *            csv or ndjson
+     * @param user
+     *            Whose log entries to export, if not the current user's
+     * @param startDate
+     *            Earliest date to export, if any
+     * @param endDate
+     *            Last date to export, if any
+     * @param response
+     *            Where the export is written
+     * @throws IOException
+     *             If the export cannot be written (ie, the client went away)
+     */
+    @GetMapping ( EXPORT_PATH )
+    public void exportEntries ( @RequestParam ( required = false, defaultValue = "csv" ) final String format,
+            @RequestParam ( required = false ) final String user,
+            @RequestParam ( required = false ) final String startDate,
+            @RequestParam ( required = false ) final String endDate, final HttpServletResponse response )
+            throws IOException {
+        final boolean csv = "csv".equalsIgnoreCase( format );
+        if ( !csv && !"ndjson".equalsIgnoreCase( format ) ) {
+            writeError( response, HttpStatus.BAD_REQUEST, "Unknown export format " + format );
+            return;
+        }
+
+        final String current = LoggerUtil.currentUser();
+        final User self = User.getByName( current );
+        final String subject = null == user || user.isEmpty() ? current : user;
+        final boolean other = !subject.equalsIgnoreCase( current );
+        if ( other && self.getRole() != Role.ROLE_ADMIN ) {
+            writeError( response, HttpStatus.FORBIDDEN, "Only administrators can export other users' log entries" );
+            return;
+        }
+        if ( other && null == User.getByName( subject ) ) {
+            writeError( response, HttpStatus.NOT_FOUND, "No user found for username " + subject );
+            return;
+        }
+
+        final ZonedDateTime start;
+        final ZonedDateTime end;
+        try {
+            start = null == startDate || startDate.isEmpty() ? null : parseDate( startDate );
+            end = null == endDate || endDate.isEmpty() ? null : parseDate( endDate ).plusDays( 1 );
+        }
+        catch ( final DateTimeParseException e ) {
+            writeError( response, HttpStatus.BAD_REQUEST, "Could not parse date" );
+            return;
+        }
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            writeError( response, HttpStatus.NOT_ACCEPTABLE, "Start Date is after End Date" );
+            return;
+        }
+
+        LoggerUtil.log( TransactionType.VIEW_USER_LOG, current, other ? subject : null, "Log entries exported" );
+
+        response.setStatus( HttpStatus.OK.value() );
+        response.setContentType( csv ? "text/csv" : "application/x-ndjson" );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+        response.setHeader( HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\""
+                + subject.replaceAll( "[^A-Za-z0-9_-]", "_" ) + "-log." + ( csv ? "csv" : "ndjson" ) + "\"" );
+
+        final Writer out = new BufferedWriter(
+                new OutputStreamWriter( response.getOutputStream(), StandardCharsets.UTF_8 ) );
+        if ( csv ) {
+            out.write( CSV_HEADER );
+        }
+        try {
+            LogEntry.forEachForUser( subject, start, end, self.getRole() == Role.ROLE_PATIENT && !other, le -> {
+                try {
+                    out.write( csv ? toCsv( le ) : toJson( le ) );
+                    out.write( '\n' );
+                }
+                catch ( final IOException e ) {
+                    throw new UncheckedIOException( e );
+                }
+            } );
+        }
+        catch ( final UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    /**
+     * Parses a date given either as an ISO date/time or an ISO date (which
+     * is taken to mean the start of that day)
+     *
+     * @param date
+     *            The date to parse
+     * @return The time that was parsed
+     * @throws DateTimeParseException
+     *             If the date is in neither format
+     */
+    private static ZonedDateTime parseDate ( final String date ) {
+        try {
+            return ZonedDateTime.parse( date );
+        }
+        catch ( final DateTimeParseException ex ) {
+            return LocalDate.parse( date ).atStartOfDay( ZoneId.systemDefault() );
+        }
+    }
+
+    /**
+     * Formats a log entry as a line of CSV
+     *
+     * @param le
+     *            The log entry to format
+     * @return The line, without the line break
+     */
+    private static String toCsv ( final LogEntry le ) {
+        return le.getId() + "," + le.getTime().toOffsetDateTime() + "," + le.getLogCode().getCode() + ","
+                + csvField( le.getLogCode().getDescription() ) + "," + csvField( le.getPrimaryUser() ) + ","
+                + csvField( le.getSecondaryUser() ) + "," + csvField( le.getMessage() );
+    }
+
+    /**
+     * Quotes a CSV field if it needs it
+     *
+     * @param value
+     *            The value of the field, or null
+     * @return The field as it goes in the file
+     */
+    private static String csvField ( final String value ) {
+        if ( null == value ) {
+            return "";
+        }
+        if ( value.indexOf( ',' ) < 0 && value.indexOf( '"' ) < 0 && value.indexOf( '\n' ) < 0
+                && value.indexOf( '\r' ) < 0 ) {
+            return value;
+        }
+        return "\"" + value.replace( "\"", "\"\"" ) + "\"";
+    }
+
+    /**
+     * Responds to a request that is handled without a ResponseEntity with an
+     * error
+     *
+     * @param response
+     *            The response to write to
+     * @param status
+     *            Status of the response
+     * @param message
+     *            What went wrong
+     * @throws IOException
+     *             If the response cannot be written
+     */
+    private static void writeError ( final HttpServletResponse response, final HttpStatus status,
+            final String message ) throws IOException {
+        response.setStatus( status.value() );
+        response.setContentType( "application/json" );
+        response.setCharacterEncoding( StandardCharsets.UTF_8.name() );
+        response.getWriter().write( errorResponse( message ) );
     }
 
 }
@@ -0,0 +1,131 @@
+package edu.ncsu.csc.itrust2.controllers.api;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntryRollup;
+
+/**
+ * Provides REST endpoints that let an Admin see how many events of each type
+ * were logged per day (ie, emergency record views, lockouts or password
+ * resets), without going through the log entries themselves.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+@RestController
+@SuppressWarnings ( { "rawtypes", "unchecked" } )
+public class APILogEntryRollupController extends APIController {
+
+    /**
+     * Runs backfills in the background, one at a time, as they can take far
+     * longer than a request should
+     */
+    static private final ExecutorService BACKFILLS = Executors.newSingleThreadExecutor( r -> {
+        final Thread t = new Thread( r, "iTrust2-rollup-backfill" );
+        t.setDaemon( true );
+        return t;
+    } );
+
+    /**
+     * Retrieves the number of events logged on each day of a range, by type
+     * and by the role of the user who caused them
+     *
+     * @param startDate
+     *            First day to include (ISO date)
+     * @param endDate
+     *            Last day to include (ISO date)
+     * @param code
+     *            Name of the type of event to count (ie, USER_LOCKOUT), or
+     *            nothing for all types
+     * @param role
+     *            Name of the role to count events for (ie, ROLE_HCP), or
+     *            nothing for all roles
+     * @return The counts for each day, type and role with any events
+     */
+    @GetMapping ( BASE_PATH + "/logentries/rollups" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity getRollups ( @RequestParam final String startDate, @RequestParam final String endDate,
+            @RequestParam ( required = false ) final String code,
+            @RequestParam ( required = false ) final String role ) {
+        final LocalDate from;
+        final LocalDate to;
+        try {
+            from = LocalDate.parse( startDate );
+            to = LocalDate.parse( endDate );
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date" ), HttpStatus.BAD_REQUEST );
+        }
+        if ( from.isAfter( to ) ) {
+            return new ResponseEntity( errorResponse( "Start Date is after End Date" ), HttpStatus.NOT_ACCEPTABLE );
+        }
+
+        try {
+            return new ResponseEntity(
+                    LogEntryRollup.getCounts( from, to,
+                            null == code || code.isEmpty() ? null : TransactionType.valueOf( code ),
+                            null == role || role.isEmpty() ? null : Role.valueOf( role ) ),
+                    HttpStatus.OK );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( "Unknown event type or role" ), HttpStatus.BAD_REQUEST );
+        }
+    }
+
+    /**
+     * Recounts the events for a range of days from the log entries
+     * themselves. Used to fill in the counts for history logged before they
+     * were kept; only days before today can be recounted. The recount runs in
+     * the background (see {@link LogEntryRollup#backfill}), after this has
+     * returned 202 Accepted; backfills are run one after another, in the
+     * order they were asked for.
+     *
+     * @param startDate
+     *            First day to recount (ISO date)
+     * @param endDate
+     *            Last day to recount (ISO date)
+     * @return The result of the action
+     */
+    @PostMapping ( BASE_PATH + "/logentries/rollups/backfill" )
+    @PreAuthorize ( "hasRole('ROLE_ADMIN')" )
+    public ResponseEntity backfill ( @RequestParam final String startDate, @RequestParam final String endDate ) {
+        final LocalDate from;
+        final LocalDate to;
+        try {
+            from = LocalDate.parse( startDate );
+            to = LocalDate.parse( endDate );
+            LogEntryRollup.checkBackfill( from, to );
+        }
+        catch ( final DateTimeParseException e ) {
+            return new ResponseEntity( errorResponse( "Could not parse date" ), HttpStatus.BAD_REQUEST );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+
+        BACKFILLS.execute( () -> {
+            try {
+                final long counted = LogEntryRollup.backfill( from, to );
+                System.out.println( "Backfilled " + from + " to " + to + ": counted " + counted + " log entries" );
+            }
+            catch ( final RuntimeException e ) {
+                e.printStackTrace( System.out );
+            }
+        } );
+        return new ResponseEntity( successResponse( "Backfilling " + from + " to " + to ), HttpStatus.ACCEPTED );
+    }
+
+}
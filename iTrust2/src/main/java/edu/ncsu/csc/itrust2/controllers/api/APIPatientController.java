@@ -20,6 +20,7 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.Patient;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.models.summary.PatientSummary;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -34,18 +35,15 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APIPatientController extends APIController {
 
     /**
-     * Retrieves and returns a list of all Patients stored in the system
+     * Retrieves and returns a list of all Patients stored in the system. Only a
+     * summary of each patient is returned; use the endpoint for a single
+     * patient to get the rest of their demographics.
      *
      * @return list of patients
      */
     @GetMapping ( BASE_PATH + "/patients" )
-    public List<Patient> getPatients () {
-        final List<Patient> patients = Patient.getPatients();
-        for ( final Patient p : patients ) {
-            p.setRepresentatives( null );
-            p.setRepresented( null );
-        }
-        return patients;
+    public List<PatientSummary> getPatients () {
+        return Patient.getSummaries();
     }
 
     /**
@@ -220,7 +218,7 @@ public class APIPatientController extends APIController {
             return new ResponseEntity( errorResponse( "Could not find a user entry for " + username ),
                     HttpStatus.NOT_FOUND );
         }
-        final Patient patient = Patient.getPatient( self );
+        final Patient patient = Patient.getWithRepresentatives( self.getUsername() );
         if ( patient == null ) {
             return new ResponseEntity( errorResponse( "Could not find a patient entry for " + username ),
                     HttpStatus.NOT_FOUND );
@@ -255,7 +253,7 @@ public class APIPatientController extends APIController {
             return new ResponseEntity( errorResponse( "Could not find a user entry for " + username ),
                     HttpStatus.NOT_FOUND );
         }
-        final Patient patient = Patient.getPatient( self );
+        final Patient patient = Patient.getWithRepresentatives( self.getUsername() );
         if ( patient == null ) {
             return new ResponseEntity( errorResponse( "Could not find a patient entry for " + username ),
                     HttpStatus.NOT_FOUND );
@@ -297,7 +295,7 @@ public class APIPatientController extends APIController {
             return new ResponseEntity( errorResponse( "Could not find a user entry for " + patient ),
                     HttpStatus.NOT_FOUND );
         }
-        final Patient patPat = Patient.getPatient( patUser );
+        final Patient patPat = Patient.getWithRepresentatives( patUser.getUsername() );
         if ( patPat == null ) {
             return new ResponseEntity( errorResponse( "Could not find a patient entry for " + patient ),
                     HttpStatus.NOT_FOUND );
@@ -307,7 +305,7 @@ public class APIPatientController extends APIController {
             return new ResponseEntity( errorResponse( "Could not find a user entry for " + representative ),
                     HttpStatus.NOT_FOUND );
         }
-        final Patient repPat = Patient.getPatient( repUser );
+        final Patient repPat = Patient.getWithRepresentatives( repUser.getUsername() );
         if ( repPat == null ) {
             return new ResponseEntity( errorResponse( "Could not find a patient entry for " + representative ),
                     HttpStatus.NOT_FOUND );
@@ -362,7 +360,7 @@ public class APIPatientController extends APIController {
             return new ResponseEntity( errorResponse( "Could not find a user entry for " + patient ),
                     HttpStatus.NOT_FOUND );
         }
-        final Patient patPat = Patient.getPatient( patUser );
+        final Patient patPat = Patient.getWithRepresentatives( patUser.getUsername() );
         if ( patPat == null ) {
             return new ResponseEntity( errorResponse( "Could not find a patient entry for " + patient ),
                     HttpStatus.NOT_FOUND );
@@ -372,7 +370,7 @@ public class APIPatientController extends APIController {
             return new ResponseEntity( errorResponse( "Could not find a user entry for " + representative ),
                     HttpStatus.NOT_FOUND );
         }
-        final Patient repPat = Patient.getPatient( repUser );
+        final Patient repPat = Patient.getWithRepresentatives( repUser.getUsername() );
         if ( repPat == null ) {
             return new ResponseEntity( errorResponse( "Could not find a patient entry for " + representative ),
                     HttpStatus.NOT_FOUND );
@@ -381,14 +379,14 @@ public class APIPatientController extends APIController {
             for ( final Patient xPat : patPat.getRepresentatives() ) {
                 if ( xPat.getSelf().getUsername().equals( representative ) ) {
                     try {
-                        patPat.removeRepresentative( xPat );
+                        patPat.removeRepresentative( repPat );
                     }
                     catch ( final IllegalArgumentException e ) {
                         return new ResponseEntity( errorResponse( "Relationship does not exist." ),
                                 HttpStatus.NOT_FOUND );
                     }
                     patPat.save();
-                    xPat.save();
+                    repPat.save();
                     if ( me.getUsername().equals( patient ) ) {
                         LoggerUtil.log( TransactionType.REMOVE_PR, patUser.getUsername(), repUser.getUsername(), "User "
                                 + patUser.getUsername() + " has undeclared representative " + repUser.getUsername() );
@@ -1,6 +1,5 @@
 package edu.ncsu.csc.itrust2.controllers.api;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.http.HttpStatus;
@@ -18,6 +17,7 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.Personnel;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.models.summary.PersonnelSummary;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -32,13 +32,15 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 public class APIPersonnelController extends APIController {
 
     /**
-     * Retrieves and returns a list of all Personnel stored in the system
+     * Retrieves and returns a list of all Personnel stored in the system. Only
+     * a summary of each personnel is returned; use the endpoint for a single
+     * personnel to get the rest.
      *
      * @return list of personnel
      */
     @GetMapping ( BASE_PATH + "/personnel" )
-    public List<Personnel> getPersonnel () {
-        return Personnel.getPersonnel();
+    public List<PersonnelSummary> getPersonnel () {
+        return Personnel.getSummaries();
     }
 
     /**
@@ -162,31 +164,19 @@ public class APIPersonnelController extends APIController {
     @GetMapping ( BASE_PATH + "/personnel/getbyroles/{role}" )
     public ResponseEntity getPersonnelByRole ( @PathVariable ( "role" ) final String role ) {
         if ( role.equals( Role.ROLE_LABTECH.toString() ) ) {
-            final List<Personnel> allLabtechs = new ArrayList<Personnel>();
-            for ( final User u : User.getByRole( Role.ROLE_LABTECH ) ) {
-                if ( Personnel.getByName( u ) != null ) {
-                    allLabtechs.add( Personnel.getByName( u ) );
-                }
-            }
-            return new ResponseEntity( allLabtechs, HttpStatus.OK );
+            return new ResponseEntity( Personnel.getSummariesByRole( Role.ROLE_LABTECH ), HttpStatus.OK );
         }
         else if ( role.equals( Role.ROLE_HCP.toString() ) ) {
-            return new ResponseEntity( User.getByRole( Role.ROLE_HCP ), HttpStatus.OK );
+            return new ResponseEntity( User.getSummariesByRole( Role.ROLE_HCP ), HttpStatus.OK );
         }
         else if ( role.equals( Role.ROLE_OD.toString() ) ) {
-            return new ResponseEntity( User.getByRole( Role.ROLE_OD ), HttpStatus.OK );
+            return new ResponseEntity( User.getSummariesByRole( Role.ROLE_OD ), HttpStatus.OK );
         }
         else if ( role.equals( Role.ROLE_OPH.toString() ) ) {
-            return new ResponseEntity( User.getByRole( Role.ROLE_OPH ), HttpStatus.OK );
+            return new ResponseEntity( User.getSummariesByRole( Role.ROLE_OPH ), HttpStatus.OK );
         }
         else if ( role.equals( Role.ROLE_ER.toString() ) ) {
-            final List<Personnel> allErs = new ArrayList<Personnel>();
-            for ( final User u : User.getByRole( Role.ROLE_ER ) ) {
-                if ( Personnel.getByName( u ) != null ) {
-                    allErs.add( Personnel.getByName( u ) );
-                }
-            }
-            return new ResponseEntity( allErs, HttpStatus.OK );
+            return new ResponseEntity( Personnel.getSummariesByRole( Role.ROLE_ER ), HttpStatus.OK );
         }
 
         return new ResponseEntity( errorResponse( "Invalid role" ), HttpStatus.BAD_REQUEST );
@@ -20,6 +20,7 @@ import org.springframework.web.bind.annotation.RestController;
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.models.summary.UserSummary;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -57,14 +58,16 @@ public class APIUserController extends APIController {
     /**
      * Retrieves and returns a list of all Users in the system, regardless of
      * their classification (including all Patients, all Personnel, and all
-     * users who do not have a further status specified)
+     * users who do not have a further status specified). Only a summary of
+     * each user is returned; use the endpoint for a single user to get the
+     * rest.
      *
      * @return list of users
      */
     @GetMapping ( BASE_PATH + "/users" )
-    public List<User> getUsers () {
+    public List<UserSummary> getUsers () {
         LoggerUtil.log( TransactionType.VIEW_USERS, LoggerUtil.currentUser() );
-        return User.getUsers();
+        return User.getSummaries();
     }
 
     /**
@@ -19,6 +19,11 @@ public class LogEntryRequestBody {
     public int    page;
     /** Number of items per page */
     public int    pageLength;
+    /**
+     * Continuation token from the previous page (optional). When given, the
+     * page is resumed from the token rather than looked up by number.
+     */
+    public String cursor;
 
     /**
      * Empty Constructor required for spring to use this as a RequestBody
@@ -103,4 +108,24 @@ public class LogEntryRequestBody {
         this.pageLength = pageLength;
     }
 
+    /**
+     * Gets the continuation token to resume from.
+     *
+     * @return continuation token, or null to look the page up by number
+     */
+    public String getCursor () {
+        return cursor;
+    }
+
+    /**
+     * Sets the continuation token to resume from. This is the token that was
+     * returned with the previous page.
+     *
+     * @param cursor
+     *            continuation token
+     */
+    public void setCursor ( final String cursor ) {
+        this.cursor = cursor;
+    }
+
 }
@@ -0,0 +1,92 @@
+package edu.ncsu.csc.itrust2.controllers.api.comm;
+
+import java.util.List;
+
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * A single page of the log entries found by a search, along with how many were
+ * found (and how many pages that makes) in total.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class LogEntrySearchPage {
+
+    /** The log entries on this page, newest first */
+    private List<LogEntry> entries;
+
+    /** Which page this is, starting from 1 */
+    private int            page;
+
+    /** Total number of log entries found, on every page */
+    private long           total;
+
+    /** Total number of pages of results */
+    private int            numPages;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public LogEntrySearchPage () {
+        // Empty Constructor
+    }
+
+    /**
+     * Creates a page of search results
+     *
+     * @param entries
+     *            The log entries on this page
+     * @param page
+     *            Which page this is, starting from 1
+     * @param pageLength
+     *            Number of log entries on a full page
+     * @param total
+     *            Total number of log entries found
+     */
+    public LogEntrySearchPage ( final List<LogEntry> entries, final int page, final int pageLength,
+            final long total ) {
+        this.entries = entries;
+        this.page = page;
+        this.total = total;
+        this.numPages = (int) Math.max( 1, ( total + pageLength - 1 ) / pageLength );
+    }
+
+    /**
+     * Returns the log entries on this page
+     *
+     * @return log entries found
+     */
+    public List<LogEntry> getEntries () {
+        return entries;
+    }
+
+    /**
+     * Returns which page this is, starting from 1
+     *
+     * @return page number
+     */
+    public int getPage () {
+        return page;
+    }
+
+    /**
+     * Returns the total number of log entries found
+     *
+     * @return number of log entries
+     */
+    public long getTotal () {
+        return total;
+    }
+
+    /**
+     * Returns the number of pages of results
+     *
+     * @return number of pages
+     */
+    public int getNumPages () {
+        return numPages;
+    }
+
+}
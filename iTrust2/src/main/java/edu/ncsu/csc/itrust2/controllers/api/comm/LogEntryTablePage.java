@@ -0,0 +1,91 @@
+package edu.ncsu.csc.itrust2.controllers.api.comm;
+
+import java.util.List;
+
+/**
+ * A single page of the Log Entry view, along with how many entries (and pages)
+ * there are in total, so that these only need to be sent once per page rather
+ * than with every row.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class LogEntryTablePage {
+
+    /** The rows on this page, newest first */
+    private List<LogEntryTableRow> rows;
+
+    /** Which page this is, starting from 1 */
+    private int                    page;
+
+    /** Total number of entries matching the search, on every page */
+    private long                   total;
+
+    /** Total number of pages in the table */
+    private int                    numPages;
+
+    /**
+     * Empty constructor so that Spring is able to use this class for
+     * communicating over http
+     */
+    public LogEntryTablePage () {
+        // Empty Constructor
+    }
+
+    /**
+     * Creates a page of the table
+     *
+     * @param rows
+     *            The rows on this page
+     * @param page
+     *            Which page this is, starting from 1
+     * @param pageLength
+     *            Number of rows on a full page
+     * @param total
+     *            Total number of entries matching the search
+     */
+    public LogEntryTablePage ( final List<LogEntryTableRow> rows, final int page, final int pageLength,
+            final long total ) {
+        this.rows = rows;
+        this.page = page;
+        this.total = total;
+        this.numPages = (int) Math.max( 1, ( total + pageLength - 1 ) / pageLength );
+    }
+
+    /**
+     * Returns the rows on this page
+     *
+     * @return rows of the table
+     */
+    public List<LogEntryTableRow> getRows () {
+        return rows;
+    }
+
+    /**
+     * Returns which page this is, starting from 1
+     *
+     * @return page number
+     */
+    public int getPage () {
+        return page;
+    }
+
+    /**
+     * Returns the total number of entries matching the search
+     *
+     * @return number of entries
+     */
+    public long getTotal () {
+        return total;
+    }
+
+    /**
+     * Returns the number of pages in the table
+     *
+     * @return number of pages
+     */
+    public int getNumPages () {
+        return numPages;
+    }
+
+}
@@ -20,8 +20,6 @@ public class LogEntryTableRow {
     private String  transactionType;
     /** boolean for whether or not being viewed by patient */
     private boolean isPatient = false;
-    /** total number of pages in the table */
-    private int     numPages  = 1;
 
     /**
      * Empty constructor so that Spring is able to use this class for
@@ -31,25 +29,6 @@ public class LogEntryTableRow {
         // Empty Constructor
     }
 
-    /**
-     * Returns the number of pages in the table
-     *
-     * @return number of pages
-     */
-    public int getNumPages () {
-        return numPages;
-    }
-
-    /**
-     * Sets the number of pages in the table
-     *
-     * @param numPages
-     *            number of pages
-     */
-    public void setNumPages ( final int numPages ) {
-        this.numPages = numPages;
-    }
-
     /**
      * Returns whether or not this table row is being viewed by a patient
      *
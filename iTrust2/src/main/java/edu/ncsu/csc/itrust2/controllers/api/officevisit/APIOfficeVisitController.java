@@ -1,10 +1,15 @@
 package edu.ncsu.csc.itrust2.controllers.api.officevisit;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import edu.ncsu.csc.itrust2.controllers.api.APIController;
@@ -16,6 +21,8 @@ import edu.ncsu.csc.itrust2.models.persistent.GeneralCheckup;
 import edu.ncsu.csc.itrust2.models.persistent.GeneralOphthalmology;
 import edu.ncsu.csc.itrust2.models.persistent.OfficeVisit;
 import edu.ncsu.csc.itrust2.models.persistent.OphthalmologySurgery;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
@@ -28,18 +35,41 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
  * @author Jack MacDonald
  */
 @RestController
+@SuppressWarnings ( { "rawtypes", "unchecked" } )
 public class APIOfficeVisitController extends APIController {
 
     /**
-     * Retrieves a list of all OfficeVisits in the database
+     * Retrieves a list of all OfficeVisits in the database, sorted by date. If
+     * a limit is given, only one page of that many visits is returned; the
+     * token for the next page is sent back in the CONTINUATION_HEADER header.
      *
+     * @param limit
+     *            maximum number of visits to return, or null for all of them
+     * @param cursor
+     *            continuation token of the previous page, if any
      * @return list of office visits
      */
     @GetMapping ( BASE_PATH + "/officevisits" )
     @PreAuthorize ( "hasRole('ROLE_HCP') or hasRole('ROLE_OD') or hasRole('ROLE_OPH')" )
-    public List<OfficeVisit> getOfficeVisits () {
-        // append all other office visits here.
-        return OfficeVisit.getOfficeVisits();
+    public ResponseEntity getOfficeVisits ( @RequestParam ( required = false ) final Integer limit,
+            @RequestParam ( required = false ) final String cursor ) {
+        if ( null == limit ) {
+            return new ResponseEntity( OfficeVisit.getOfficeVisits(), HttpStatus.OK );
+        }
+        final Page<OfficeVisit> page;
+        try {
+            final PageRequest request = new PageRequest( "date", true, limit );
+            request.setCursor( cursor );
+            page = OfficeVisit.getOfficeVisits( request );
+        }
+        catch ( final IllegalArgumentException e ) {
+            return new ResponseEntity( errorResponse( e.getMessage() ), HttpStatus.BAD_REQUEST );
+        }
+        final HttpHeaders headers = new HttpHeaders();
+        if ( page.hasMore() ) {
+            headers.set( CONTINUATION_HEADER, page.getNextCursor() );
+        }
+        return new ResponseEntity( page.getItems(), headers, HttpStatus.OK );
     }
 
     /**
@@ -50,15 +80,16 @@ public class APIOfficeVisitController extends APIController {
     @GetMapping ( BASE_PATH + "/officevisits/HCP" )
     public List<OfficeVisit> getOfficeVisitsForHCP () {
         final User self = User.getByName( LoggerUtil.currentUser() );
-        final List<OfficeVisit> visits = OfficeVisit.getForType( AppointmentType.GENERAL_CHECKUP );
+        final List<AppointmentType> types = new ArrayList<AppointmentType>();
+        types.add( AppointmentType.GENERAL_CHECKUP );
         if ( self.getRole() == Role.ROLE_OPH ) {
-            visits.addAll( OfficeVisit.getForType( AppointmentType.GENERAL_OPHTHALMOLOGY ) );
-            visits.addAll( OfficeVisit.getForType( AppointmentType.OPHTHALMOLOGY_SURGERY ) );
+            types.add( AppointmentType.GENERAL_OPHTHALMOLOGY );
+            types.add( AppointmentType.OPHTHALMOLOGY_SURGERY );
         }
         else if ( self.getRole() == Role.ROLE_OD ) {
-            visits.addAll( OfficeVisit.getForType( AppointmentType.GENERAL_OPHTHALMOLOGY ) );
+            types.add( AppointmentType.GENERAL_OPHTHALMOLOGY );
         }
-        return visits;
+        return OfficeVisit.getForTypes( types );
     }
 
     /**
@@ -11,7 +11,6 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -49,12 +48,7 @@ public class AppointmentRequest extends DomainObject<AppointmentRequest> {
      * @return The AppointmentRequest, if found, or null if not found.
      */
     public static AppointmentRequest getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( AppointmentRequest.class, id ).orElse( null );
     }
 
     /**
@@ -184,7 +178,7 @@ public class AppointmentRequest extends DomainObject<AppointmentRequest> {
      * ID of the AppointmentRequest
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long id;
 
     /**
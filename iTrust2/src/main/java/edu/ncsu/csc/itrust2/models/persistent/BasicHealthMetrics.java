@@ -7,7 +7,6 @@ import java.util.regex.Pattern;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -41,12 +40,7 @@ public class BasicHealthMetrics extends DomainObject<BasicHealthMetrics> {
      * @return The BasicHealthMetrics, if found, or null if not found.
      */
     public static BasicHealthMetrics getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( BasicHealthMetrics.class, id ).orElse( null );
     }
 
     /**
@@ -157,7 +151,7 @@ public class BasicHealthMetrics extends DomainObject<BasicHealthMetrics> {
      * ID of the AppointmentRequest
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long id;
 
     /**
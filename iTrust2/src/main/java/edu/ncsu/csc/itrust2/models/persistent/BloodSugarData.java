@@ -9,8 +9,8 @@ import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -31,7 +31,8 @@ import edu.ncsu.csc.itrust2.forms.patient.BloodSugarDataForm;
  *
  */
 @Entity
-@Table ( name = "BloodSugarData" )
+@Table ( name = "BloodSugarData", indexes = {
+        @Index ( name = "idx_bloodsugardata_patient_date", columnList = "patient, date" ) } )
 public class BloodSugarData extends DomainObject<BloodSugarData> implements Serializable {
 
     /**
@@ -47,12 +48,7 @@ public class BloodSugarData extends DomainObject<BloodSugarData> implements Seri
      * @return the specific BloodSugarData with the desired ID
      */
     public static BloodSugarData getById ( final Long id ) {
-        try {
-            return (BloodSugarData) getWhere( BloodSugarData.class, eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( BloodSugarData.class, id ).orElse( null );
     }
 
     /**
@@ -151,7 +147,7 @@ public class BloodSugarData extends DomainObject<BloodSugarData> implements Seri
      * The id of this DiaryEntry
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long      id;
 
     /**
@@ -1,11 +1,11 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Vector;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -13,6 +13,7 @@ import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 
 /**
  * Class to represent a Diagnosis made by an HCP as part of an Office Visit
@@ -33,7 +34,7 @@ public class Diagnosis extends DomainObject<Diagnosis> {
     private String      note;
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long        id;
 
     @NotNull
@@ -133,12 +134,7 @@ public class Diagnosis extends DomainObject<Diagnosis> {
      * @return The requested diagnosis.
      */
     public static Diagnosis getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( Diagnosis.class, id ).orElse( null );
     }
 
     /**
@@ -149,21 +145,57 @@ public class Diagnosis extends DomainObject<Diagnosis> {
      * @return The list of Diagnoses
      */
     public static List<Diagnosis> getByVisit ( final Long id ) {
-        return getWhere( eqList( "visit", OfficeVisit.getById( id ) ) );
+        return getWhere( eqList( "visit.id", id ) );
     }
 
     /**
-     * Returns a list of diagnoses for the specified Patient
+     * Returns a list of diagnoses for the specified Patient, from their most
+     * recent office visit to their oldest
      *
      * @param user
      *            The patient to get diagnoses for
      * @return The list of diagnoses
      */
     public static List<Diagnosis> getForPatient ( final User user ) {
-        final List<Diagnosis> diagnoses = new Vector<Diagnosis>();
-        OfficeVisit.getForPatient( user.getId() ).stream().map( OfficeVisit::getId )
-                .forEach( e -> diagnoses.addAll( getByVisit( e ) ) );
-        return diagnoses;
+        return getForPatient( user, null, null, null );
+    }
 
+    /**
+     * Returns the diagnoses for the specified Patient made at office visits
+     * within a window of time, and optionally only those with a particular
+     * code. The diagnoses and their visits are retrieved together in a single
+     * query, rather than one query per visit. Diagnoses are sorted from the
+     * most recent visit to the oldest, the same order as
+     * {@link #getForPatient(User)}; this returns the part of that list whose
+     * visits fall within the window (and match the code, if one is given).
+     *
+     * @param user
+     *            The patient to get diagnoses for
+     * @param from
+     *            Earliest (inclusive) visit date to include, or null for no
+     *            lower bound
+     * @param to
+     *            Latest (exclusive) visit date to include, or null for no upper
+     *            bound
+     * @param code
+     *            The code to restrict the diagnoses to, or null for all codes
+     * @return The list of diagnoses
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static List<Diagnosis> getForPatient ( final User user, final ZonedDateTime from,
+            final ZonedDateTime to, final ICDCode code ) {
+        final Vector<Criterion> where = new Vector<Criterion>();
+        where.add( eq( "v.patient", user ) );
+        if ( null != from ) {
+            where.add( ge( "v.date", from ) );
+        }
+        if ( null != to ) {
+            where.add( lt( "v.date", to ) );
+        }
+        if ( null != code ) {
+            where.add( eq( "code", code ) );
+        }
+        return (List<Diagnosis>) getWhereJoined( Diagnosis.class, "visit", "v", where, Order.desc( "v.date" ),
+                Order.asc( ID ) );
     }
 }
@@ -1,20 +1,41 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.io.Serializable;
-import java.lang.annotation.Annotation;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.persistence.Cacheable;
 
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.QueryParameters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.loader.criteria.CriteriaQueryTranslator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
 import org.springframework.transaction.annotation.Transactional;
 
 import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.UnitOfWork;
 
 /**
  * The common super-class for all database entities. This is done to centralize
@@ -31,6 +52,11 @@ import edu.ncsu.csc.itrust2.utils.HibernateUtil;
  * performance out of the underlying database system. It is not _required_ but
  * is better to have it than not.
  *
+ * All of the database access here goes through
+ * {@link HibernateUtil#inTransaction}, so when a request-scoped
+ * {@link edu.ncsu.csc.itrust2.utils.UnitOfWork} is active every call made
+ * while serving the request shares a single Session and transaction.
+ *
  * @author Kai Presler-Marshall
  *
  * @param <D>
@@ -45,7 +71,22 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * Lots of DomainObjects are retrieved by ID. This way we get compile-time
      * errors of typos
      */
-    static final protected String ID = "id";
+    static final protected String ID              = "id";
+
+    /**
+     * Largest number of records changed per statement by the bulk operations
+     * (deleteWhere, updateWhere, incrementWhere), to keep the `IN (...)` lists
+     * reasonable.
+     */
+    static final protected int    BULK_BATCH_SIZE = 1000;
+
+    /**
+     * Name of the ID generator shared by all DomainObjects with a numeric ID
+     * (see package-info.java). IDs are handed out in blocks, so that new
+     * records can be INSERTed in batches without a trip to the database for
+     * each ID.
+     */
+    static final protected String ID_GENERATOR    = "iTrust2IdGenerator";
 
     /**
      * Performs a getAll on the subtype of DomainObject in question. The
@@ -58,25 +99,27 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      */
     @Transactional ( readOnly = true )
     protected static List< ? extends DomainObject> getAll ( final Class cls ) {
-        List< ? extends DomainObject> results = null;
-        final Session session = HibernateUtil.openSession();
-        try {
-            session.beginTransaction();
-            results = session.createCriteria( cls ).list();
-        }
-        finally {
-            try {
-                session.getTransaction().commit();
-                session.close();
-            }
-            catch ( final Exception e ) {
-                e.printStackTrace( System.out );
-                // Continue
-            }
+        return HibernateUtil.inTransaction( false, session -> createCriteria( session, cls ).list() );
+    }
 
+    /**
+     * Creates a Criteria query for the type of DomainObject provided. For
+     * types marked as @Cacheable (reference data), the results of the query
+     * are stored in the query cache, so that repeated lookups are answered
+     * from memory until the underlying table is next written to.
+     *
+     * @param session
+     *            The Session to create the query in
+     * @param cls
+     *            Subclass of DomainObject to query for
+     * @return The Criteria that was created
+     */
+    private static Criteria createCriteria ( final Session session, final Class cls ) {
+        final Criteria c = session.createCriteria( cls );
+        if ( cls.isAnnotationPresent( Cacheable.class ) ) {
+            c.setCacheable( true );
         }
-
-        return results;
+        return c;
     }
 
     /**
@@ -84,6 +127,10 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * we can perform a copyFrom instead. This is advantageous because it's
      * faster and won't break references.
      *
+     * All fields are copied, including those inherited from a superclass. The
+     * fields to copy are only looked up once per class (see
+     * {@link FieldAccessors}), as this is done on every edit.
+     *
      * @param other
      *            Object to copy from
      * @param includeId
@@ -93,33 +140,7 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         if ( !this.getClass().equals( other.getClass() ) ) {
             throw new IllegalArgumentException( "Cannot copy between different types!" );
         }
-        final List<Field> fields = Arrays.asList( this.getClass().getDeclaredFields() );
-        try {
-            for ( final Field f : fields ) {
-                final Integer modifiers = f.getModifiers();
-                if ( Modifier.isFinal( modifiers ) ) {
-                    continue;
-                }
-
-                f.setAccessible( true );
-                boolean id = false;
-                final List<Annotation> annotations = Arrays.asList( f.getAnnotations() );
-                for ( final Annotation annotation : annotations ) {
-                    if ( annotation.annotationType().equals( javax.persistence.Id.class ) ) {
-                        id = true;
-                    }
-                }
-                if ( ( id && includeId ) || !id ) {
-                    f.set( this, f.get( other ) );
-                }
-
-            }
-
-        }
-        catch ( final Exception e ) {
-            throw new IllegalArgumentException( e );
-        }
-
+        FieldAccessors.forClass( this.getClass() ).copy( other, this, includeId );
     }
 
     /**
@@ -139,29 +160,333 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      */
     @Transactional ( readOnly = true )
     protected static List< ? extends DomainObject> getWhere ( final Class cls, final List<Criterion> criteriaList ) {
-        final Session session = HibernateUtil.openSession();
+        return HibernateUtil.inTransaction( false, session -> createCriteria( session, cls, criteriaList ).list() );
+    }
 
-        List< ? extends DomainObject> results = null;
-        try {
-            session.beginTransaction();
-            final Criteria c = session.createCriteria( cls );
+    /**
+     * Retrieves all DomainObjects of the specified class that match all of the
+     * criterion provided, sorted by the database in the order given.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param orders
+     *            How to sort the results; the first Order takes precedence
+     * @return The resulting list of elements found, in order
+     */
+    @Transactional ( readOnly = true )
+    protected static List< ? extends DomainObject> getWhere ( final Class cls, final List<Criterion> criteriaList,
+            final Order... orders ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final Criteria c = createCriteria( session, cls, criteriaList );
+            for ( final Order order : orders ) {
+                c.addOrder( order );
+            }
+            return c.list();
+        } );
+    }
+
+    /**
+     * Retrieves the DomainObjects matching the criteria provided, along with
+     * the lazy associations named. Associations that are not needed on every
+     * read (ie, a Patient's representatives) are mapped as lazy and left
+     * unloaded by the other retrieval methods; use this for the few places
+     * that do need them. The associations are loaded in the same transaction
+     * as the objects themselves.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param associations
+     *            Names of the lazy associations to load as well
+     * @return The resulting list of elements found
+     */
+    @Transactional ( readOnly = true )
+    protected static List< ? extends DomainObject> getWhereFetching ( final Class cls,
+            final List<Criterion> criteriaList, final String... associations ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final List results = createCriteria( session, cls, criteriaList ).list();
+            final EntityPersister persister = persister( session, cls );
+            for ( final Object result : results ) {
+                for ( final String association : associations ) {
+                    Hibernate.initialize( persister.getPropertyValue( result, association ) );
+                }
+            }
+            return results;
+        } );
+    }
+
+    /**
+     * Retrieves the DomainObjects matching the criteria provided, joined to
+     * one of their associations so that the criteria and orders can refer to
+     * the fields of the associated record (as `alias.field`). This lets the
+     * database do a lookup that would otherwise need one query per associated
+     * record (ie, the diagnoses from each of a patient's office visits) in a
+     * single query. The associated records are loaded by the same query.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param association
+     *            Name of the association to join to
+     * @param alias
+     *            Name to refer to the associated record by in the criteria
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param orders
+     *            How to sort the results; the first Order takes precedence
+     * @return The resulting list of elements found, in order
+     */
+    @Transactional ( readOnly = true )
+    protected static List< ? extends DomainObject> getWhereJoined ( final Class cls, final String association,
+            final String alias, final List<Criterion> criteriaList, final Order... orders ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final Criteria c = createCriteria( session, cls ).createAlias( association, alias )
+                    .setFetchMode( alias, FetchMode.JOIN );
             for ( final Criterion criterion : criteriaList ) {
                 c.add( criterion );
             }
-            results = c.list();
+            for ( final Order order : orders ) {
+                c.addOrder( order );
+            }
+            // Eagerly-fetched collections on the associated record are joined
+            // as well, repeating each result once per element
+            return c.setResultTransformer( Criteria.DISTINCT_ROOT_ENTITY ).list();
+        } );
+    }
+
+    /**
+     * Counts the DomainObjects matching the criteria provided. The counting
+     * is done by the database (`SELECT COUNT(*) ... WHERE ...`), so none of
+     * the matching records are actually loaded. Use this instead of
+     * getWhere(...).size().
+     *
+     * @param cls
+     *            Subclass of DomainObject to count
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @return The number of matching records
+     */
+    @Transactional ( readOnly = true )
+    protected static long countWhere ( final Class cls, final List<Criterion> criteriaList ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final Criteria c = createCriteria( session, cls, criteriaList );
+            c.setProjection( Projections.rowCount() );
+            return (Long) c.uniqueResult();
+        } );
+    }
+
+    /**
+     * Checks whether there is at least one DomainObject matching the criteria
+     * provided. Only the ID of the first match is ever retrieved (`SELECT id
+     * ... WHERE ... LIMIT 1`), so the database can stop as soon as it finds
+     * one.
+     *
+     * @param cls
+     *            Subclass of DomainObject to search for
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @return True if there is a matching record, false otherwise
+     */
+    @Transactional ( readOnly = true )
+    protected static boolean existsWhere ( final Class cls, final List<Criterion> criteriaList ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final Criteria c = createCriteria( session, cls, criteriaList );
+            c.setProjection( Projections.id() );
+            c.setMaxResults( 1 );
+            return null != c.uniqueResult();
+        } );
+    }
+
+    /**
+     * Retrieves only some of the fields of the DomainObjects matching the
+     * criteria provided, rather than the full objects. Only the columns
+     * behind the properties listed are selected (`SELECT a, b ... WHERE ...`),
+     * so no associations are joined or loaded. This makes it a good fit for
+     * lists and pickers, which need a name and a username for a lot of
+     * records but none of the rest.
+     *
+     * Properties are given by name, as they are for a Criterion. The
+     * identifier of an associated object can be given with a path, ie
+     * `self.username`, without joining the other table.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param mapper
+     *            Builds the read model for a single record, from the values of
+     *            the properties in the order they were listed
+     * @param properties
+     *            The properties to retrieve
+     * @param <V>
+     *            Type of the read model that is returned
+     * @return The read models for the matching records
+     */
+    @Transactional ( readOnly = true )
+    protected static <V> List<V> getProjection ( final Class cls, final List<Criterion> criteriaList,
+            final Function<Object[], V> mapper, final String... properties ) {
+        if ( 0 == properties.length ) {
+            throw new IllegalArgumentException( "At least one property must be retrieved" );
         }
-        finally {
+        return HibernateUtil.inTransaction( false, session -> {
+            final Criteria c = createCriteria( session, cls, criteriaList );
+            final ProjectionList projection = Projections.projectionList();
+            for ( final String property : properties ) {
+                projection.add( Projections.property( property ) );
+            }
+            c.setProjection( projection );
+
+            final List<V> results = new ArrayList<V>();
+            for ( final Object row : c.list() ) {
+                // A single column comes back on its own, rather than as a row
+                results.add( mapper.apply( row instanceof Object[] ? (Object[]) row : new Object[] { row } ) );
+            }
+            return results;
+        } );
+    }
+
+    /**
+     * Performs an action on every DomainObject matching the criteria
+     * provided, in the order given, without ever holding more than one of them
+     * in memory. The records are streamed from the database through a
+     * forward-only cursor, and each one is evicted from the Session once the
+     * action is done with it, so this works for tables of any size (ie, for
+     * exports).
+     *
+     * While the records are being streamed, the connection they come from
+     * cannot be used for anything else: the action must not go back to the
+     * database on the same Session.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param action
+     *            What to do with each record
+     * @param order
+     *            How to sort the records
+     * @return The number of records found
+     */
+    @Transactional ( readOnly = true )
+    protected static long forEachWhere ( final Class cls, final List<Criterion> criteriaList,
+            final Consumer action, final Order... order ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final Criteria c = createCriteria( session, cls, criteriaList );
+            for ( final Order o : order ) {
+                c.addOrder( o );
+            }
+            // MySQL only streams results (rather than reading all of them
+            // into memory first) when asked for them one at a time
+            c.setFetchSize( Integer.MIN_VALUE );
+            c.setReadOnly( true );
+            c.setCacheable( false );
+
+            long count = 0;
+            final ScrollableResults results = c.scroll( ScrollMode.FORWARD_ONLY );
             try {
-                session.getTransaction().commit();
-                session.close();
+                while ( results.next() ) {
+                    final Object record = results.get( 0 );
+                    action.accept( record );
+                    session.evict( record );
+                    count++;
+                }
             }
-            catch ( final Exception e ) {
-                e.printStackTrace( System.out );
-                // Continue
+            finally {
+                results.close();
+            }
+            return count;
+        } );
+    }
+
+    /**
+     * Retrieves a single page of the DomainObjects matching the criteria
+     * provided. Sorting and paging are done by the database, so only the
+     * records on the page are ever loaded, no matter how large the table is.
+     *
+     * Results are ordered by the sort field of the request, with the ID as a
+     * tie-breaker. If the request has a cursor (the continuation token of the
+     * previous page) the database seeks straight past the last record that
+     * was returned; otherwise the request's offset is used. The sort field
+     * must not be null for any of the matching records.
+     *
+     * @param cls
+     *            Subclass of DomainObject to retrieve
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @param request
+     *            Which page to retrieve, and how to sort
+     * @return The page of records, with the token for the next page
+     * @throws IllegalArgumentException
+     *             If the cursor provided is not valid
+     */
+    @Transactional ( readOnly = true )
+    protected static Page getPage ( final Class cls, final List<Criterion> criteriaList, final PageRequest request ) {
+        return HibernateUtil.inTransaction( false, session -> {
+            final EntityPersister persister = persister( session, cls );
+            final String idField = persister.getIdentifierPropertyName();
+            final String sortField = null == request.getSortField() ? idField : request.getSortField();
+            final boolean byId = sortField.equals( idField );
+
+            final Criteria c = createCriteria( session, cls, criteriaList );
+            if ( null != request.getCursor() ) {
+                final Class idType = persister.getIdentifierType().getReturnedClass();
+                final Class sortType = byId ? idType : persister.getPropertyType( sortField ).getReturnedClass();
+                final Object[] last = Page.decodeCursor( request.getCursor(), sortType, idType );
+                final Criterion afterId = request.isAscending() ? Restrictions.gt( idField, last[1] )
+                        : Restrictions.lt( idField, last[1] );
+                if ( byId ) {
+                    c.add( afterId );
+                }
+                else {
+                    final Criterion afterSort = request.isAscending() ? Restrictions.gt( sortField, last[0] )
+                            : Restrictions.lt( sortField, last[0] );
+                    c.add( Restrictions.or( afterSort,
+                            Restrictions.and( Restrictions.eq( sortField, last[0] ), afterId ) ) );
+                }
+            }
+            else if ( request.getOffset() > 0 ) {
+                c.setFirstResult( request.getOffset() );
             }
-        }
 
-        return results;
+            c.addOrder( request.isAscending() ? Order.asc( sortField ) : Order.desc( sortField ) );
+            if ( !byId ) {
+                c.addOrder( request.isAscending() ? Order.asc( idField ) : Order.desc( idField ) );
+            }
+            // One extra record tells us whether there is another page
+            c.setMaxResults( request.getLimit() + 1 );
+
+            final List<DomainObject> results = c.list();
+            if ( results.size() <= request.getLimit() ) {
+                return new Page( results, null );
+            }
+            final List<DomainObject> items = new ArrayList<DomainObject>( results.subList( 0, request.getLimit() ) );
+            final DomainObject last = items.get( items.size() - 1 );
+            final Object sortValue = byId ? last.getId() : persister.getPropertyValue( last, sortField );
+            return new Page( items, Page.encodeCursor( sortValue, last.getId() ) );
+        } );
+    }
+
+    /**
+     * Creates a Criteria query for the type of DomainObject provided,
+     * restricted by all of the Criterion given.
+     *
+     * @param session
+     *            The Session to create the query in
+     * @param cls
+     *            Subclass of DomainObject to query for
+     * @param criteriaList
+     *            List of Criterion to AND together
+     * @return The Criteria that was created
+     */
+    private static Criteria createCriteria ( final Session session, final Class cls,
+            final List<Criterion> criteriaList ) {
+        final Criteria c = createCriteria( session, cls );
+        for ( final Criterion criterion : criteriaList ) {
+            c.add( criterion );
+        }
+        return c;
     }
 
     /**
@@ -174,14 +499,241 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      *            class to delete instances of
      */
     public static void deleteAll ( final Class cls ) {
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        final List<DomainObject> instances = session.createCriteria( cls ).list();
-        for ( final DomainObject d : instances ) {
-            session.delete( d );
+        deleteWhere( cls, Collections.<Criterion> emptyList() );
+    }
+
+    /**
+     * Deletes all of the DomainObjects matching the criteria provided, without
+     * loading them first. For most types (those stored in a table of their
+     * own) this is a single `DELETE ... WHERE`, with the criteria as its WHERE
+     * clause. Types that share their records with subclasses are deleted in
+     * bulk instead: the IDs of the matching records are looked up and they are
+     * removed with a single `DELETE ... WHERE id IN (...)` per
+     * {@link #BULK_BATCH_SIZE} records (or a single `DELETE` with no IDs at
+     * all, if there are no criteria).
+     *
+     * A bulk delete skips Hibernate entirely, so for types where deleting a
+     * record must also delete others (cascades, or collections stored in a
+     * table of their own) this falls back to loading and deleting the records
+     * through the Session, {@link #BULK_BATCH_SIZE} at a time.
+     *
+     * @param cls
+     *            Subclass of DomainObject to delete
+     * @param criteriaList
+     *            List of Criterion to AND together to select what to delete
+     * @return The number of records deleted
+     */
+    protected static int deleteWhere ( final Class cls, final List<Criterion> criteriaList ) {
+        return HibernateUtil.inTransaction( true, session -> {
+            final EntityPersister persister = persister( session, cls );
+
+            if ( persister.hasCascades() || persister.hasCollections() ) {
+                int deleted = 0;
+                for ( final List<Serializable> ids : matchingIds( session, cls, criteriaList ) ) {
+                    final List<DomainObject> instances = session.createCriteria( cls )
+                            .add( Restrictions.in( persister.getIdentifierPropertyName(), ids ) ).list();
+                    for ( final DomainObject d : instances ) {
+                        session.delete( d );
+                    }
+                    session.flush();
+                    session.clear();
+                    deleted += instances.size();
+                }
+                return deleted;
+            }
+
+            final String hql = "DELETE FROM " + persister.getEntityName();
+            if ( criteriaList.isEmpty() ) {
+                return session.createQuery( hql ).executeUpdate();
+            }
+            if ( persister instanceof SingleTableEntityPersister && !persister.isInherited()
+                    && !persister.getEntityMetamodel().hasSubclasses() ) {
+                return deleteInOne( session, (SingleTableEntityPersister) persister, cls, criteriaList );
+            }
+            return executeForIds( session, persister, hql, matchingIds( session, cls, criteriaList ),
+                    Collections.emptyMap() );
+        } );
+    }
+
+    /**
+     * Deletes the records matching the criteria provided from a type's table
+     * with a single `DELETE` statement. The criteria are turned into its WHERE
+     * clause the same way Hibernate does when they are used to read records.
+     *
+     * @param session
+     *            The Session to run the statement in
+     * @param persister
+     *            Hibernate's description of the type being deleted
+     * @param cls
+     *            Subclass of DomainObject to delete
+     * @param criteriaList
+     *            List of Criterion to AND together to select what to delete
+     * @return The number of records deleted
+     */
+    private static int deleteInOne ( final Session session, final SingleTableEntityPersister persister,
+            final Class cls, final List<Criterion> criteriaList ) {
+        final CriteriaImpl criteria = (CriteriaImpl) session.createCriteria( cls );
+        for ( final Criterion criterion : criteriaList ) {
+            criteria.add( criterion );
+        }
+        final String alias = CriteriaQueryTranslator.ROOT_SQL_ALIAS;
+        final CriteriaQueryTranslator translator = new CriteriaQueryTranslator(
+                (SessionFactoryImplementor) session.getSessionFactory(), criteria, persister.getEntityName(),
+                alias );
+
+        final SQLQuery query = session.createSQLQuery( "DELETE " + alias + " FROM " + persister.getTableName() + " "
+                + alias + " WHERE " + translator.getWhereCondition() );
+        query.addSynchronizedEntityClass( cls );
+        final QueryParameters params = translator.getQueryParameters();
+        for ( int i = 0; i < params.getPositionalParameterValues().length; i++ ) {
+            query.setParameter( i, params.getPositionalParameterValues()[i],
+                    params.getPositionalParameterTypes()[i] );
+        }
+        return query.executeUpdate();
+    }
+
+    /**
+     * Updates all of the DomainObjects matching the criteria provided, setting
+     * the fields given to new values without loading the records. The IDs of
+     * the matching records are looked up and they are changed with a single
+     * `UPDATE ... SET ... WHERE id IN (...)` per {@link #BULK_BATCH_SIZE}
+     * records (or a single `UPDATE` with no IDs at all, if there are no
+     * criteria). Only simple fields (not collections) can be updated this way.
+     *
+     * @param cls
+     *            Subclass of DomainObject to update
+     * @param criteriaList
+     *            List of Criterion to AND together to select what to update
+     * @param values
+     *            New value for each field to update, by field name
+     * @return The number of records updated
+     */
+    protected static int updateWhere ( final Class cls, final List<Criterion> criteriaList,
+            final Map<String, Object> values ) {
+        if ( values.isEmpty() ) {
+            throw new IllegalArgumentException( "Nothing to update" );
         }
-        session.getTransaction().commit();
-        session.close();
+        return HibernateUtil.inTransaction( true, session -> {
+            final EntityPersister persister = persister( session, cls );
+
+            final Map<String, Object> params = new HashMap<String, Object>();
+            final StringBuilder hql = new StringBuilder( "UPDATE " ).append( persister.getEntityName() )
+                    .append( " SET " );
+            for ( final Map.Entry<String, Object> value : values.entrySet() ) {
+                final String param = "value" + params.size();
+                if ( !params.isEmpty() ) {
+                    hql.append( ", " );
+                }
+                hql.append( value.getKey() ).append( " = :" ).append( param );
+                params.put( param, value.getValue() );
+            }
+
+            if ( criteriaList.isEmpty() ) {
+                final Query query = session.createQuery( hql.toString() );
+                params.forEach( query::setParameter );
+                return query.executeUpdate();
+            }
+            return executeForIds( session, persister, hql.toString(), matchingIds( session, cls, criteriaList ),
+                    params );
+        } );
+    }
+
+    /**
+     * Adds to a numeric field of all of the DomainObjects matching the
+     * criteria provided, without loading them. Unlike reading the value,
+     * adding to it and saving it, this is safe when several threads (or
+     * servers) add to the same record at once: the database does the
+     * addition, so none of them are lost.
+     *
+     * @param cls
+     *            Subclass of DomainObject to update
+     * @param criteriaList
+     *            List of Criterion to AND together to select what to update
+     * @param field
+     *            The field to add to
+     * @param amount
+     *            How much to add
+     * @return The number of records updated
+     */
+    protected static int incrementWhere ( final Class cls, final List<Criterion> criteriaList, final String field,
+            final long amount ) {
+        return HibernateUtil.inTransaction( true, session -> {
+            final EntityPersister persister = persister( session, cls );
+            final String hql = "UPDATE " + persister.getEntityName() + " SET " + field + " = " + field + " + :amount";
+            return executeForIds( session, persister, hql, matchingIds( session, cls, criteriaList ),
+                    Collections.<String, Object> singletonMap( "amount", amount ) );
+        } );
+    }
+
+    /**
+     * Looks up the IDs (and only the IDs) of the records matching the criteria
+     * provided, split up into chunks of at most {@link #BULK_BATCH_SIZE}.
+     *
+     * @param session
+     *            The Session to query in
+     * @param cls
+     *            Subclass of DomainObject to search for
+     * @param criteriaList
+     *            List of Criterion to AND together and search by
+     * @return The IDs of the matching records, in chunks
+     */
+    private static List<List<Serializable>> matchingIds ( final Session session, final Class cls,
+            final List<Criterion> criteriaList ) {
+        final Criteria c = session.createCriteria( cls );
+        for ( final Criterion criterion : criteriaList ) {
+            c.add( criterion );
+        }
+        c.setProjection( Projections.id() );
+        final List<Serializable> ids = c.list();
+
+        final List<List<Serializable>> chunks = new ArrayList<List<Serializable>>();
+        for ( int i = 0; i < ids.size(); i += BULK_BATCH_SIZE ) {
+            chunks.add( ids.subList( i, Math.min( i + BULK_BATCH_SIZE, ids.size() ) ) );
+        }
+        return chunks;
+    }
+
+    /**
+     * Runs a bulk HQL statement (DELETE or UPDATE) once per chunk of IDs,
+     * restricting it to the records with those IDs.
+     *
+     * @param session
+     *            The Session to run the statements in
+     * @param persister
+     *            Hibernate's description of the type being changed
+     * @param hql
+     *            The statement to run, without a WHERE clause
+     * @param ids
+     *            IDs of the records to change, in chunks
+     * @param params
+     *            Any other named parameters used in the statement
+     * @return The total number of records changed
+     */
+    private static int executeForIds ( final Session session, final EntityPersister persister, final String hql,
+            final List<List<Serializable>> ids, final Map<String, Object> params ) {
+        final String where = hql + " WHERE " + persister.getIdentifierPropertyName() + " IN (:ids)";
+        int changed = 0;
+        for ( final List<Serializable> chunk : ids ) {
+            final Query query = session.createQuery( where );
+            params.forEach( query::setParameter );
+            query.setParameterList( "ids", chunk );
+            changed += query.executeUpdate();
+        }
+        return changed;
+    }
+
+    /**
+     * Retrieves Hibernate's description of how a type of DomainObject is
+     * stored (its table, ID, associations, etc).
+     *
+     * @param session
+     *            The current Session
+     * @param cls
+     *            Subclass of DomainObject to describe
+     * @return The EntityPersister for the type
+     */
+    private static EntityPersister persister ( final Session session, final Class cls ) {
+        return ( (SessionFactoryImplementor) session.getSessionFactory() ).getEntityPersister( cls.getName() );
     }
 
     /**
@@ -190,12 +742,54 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * exists in the DB, then the existing record will be updated.
      */
     public void save () {
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        session.saveOrUpdate( this );
-        session.getTransaction().commit();
-        session.close();
+        HibernateUtil.inTransaction( true, session -> {
+            session.saveOrUpdate( this );
+            return null;
+        } );
+    }
+
+    /**
+     * Saves many DomainObjects at once. Works like calling save() on each of
+     * them, but everything is written in a single transaction, and the
+     * INSERTs/UPDATEs are sent to the database in JDBC batches (of
+     * hibernate.jdbc.batch_size statements) rather than one at a time. The
+     * Session is flushed and cleared after every batch so that memory use
+     * stays bounded no matter how many objects are saved.
+     *
+     * Objects of types that override save() to also save related records (ie,
+     * office visits) cannot be saved this way, as doing so would skip their
+     * own logic; save them one at a time instead.
+     *
+     * @param objects
+     *            The DomainObjects to save
+     * @throws IllegalArgumentException
+     *             If any of the objects has its own save() logic
+     */
+    public static void saveAll ( final Collection< ? extends DomainObject> objects ) {
+        for ( final DomainObject obj : objects ) {
+            try {
+                if ( !DomainObject.class.equals( obj.getClass().getMethod( "save" ).getDeclaringClass() ) ) {
+                    throw new IllegalArgumentException(
+                            obj.getClass().getSimpleName() + " must be saved through its own save() method" );
+                }
+            }
+            catch ( final NoSuchMethodException e ) {
+                throw new IllegalStateException( e );
+            }
+        }
 
+        HibernateUtil.inTransaction( true, session -> {
+            final int batchSize = HibernateUtil.getBatchSize();
+            int count = 0;
+            for ( final DomainObject obj : objects ) {
+                session.saveOrUpdate( obj );
+                if ( ++count % batchSize == 0 ) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            return null;
+        } );
     }
 
     /**
@@ -203,11 +797,10 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      * cannot be reversed.
      */
     public void delete () {
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        session.delete( this );
-        session.getTransaction().commit();
-        session.close();
+        HibernateUtil.inTransaction( true, session -> {
+            session.delete( this );
+            return null;
+        } );
     }
 
     /**
@@ -218,23 +811,47 @@ public abstract class DomainObject <D extends DomainObject<D>> {
      *            class to retrieve instance of by id
      * @param id
      *            id of object
-     * @return object with given id
+     * @return object with given id, or null if there is none
      */
     @Transactional ( readOnly = true )
     public static DomainObject getById ( final Class cls, final Object id ) {
-        DomainObject obj;
-        try {
-            obj = (DomainObject) cls.newInstance();
+        return (DomainObject) findById( cls, (Serializable) id ).orElse( null );
+    }
+
+    /**
+     * Retrieves a specific instance of the DomainObject subtype by its
+     * persistent ID. This is a primary-key lookup (`session.get`) rather than
+     * a query, so it can be answered from the second-level cache for
+     * reference data. When a {@link edu.ncsu.csc.itrust2.utils.UnitOfWork} is
+     * active, the record is only retrieved from the database the first time
+     * it is asked for; later lookups in the same request get the same object
+     * back, until something is written.
+     *
+     * @param cls
+     *            class to retrieve instance of by id
+     * @param id
+     *            id of object
+     * @param <T>
+     *            Type of the DomainObject
+     * @return object with given id, if there is one
+     */
+    @Transactional ( readOnly = true )
+    public static <T extends DomainObject> Optional<T> findById ( final Class<T> cls, final Serializable id ) {
+        if ( null == id ) {
+            return Optional.empty();
         }
-        catch ( final Exception e ) {
-            return null;
+        final UnitOfWork uow = UnitOfWork.current();
+        if ( null != uow ) {
+            final T known = uow.getIdentity( cls, id );
+            if ( null != known ) {
+                return Optional.of( known );
+            }
         }
-        final Session session = HibernateUtil.openSession();
-        session.beginTransaction();
-        session.load( obj, (Serializable) id );
-        session.getTransaction().commit();
-        session.close();
-        return obj;
+        final T found = HibernateUtil.inTransaction( false, session -> session.get( cls, id ) );
+        if ( null != found && null != uow ) {
+            uow.putIdentity( cls, id, found );
+        }
+        return Optional.ofNullable( found );
     }
 
     /**
@@ -335,4 +952,63 @@ public abstract class DomainObject <D extends DomainObject<D>> {
         return Restrictions.between( field, lbound, ubound );
     }
 
+    /**
+     * Creates a greater-than-relation Criterion between the field and the value
+     * provided. Useful for restricting records to those within a time window,
+     * ie, everything that happened after a certain time.
+     *
+     * @param field
+     *            The field to create a restriction on
+     * @param value
+     *            The (exclusive) lower bound for the field
+     * @return The Criterion to create from these values
+     */
+    protected static Criterion gt ( final String field, final Object value ) {
+        return Restrictions.gt( field, value );
+    }
+
+    /**
+     * Creates a greater-than-or-equal-relation Criterion between the field and
+     * the value provided.
+     *
+     * @param field
+     *            The field to create a restriction on
+     * @param value
+     *            The (inclusive) lower bound for the field
+     * @return The Criterion to create from these values
+     */
+    protected static Criterion ge ( final String field, final Object value ) {
+        return Restrictions.ge( field, value );
+    }
+
+    /**
+     * Creates a less-than-relation Criterion between the field and the value
+     * provided. Together with ge, this restricts records to a half-open time
+     * window, so that consecutive windows do not overlap.
+     *
+     * @param field
+     *            The field to create a restriction on
+     * @param value
+     *            The (exclusive) upper bound for the field
+     * @return The Criterion to create from these values
+     */
+    protected static Criterion lt ( final String field, final Object value ) {
+        return Restrictions.lt( field, value );
+    }
+
+    /**
+     * Creates an in-relation Criterion between the field and the values
+     * provided, so that records matching any one of them can be retrieved in a
+     * single query rather than one query apiece.
+     *
+     * @param field
+     *            The field to create a restriction on
+     * @param values
+     *            The values to compare against. Must not be empty.
+     * @return The Criterion to create from these values
+     */
+    protected static Criterion in ( final String field, final Collection< ? > values ) {
+        return Restrictions.in( field, values );
+    }
+
 }
@@ -2,14 +2,16 @@ package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -24,6 +26,8 @@ import edu.ncsu.csc.itrust2.forms.admin.DrugForm;
  */
 @Entity
 @Table ( name = "Drugs" )
+@Cacheable
+@Cache ( usage = CacheConcurrencyStrategy.READ_WRITE )
 public class Drug extends DomainObject<Drug> {
 
     /** For Hibernate/Thymeleaf _must_ be an empty constructor */
@@ -44,7 +48,7 @@ public class Drug extends DomainObject<Drug> {
     }
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long   id;
 
     @Pattern ( regexp = "^\\d{4}-\\d{4}-\\d{2}$" )
@@ -156,12 +160,7 @@ public class Drug extends DomainObject<Drug> {
      * @return the matching drug or null if none is found
      */
     public static Drug getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( Drug.class, id ).orElse( null );
     }
 
     /**
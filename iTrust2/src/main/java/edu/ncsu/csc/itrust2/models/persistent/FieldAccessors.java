@@ -0,0 +1,127 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Id;
+
+/**
+ * The fields of a DomainObject class that are copied by
+ * {@link DomainObject#copyFrom(DomainObject, Boolean)}, with a getter and
+ * setter for each. Looking the fields up (and making them accessible) is only
+ * done the first time a class is copied; after that a copy is just a call
+ * through each pair of MethodHandles.
+ *
+ * Every non-static, non-final field is included, both those declared by the
+ * class itself and those it inherits (ie, the fields of OfficeVisit for a
+ * GeneralCheckup).
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+final class FieldAccessors {
+
+    /** The accessors for each class, built on first use */
+    static private final ClassValue<FieldAccessors> CACHE = new ClassValue<FieldAccessors>() {
+        @Override
+        protected FieldAccessors computeValue ( final Class< ? > type ) {
+            return new FieldAccessors( type );
+        }
+    };
+
+    /** Shape every getter is adapted to, so it can be invoked exactly */
+    static private final MethodType GETTER = MethodType.methodType( Object.class, Object.class );
+
+    /** Shape every setter is adapted to, so it can be invoked exactly */
+    static private final MethodType SETTER = MethodType.methodType( void.class, Object.class, Object.class );
+
+    /** Reads each field */
+    private final MethodHandle[]   getters;
+
+    /** Writes each field */
+    private final MethodHandle[]   setters;
+
+    /** Whether each field is the @Id of the class */
+    private final boolean[]        ids;
+
+    /**
+     * Finds the fields of a class and creates accessors for them
+     *
+     * @param type
+     *            The class to create accessors for
+     */
+    private FieldAccessors ( final Class< ? > type ) {
+        final List<Field> fields = new ArrayList<Field>();
+        for ( Class< ? > c = type; null != c && !DomainObject.class.equals( c )
+                && !Object.class.equals( c ); c = c.getSuperclass() ) {
+            for ( final Field f : c.getDeclaredFields() ) {
+                final int modifiers = f.getModifiers();
+                if ( Modifier.isStatic( modifiers ) || Modifier.isFinal( modifiers ) || f.isSynthetic() ) {
+                    continue;
+                }
+                fields.add( f );
+            }
+        }
+
+        getters = new MethodHandle[fields.size()];
+        setters = new MethodHandle[fields.size()];
+        ids = new boolean[fields.size()];
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            for ( int i = 0; i < fields.size(); i++ ) {
+                final Field f = fields.get( i );
+                f.setAccessible( true );
+                getters[i] = lookup.unreflectGetter( f ).asType( GETTER );
+                setters[i] = lookup.unreflectSetter( f ).asType( SETTER );
+                ids[i] = f.isAnnotationPresent( Id.class );
+            }
+        }
+        catch ( final IllegalAccessException e ) {
+            throw new IllegalArgumentException( "Cannot access the fields of " + type.getName(), e );
+        }
+    }
+
+    /**
+     * Retrieves the accessors for a class
+     *
+     * @param type
+     *            The class to retrieve accessors for
+     * @return The accessors
+     */
+    static FieldAccessors forClass ( final Class< ? > type ) {
+        return CACHE.get( type );
+    }
+
+    /**
+     * Copies every field from one object to another of the same class
+     *
+     * @param from
+     *            Object to copy from
+     * @param to
+     *            Object to copy to
+     * @param includeId
+     *            Whether to copy the ID as well
+     */
+    void copy ( final Object from, final Object to, final boolean includeId ) {
+        try {
+            for ( int i = 0; i < getters.length; i++ ) {
+                if ( includeId || !ids[i] ) {
+                    final Object value = (Object) getters[i].invokeExact( from );
+                    setters[i].invokeExact( to, value );
+                }
+            }
+        }
+        catch ( final RuntimeException | Error e ) {
+            throw e;
+        }
+        catch ( final Throwable t ) {
+            throw new IllegalArgumentException( t );
+        }
+    }
+
+}
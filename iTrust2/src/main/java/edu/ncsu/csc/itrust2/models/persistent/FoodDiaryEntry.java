@@ -11,8 +11,8 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
@@ -34,7 +34,8 @@ import edu.ncsu.csc.itrust2.models.enums.MealType;
  *
  */
 @Entity
-@Table(name = "FoodDiaryEntry")
+@Table ( name = "FoodDiaryEntry", indexes = {
+        @Index ( name = "idx_fooddiaryentry_patient_date", columnList = "patient, date" ) } )
 public class FoodDiaryEntry extends DomainObject<FoodDiaryEntry> implements Serializable {
 
     /**
@@ -50,12 +51,7 @@ public class FoodDiaryEntry extends DomainObject<FoodDiaryEntry> implements Seri
      * @return the specific diary entry with the desired ID
      */
     public static FoodDiaryEntry getById ( final Long id ) {
-        try {
-            return (FoodDiaryEntry) getWhere(FoodDiaryEntry.class, eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( FoodDiaryEntry.class, id ).orElse( null );
     }
     
     /**
@@ -178,7 +174,7 @@ public class FoodDiaryEntry extends DomainObject<FoodDiaryEntry> implements Seri
      * The id of this DiaryEntry
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long id;
 
     /**
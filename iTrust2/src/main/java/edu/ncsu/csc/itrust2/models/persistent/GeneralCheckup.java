@@ -8,6 +8,7 @@ import java.util.stream.Collectors;
 
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
@@ -23,7 +24,9 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
  * @author Jack MacDonald
  */
 @Entity
-@Table ( name = "GeneralCheckups" )
+@Table ( name = "GeneralCheckups", indexes = {
+        @Index ( name = "idx_generalcheckups_patient_date", columnList = "patient_id, date" ),
+        @Index ( name = "idx_generalcheckups_hcp_date", columnList = "hcp_id, date" ) } )
 public class GeneralCheckup extends OfficeVisit {
 
     /**
@@ -89,7 +92,7 @@ public class GeneralCheckup extends OfficeVisit {
      * @return the specific office visit with the desired ID
      */
     public static GeneralCheckup getById ( final Long id ) {
-        return (GeneralCheckup) OfficeVisit.getById( id );
+        return findById( GeneralCheckup.class, id ).orElse( null );
     }
 
     /**
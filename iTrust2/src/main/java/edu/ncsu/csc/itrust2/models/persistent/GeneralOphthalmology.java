@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 import org.apache.commons.lang3.StringUtils;
@@ -17,7 +18,9 @@ import edu.ncsu.csc.itrust2.forms.hcp.GeneralOphthalmologyForm;
  * @author Jack MacDonald
  */
 @Entity
-@Table ( name = "GeneralOphthalmology" )
+@Table ( name = "GeneralOphthalmology", indexes = {
+        @Index ( name = "idx_generalophthalmology_patient_date", columnList = "patient_id, date" ),
+        @Index ( name = "idx_generalophthalmology_hcp_date", columnList = "hcp_id, date" ) } )
 public class GeneralOphthalmology extends OphthalmologyVisit {
 
     private String diagnosis;
@@ -71,7 +74,7 @@ public class GeneralOphthalmology extends OphthalmologyVisit {
      * @return the specific office visit with the desired ID
      */
     public static GeneralOphthalmology getById ( final Long id ) {
-        return (GeneralOphthalmology) OfficeVisit.getById( id );
+        return findById( GeneralOphthalmology.class, id ).orElse( null );
     }
 
 }
@@ -8,7 +8,6 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
@@ -65,7 +64,7 @@ public class GlucoseToleranceTest extends DomainObject<GlucoseToleranceTest> {
      * The id of this LabProcedure
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long                  id;
 
     /**
@@ -118,12 +117,7 @@ public class GlucoseToleranceTest extends DomainObject<GlucoseToleranceTest> {
      * @return the specific lab procedure with the desired ID
      */
     public static GlucoseToleranceTest getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( GlucoseToleranceTest.class, id ).orElse( null );
     }
 
     /**
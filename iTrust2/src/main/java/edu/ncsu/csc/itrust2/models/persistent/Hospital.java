@@ -3,12 +3,15 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.io.Serializable;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.validator.constraints.Length;
 import org.hibernate.validator.constraints.NotEmpty;
@@ -25,6 +28,8 @@ import edu.ncsu.csc.itrust2.models.enums.State;
 
 @Entity
 @Table ( name = "Hospitals" )
+@Cacheable
+@Cache ( usage = CacheConcurrencyStrategy.READ_WRITE )
 public class Hospital extends DomainObject<Hospital> implements Serializable {
     /**
      * Used for serializing the object.
@@ -71,12 +76,7 @@ public class Hospital extends DomainObject<Hospital> implements Serializable {
      * @return The Hospital found, or null if none was found.
      */
     public static Hospital getByName ( final String name ) {
-        try {
-            return getWhere( eqList( "name", name ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( Hospital.class, name ).orElse( null );
     }
 
     /**
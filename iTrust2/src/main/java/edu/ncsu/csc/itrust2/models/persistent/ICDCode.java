@@ -2,12 +2,14 @@ package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.criterion.Criterion;
 
 import edu.ncsu.csc.itrust2.forms.admin.ICDCodeForm;
@@ -22,10 +24,12 @@ import edu.ncsu.csc.itrust2.forms.admin.ICDCodeForm;
  */
 @Entity
 @Table ( name = "ICDCodes" )
+@Cacheable
+@Cache ( usage = CacheConcurrencyStrategy.READ_WRITE )
 public class ICDCode extends DomainObject<Diagnosis> {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long   id;
 
     /**
@@ -172,13 +176,7 @@ public class ICDCode extends DomainObject<Diagnosis> {
      * @return The ICDCode requested if it exists
      */
     public static ICDCode getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
-
+        return findById( ICDCode.class, id ).orElse( null );
     }
 
     /**
@@ -3,12 +3,14 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.util.List;
 import java.util.regex.Pattern;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.criterion.Criterion;
 
 import edu.ncsu.csc.itrust2.forms.admin.LOINCForm;
@@ -22,10 +24,12 @@ import edu.ncsu.csc.itrust2.forms.admin.LOINCForm;
  */
 @Entity
 @Table ( name = "LOINCCodes" )
+@Cacheable
+@Cache ( usage = CacheConcurrencyStrategy.READ_WRITE )
 public class LOINC extends DomainObject<LOINC> {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long   id;
 
     /**
@@ -201,13 +205,7 @@ public class LOINC extends DomainObject<LOINC> {
      * @return The LOINC requested if it exists
      */
     public static LOINC getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
-
+        return findById( LOINC.class, id ).orElse( null );
     }
 
     /**
@@ -8,8 +8,8 @@ import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -29,7 +29,9 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
  *
  */
 @Entity
-@Table ( name = "LabProcedures" )
+@Table ( name = "LabProcedures", indexes = {
+        @Index ( name = "idx_labprocedures_patient", columnList = "patient" ),
+        @Index ( name = "idx_labprocedures_labtech_patient", columnList = "labtech, patient" ) } )
 public class LabProcedure extends DomainObject<LabProcedure> {
 
     /**
@@ -63,7 +65,7 @@ public class LabProcedure extends DomainObject<LabProcedure> {
      * The id of this LabProcedure
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long           id;
 
     /**
@@ -98,12 +100,7 @@ public class LabProcedure extends DomainObject<LabProcedure> {
      * @return the specific lab procedure with the desired ID
      */
     public static LabProcedure getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( LabProcedure.class, id ).orElse( null );
     }
 
     /**
@@ -1,26 +1,41 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.time.YearMonth;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 
 import com.google.gson.annotations.JsonAdapter;
 
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAttributeConverter;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.utils.AuditLogArchive;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
@@ -33,7 +48,10 @@ import edu.ncsu.csc.itrust2.utils.LoggerUtil;
  *
  */
 @Entity
-@Table ( name = "LogEntries" )
+@Table ( name = "LogEntries", indexes = {
+        @Index ( name = "idx_logentries_primary_time", columnList = "primaryUser, time" ),
+        @Index ( name = "idx_logentries_secondary_time", columnList = "secondaryUser, time" ),
+        @Index ( name = "idx_logentries_time", columnList = "time" ) } )
 public class LogEntry extends DomainObject<LogEntry> {
 
     /**
@@ -69,39 +87,40 @@ public class LogEntry extends DomainObject<LogEntry> {
      */
     private String          message;
 
+    /**
+     * Orders LogEntries by time, and then by ID, the same as the database does
+     * when paging
+     */
+    private static final Comparator<LogEntry> TIME_ORDER = Comparator
+            .comparing( ( final LogEntry entry ) -> entry.getTime().toInstant() ).thenComparing( LogEntry::getId );
+
     /**
      * ID of the LogEntry
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long            id;
 
     /**
-     * Retrieve all LogEntries from the database.
+     * Retrieve all LogEntries, including those that have been archived.
      *
      * @return All LogEntries in the system
      */
     @SuppressWarnings ( "unchecked" )
     public static List<LogEntry> getLogEntries () {
-        return (List<LogEntry>) getAll( LogEntry.class );
+        return withArchived( (List<LogEntry>) getAll( LogEntry.class ), null, null, entry -> true );
     }
 
     /**
      * Retrieves a LogEntry from the database or memory cache based on its ID
-     * (primary key)
+     * (primary key). Archived LogEntries are not found.
      *
      * @param id
      *            The numeric ID of the LogEntry to find
      * @return Matching LogEntry, or null if nothing was found
      */
     public static LogEntry getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
-
+        return findById( LogEntry.class, id ).orElse( null );
     }
 
     /**
@@ -125,7 +144,7 @@ public class LogEntry extends DomainObject<LogEntry> {
         search.add( bt( "time", startDate, endDate ) );
         search.add( Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) );
 
-        return getWhere( search );
+        return withArchived( getWhere( search ), startDate, endDate, involving( user, false ) );
     }
 
     /**
@@ -142,15 +161,573 @@ public class LogEntry extends DomainObject<LogEntry> {
 
     /**
      * Retrieve all LogEntries where the user provided was either the primary or
-     * secondary user on the LogEntry.
+     * secondary user on the LogEntry, including those that have been archived.
      *
      * @param user
      *            The user to match on
      * @return All matching LogEntries
      */
     public static List<LogEntry> getAllForUser ( final String user ) {
-        return getWhere( createCriterionList(
-                Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) ) );
+        return withArchived( getWhere( createCriterionList(
+                Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) ) ), null, null,
+                involving( user, false ) );
+    }
+
+    /**
+     * Retrieves a single page of the LogEntries where the user provided was
+     * either the primary or secondary user, sorted by time. Filtering, sorting
+     * and paging are all done by the database, unless the range starts before
+     * the end of the archive; see {@link #getPageAcrossArchive}. Without a
+     * start time, only the LogEntries still in the database are included.
+     *
+     * @param user
+     *            The user to match on
+     * @param start
+     *            Earliest time to include, or null for everything still in
+     *            the database
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param patientViewableOnly
+     *            Whether to only include the types of events that a patient
+     *            is allowed to see
+     * @param request
+     *            Which page to retrieve, and how to sort
+     * @return The page of matching LogEntries
+     * @throws IllegalArgumentException
+     *             If the request is not sorted by time, or its cursor is not
+     *             valid
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<LogEntry> getPageForUser ( final String user, final ZonedDateTime start,
+            final ZonedDateTime end, final boolean patientViewableOnly, final PageRequest request ) {
+        if ( !"time".equals( request.getSortField() ) ) {
+            throw new IllegalArgumentException( "Log entries can only be paged by time" );
+        }
+        final List<Criterion> where = forUser( user, start, end, patientViewableOnly );
+        final ZonedDateTime boundary = getColdBoundary( start, end );
+        if ( null == boundary ) {
+            return getPage( LogEntry.class, where, request );
+        }
+        return getPageAcrossArchive( where, new Cold( user, start, end, patientViewableOnly, where, boundary ),
+                request );
+    }
+
+    /**
+     * Counts the LogEntries where the user provided was either the primary or
+     * secondary user, without loading them. Archived months are counted from
+     * the counts recorded when they were archived. Like
+     * {@link #getPageForUser}, without a start time only the LogEntries still
+     * in the database are counted.
+     *
+     * @param user
+     *            The user to match on
+     * @param start
+     *            Earliest time to include, or null for everything still in
+     *            the database
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param patientViewableOnly
+     *            Whether to only include the types of events that a patient
+     *            is allowed to see
+     * @return The number of matching LogEntries
+     */
+    public static long countForUser ( final String user, final ZonedDateTime start, final ZonedDateTime end,
+            final boolean patientViewableOnly ) {
+        final List<Criterion> where = forUser( user, start, end, patientViewableOnly );
+        final ZonedDateTime boundary = getColdBoundary( start, end );
+        if ( null == boundary ) {
+            return countWhere( LogEntry.class, where );
+        }
+        final Cold cold = new Cold( user, start, end, patientViewableOnly, where, boundary );
+        long count = countWhere( LogEntry.class, since( where, boundary ) );
+        for ( final YearMonth month : cold.months ) {
+            count += cold.count( month );
+        }
+        return count;
+    }
+
+    /**
+     * Works out whether a search has to read the archive: only if it asks for
+     * LogEntries from before the end of the newest archived month, and some of
+     * the months it covers have been archived
+     *
+     * @param start
+     *            Earliest time to include, or null for everything still in
+     *            the database
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @return The end of the newest archived month, or null if the database
+     *         alone can answer the search
+     */
+    private static ZonedDateTime getColdBoundary ( final ZonedDateTime start, final ZonedDateTime end ) {
+        if ( null == start ) {
+            return null;
+        }
+        final ZonedDateTime boundary = AuditLogArchive.getArchivedUntil();
+        if ( null == boundary || !start.isBefore( boundary ) || !AuditLogArchive.isArchived( start, end ) ) {
+            return null;
+        }
+        return boundary;
+    }
+
+    /**
+     * Retrieves a single page of LogEntries when some of them might have been
+     * archived. Everything from before the end of the newest archived month
+     * (the "cold" LogEntries, nearly all of them archived) is read a month at
+     * a time; everything after that is paged by the database as usual.
+     * Newest-first, the page comes from the database and then, once the
+     * database runs out, from the cold months, newest first; oldest-first, the
+     * other way around. Months are only read until the page is full, and
+     * those skipped over by the offset are counted rather than read.
+     *
+     * @param where
+     *            List of Criterion to search the database by
+     * @param cold
+     *            The same search, for the cold LogEntries
+     * @param request
+     *            Which page to retrieve
+     * @return The page of matching LogEntries
+     */
+    private static Page<LogEntry> getPageAcrossArchive ( final List<Criterion> where, final Cold cold,
+            final PageRequest request ) {
+        final boolean ascending = request.isAscending();
+        final List<Criterion> hot = since( where, cold.boundary );
+        // One extra tells us whether there is another page
+        final int wanted = request.getLimit() + 1;
+
+        // The months, in the order they are paged through; null stands for
+        // the LogEntries in the database after them
+        final List<YearMonth> parts = new ArrayList<YearMonth>( ascending ? cold.months : cold.months.descendingSet() );
+        parts.add( ascending ? parts.size() : 0, null );
+
+        final Object[] after = null == request.getCursor() ? null
+                : Page.decodeCursor( request.getCursor(), ZonedDateTime.class, Long.class );
+        int part = 0;
+        long skip = 0;
+        if ( null != after ) {
+            final ZonedDateTime time = (ZonedDateTime) after[0];
+            final YearMonth month = time.isBefore( cold.boundary ) ? AuditLogArchive.getMonth( time ) : null;
+            while ( part < parts.size() && isBefore( parts.get( part ), month, ascending ) ) {
+                part++;
+            }
+        }
+        else {
+            skip = request.getOffset();
+            while ( part < parts.size() ) {
+                final YearMonth month = parts.get( part );
+                final long size = null == month ? countWhere( LogEntry.class, hot ) : cold.count( month );
+                if ( skip < size ) {
+                    break;
+                }
+                skip -= size;
+                part++;
+            }
+        }
+
+        // The cursor is past everything in the parts before the one it is in,
+        // so it can be applied to every part
+        final List<LogEntry> items = new ArrayList<LogEntry>();
+        for ( ; part < parts.size() && items.size() < wanted; part++ ) {
+            final YearMonth month = parts.get( part );
+            final int rest = wanted - items.size();
+            items.addAll( null == month ? getHot( hot, ascending, request.getCursor(), (int) skip, rest )
+                    : sliceCold( cold.read( month, ascending ), after, ascending, (int) skip, rest ) );
+            skip = 0;
+        }
+
+        if ( items.size() <= request.getLimit() ) {
+            return new Page<LogEntry>( items, null );
+        }
+        final List<LogEntry> page = new ArrayList<LogEntry>( items.subList( 0, request.getLimit() ) );
+        final LogEntry last = page.get( page.size() - 1 );
+        return new Page<LogEntry>( page, Page.encodeCursor( last.getTime(), last.getId() ) );
+    }
+
+    /**
+     * Whether a part of a search that is paged through comes before the month
+     * that a cursor is in (and so has already been paged through)
+     *
+     * @param part
+     *            The part: a cold month, or null for the database
+     * @param month
+     *            The month the cursor is in, or null for the database
+     * @param ascending
+     *            Whether the search starts with the oldest
+     * @return True if the part can be skipped
+     */
+    private static boolean isBefore ( final YearMonth part, final YearMonth month, final boolean ascending ) {
+        if ( ascending ) {
+            return null != part && ( null == month || part.isBefore( month ) );
+        }
+        return null != month && ( null == part || part.isAfter( month ) );
+    }
+
+    /**
+     * Retrieves some of the LogEntries in the database, in time order
+     *
+     * @param where
+     *            List of Criterion to search by
+     * @param ascending
+     *            Whether to start with the oldest
+     * @param cursor
+     *            Continuation token to resume after, or null to use the offset
+     * @param offset
+     *            How many to skip
+     * @param count
+     *            How many to retrieve
+     * @return The matching LogEntries
+     */
+    @SuppressWarnings ( "unchecked" )
+    private static List<LogEntry> getHot ( final List<Criterion> where, final boolean ascending,
+            final String cursor, final int offset, final int count ) {
+        final PageRequest request = new PageRequest( "time", ascending, count );
+        request.setCursor( cursor );
+        if ( null == request.getCursor() ) {
+            request.setOffset( offset );
+        }
+        return getPage( LogEntry.class, where, request ).getItems();
+    }
+
+    /**
+     * Retrieves some of a month's cold LogEntries, which are already in time
+     * order
+     *
+     * @param cold
+     *            The cold LogEntries
+     * @param after
+     *            Time and ID of the LogEntry to resume after, or null to use
+     *            the offset
+     * @param ascending
+     *            Whether the LogEntries start with the oldest
+     * @param offset
+     *            How many to skip
+     * @param count
+     *            How many to retrieve
+     * @return The matching LogEntries
+     */
+    private static List<LogEntry> sliceCold ( final List<LogEntry> cold, final Object[] after,
+            final boolean ascending, final int offset, final int count ) {
+        int from = offset;
+        if ( null != after ) {
+            final Comparator<LogEntry> order = ascending ? TIME_ORDER : TIME_ORDER.reversed();
+            final LogEntry last = new LogEntry();
+            last.setTime( (ZonedDateTime) after[0] );
+            last.setId( (Long) after[1] );
+            while ( from < cold.size() && order.compare( cold.get( from ), last ) <= 0 ) {
+                from++;
+            }
+        }
+        return cold.subList( Math.min( from, cold.size() ), Math.min( from + count, cold.size() ) );
+    }
+
+    /**
+     * Adds the archived LogEntries matching a search to those found in the
+     * database. LogEntries that are in both (ie, if archiving them was cut
+     * short) are only included once.
+     *
+     * @param stored
+     *            The LogEntries found in the database
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param matches
+     *            The search, for archived LogEntries
+     * @return All of the matching LogEntries
+     */
+    private static List<LogEntry> withArchived ( final List<LogEntry> stored, final ZonedDateTime start,
+            final ZonedDateTime end, final Predicate<LogEntry> matches ) {
+        final List<LogEntry> all = new ArrayList<LogEntry>( stored );
+        if ( !AuditLogArchive.isArchived( start, end ) ) {
+            return all;
+        }
+        final Set<Long> ids = new HashSet<Long>();
+        for ( final LogEntry entry : stored ) {
+            ids.add( entry.getId() );
+        }
+        for ( final LogEntry entry : AuditLogArchive.read( start, end, matches ) ) {
+            if ( ids.add( entry.getId() ) ) {
+                all.add( entry );
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Narrows a search down to LogEntries from a certain time onwards
+     *
+     * @param where
+     *            List of Criterion to search by
+     * @param time
+     *            Earliest time to include
+     * @return The narrowed search
+     */
+    private static List<Criterion> since ( final List<Criterion> where, final ZonedDateTime time ) {
+        final List<Criterion> search = new Vector<Criterion>( where );
+        search.add( ge( "time", time ) );
+        return search;
+    }
+
+    /**
+     * Narrows a search down to LogEntries from before a certain time
+     *
+     * @param where
+     *            List of Criterion to search by
+     * @param time
+     *            Time to stop at (exclusive)
+     * @return The narrowed search
+     */
+    private static List<Criterion> before ( final List<Criterion> where, final ZonedDateTime time ) {
+        final List<Criterion> search = new Vector<Criterion>( where );
+        search.add( lt( "time", time ) );
+        return search;
+    }
+
+    /**
+     * Matches archived LogEntries the same way {@link #forUser} matches those
+     * in the database (apart from the time, which the archive checks itself)
+     *
+     * @param user
+     *            The user to match on
+     * @param patientViewableOnly
+     *            Whether to only include patient-viewable events
+     * @return The filter for archived LogEntries
+     */
+    private static Predicate<LogEntry> involving ( final String user, final boolean patientViewableOnly ) {
+        return entry -> ( user.equalsIgnoreCase( entry.getPrimaryUser() )
+                || user.equalsIgnoreCase( entry.getSecondaryUser() ) )
+                && ( !patientViewableOnly || entry.getLogCode().isPatientViewable() );
+    }
+
+    /**
+     * Performs an action on every LogEntry where the user provided was either
+     * the primary or secondary user, oldest first, one at a time. Unlike
+     * {@link #getPageForUser}, this never holds more than a single LogEntry
+     * in memory, so it can be used to export a user's entire history however
+     * long it is. Archived LogEntries come first (a month at a time), followed
+     * by those in the database; see {@link #forEachWithArchived}. The action
+     * must not use the database.
+     *
+     * @param user
+     *            The user to match on
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param patientViewableOnly
+     *            Whether to only include the types of events that a patient
+     *            is allowed to see
+     * @param action
+     *            What to do with each LogEntry
+     */
+    public static void forEachForUser ( final String user, final ZonedDateTime start, final ZonedDateTime end,
+            final boolean patientViewableOnly, final Consumer<LogEntry> action ) {
+        forEachWithArchived( forUser( user, start, end, patientViewableOnly ), start, end,
+                involving( user, patientViewableOnly ), action );
+    }
+
+    /**
+     * Performs an action on every LogEntry (for every user) from the time
+     * range given, one at a time, like {@link #forEachForUser}. Archived
+     * LogEntries come first, followed by those in the database. The action
+     * must not use the database.
+     *
+     * @param start
+     *            Earliest time to include
+     * @param end
+     *            Time to stop at (exclusive)
+     * @param action
+     *            What to do with each LogEntry
+     */
+    public static void forEachBetween ( final ZonedDateTime start, final ZonedDateTime end,
+            final Consumer<LogEntry> action ) {
+        final List<Criterion> search = new Vector<Criterion>();
+        search.add( ge( "time", start ) );
+        search.add( lt( "time", end ) );
+        forEachWithArchived( search, start, end, entry -> entry.getTime().isBefore( end ), action );
+    }
+
+    /**
+     * Performs an action on every LogEntry there is, one at a time, like
+     * {@link #forEachBetween}. Archived LogEntries come first, followed by
+     * those in the database. The action must not use the database.
+     *
+     * @param action
+     *            What to do with each LogEntry
+     */
+    public static void forEach ( final Consumer<LogEntry> action ) {
+        forEachWithArchived( new Vector<Criterion>(), null, null, entry -> true, action );
+    }
+
+    /**
+     * Performs an action on every LogEntry matching a search, one at a time:
+     * first those in the archive, a month at a time, and then those in the
+     * database, oldest first. LogEntries that are in both (ie, if archiving
+     * them was cut short) are only included once. Only those from before the
+     * end of the archive can be, and there are never many of them, so just
+     * their IDs are kept to check against.
+     *
+     * @param where
+     *            List of Criterion to search the database by
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param matches
+     *            The same search, for archived LogEntries
+     * @param action
+     *            What to do with each LogEntry
+     */
+    private static void forEachWithArchived ( final List<Criterion> where, final ZonedDateTime start,
+            final ZonedDateTime end, final Predicate<LogEntry> matches, final Consumer<LogEntry> action ) {
+        final ZonedDateTime boundary = AuditLogArchive.getArchivedUntil();
+        final Set<Long> archived = new HashSet<Long>();
+        if ( null != boundary && AuditLogArchive.isArchived( start, end ) ) {
+            final Set<Long> stored = new HashSet<Long>(
+                    getProjection( LogEntry.class, before( where, boundary ), row -> (Long) row[0], "id" ) );
+            AuditLogArchive.forEach( start, end, matches, entry -> {
+                if ( stored.contains( entry.getId() ) ) {
+                    archived.add( entry.getId() );
+                }
+                action.accept( entry );
+            } );
+        }
+        forEachWhere( LogEntry.class, where, record -> {
+            final LogEntry entry = (LogEntry) record;
+            if ( !archived.contains( entry.getId() ) ) {
+                action.accept( entry );
+            }
+        }, Order.asc( "time" ), Order.asc( "id" ) );
+    }
+
+    /**
+     * Performs an action, one at a time, on every LogEntry in the database
+     * that has a higher ID than the one given or is from the time given
+     * onwards. Used to catch up on LogEntries saved since some earlier point
+     * without relying on either IDs or times alone being handed out in the
+     * order the LogEntries were saved. The action must not use the database.
+     *
+     * @param id
+     *            LogEntries with a higher ID than this are included
+     * @param time
+     *            LogEntries from this time onwards are included
+     * @param action
+     *            What to do with each LogEntry
+     */
+    public static void forEachSince ( final long id, final ZonedDateTime time, final Consumer<LogEntry> action ) {
+        forEachWhere( LogEntry.class, createCriterionList( Restrictions.or( gt( "id", id ), ge( "time", time ) ) ),
+                action, Order.asc( "id" ) );
+    }
+
+    /**
+     * Retrieves LogEntries by their IDs, whether they are in the database or
+     * have been archived. IDs that no longer exist are skipped.
+     *
+     * @param ids
+     *            IDs of the LogEntries to retrieve
+     * @param start
+     *            Earliest time any of the LogEntries may be from; only the
+     *            archive from here onwards is read
+     * @param end
+     *            Latest time any of the LogEntries may be from
+     * @return The LogEntries found, in no particular order
+     */
+    public static List<LogEntry> getByIds ( final Collection<Long> ids, final ZonedDateTime start,
+            final ZonedDateTime end ) {
+        if ( ids.isEmpty() ) {
+            return new ArrayList<LogEntry>();
+        }
+        final Set<Long> wanted = new HashSet<Long>( ids );
+        final List<LogEntry> found = new ArrayList<LogEntry>(
+                getWhere( createCriterionList( in( "id", wanted ) ) ) );
+        for ( final LogEntry entry : found ) {
+            wanted.remove( entry.getId() );
+        }
+        if ( !wanted.isEmpty() && AuditLogArchive.isArchived( start, end ) ) {
+            for ( final LogEntry entry : AuditLogArchive.read( start, end,
+                    archived -> wanted.contains( archived.getId() ) ) ) {
+                if ( wanted.remove( entry.getId() ) ) {
+                    found.add( entry );
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Retrieves a page of the LogEntries that are still stored in the
+     * database (not archived) from the time range given. Used for archiving.
+     *
+     * @param from
+     *            Earliest time to include, or null for no lower bound
+     * @param to
+     *            Time to stop at (exclusive)
+     * @param request
+     *            Which page to retrieve
+     * @return The page of LogEntries
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<LogEntry> getStoredPage ( final ZonedDateTime from, final ZonedDateTime to,
+            final PageRequest request ) {
+        final List<Criterion> search = new Vector<Criterion>();
+        if ( null != from ) {
+            search.add( ge( "time", from ) );
+        }
+        search.add( lt( "time", to ) );
+        return getPage( LogEntry.class, search, request );
+    }
+
+    /**
+     * Deletes LogEntries from the database once they have been archived, in
+     * statements of at most {@link #BULK_BATCH_SIZE} IDs each
+     *
+     * @param ids
+     *            IDs of the LogEntries to delete
+     */
+    public static void deleteStored ( final Collection<Long> ids ) {
+        final List<Long> all = new ArrayList<Long>( ids );
+        HibernateUtil.inTransaction( true, session -> {
+            for ( int i = 0; i < all.size(); i += BULK_BATCH_SIZE ) {
+                final List<Long> chunk = all.subList( i, Math.min( i + BULK_BATCH_SIZE, all.size() ) );
+                deleteWhere( LogEntry.class, createCriterionList( in( "id", chunk ) ) );
+            }
+            return null;
+        } );
+    }
+
+    /**
+     * Builds the criteria for finding the LogEntries involving a user.
+     *
+     * @param user
+     *            The user to match on
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param patientViewableOnly
+     *            Whether to only include patient-viewable events
+     * @return The List of Criterion to search by
+     */
+    private static List<Criterion> forUser ( final String user, final ZonedDateTime start, final ZonedDateTime end,
+            final boolean patientViewableOnly ) {
+        final List<Criterion> search = new Vector<Criterion>();
+        search.add( Restrictions.or( eq( "primaryUser", user ), eq( "secondaryUser", user ) ) );
+        if ( null != start ) {
+            search.add( Restrictions.ge( "time", start ) );
+        }
+        if ( null != end ) {
+            search.add( Restrictions.le( "time", end ) );
+        }
+        if ( patientViewableOnly ) {
+            final List<TransactionType> viewable = new Vector<TransactionType>();
+            for ( final TransactionType type : TransactionType.values() ) {
+                if ( type.isPatientViewable() ) {
+                    viewable.add( type );
+                }
+            }
+            search.add( Restrictions.in( "logCode", viewable ) );
+        }
+        return search;
     }
 
     /**
@@ -193,7 +770,6 @@ public class LogEntry extends DomainObject<LogEntry> {
      *
      * @param id
      */
-    @SuppressWarnings ( "unused" )
     private void setId ( final Long id ) {
         this.id = id;
     }
@@ -296,4 +872,120 @@ public class LogEntry extends DomainObject<LogEntry> {
         this.time = time;
     }
 
+    /**
+     * A search of the LogEntries from before the end of the newest archived
+     * month (the "cold" LogEntries), read a month at a time. Nearly all of
+     * them have been archived; the few still in the database (ie, saved late,
+     * or left there by an archiving pass that was cut short) are found up
+     * front.
+     */
+    private static class Cold {
+
+        /** End of the newest archived month */
+        final ZonedDateTime                    boundary;
+
+        /** The months in the range searched with cold LogEntries, oldest first */
+        final NavigableSet<YearMonth>          months;
+
+        /** The user to match on */
+        private final String                   user;
+
+        /** Earliest time to include */
+        private final ZonedDateTime            start;
+
+        /** Latest time to include, or null for no upper bound */
+        private final ZonedDateTime            end;
+
+        /** Whether to only include patient-viewable events */
+        private final boolean                  patientViewableOnly;
+
+        /** The search, for archived LogEntries */
+        private final Predicate<LogEntry>      matches;
+
+        /** The cold LogEntries still in the database, by month */
+        private final Map<YearMonth, List<LogEntry>> stored = new HashMap<YearMonth, List<LogEntry>>();
+
+        /**
+         * Sets up the search, finding the cold LogEntries still in the
+         * database
+         *
+         * @param user
+         *            The user to match on
+         * @param start
+         *            Earliest time to include
+         * @param end
+         *            Latest time to include, or null for no upper bound
+         * @param patientViewableOnly
+         *            Whether to only include patient-viewable events
+         * @param where
+         *            The search, for the database
+         * @param boundary
+         *            End of the newest archived month
+         */
+        Cold ( final String user, final ZonedDateTime start, final ZonedDateTime end,
+                final boolean patientViewableOnly, final List<Criterion> where, final ZonedDateTime boundary ) {
+            this.user = user;
+            this.start = start;
+            this.end = end;
+            this.patientViewableOnly = patientViewableOnly;
+            this.boundary = boundary;
+            matches = involving( user, patientViewableOnly ).and( entry -> !entry.getTime().isBefore( start )
+                    && ( null == end || !entry.getTime().isAfter( end ) ) );
+            months = new TreeSet<YearMonth>( AuditLogArchive.getMonths( start, end ) );
+            for ( final LogEntry entry : getWhere( before( where, boundary ) ) ) {
+                final YearMonth month = AuditLogArchive.getMonth( entry.getTime() );
+                stored.computeIfAbsent( month, m -> new ArrayList<LogEntry>() ).add( entry );
+                months.add( month );
+            }
+        }
+
+        /**
+         * Counts the matching LogEntries from a month. If the whole month is
+         * in the range searched, and none of its LogEntries are still in the
+         * database, this uses the counts recorded when it was archived;
+         * otherwise the month is read.
+         *
+         * @param month
+         *            The month to count
+         * @return The number of matching LogEntries
+         */
+        long count ( final YearMonth month ) {
+            if ( !stored.containsKey( month ) && !start.isAfter( AuditLogArchive.getStart( month ) )
+                    && ( null == end || !end.isBefore( AuditLogArchive.getStart( month.plusMonths( 1 ) ) ) ) ) {
+                final Long count = AuditLogArchive.count( month, user, patientViewableOnly );
+                if ( null != count ) {
+                    return count;
+                }
+            }
+            return read( month, true ).size();
+        }
+
+        /**
+         * Reads the matching LogEntries from a month, from the archive and
+         * the database. LogEntries that are in both are only included once.
+         *
+         * @param month
+         *            The month to read
+         * @param ascending
+         *            Whether to sort them oldest first
+         * @return The matching LogEntries, in time order
+         */
+        List<LogEntry> read ( final YearMonth month, final boolean ascending ) {
+            final List<LogEntry> entries = new ArrayList<LogEntry>();
+            final Set<Long> ids = new HashSet<Long>();
+            for ( final LogEntry entry : stored.getOrDefault( month, new ArrayList<LogEntry>() ) ) {
+                entries.add( entry );
+                ids.add( entry.getId() );
+            }
+            for ( final LogEntry entry : AuditLogArchive.read( month, matches ) ) {
+                if ( ids.add( entry.getId() ) ) {
+                    entries.add( entry );
+                }
+            }
+            entries.sort( ascending ? TIME_ORDER : TIME_ORDER.reversed() );
+            return entries;
+        }
+
+    }
+
 }
@@ -0,0 +1,430 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import javax.persistence.Basic;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters.LocalDateConverter;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import edu.ncsu.csc.itrust2.adapters.LocalDateAdapter;
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.summary.UserSummary;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.UnitOfWork;
+
+/**
+ * The number of events of one type that were logged on one day by users with
+ * one role (ie, how many emergency records HCPs viewed on 2018-03-14). These
+ * are kept up to date as log entries are saved, so that questions like "how
+ * many password resets were there each day last month" are answered from a
+ * row per day rather than by counting every log entry.
+ *
+ * There is exactly one row for each day, type and role, and counts are added
+ * to it in the database with a single INSERT ... ON DUPLICATE KEY UPDATE, so
+ * two servers counting the same day at once both add to the same row. Events
+ * whose primary user does not exist (ie, failed logins for an unknown
+ * username) are counted without a role, which is stored as NONE rather than
+ * NULL so that the unique key covers them too.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+@Entity
+@Table ( name = "LogEntryRollups", indexes = {
+        @Index ( name = "idx_logentryrollups_day_code", columnList = "day, logCode" ) }, uniqueConstraints = {
+                @UniqueConstraint ( name = "uk_logentryrollups_day_code_role", columnNames = { "day", "logCode",
+                        "role" } ) } )
+public class LogEntryRollup extends DomainObject<LogEntryRollup> {
+
+    /** Days are measured in the server's time zone */
+    static private final ZoneId             ZONE    = ZoneId.systemDefault();
+
+    /** Stored as the role of events whose primary user does not exist */
+    static private final String             NO_ROLE = "NONE";
+
+    /** Converts days the same way as the day column does */
+    static private final LocalDateConverter DAYS    = new LocalDateConverter();
+
+    /** Adds to the count for a day, type and role, creating it if need be */
+    static private final String             UPSERT  = "INSERT INTO LogEntryRollups (id, day, logCode, role, total) "
+            + "VALUES (:id, :day, :logCode, :role, :total) ON DUPLICATE KEY UPDATE total = total + :total";
+
+    /**
+     * ID of the rollup
+     */
+    @Id
+    @GeneratedValue ( generator = ID_GENERATOR )
+    private Long                id;
+
+    /**
+     * The day the events happened on
+     */
+    @NotNull
+    @Basic
+    @Convert ( converter = LocalDateConverter.class )
+    @JsonAdapter ( LocalDateAdapter.class )
+    private LocalDate           day;
+
+    /**
+     * Type of the events
+     */
+    @NotNull
+    private TransactionType     logCode;
+
+    /**
+     * Name of the role of the primary user of the events, or NO_ROLE if they
+     * do not exist
+     */
+    @NotNull
+    private String              role;
+
+    /**
+     * Number of events
+     */
+    @NotNull
+    private Long                total;
+
+    /**
+     * Counts log entries that have just been saved. Should be done in the
+     * same transaction that saved them, so that the counts always match the
+     * log entries. Each count is added with one statement, which creates the
+     * row for its day, type and role if there is none yet.
+     *
+     * @param entries
+     *            The log entries to count
+     */
+    public static void record ( final Collection<LogEntry> entries ) {
+        if ( entries.isEmpty() ) {
+            return;
+        }
+        final Set<String> users = new HashSet<String>();
+        for ( final LogEntry entry : entries ) {
+            users.add( entry.getPrimaryUser() );
+        }
+        final Map<List<Object>, Long> counts = count( entries, User.getRoles( users ) );
+
+        HibernateUtil.inTransaction( true, session -> {
+            final SessionImplementor si = (SessionImplementor) session;
+            final IdentifierGenerator ids = si.getFactory().getEntityPersister( LogEntryRollup.class.getName() )
+                    .getIdentifierGenerator();
+            for ( final Map.Entry<List<Object>, Long> count : counts.entrySet() ) {
+                final LogEntryRollup rollup = new LogEntryRollup( (LocalDate) count.getKey().get( 0 ),
+                        (TransactionType) count.getKey().get( 1 ), (Role) count.getKey().get( 2 ),
+                        count.getValue() );
+                // The ID is only used if the row is new
+                session.createSQLQuery( UPSERT ).addSynchronizedEntityClass( LogEntryRollup.class )
+                        .setParameter( "id", ids.generate( si, rollup ) )
+                        .setParameter( "day", DAYS.convertToDatabaseColumn( rollup.getDay() ) )
+                        .setParameter( "logCode", rollup.getLogCode().ordinal() )
+                        .setParameter( "role", rollup.role ).setParameter( "total", rollup.getTotal() )
+                        .executeUpdate();
+            }
+            return null;
+        } );
+    }
+
+    /**
+     * Retrieves the number of events logged on each day of a range, by type
+     * and role.
+     *
+     * @param from
+     *            First day to include
+     * @param to
+     *            Last day to include
+     * @param code
+     *            Type of events to count, or null for all of them
+     * @param role
+     *            Role of the users to count events for, or null for all of
+     *            them
+     * @return A rollup for each day, type and role that had any events,
+     *         earliest day first
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static List<LogEntryRollup> getCounts ( final LocalDate from, final LocalDate to,
+            final TransactionType code, final Role role ) {
+        final List<Criterion> search = new Vector<Criterion>();
+        search.add( bt( "day", from, to ) );
+        if ( null != code ) {
+            search.add( eq( "logCode", code ) );
+        }
+        if ( null != role ) {
+            search.add( eq( "role", role.name() ) );
+        }
+        return (List<LogEntryRollup>) getWhere( LogEntryRollup.class, search, Order.asc( "day" ),
+                Order.asc( "logCode" ), Order.asc( "role" ) );
+    }
+
+    /**
+     * Recounts the events of a range of days from the log entries themselves
+     * (including archived ones), replacing whatever was counted before. Used
+     * to fill in the counts for history that was logged before they were
+     * kept. The log entries are read one at a time, so any number of them can
+     * be counted, and the counts are replaced a month at a time, each month in
+     * a transaction of its own; a long range never holds a connection (or the
+     * rows being replaced) for the whole run, and if it is interrupted the
+     * months already done stay done.
+     *
+     * Only days before today can be recounted, as today's events are still
+     * being counted as they are logged.
+     *
+     * @param from
+     *            First day to recount
+     * @param to
+     *            Last day to recount
+     * @return The number of log entries counted
+     * @throws IllegalArgumentException
+     *             If the range is backwards or includes today
+     */
+    public static long backfill ( final LocalDate from, final LocalDate to ) {
+        checkBackfill( from, to );
+
+        final Map<String, Role> roles = new TreeMap<String, Role>( String.CASE_INSENSITIVE_ORDER );
+        for ( final UserSummary user : User.getSummaries() ) {
+            roles.put( user.getUsername(), user.getRole() );
+        }
+        long counted = 0;
+        for ( LocalDate first = from; !first.isAfter( to ); ) {
+            final LocalDate next = first.withDayOfMonth( 1 ).plusMonths( 1 );
+            final LocalDate last = next.isAfter( to ) ? to : next.minusDays( 1 );
+            counted += backfillPart( first, last, roles );
+            first = next;
+        }
+        return counted;
+    }
+
+    /**
+     * Checks that a range of days can be recounted by {@link #backfill}
+     *
+     * @param from
+     *            First day to recount
+     * @param to
+     *            Last day to recount
+     * @throws IllegalArgumentException
+     *             If the range is backwards or includes today
+     */
+    public static void checkBackfill ( final LocalDate from, final LocalDate to ) {
+        if ( from.isAfter( to ) ) {
+            throw new IllegalArgumentException( "Start Date is after End Date" );
+        }
+        if ( !to.isBefore( LocalDate.now( ZONE ) ) ) {
+            throw new IllegalArgumentException( "Only days before today can be backfilled" );
+        }
+    }
+
+    /**
+     * Recounts the events of a range of days (within a single month) and
+     * replaces the counts in a single transaction. If a unit of work is
+     * already active, the counts become part of it instead.
+     *
+     * @param from
+     *            First day to recount
+     * @param to
+     *            Last day to recount
+     * @param roles
+     *            Roles of the users, by username
+     * @return The number of log entries counted
+     */
+    private static long backfillPart ( final LocalDate from, final LocalDate to, final Map<String, Role> roles ) {
+        final Map<List<Object>, Long> counts = new HashMap<List<Object>, Long>();
+        final long[] counted = { 0 };
+        LogEntry.forEachBetween( from.atStartOfDay( ZONE ), to.plusDays( 1 ).atStartOfDay( ZONE ), entry -> {
+            counts.merge( key( entry, roles ), 1L, Long::sum );
+            counted[0]++;
+        } );
+
+        final List<LogEntryRollup> rollups = new ArrayList<LogEntryRollup>();
+        for ( final Map.Entry<List<Object>, Long> count : counts.entrySet() ) {
+            rollups.add( new LogEntryRollup( (LocalDate) count.getKey().get( 0 ),
+                    (TransactionType) count.getKey().get( 1 ), (Role) count.getKey().get( 2 ), count.getValue() ) );
+        }
+        if ( null != UnitOfWork.current() ) {
+            deleteWhere( LogEntryRollup.class, createCriterionList( bt( "day", from, to ) ) );
+            saveAll( rollups );
+            return counted[0];
+        }
+        final UnitOfWork uow = UnitOfWork.begin( true );
+        boolean saved = false;
+        try {
+            deleteWhere( LogEntryRollup.class, createCriterionList( bt( "day", from, to ) ) );
+            saveAll( rollups );
+            saved = true;
+        }
+        finally {
+            if ( !saved ) {
+                uow.rollback();
+            }
+        }
+        uow.commit();
+        return counted[0];
+    }
+
+    /**
+     * Counts log entries by day, type and role
+     *
+     * @param entries
+     *            The log entries to count
+     * @param roles
+     *            Roles of the primary users of the log entries
+     * @return The counts, keyed by (day, type, role)
+     */
+    private static Map<List<Object>, Long> count ( final Collection<LogEntry> entries,
+            final Map<String, Role> roles ) {
+        final Map<List<Object>, Long> counts = new HashMap<List<Object>, Long>();
+        for ( final LogEntry entry : entries ) {
+            counts.merge( key( entry, roles ), 1L, Long::sum );
+        }
+        return counts;
+    }
+
+    /**
+     * Works out which rollup a log entry is counted in
+     *
+     * @param entry
+     *            The log entry
+     * @param roles
+     *            Roles of the users, by username
+     * @return The (day, type, role) of the rollup
+     */
+    private static List<Object> key ( final LogEntry entry, final Map<String, Role> roles ) {
+        return Arrays.asList( entry.getTime().withZoneSameInstant( ZONE ).toLocalDate(), entry.getLogCode(),
+                roles.get( entry.getPrimaryUser() ) );
+    }
+
+    /**
+     * Creates a rollup
+     *
+     * @param day
+     *            The day the events happened on
+     * @param logCode
+     *            Type of the events
+     * @param role
+     *            Role of the primary user of the events, or null if they do
+     *            not exist
+     * @param total
+     *            Number of events
+     */
+    public LogEntryRollup ( final LocalDate day, final TransactionType logCode, final Role role,
+            final Long total ) {
+        setDay( day );
+        setLogCode( logCode );
+        setRole( role );
+        setTotal( total );
+    }
+
+    /**
+     * For Hibernate
+     */
+    public LogEntryRollup () {
+    }
+
+    /**
+     * Retrieves the ID of the rollup
+     */
+    @Override
+    public Long getId () {
+        return id;
+    }
+
+    /**
+     * Retrieves the day the events happened on
+     *
+     * @return The day
+     */
+    public LocalDate getDay () {
+        return day;
+    }
+
+    /**
+     * Sets the day the events happened on
+     *
+     * @param day
+     *            The day
+     */
+    public void setDay ( final LocalDate day ) {
+        this.day = day;
+    }
+
+    /**
+     * Retrieves the type of the events
+     *
+     * @return The type
+     */
+    public TransactionType getLogCode () {
+        return logCode;
+    }
+
+    /**
+     * Sets the type of the events
+     *
+     * @param logCode
+     *            The type
+     */
+    public void setLogCode ( final TransactionType logCode ) {
+        this.logCode = logCode;
+    }
+
+    /**
+     * Retrieves the role of the primary user of the events
+     *
+     * @return The role, or null if the users do not exist
+     */
+    public Role getRole () {
+        return null == role || NO_ROLE.equals( role ) ? null : Role.valueOf( role );
+    }
+
+    /**
+     * Sets the role of the primary user of the events
+     *
+     * @param role
+     *            The role, or null if the users do not exist
+     */
+    public void setRole ( final Role role ) {
+        this.role = null == role ? NO_ROLE : role.name();
+    }
+
+    /**
+     * Retrieves the number of events
+     *
+     * @return The number of events
+     */
+    public Long getTotal () {
+        return total;
+    }
+
+    /**
+     * Sets the number of events
+     *
+     * @param total
+     *            The number of events
+     */
+    public void setTotal ( final Long total ) {
+        this.total = total;
+    }
+
+}
@@ -1,22 +1,19 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.time.ZonedDateTime;
-import java.util.List;
 
 import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 import com.google.gson.annotations.JsonAdapter;
 
-import org.hibernate.criterion.Criterion;
-
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAttributeConverter;
 
@@ -30,16 +27,28 @@ import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAttributeConverter;
  * created, one for the IP and one for the user. If the username is unknown,
  * then only one is created for the IP.
  *
+ * FailureHandler no longer saves these; failed attempts are counted in memory
+ * by {@link edu.ncsu.csc.itrust2.utils.LoginFailureCounter} instead, so that a
+ * burst of failures does not turn into a burst of writes to the database.
+ *
  * @author Thomas
  * @author Kai Presler-Marshall
  *
+ * @deprecated Nothing records login attempts any more; use
+ *             {@link edu.ncsu.csc.itrust2.utils.LoginFailureCounter}. The
+ *             mapping is only kept so that the LoginAttempts table exists for
+ *             the V1 migration, which indexes it and cannot be changed now
+ *             that it has been applied.
  */
+@Deprecated
 @Entity
-@Table ( name = "LoginAttempts" )
+@Table ( name = "LoginAttempts", indexes = {
+        @Index ( name = "idx_loginattempts_ip", columnList = "ip" ),
+        @Index ( name = "idx_loginattempts_user", columnList = "user_id" ) } )
 public class LoginAttempt extends DomainObject<LoginAttempt> {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long     id;
 
     private String   ip;
@@ -132,18 +141,6 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
         this.time = time;
     }
 
-    /**
-     * Retrieve a list of all LoginAttempts matching the criterion provided
-     *
-     * @param where
-     *            List of Criterion to and together and search for records by
-     * @return
-     */
-    @SuppressWarnings ( "unchecked" )
-    private static List<LoginAttempt> getWhere ( final List<Criterion> where ) {
-        return (List<LoginAttempt>) getWhere( LoginAttempt.class, where );
-    }
-
     /**
      * Returns the number of failed attempts for the given IP.
      *
@@ -152,7 +149,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      * @return the number of failures from the given IP
      */
     public static int getIPFailures ( final String addr ) {
-        return getWhere( eqList( "ip", addr ) ).size();
+        return (int) countWhere( LoginAttempt.class, eqList( "ip", addr ) );
     }
 
     /**
@@ -162,7 +159,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      *            The IP to clear.
      */
     public static void clearIP ( final String addr ) {
-        getWhere( eqList( "ip", addr ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginAttempt.class, eqList( "ip", addr ) );
     }
 
     /**
@@ -173,7 +170,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      * @return The number of failed attempts for the User.
      */
     public static int getUserFailures ( final User user ) {
-        return getWhere( eqList( "user", user ) ).size();
+        return (int) countWhere( LoginAttempt.class, eqList( "user", user ) );
     }
 
     /**
@@ -183,7 +180,7 @@ public class LoginAttempt extends DomainObject<LoginAttempt> {
      *            The user to clear.
      */
     public static void clearUser ( final User user ) {
-        getWhere( eqList( "user", user ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginAttempt.class, eqList( "user", user ) );
     }
 
 }
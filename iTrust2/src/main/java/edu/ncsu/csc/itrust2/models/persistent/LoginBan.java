@@ -7,34 +7,38 @@ import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 
 import com.google.gson.annotations.JsonAdapter;
 
-import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAttributeConverter;
+import edu.ncsu.csc.itrust2.utils.IPBlockRegistry;
 
 /**
  * Contains info about a LoginBan from the system. A ban does not expire, and
  * can only be removed by an admin (Not Implemented). A ban can be for either a
- * User or an IP.
+ * User or an IP. IP bans are also tracked in memory by {@link IPBlockRegistry},
+ * which is kept up to date as they are saved and cleared.
  *
  * @author Thomas
  * @author Kai Presler-Marshall
  *
  */
 @Entity
-@Table ( name = "LoginBans" )
+@Table ( name = "LoginBans", indexes = {
+        @Index ( name = "idx_loginbans_ip", columnList = "ip" ),
+        @Index ( name = "idx_loginbans_user", columnList = "user_id" ) } )
 public class LoginBan extends DomainObject<LoginBan> {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long     id;
 
     private String   ip;
@@ -127,15 +131,14 @@ public class LoginBan extends DomainObject<LoginBan> {
     }
 
     /**
-     * Retrieves all LoginBans for the criteria provided.
-     * 
-     * @param A
-     *            List of Criterion to search by to constrain what is retrieved
-     * @return The list of all matching LoginBans
+     * Saves the ban, and applies it to the IP (if any) straight away
      */
-    @SuppressWarnings ( "unchecked" )
-    private static List<LoginBan> getWhere ( final List<Criterion> where ) {
-        return (List<LoginBan>) getWhere( LoginBan.class, where );
+    @Override
+    public void save () {
+        super.save();
+        if ( null != ip ) {
+            IPBlockRegistry.banned( ip );
+        }
     }
 
     /**
@@ -146,7 +149,7 @@ public class LoginBan extends DomainObject<LoginBan> {
      * @return true if banned, false otherwise
      */
     public static boolean isIPBanned ( final String addr ) {
-        return getWhere( eqList( "ip", addr ) ).size() > 0;
+        return existsWhere( LoginBan.class, eqList( "ip", addr ) );
     }
 
     /**
@@ -157,7 +160,7 @@ public class LoginBan extends DomainObject<LoginBan> {
      * @return true if banned, false otherwise.
      */
     public static boolean isUserBanned ( final User user ) {
-        return getWhere( eqList( "user", user ) ).size() > 0;
+        return existsWhere( LoginBan.class, eqList( "user", user ) );
     }
 
     /**
@@ -167,7 +170,18 @@ public class LoginBan extends DomainObject<LoginBan> {
      *            The IP to clear.
      */
     public static void clearIP ( final String addr ) {
-        getWhere( eqList( "ip", addr ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginBan.class, eqList( "ip", addr ) );
+        IPBlockRegistry.unbanned( addr );
+    }
+
+    /**
+     * Retrieves every IP address that is banned
+     *
+     * @return The banned IPs
+     */
+    public static List<String> getBannedIPs () {
+        return getProjection( LoginBan.class, createCriterionList( Restrictions.isNotNull( "ip" ) ),
+                row -> (String) row[0], "ip" );
     }
 
     /**
@@ -177,6 +191,6 @@ public class LoginBan extends DomainObject<LoginBan> {
      *            The user to clear.
      */
     public static void clearUser ( final User user ) {
-        getWhere( eqList( "user", user ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginBan.class, eqList( "user", user ) );
     }
 }
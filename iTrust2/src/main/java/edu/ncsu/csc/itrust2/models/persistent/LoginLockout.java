@@ -1,15 +1,15 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -17,26 +17,41 @@ import javax.persistence.Table;
 import com.google.gson.annotations.JsonAdapter;
 
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Restrictions;
 
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAttributeConverter;
+import edu.ncsu.csc.itrust2.utils.IPBlockRegistry;
 
 /**
  * Class that holds a lockout for a user or ip. It contains a timestamp used to
  * determine if the lockout is still valid. 3 Lockouts within a 24-hour period
  * result in a LoginBan. Upon the elevation to a LoginBan, all associated
- * LoginLockout objects are deleted.
+ * LoginLockout objects are deleted. IP lockouts are also tracked in memory by
+ * {@link IPBlockRegistry}, which is kept up to date as they are saved and
+ * cleared.
  *
  * @author Thomas
  * @author Kai Presler-Marshall
  *
  */
 @Entity
-@Table ( name = "LoginLockouts" )
+@Table ( name = "LoginLockouts", indexes = {
+        @Index ( name = "idx_loginlockouts_ip_time", columnList = "ip, time" ),
+        @Index ( name = "idx_loginlockouts_user_time", columnList = "user_id, time" ) } )
 public class LoginLockout extends DomainObject<LoginLockout> {
 
+    /** How long, in minutes, a lockout remains in effect */
+    static private final long LOCKOUT_MINUTES    = 60;
+
+    /**
+     * Window, in minutes, in which repeated lockouts are counted towards a
+     * LoginBan
+     */
+    static private final long BAN_WINDOW_MINUTES = 1440;
+
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long     id;
 
     private String   ip;
@@ -130,6 +145,26 @@ public class LoginLockout extends DomainObject<LoginLockout> {
         this.time = time;
     }
 
+    /**
+     * Returns when the lockout ends
+     *
+     * @return the end of the lockout
+     */
+    public ZonedDateTime getExpiry () {
+        return time.plusMinutes( LOCKOUT_MINUTES );
+    }
+
+    /**
+     * Saves the lockout, and applies it to the IP (if any) straight away
+     */
+    @Override
+    public void save () {
+        super.save();
+        if ( null != ip ) {
+            IPBlockRegistry.lockedOut( ip, getExpiry() );
+        }
+    }
+
     /**
      * Returns the number of lockouts for the given IP within the timeframe set
      * to ban.
@@ -139,22 +174,27 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return The number of lockouts for the given IP
      */
     public static int getRecentIPLockouts ( final String addr ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return getWhere( eqList( "ip", addr ) ).stream()
-                .filter( e -> ( now - e.getTime().toEpochSecond() ) < 1440 * 60 * 1000 )
-                .collect( Collectors.toList() ).size(); // 1440 minutes
+        return (int) countWhere( LoginLockout.class, since( "ip", addr, BAN_WINDOW_MINUTES ) );
     }
 
     /**
-     * Retrieve a list of Lockouts matching the given criteria
+     * Builds the criteria for the lockouts of a given IP or User that started
+     * within the last few minutes. The time window is checked by the database
+     * rather than by loading every lockout and filtering them here.
      *
-     * @param where
-     *            List of Criterion to and together and search for records by
-     * @return The list of matching records
+     * @param field
+     *            The field to match on (ip or user)
+     * @param value
+     *            The IP or User to match
+     * @param minutes
+     *            How far back to look, in minutes
+     * @return The List of Criterion to search by
      */
-    @SuppressWarnings ( "unchecked" )
-    private static List<LoginLockout> getWhere ( final List<Criterion> where ) {
-        return (List<LoginLockout>) getWhere( LoginLockout.class, where );
+    private static List<Criterion> since ( final String field, final Object value, final long minutes ) {
+        final List<Criterion> where = new ArrayList<Criterion>();
+        where.add( eq( field, value ) );
+        where.add( gt( "time", ZonedDateTime.now().minusMinutes( minutes ) ) );
+        return where;
     }
 
     /**
@@ -174,7 +214,21 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      *            The IP to clear
      */
     public static void clearIP ( final String addr ) {
-        getWhere( eqList( "ip", addr ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginLockout.class, eqList( "ip", addr ) );
+        IPBlockRegistry.unlocked( addr );
+    }
+
+    /**
+     * Retrieves the IP lockouts that are currently in effect
+     *
+     * @return The lockouts found
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static List<LoginLockout> getActiveIPLockouts () {
+        final List<Criterion> where = new ArrayList<Criterion>();
+        where.add( Restrictions.isNotNull( "ip" ) );
+        where.add( gt( "time", ZonedDateTime.now().minusMinutes( LOCKOUT_MINUTES ) ) );
+        return (List<LoginLockout>) getWhere( LoginLockout.class, where );
     }
 
     /**
@@ -185,11 +239,7 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return true if IP is locked out, flase otherwise
      */
     public static boolean isIPLocked ( final String addr ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return getWhere( eqList( "ip", addr ) ).stream()
-                .filter( e -> ( now - e.getTime().toEpochSecond() ) < 60 * 60 * 1000 ).collect( Collectors.toList() )
-                .size() > 0; // locked if within 60 minutes
-
+        return existsWhere( LoginLockout.class, since( "ip", addr, LOCKOUT_MINUTES ) );
     }
 
     /**
@@ -201,10 +251,7 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return The number of lockouts for the user
      */
     public static int getRecentUserLockouts ( final User user ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return getWhere( eqList( "user", user ) ).stream()
-                .filter( e -> ( now - e.getTime().toEpochSecond() ) < 1440 * 60 * 1000 )
-                .collect( Collectors.toList() ).size(); // 1440 minutes
+        return (int) countWhere( LoginLockout.class, since( "user", user, BAN_WINDOW_MINUTES ) );
     }
 
     /**
@@ -214,7 +261,7 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      *            The User to clear.
      */
     public static void clearUser ( final User user ) {
-        getWhere( eqList( "user", user ) ).stream().forEach( e -> e.delete() );
+        deleteWhere( LoginLockout.class, eqList( "user", user ) );
     }
 
     /**
@@ -225,10 +272,7 @@ public class LoginLockout extends DomainObject<LoginLockout> {
      * @return true if the user is locked out, false otherwise
      */
     public static boolean isUserLocked ( final User user ) {
-        final long now = ZonedDateTime.now().toEpochSecond();
-        return getWhere( eqList( "user", user ) ).stream()
-                .filter( e -> ( now - e.getTime().toEpochSecond() ) < 60 * 60 * 1000 ).collect( Collectors.toList() )
-                .size() > 0; // locked if within 60 minutes
+        return existsWhere( LoginLockout.class, since( "user", user, LOCKOUT_MINUTES ) );
     }
 
 }
@@ -3,26 +3,31 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Vector;
 import java.util.stream.Collectors;
 
 import javax.persistence.Basic;
 import javax.persistence.Convert;
+import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Inheritance;
+import javax.persistence.InheritanceType;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
-import javax.persistence.MappedSuperclass;
 import javax.persistence.OneToOne;
 import javax.validation.constraints.NotNull;
 
 import com.google.gson.annotations.JsonAdapter;
 
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAdapter;
 import edu.ncsu.csc.itrust2.adapters.ZonedDateTimeAttributeConverter;
@@ -31,12 +36,19 @@ import edu.ncsu.csc.itrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 
 /**
- * This is the validated database-persisted office visit representation
+ * This is the validated database-persisted office visit representation.
+ *
+ * Each type of office visit is stored in its own table, with all of the
+ * columns of an OfficeVisit repeated in each. Because they share one ID
+ * generator, IDs are unique across all of those tables, which lets Hibernate
+ * treat them as a single entity: a query for OfficeVisits is run as one
+ * `UNION` across the tables, so it can be sorted and paged by the database.
  *
  * @author Kai Presler-Marshall
  *
  */
-@MappedSuperclass
+@Entity
+@Inheritance ( strategy = InheritanceType.TABLE_PER_CLASS )
 public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
 
     /**
@@ -47,13 +59,7 @@ public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
      * @return the specific office visit with the desired ID
      */
     public static OfficeVisit getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
-
+        return findById( OfficeVisit.class, id ).orElse( null );
     }
 
     /**
@@ -67,6 +73,24 @@ public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
         return getWhere( eqList( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ) );
     }
 
+    /**
+     * Get a single page of the office visits for a specific patient, sorted by
+     * date
+     *
+     * @param patientName
+     *            the name of the patient
+     * @param request
+     *            which page to get
+     * @return the page of office visits of the queried patient
+     * @throws IllegalArgumentException
+     *             if the cursor of the request is not valid
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<OfficeVisit> getForPatient ( final String patientName, final PageRequest request ) {
+        return getPage( OfficeVisit.class,
+                eqList( "patient", User.getByNameAndRole( patientName, Role.ROLE_PATIENT ) ), request );
+    }
+
     /**
      * Get all office visits for a specific HCP
      *
@@ -87,6 +111,17 @@ public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
         return getWhere( eqList( "type", type ) );
     }
 
+    /**
+     * Gets all of the office visits of any of the specified types.
+     *
+     * @param types
+     *            The AppointmentTypes
+     * @return all of the office visits of the specified types.
+     */
+    public static List<OfficeVisit> getForTypes ( final Collection<AppointmentType> types ) {
+        return getWhere( createCriterionList( Restrictions.in( "type", types ) ) );
+    }
+
     /**
      * Get all office visits done by a specific HCP for a specific patient
      *
@@ -109,19 +144,28 @@ public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
      *
      * @return all office visits in the database
      */
-    @SuppressWarnings ( "unchecked" )
     public static List<OfficeVisit> getOfficeVisits () {
-        final List<OfficeVisit> visits = (List<OfficeVisit>) getAll( GeneralCheckup.class );
-        // append new appointment types
-        visits.addAll( (List<OfficeVisit>) getAll( GeneralOphthalmology.class ) );
-        visits.addAll( (List<OfficeVisit>) getAll( OphthalmologySurgery.class ) );
-        visits.sort( ( x1, x2 ) -> x1.getDate().compareTo( x2.getDate() ) );
-        return visits;
+        return getWhere( Collections.<Criterion> emptyList() );
+    }
+
+    /**
+     * Get a single page of the office visits in the database, sorted by date
+     *
+     * @param request
+     *            which page to get
+     * @return the page of office visits
+     * @throws IllegalArgumentException
+     *             if the cursor of the request is not valid
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Page<OfficeVisit> getOfficeVisits ( final PageRequest request ) {
+        return getPage( OfficeVisit.class, Collections.<Criterion> emptyList(), request );
     }
 
     /**
      * Helper method to pass to the DomainObject class that performs a specific
-     * query on the database.
+     * query on the database. Visits of every type are retrieved in the same
+     * query, sorted by date.
      *
      * @SuppressWarnings for Unchecked cast from List<capture#1-of ? extends
      *                   DomainObject> to List<OfficeVisit> Because get all just
@@ -133,10 +177,7 @@ public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
      */
     @SuppressWarnings ( "unchecked" )
     private static List<OfficeVisit> getWhere ( final List<Criterion> where ) {
-        final List<OfficeVisit> visits = (List<OfficeVisit>) getWhere( GeneralCheckup.class, where );
-        visits.addAll( (List<OfficeVisit>) getWhere( GeneralOphthalmology.class, where ) );
-        visits.addAll( (List<OfficeVisit>) getWhere( OphthalmologySurgery.class, where ) );
-        return visits;
+        return (List<OfficeVisit>) getWhere( OfficeVisit.class, where, Order.asc( "date" ), Order.asc( ID ) );
     }
 
     /** For Hibernate/Thymeleaf _must_ be an empty constructor */
@@ -477,7 +518,7 @@ public abstract class OfficeVisit extends DomainObject<OfficeVisit> {
      * The id of this office visit
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long               id;
 
     /**
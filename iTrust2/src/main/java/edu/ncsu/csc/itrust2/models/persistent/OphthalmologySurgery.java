@@ -3,6 +3,7 @@ package edu.ncsu.csc.itrust2.models.persistent;
 import java.text.ParseException;
 
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 import edu.ncsu.csc.itrust2.forms.hcp.OphthalmologySurgeryForm;
@@ -14,7 +15,9 @@ import edu.ncsu.csc.itrust2.models.enums.EyeSurgeryType;
  * @author Jack MacDonald
  */
 @Entity
-@Table ( name = "OphthalmologySurgery" )
+@Table ( name = "OphthalmologySurgery", indexes = {
+        @Index ( name = "idx_ophthalmologysurgery_patient_date", columnList = "patient_id, date" ),
+        @Index ( name = "idx_ophthalmologysurgery_hcp_date", columnList = "hcp_id, date" ) } )
 public class OphthalmologySurgery extends OphthalmologyVisit {
 
     private EyeSurgeryType surgeryType;
@@ -66,6 +69,6 @@ public class OphthalmologySurgery extends OphthalmologyVisit {
      * @return the specific office visit with the desired ID
      */
     public static OphthalmologySurgery getById ( final Long id ) {
-        return (OphthalmologySurgery) OfficeVisit.getById( id );
+        return findById( OphthalmologySurgery.class, id ).orElse( null );
     }
 }
@@ -0,0 +1,166 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A single page of results from a paged DomainObject query, along with the
+ * continuation token needed to retrieve the next page.
+ *
+ * The token records the sort value and ID of the last record on the page. It
+ * is opaque to clients, and is only ever decoded as one of a handful of plain
+ * value types (never deserialized as an arbitrary object), so it is safe to
+ * accept back from a client.
+ *
+ * @author Kai Presler-Marshall
+ *
+ * @param <T>
+ *            Type of the records in the page
+ */
+public class Page <T> {
+
+    /** Separates the sort value and ID in a continuation token */
+    static private final String SEPARATOR = ".";
+
+    /** The records on this page */
+    private final List<T>       items;
+
+    /** Token for retrieving the next page; null if this is the last page */
+    private final String        nextCursor;
+
+    /**
+     * Creates a Page
+     *
+     * @param items
+     *            The records on this page
+     * @param nextCursor
+     *            Token for retrieving the next page, or null if there are no
+     *            more records
+     */
+    Page ( final List<T> items, final String nextCursor ) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Retrieves the records on this page
+     *
+     * @return The records
+     */
+    public List<T> getItems () {
+        return items;
+    }
+
+    /**
+     * Retrieves the continuation token to pass in (as the cursor of a
+     * {@link PageRequest}) to retrieve the next page.
+     *
+     * @return The token, or null if this is the last page
+     */
+    public String getNextCursor () {
+        return nextCursor;
+    }
+
+    /**
+     * Whether there are more records after this page
+     *
+     * @return True if there is another page
+     */
+    public boolean hasMore () {
+        return null != nextCursor;
+    }
+
+    /**
+     * Creates the continuation token for the last record of a page
+     *
+     * @param sortValue
+     *            Value of the sort field for the record
+     * @param id
+     *            ID of the record
+     * @return The continuation token
+     */
+    static String encodeCursor ( final Object sortValue, final Serializable id ) {
+        return encode( sortValue ) + SEPARATOR + encode( id );
+    }
+
+    /**
+     * Reads a continuation token back in.
+     *
+     * @param cursor
+     *            The token, as created by {@link #encodeCursor}
+     * @param sortType
+     *            Type of the sort field
+     * @param idType
+     *            Type of the ID
+     * @return The sort value and the ID, in that order
+     * @throws IllegalArgumentException
+     *             If the token is not valid
+     */
+    static Object[] decodeCursor ( final String cursor, final Class< ? > sortType, final Class< ? > idType ) {
+        final int split = cursor.indexOf( SEPARATOR );
+        if ( split < 0 ) {
+            throw new IllegalArgumentException( "Invalid continuation token" );
+        }
+        try {
+            return new Object[] { decode( cursor.substring( 0, split ), sortType ),
+                    decode( cursor.substring( split + 1 ), idType ) };
+        }
+        catch ( final RuntimeException e ) {
+            throw new IllegalArgumentException( "Invalid continuation token", e );
+        }
+    }
+
+    /**
+     * Encodes a single value of a continuation token
+     *
+     * @param value
+     *            The value to encode
+     * @return The encoded value
+     */
+    static private String encode ( final Object value ) {
+        final String str = value instanceof Enum ? ( (Enum< ? >) value ).name() : String.valueOf( value );
+        return Base64.getUrlEncoder().withoutPadding().encodeToString( str.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Decodes a single value of a continuation token
+     *
+     * @param encoded
+     *            The encoded value
+     * @param type
+     *            Type to decode the value as
+     * @return The decoded value
+     */
+    @SuppressWarnings ( { "unchecked", "rawtypes" } )
+    static private Object decode ( final String encoded, final Class< ? > type ) {
+        final String str = new String( Base64.getUrlDecoder().decode( encoded ), StandardCharsets.UTF_8 );
+        if ( String.class.equals( type ) ) {
+            return str;
+        }
+        if ( Long.class.equals( type ) || long.class.equals( type ) ) {
+            return Long.valueOf( str );
+        }
+        if ( Integer.class.equals( type ) || int.class.equals( type ) ) {
+            return Integer.valueOf( str );
+        }
+        if ( ZonedDateTime.class.equals( type ) ) {
+            return ZonedDateTime.parse( str );
+        }
+        if ( LocalDate.class.equals( type ) ) {
+            return LocalDate.parse( str );
+        }
+        if ( LocalDateTime.class.equals( type ) ) {
+            return LocalDateTime.parse( str );
+        }
+        if ( type.isEnum() ) {
+            return Enum.valueOf( (Class<Enum>) type, str );
+        }
+        throw new IllegalArgumentException( "Cannot page on a field of type " + type.getSimpleName() );
+    }
+
+}
@@ -0,0 +1,129 @@
+package edu.ncsu.csc.itrust2.models.persistent;
+
+/**
+ * Describes which page of results to retrieve from a paged DomainObject query
+ * (see {@link DomainObject#getPage}): what to sort by, how many records to
+ * return, and where to start.
+ *
+ * The preferred way to move through the results is with the continuation
+ * token returned with each {@link Page}; passing it back in as the cursor
+ * makes the database seek straight to where the previous page left off
+ * (`WHERE (sort, id) &lt; (last sort, last id)`), which is just as fast for the
+ * thousandth page as for the first. Skipping to a numbered page with an offset
+ * is supported too, for clients that need it, but the database has to walk
+ * over every record that is skipped.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class PageRequest {
+
+    /** Field to sort by; null to sort by ID */
+    private final String  sortField;
+
+    /** Whether to sort in ascending (oldest/smallest first) order */
+    private final boolean ascending;
+
+    /** Maximum number of records to return */
+    private final int     limit;
+
+    /** Continuation token of the previous page, if any */
+    private String        cursor;
+
+    /** Number of records to skip, when there is no cursor */
+    private int           offset;
+
+    /**
+     * Creates a request for the first page of results.
+     *
+     * @param sortField
+     *            Field to sort by (ie, time). The ID is always used as a
+     *            tie-breaker so that the order is stable. Pass null to sort by
+     *            ID alone.
+     * @param ascending
+     *            True to sort in ascending order, false for descending
+     * @param limit
+     *            Maximum number of records to return
+     */
+    public PageRequest ( final String sortField, final boolean ascending, final int limit ) {
+        if ( limit < 1 ) {
+            throw new IllegalArgumentException( "A page must hold at least one record" );
+        }
+        this.sortField = sortField;
+        this.ascending = ascending;
+        this.limit = limit;
+    }
+
+    /**
+     * Retrieves the field to sort by
+     *
+     * @return The sort field, or null to sort by ID
+     */
+    public String getSortField () {
+        return sortField;
+    }
+
+    /**
+     * Whether the results are sorted in ascending order
+     *
+     * @return True if ascending, false if descending
+     */
+    public boolean isAscending () {
+        return ascending;
+    }
+
+    /**
+     * Retrieves the maximum number of records to return
+     *
+     * @return The page size
+     */
+    public int getLimit () {
+        return limit;
+    }
+
+    /**
+     * Retrieves the continuation token to resume from
+     *
+     * @return The cursor, or null to start from the beginning
+     */
+    public String getCursor () {
+        return cursor;
+    }
+
+    /**
+     * Sets where to resume from: the continuation token returned with the
+     * previous page. The rest of the request (sort, filters) must be the same
+     * as for the previous page.
+     *
+     * @param cursor
+     *            The continuation token, or null/empty to start from the
+     *            beginning
+     */
+    public void setCursor ( final String cursor ) {
+        this.cursor = null == cursor || cursor.isEmpty() ? null : cursor;
+    }
+
+    /**
+     * Retrieves the number of records to skip
+     *
+     * @return The offset
+     */
+    public int getOffset () {
+        return offset;
+    }
+
+    /**
+     * Sets the number of records to skip before the page begins. Ignored if a
+     * cursor is given.
+     *
+     * @param offset
+     *            Number of records to skip
+     */
+    public void setOffset ( final int offset ) {
+        if ( offset < 0 ) {
+            throw new IllegalArgumentException( "Offset cannot be negative" );
+        }
+        this.offset = offset;
+    }
+
+}
@@ -201,12 +201,7 @@ public class PasswordResetToken extends DomainObject<PasswordResetToken> {
      * @return the reset token with the desired ID
      */
     public static PasswordResetToken getById ( final Long id ) {
-        try {
-            return (PasswordResetToken) getWhere( PasswordResetToken.class, eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
+        return findById( PasswordResetToken.class, id ).orElse( null );
     }
 
 }
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -15,7 +16,6 @@ import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
@@ -30,6 +30,7 @@ import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters.LocalDa
 
 import com.google.gson.annotations.JsonAdapter;
 
+import edu.ncsu.csc.itrust2.adapters.LazyCollectionAdapterFactory;
 import edu.ncsu.csc.itrust2.adapters.LocalDateAdapter;
 import edu.ncsu.csc.itrust2.forms.hcp_patient.PatientForm;
 import edu.ncsu.csc.itrust2.models.enums.BloodType;
@@ -37,6 +38,7 @@ import edu.ncsu.csc.itrust2.models.enums.Ethnicity;
 import edu.ncsu.csc.itrust2.models.enums.Gender;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.State;
+import edu.ncsu.csc.itrust2.models.summary.PatientSummary;
 
 /**
  * Class representing a Patient object. This goes beyond the basic information
@@ -79,7 +81,22 @@ public class Patient extends DomainObject<Patient> implements Serializable {
     }
 
     /**
-     * Get a specific patient by username
+     * Get a summary of every patient in the database: just the columns needed
+     * to list them, without loading their representatives.
+     *
+     * @return summaries of all patients in the database
+     */
+    public static List<PatientSummary> getSummaries () {
+        return getProjection( Patient.class, Collections.<Criterion> emptyList(),
+                row -> new PatientSummary( (String) row[0], (String) row[1], (String) row[2], (String) row[3],
+                        (LocalDate) row[4] ),
+                "self.username", "firstName", "preferredName", "lastName", "dateOfBirth" );
+    }
+
+    /**
+     * Get a specific patient by username. Their representatives, and the
+     * patients they represent, are not loaded; use
+     * {@link #getWithRepresentatives(String)} if those are needed.
      *
      * @param username
      *            the username of the patient to get
@@ -94,6 +111,23 @@ public class Patient extends DomainObject<Patient> implements Serializable {
         }
     }
 
+    /**
+     * Get a specific patient by username, along with their representatives
+     * and the patients they represent. The representatives' own
+     * representatives are not loaded.
+     *
+     * @param username
+     *            the username of the patient to get
+     * @return the patient with the queried username
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Patient getWithRepresentatives ( final String username ) {
+        final List<Patient> patients = (List<Patient>) getWhereFetching( Patient.class,
+                eqList( "self", User.getByNameAndRole( username, Role.ROLE_PATIENT ) ), "representativeList",
+                "representingList" );
+        return patients.isEmpty() ? null : patients.get( 0 );
+    }
+
     /**
      * Helper method to pass to the DomainObject class that performs a specific
      * query on the database.
@@ -238,19 +272,22 @@ public class Patient extends DomainObject<Patient> implements Serializable {
 
     /**
      * For keeping track of the patients who are representatives of this
-     * patient. Optional;
+     * patient. Optional; only loaded when asked for (see
+     * {@link #getWithRepresentatives(String)}).
      */
-    @ManyToMany ( fetch = FetchType.EAGER, mappedBy = "representingList" )
+    @ManyToMany ( fetch = FetchType.LAZY, mappedBy = "representingList" )
+    @JsonAdapter ( LazyCollectionAdapterFactory.class )
     private Set<Patient> representativeList;
 
     /**
      * For keeping track of the patients who are represented by this patient.
-     * Optional;
+     * Optional; only loaded when asked for (see
+     * {@link #getWithRepresentatives(String)}).
      */
-    @ManyToMany ( fetch = FetchType.EAGER )
+    @ManyToMany ( fetch = FetchType.LAZY )
     @JoinTable ( name = "PERSONAL_REPRESENTATIVES", joinColumns = { @JoinColumn ( name = "patient_id" ) },
             inverseJoinColumns = { @JoinColumn ( name = "representative_id" ) } )
-
+    @JsonAdapter ( LazyCollectionAdapterFactory.class )
     private Set<Patient> representingList;
 
     /**
@@ -367,7 +404,7 @@ public class Patient extends DomainObject<Patient> implements Serializable {
     /**
      * The id of this patient
      */
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long         id;
 
     /**
@@ -862,7 +899,8 @@ public class Patient extends DomainObject<Patient> implements Serializable {
     }
 
     /**
-     * Add a representative for a patient
+     * Add a representative for a patient. Both patients must have been
+     * retrieved with {@link #getWithRepresentatives(String)} (or be new).
      *
      * @param rep
      *            the representative to add
@@ -873,15 +911,17 @@ public class Patient extends DomainObject<Patient> implements Serializable {
     }
 
     /**
-     * Remove a representative from a patient
+     * Remove a representative from a patient. Both patients must have been
+     * retrieved with {@link #getWithRepresentatives(String)}.
      *
      * @param rep
      *            the representative to remove
      */
     public void removeRepresentative ( final Patient rep ) {
-        if ( representativeList.contains( rep ) ) {
-            representativeList.remove( rep );
-            rep.representingList.remove( this );
+        final String repName = rep.getSelf().getUsername();
+        final String name = getSelf().getUsername();
+        if ( representativeList.removeIf( p -> p.getSelf().getUsername().equals( repName ) ) ) {
+            rep.representingList.removeIf( p -> p.getSelf().getUsername().equals( name ) );
         }
         else {
             throw new IllegalArgumentException( "Cannot remove a representative that does not exist." );
@@ -1,22 +1,28 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
+import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
 import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 import org.hibernate.validator.constraints.Length;
 
 import edu.ncsu.csc.itrust2.forms.personnel.PersonnelForm;
+import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.State;
+import edu.ncsu.csc.itrust2.models.summary.PersonnelSummary;
 
 /**
  * Database-persisted representation of all non-Patient types of iTrust2 users.
@@ -72,6 +78,43 @@ public class Personnel extends DomainObject<Personnel> {
         return (List<Personnel>) getAll( Personnel.class );
     }
 
+    /**
+     * Get a summary of every personnel in the DB: just the columns needed to
+     * list them, without loading their User.
+     *
+     * @return summaries of all personnel in the DB
+     */
+    static public List<PersonnelSummary> getSummaries () {
+        return getSummaries( Collections.<Criterion> emptyList() );
+    }
+
+    /**
+     * Get a summary of every personnel whose User has the passed role. The
+     * role is checked by the database in the same query.
+     *
+     * @param role
+     *            the role to get the personnel of
+     * @return summaries of the personnel with the passed role
+     */
+    static public List<PersonnelSummary> getSummariesByRole ( final Role role ) {
+        final DetachedCriteria withRole = DetachedCriteria.forClass( User.class )
+                .add( Restrictions.eq( "role", role ) ).setProjection( Projections.id() );
+        return getSummaries( createCriterionList( Subqueries.propertyIn( "self.username", withRole ) ) );
+    }
+
+    /**
+     * Get a summary of every personnel matching the Criterion provided
+     *
+     * @param where
+     *            List of Criterion to and together and search for records by
+     * @return summaries of the matching personnel
+     */
+    private static List<PersonnelSummary> getSummaries ( final List<Criterion> where ) {
+        return getProjection( Personnel.class, where,
+                row -> new PersonnelSummary( (String) row[0], (String) row[1], (String) row[2], (String) row[3] ),
+                "self.username", "firstName", "lastName", "specialty" );
+    }
+
     /**
      * Get all Personnel in the database where the passed query is true
      *
@@ -167,7 +210,7 @@ public class Personnel extends DomainObject<Personnel> {
      * The id of the personnel
      */
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long    id;
 
     /**
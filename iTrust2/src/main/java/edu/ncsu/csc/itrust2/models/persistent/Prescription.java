@@ -8,8 +8,8 @@ import javax.persistence.Basic;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
@@ -18,7 +18,6 @@ import javax.validation.constraints.NotNull;
 
 import com.google.gson.annotations.JsonAdapter;
 
-import org.hibernate.ObjectNotFoundException;
 import org.hibernate.criterion.Criterion;
 import org.springframework.data.jpa.convert.threeten.Jsr310JpaConverters.LocalDateConverter;
 
@@ -35,11 +34,12 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
  * @author Matt Dzwonczyk
  */
 @Entity
-@Table ( name = "Prescriptions" )
+@Table ( name = "Prescriptions", indexes = {
+        @Index ( name = "idx_prescriptions_patient", columnList = "patient_id" ) } )
 public class Prescription extends DomainObject<Prescription> {
 
     @Id
-    @GeneratedValue ( strategy = GenerationType.AUTO )
+    @GeneratedValue ( generator = ID_GENERATOR )
     private Long     id;
 
     @NotNull
@@ -267,12 +267,7 @@ public class Prescription extends DomainObject<Prescription> {
      * @return the matching prescription
      */
     public static Prescription getById ( final Long id ) {
-        try {
-            return getWhere( eqList( ID, id ) ).get( 0 );
-        }
-        catch ( final ObjectNotFoundException e ) {
-            return null;
-        }
+        return findById( Prescription.class, id ).orElse( null );
     }
 
     /**
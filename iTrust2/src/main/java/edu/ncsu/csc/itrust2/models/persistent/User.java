@@ -1,10 +1,13 @@
 package edu.ncsu.csc.itrust2.models.persistent;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Vector;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.TreeMap;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
@@ -13,6 +16,8 @@ import javax.persistence.Table;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -20,6 +25,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 import edu.ncsu.csc.itrust2.forms.admin.UserForm;
 import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.summary.UserSummary;
 
 /**
  * Basic class for a User in the system. This User class is a shared type that
@@ -29,11 +35,19 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
  * references the User object for that user. This allows the iTrust2 system to
  * keep only what information is needed for a particular type of user.
  *
+ * Users are looked up by username (usually that of whoever is logged in) many
+ * times over while serving a single request, so they are kept in the
+ * second-level cache for a short while (see ehcache.xml). Hibernate updates
+ * the cache itself whenever a User is saved or deleted; the time limit only
+ * matters for changes made outside of this application.
+ *
  * @author Kai Presler-Marshall
  *
  */
 @Entity
 @Table ( name = "Users" )
+@Cacheable
+@Cache ( usage = CacheConcurrencyStrategy.READ_WRITE )
 public class User extends DomainObject<User> implements Serializable {
 
     /**
@@ -56,19 +70,24 @@ public class User extends DomainObject<User> implements Serializable {
     }
 
     /**
-     * Get the user by the username
+     * Get the user by the username. Usernames are matched case-insensitively,
+     * as they are by the database, and the user returned always has the
+     * username as it is stored. The lookup is a query rather than a
+     * primary-key lookup, so that "Bob" and "bob" find the same user; its
+     * results are kept in the query cache (and the user in the second-level
+     * cache), so repeated lookups are still answered from memory whenever
+     * possible rather than by the database.
      *
      * @param name
      *            the username of the user
      * @return the corresponding user with this username
      */
     public static User getByName ( final String name ) {
-        try {
-            return getWhere( eqList( "username", name ) ).get( 0 );
-        }
-        catch ( final Exception e ) {
+        if ( null == name ) {
             return null;
         }
+        final List<User> users = getWhere( eqList( "username", name ) );
+        return users.isEmpty() ? null : users.get( 0 );
     }
 
     /**
@@ -81,17 +100,8 @@ public class User extends DomainObject<User> implements Serializable {
      * @return the user with this role and name
      */
     public static User getByNameAndRole ( final String name, final Role type ) {
-
-        final Vector<Criterion> criteria = new Vector<Criterion>();
-        criteria.add( eq( "username", name ) );
-        criteria.add( eq( "role", type ) );
-        try {
-            return getWhere( criteria ).get( 0 );
-        }
-        catch ( final Exception e ) {
-            return null;
-        }
-
+        final User user = getByName( name );
+        return null != user && user.getRole() == type ? user : null;
     }
 
     /**
@@ -128,6 +138,64 @@ public class User extends DomainObject<User> implements Serializable {
         return (List<User>) getWhere( User.class, where );
     }
 
+    /**
+     * Get a summary of every user in the database: their username, role and
+     * whether they are enabled, but not their password.
+     *
+     * @return summaries of all users in the database
+     */
+    public static List<UserSummary> getSummaries () {
+        return getSummaries( Collections.<Criterion> emptyList() );
+    }
+
+    /**
+     * Get a summary of every user with the passed role
+     *
+     * @param role
+     *            the role to get the users of
+     * @return summaries of the users with the passed role
+     */
+    public static List<UserSummary> getSummariesByRole ( final Role role ) {
+        return getSummaries( eqList( "role", role ) );
+    }
+
+    /**
+     * Get a summary of every user matching the Criterion provided
+     *
+     * @param where
+     *            List of Criterion to and together and search for records by
+     * @return summaries of the matching users
+     */
+    private static List<UserSummary> getSummaries ( final List<Criterion> where ) {
+        return getProjection( User.class, where,
+                row -> new UserSummary( (String) row[0], (Role) row[1], (Integer) row[2] ), "username", "role",
+                "enabled" );
+    }
+
+    /**
+     * Looks up the role of each of the users provided, all in one query. This
+     * is cheaper than calling {@link #getByName(String)} once per user when
+     * many users (ie, everyone appearing on a page of log entries) need their
+     * role displayed. Usernames are matched case-insensitively, as they are by
+     * the database.
+     *
+     * @param usernames
+     *            Names of the users to look up
+     * @return The role of every user found, by username. Users that do not
+     *         exist are left out.
+     */
+    public static Map<String, Role> getRoles ( final Collection<String> usernames ) {
+        final Map<String, Role> roles = new TreeMap<String, Role>( String.CASE_INSENSITIVE_ORDER );
+        if ( usernames.isEmpty() ) {
+            return roles;
+        }
+        for ( final Object[] row : getProjection( User.class, createCriterionList( in( "username", usernames ) ),
+                row -> row, "username", "role" ) ) {
+            roles.put( (String) row[0], (Role) row[1] );
+        }
+        return roles;
+    }
+
     /**
      * Get all users with the passed role
      *
@@ -364,13 +432,7 @@ public class User extends DomainObject<User> implements Serializable {
             patient.delete();
         }
         try {
-            @SuppressWarnings ( "unchecked" )
-            final List<PasswordResetToken> list = (List<PasswordResetToken>) DomainObject
-                    .getAll( PasswordResetToken.class ).stream()
-                    .filter( x -> ( (PasswordResetToken) x ).getUser().equals( this ) ).collect( Collectors.toList() );
-            for ( final PasswordResetToken t : list ) {
-                t.delete();
-            }
+            deleteWhere( PasswordResetToken.class, eqList( "user", this ) );
         }
         catch ( final Exception e ) {
             // ignore to allow a second attempt at deleting this object
@@ -0,0 +1,24 @@
+/**
+ * The persistent models of iTrust2: everything that is stored in the database
+ * through Hibernate.
+ *
+ * Every numeric ID is drawn from the shared hibernate_sequence table through
+ * the generator declared here. Rather than reading and updating the table for
+ * each new record, it reserves a block of increment_size IDs at a time and
+ * hands them out from memory (the pooled-lo optimizer), which is what allows
+ * INSERTs to be sent in JDBC batches. The stored value is always the first ID
+ * of the next unreserved block, so it stays compatible with the table as it
+ * was used by the previous one-ID-at-a-time generator.
+ *
+ * @author Kai Presler-Marshall
+ */
+@GenericGenerator ( name = DomainObject.ID_GENERATOR, strategy = "enhanced-sequence", parameters = {
+        @Parameter ( name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "hibernate_sequence" ),
+        @Parameter ( name = SequenceStyleGenerator.FORCE_TBL_PARAM, value = "true" ),
+        @Parameter ( name = SequenceStyleGenerator.INCREMENT_PARAM, value = "50" ),
+        @Parameter ( name = SequenceStyleGenerator.OPT_PARAM, value = "pooled-lo" ) } )
+package edu.ncsu.csc.itrust2.models.persistent;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
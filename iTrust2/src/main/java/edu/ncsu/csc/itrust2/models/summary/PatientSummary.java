@@ -0,0 +1,113 @@
+package edu.ncsu.csc.itrust2.models.summary;
+
+import java.time.LocalDate;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import edu.ncsu.csc.itrust2.adapters.LocalDateAdapter;
+
+/**
+ * The parts of a Patient that are needed to list or pick one: their name and
+ * username, plus their date of birth, which pages use to tell which
+ * age-dependent fields apply.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class PatientSummary {
+
+    /**
+     * The user this patient is
+     */
+    private final UserSummary self;
+
+    /**
+     * The first name of the patient
+     */
+    private final String      firstName;
+
+    /**
+     * The preferred name of the patient
+     */
+    private final String      preferredName;
+
+    /**
+     * The last name of the patient
+     */
+    private final String      lastName;
+
+    /**
+     * The date of birth of the patient
+     */
+    @JsonAdapter ( LocalDateAdapter.class )
+    private final LocalDate   dateOfBirth;
+
+    /**
+     * Creates a summary of a Patient
+     *
+     * @param username
+     *            The username of the patient
+     * @param firstName
+     *            The first name of the patient
+     * @param preferredName
+     *            The preferred name of the patient
+     * @param lastName
+     *            The last name of the patient
+     * @param dateOfBirth
+     *            The date of birth of the patient
+     */
+    public PatientSummary ( final String username, final String firstName, final String preferredName,
+            final String lastName, final LocalDate dateOfBirth ) {
+        this.self = new UserSummary( username );
+        this.firstName = firstName;
+        this.preferredName = preferredName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth;
+    }
+
+    /**
+     * Get the user this patient is
+     *
+     * @return the user
+     */
+    public UserSummary getSelf () {
+        return self;
+    }
+
+    /**
+     * Get the first name of the patient
+     *
+     * @return the first name
+     */
+    public String getFirstName () {
+        return firstName;
+    }
+
+    /**
+     * Get the preferred name of the patient
+     *
+     * @return the preferred name
+     */
+    public String getPreferredName () {
+        return preferredName;
+    }
+
+    /**
+     * Get the last name of the patient
+     *
+     * @return the last name
+     */
+    public String getLastName () {
+        return lastName;
+    }
+
+    /**
+     * Get the date of birth of the patient
+     *
+     * @return the date of birth
+     */
+    public LocalDate getDateOfBirth () {
+        return dateOfBirth;
+    }
+
+}
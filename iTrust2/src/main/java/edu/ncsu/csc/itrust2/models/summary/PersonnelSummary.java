@@ -0,0 +1,88 @@
+package edu.ncsu.csc.itrust2.models.summary;
+
+/**
+ * The parts of a Personnel that are needed to list or pick one: their name,
+ * username and specialty.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class PersonnelSummary {
+
+    /**
+     * The user this personnel is
+     */
+    private final UserSummary self;
+
+    /**
+     * The first name of the personnel
+     */
+    private final String      firstName;
+
+    /**
+     * The last name of the personnel
+     */
+    private final String      lastName;
+
+    /**
+     * The specialty of the personnel
+     */
+    private final String      specialty;
+
+    /**
+     * Creates a summary of a Personnel
+     *
+     * @param username
+     *            The username of the personnel
+     * @param firstName
+     *            The first name of the personnel
+     * @param lastName
+     *            The last name of the personnel
+     * @param specialty
+     *            The specialty of the personnel
+     */
+    public PersonnelSummary ( final String username, final String firstName, final String lastName,
+            final String specialty ) {
+        this.self = new UserSummary( username );
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.specialty = specialty;
+    }
+
+    /**
+     * Get the user this personnel is
+     *
+     * @return the user
+     */
+    public UserSummary getSelf () {
+        return self;
+    }
+
+    /**
+     * Get the first name of the personnel
+     *
+     * @return the first name
+     */
+    public String getFirstName () {
+        return firstName;
+    }
+
+    /**
+     * Get the last name of the personnel
+     *
+     * @return the last name
+     */
+    public String getLastName () {
+        return lastName;
+    }
+
+    /**
+     * Get the specialty of the personnel
+     *
+     * @return the specialty
+     */
+    public String getSpecialty () {
+        return specialty;
+    }
+
+}
@@ -0,0 +1,83 @@
+package edu.ncsu.csc.itrust2.models.summary;
+
+import edu.ncsu.csc.itrust2.models.enums.Role;
+
+/**
+ * The parts of a User that are needed to list or pick one: who they are and
+ * what they can do, but not their credentials.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class UserSummary {
+
+    /**
+     * The username of the user
+     */
+    private final String  username;
+
+    /**
+     * The role of the user; null when only referring to the user
+     */
+    private final Role    role;
+
+    /**
+     * Whether or not the user is enabled; null when only referring to the
+     * user
+     */
+    private final Integer enabled;
+
+    /**
+     * Creates a summary of a User
+     *
+     * @param username
+     *            The username of the user
+     * @param role
+     *            The role of the user
+     * @param enabled
+     *            Whether or not the user is enabled
+     */
+    public UserSummary ( final String username, final Role role, final Integer enabled ) {
+        this.username = username;
+        this.role = role;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Creates a reference to a User, ie for the `self` of a patient
+     *
+     * @param username
+     *            The username of the user
+     */
+    public UserSummary ( final String username ) {
+        this( username, null, null );
+    }
+
+    /**
+     * Get the username of the user
+     *
+     * @return the username
+     */
+    public String getUsername () {
+        return username;
+    }
+
+    /**
+     * Get the role of the user
+     *
+     * @return the role, or null if it was not retrieved
+     */
+    public Role getRole () {
+        return role;
+    }
+
+    /**
+     * Get whether or not the user is enabled
+     *
+     * @return 1 if enabled, 0 if not, or null if it was not retrieved
+     */
+    public Integer getEnabled () {
+        return enabled;
+    }
+
+}
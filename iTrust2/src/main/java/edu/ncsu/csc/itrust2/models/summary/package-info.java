@@ -0,0 +1,10 @@
+/**
+ * Lightweight, read-only views of the persistent models of iTrust2. These are
+ * filled in with just a few of the columns of a record (see
+ * DomainObject.getProjection) and are what the list endpoints hand out, so
+ * that a list of patients does not come with every patient's
+ * representatives, or a list of users with every user's password hash.
+ *
+ * @author Kai Presler-Marshall
+ */
+package edu.ncsu.csc.itrust2.models.summary;
@@ -0,0 +1,820 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
+
+/**
+ * Moves old log entries out of the database and into compressed files, one
+ * per month, so that the LogEntries table only holds recent ("hot") entries.
+ * Entries have to be kept for years, but nearly every search is for the last
+ * few months, so this keeps the table (and its indexes) small without losing
+ * anything. {@link LogEntry} only reads the archive for searches that ask for
+ * entries from before the end of it; the default view (no start date) is just
+ * the hot entries.
+ *
+ * Each month is archived as a whole, once all of it is older than the hot
+ * retention window. The month's entries are written to
+ * `LogEntries-yyyy-MM.ndjson.gz` (one JSON object per line, gzipped), which is
+ * forced to disk and moved into place before the entries are deleted from the
+ * database, so a crash part of the way through never loses anything. If it
+ * leaves entries both in a file and in the table they are archived again (not
+ * duplicated) on the next pass, and are only returned once by searches in the
+ * meantime. Next to each file, `LogEntries-yyyy-MM.counts.json` records how
+ * many of the month's entries each user has, so that searches can count (and
+ * skip over) archived months without reading them.
+ *
+ * The archiver runs in the background in the web application (it is started
+ * and stopped by ContextListener), on every server. Only one server archives
+ * at a time: each pass holds a database lock, and a server that finds it taken
+ * skips the pass. As the entries are deleted from the shared database once
+ * archived, the archive directory has to be shared storage (ie, a network
+ * file system mounted at the same place on every server) when there is more
+ * than one server; otherwise set `audit.archive` to false on all but one of
+ * them, and only that one will be able to search the archive. Each server
+ * lists the directory again every minute to pick up months archived by the
+ * others. Settings, all in db.properties:
+ *
+ * `audit.archive` - whether to archive at all (default true).
+ *
+ * `audit.archiveDir` - where the archive files are kept (default
+ * audit-archive in the working directory). Shared storage if there is more
+ * than one server; see above.
+ *
+ * `audit.hotRetentionDays` - how long entries are kept in the database
+ * (default 90). As whole months are archived, entries stay there for up to a
+ * month longer than this.
+ *
+ * `audit.archiveIntervalMinutes` - how often to look for months to archive
+ * (default 60).
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogArchive {
+
+    /** Start of the name of every archive file */
+    static private final String             PREFIX    = "LogEntries-";
+
+    /** End of the name of every archive file */
+    static private final String             SUFFIX    = ".ndjson.gz";
+
+    /** End of the name of the file with a month's counts per user */
+    static private final String             COUNTS    = ".counts.json";
+
+    /** Name of the database lock held while archiving */
+    static private final String             DB_LOCK   = "iTrust2.AuditLogArchive";
+
+    /** How often (ms) the archive directory is listed again */
+    static private final long               LISTING   = TimeUnit.MINUTES.toMillis( 1 );
+
+    /** Number of entries read from the database at once while archiving */
+    static private final int                PAGE_SIZE = 1000;
+
+    /** Months are measured in the server's time zone */
+    static private final ZoneId             ZONE      = ZoneId.systemDefault();
+
+    /** Serializes log entries in the archive files */
+    static private final Gson               gson      = new Gson();
+
+    /** Guards publishing an archived month and listing the directory */
+    static private final Object             lock      = new Object();
+
+    /** Where the archive files are kept */
+    static private volatile File            directory = new File(
+            DBUtil.getAuditSetting( "archiveDir", "audit-archive" ) );
+
+    /** The months that have been archived; read from the directory when first needed */
+    static private volatile NavigableSet<YearMonth> months;
+
+    /** When the archive directory was last listed */
+    static private volatile long            listed;
+
+    /** Counts per user of the months that have been read, by month */
+    static private final Map<YearMonth, Counts> counts = new ConcurrentHashMap<YearMonth, Counts>();
+
+    /** Runs the archiver in the background, or null if it is not running */
+    static private ScheduledExecutorService archiver;
+
+    /**
+     * Starts archiving old log entries in the background, with the settings
+     * from db.properties. Does nothing if `audit.archive` is false there, or
+     * if the archiver is already running.
+     */
+    static synchronized public void start () {
+        if ( !Boolean.parseBoolean( DBUtil.getAuditSetting( "archive", "true" ) ) ) {
+            return;
+        }
+        start( directory, DBUtil.getAuditSetting( "hotRetentionDays", 90 ),
+                DBUtil.getAuditSetting( "archiveIntervalMinutes", 60 ) );
+    }
+
+    /**
+     * Starts archiving old log entries in the background. The first pass is
+     * made a minute after starting, so as not to slow down startup. Does
+     * nothing if the archiver is already running.
+     *
+     * @param dir
+     *            Where to keep the archive files
+     * @param hotRetentionDays
+     *            How many days entries are kept in the database
+     * @param intervalMinutes
+     *            How often to look for months to archive
+     */
+    static synchronized public void start ( final File dir, final int hotRetentionDays,
+            final long intervalMinutes ) {
+        if ( hotRetentionDays < 0 || intervalMinutes < 1 ) {
+            throw new IllegalArgumentException( "Retention cannot be negative, and the interval must be positive" );
+        }
+        if ( null != archiver ) {
+            return;
+        }
+        setDirectory( dir );
+        archiver = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-audit-archiver" );
+            t.setDaemon( true );
+            return t;
+        } );
+        archiver.scheduleWithFixedDelay( () -> {
+            try {
+                archive( hotRetentionDays );
+            }
+            catch ( final RuntimeException e ) {
+                // Try again next time; nothing is deleted unless archived
+                e.printStackTrace( System.out );
+            }
+        }, 1, intervalMinutes, TimeUnit.MINUTES );
+    }
+
+    /**
+     * Stops the background archiver, letting it finish the month it is
+     * working on (if any)
+     */
+    static synchronized public void stop () {
+        if ( null == archiver ) {
+            return;
+        }
+        archiver.shutdown();
+        try {
+            archiver.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        archiver = null;
+    }
+
+    /**
+     * Changes where archive files are kept (and read from)
+     *
+     * @param dir
+     *            The directory to use
+     */
+    static public void setDirectory ( final File dir ) {
+        synchronized ( lock ) {
+            directory = dir;
+            months = null;
+            counts.clear();
+        }
+    }
+
+    /**
+     * Retrieves where archive files are kept
+     *
+     * @return The archive directory
+     */
+    static public File getDirectory () {
+        return directory;
+    }
+
+    /**
+     * Archives every month whose entries are all older than the hot retention
+     * window
+     *
+     * @param hotRetentionDays
+     *            How many days entries are kept in the database
+     * @return The number of entries archived
+     */
+    static public int archive ( final int hotRetentionDays ) {
+        return archiveBefore( ZonedDateTime.now( ZONE ).minusDays( hotRetentionDays ) );
+    }
+
+    /**
+     * Archives every month that ended before the time given, oldest first.
+     * Does nothing if another server is archiving already.
+     *
+     * @param time
+     *            Only months that ended before this are archived
+     * @return The number of entries archived
+     */
+    static public int archiveBefore ( final ZonedDateTime time ) {
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            if ( !lock( conn ) ) {
+                return 0;
+            }
+            try {
+                return archiveLocked( time );
+            }
+            finally {
+                unlock( conn );
+            }
+        }
+        catch ( final SQLException e ) {
+            throw new IllegalStateException( "Could not take the archiving lock", e );
+        }
+    }
+
+    /**
+     * Archives every month that ended before the time given, once this server
+     * holds the archiving lock
+     *
+     * @param time
+     *            Only months that ended before this are archived
+     * @return The number of entries archived
+     */
+    static private int archiveLocked ( final ZonedDateTime time ) {
+        final ZonedDateTime cutoff = start( YearMonth.from( time.withZoneSameInstant( ZONE ) ) );
+        int archived = 0;
+        YearMonth previous = null;
+        while ( true ) {
+            final List<LogEntry> oldest = LogEntry
+                    .getStoredPage( null, cutoff, new PageRequest( "time", true, 1 ) ).getItems();
+            if ( oldest.isEmpty() ) {
+                return archived;
+            }
+            final YearMonth month = YearMonth.from( oldest.get( 0 ).getTime().withZoneSameInstant( ZONE ) );
+            // A replica that has not caught up yet may still show entries
+            // that were just moved; they are left for the next pass
+            if ( null != previous && !month.isAfter( previous ) ) {
+                return archived;
+            }
+            archived += archiveMonth( month );
+            previous = month;
+        }
+    }
+
+    /**
+     * Whether any of the entries between the times given might be archived
+     *
+     * @param start
+     *            Earliest time to check, or null for no lower bound
+     * @param end
+     *            Latest time to check, or null for no upper bound
+     * @return True if some month in the range has been archived
+     */
+    static public boolean isArchived ( final ZonedDateTime start, final ZonedDateTime end ) {
+        return !archivedMonths( start, end ).isEmpty();
+    }
+
+    /**
+     * Finds the archived months that overlap the range given
+     *
+     * @param start
+     *            Earliest time to check, or null for no lower bound
+     * @param end
+     *            Latest time to check, or null for no upper bound
+     * @return The months, oldest first
+     */
+    static public NavigableSet<YearMonth> getMonths ( final ZonedDateTime start, final ZonedDateTime end ) {
+        return Collections.unmodifiableNavigableSet( archivedMonths( start, end ) );
+    }
+
+    /**
+     * Retrieves the end of the newest month that has been archived. Entries
+     * from after this are all still in the database.
+     *
+     * @return The start of the month after the newest one archived, or null
+     *         if nothing has been archived
+     */
+    static public ZonedDateTime getArchivedUntil () {
+        final NavigableSet<YearMonth> archived = months();
+        return archived.isEmpty() ? null : start( archived.last().plusMonths( 1 ) );
+    }
+
+    /**
+     * Reads the archived entries between the times given that match the
+     * filter provided. Only the files for the months in the range are read.
+     *
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param filter
+     *            Which entries to include
+     * @return The matching entries, oldest month first
+     */
+    static public List<LogEntry> read ( final ZonedDateTime start, final ZonedDateTime end,
+            final Predicate<LogEntry> filter ) {
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        forEach( start, end, filter, entries::add );
+        return entries;
+    }
+
+    /**
+     * Reads the archived entries from a single month that match the filter
+     * provided
+     *
+     * @param month
+     *            The month to read
+     * @param filter
+     *            Which entries to include
+     * @return The matching entries, in no particular order; none if the month
+     *         has not been archived
+     */
+    static public List<LogEntry> read ( final YearMonth month, final Predicate<LogEntry> filter ) {
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        if ( months().contains( month ) ) {
+            try {
+                read( file( month ), entry -> {
+                    if ( filter.test( entry ) ) {
+                        entries.add( entry );
+                    }
+                } );
+            }
+            catch ( final IOException e ) {
+                throw new IllegalStateException( "Could not read archived log entries from " + file( month ), e );
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Counts a user's archived entries from a single month, without reading
+     * them, from the counts recorded when the month was archived
+     *
+     * @param month
+     *            The month to count
+     * @param user
+     *            The user to count the entries of, as either the primary or
+     *            secondary user
+     * @param patientViewableOnly
+     *            Whether to only count the types of events that a patient is
+     *            allowed to see
+     * @return The number of entries, or null if the counts are missing or out
+     *         of date (ie, if archiving the month was cut short), in which
+     *         case the entries have to be read and counted instead
+     */
+    static public Long count ( final YearMonth month, final String user, final boolean patientViewableOnly ) {
+        if ( !months().contains( month ) ) {
+            return 0L;
+        }
+        final File file = file( month );
+        Counts known = counts.get( month );
+        if ( null == known || !known.isFor( file ) ) {
+            known = readCounts( month );
+            if ( null == known || !known.isFor( file ) ) {
+                return null;
+            }
+            counts.put( month, known );
+        }
+        final long[] users = known.users.get( key( user ) );
+        return null == users ? 0L : users[patientViewableOnly ? 1 : 0];
+    }
+
+    /**
+     * Retrieves the month a time falls in, in the server's time zone
+     *
+     * @param time
+     *            The time
+     * @return Its month
+     */
+    static public YearMonth getMonth ( final ZonedDateTime time ) {
+        return YearMonth.from( time.withZoneSameInstant( ZONE ) );
+    }
+
+    /**
+     * Retrieves the time a month starts, in the server's time zone
+     *
+     * @param month
+     *            The month
+     * @return Its first instant
+     */
+    static public ZonedDateTime getStart ( final YearMonth month ) {
+        return start( month );
+    }
+
+    /**
+     * Performs an action on each of the archived entries between the times
+     * given that match the filter provided, reading them one at a time rather
+     * than all at once. Only the files for the months in the range are read.
+     *
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Latest time to include, or null for no upper bound
+     * @param filter
+     *            Which entries to include
+     * @param action
+     *            What to do with each entry, oldest month first
+     */
+    static public void forEach ( final ZonedDateTime start, final ZonedDateTime end,
+            final Predicate<LogEntry> filter, final Consumer<LogEntry> action ) {
+        for ( final YearMonth month : archivedMonths( start, end ) ) {
+            try {
+                read( file( month ), entry -> {
+                    if ( ( null == start || !entry.getTime().isBefore( start ) )
+                            && ( null == end || !entry.getTime().isAfter( end ) ) && filter.test( entry ) ) {
+                        action.accept( entry );
+                    }
+                } );
+            }
+            catch ( final IOException e ) {
+                throw new IllegalStateException( "Could not read archived log entries from " + file( month ), e );
+            }
+        }
+    }
+
+    /**
+     * Moves a month's entries from the database into its archive file,
+     * merging them with whatever is already in the file
+     *
+     * @param month
+     *            The month to archive
+     * @return The number of entries moved
+     */
+    static private int archiveMonth ( final YearMonth month ) {
+        final File target = file( month );
+        final File temp = new File( target.getPath() + ".tmp" );
+        final List<Long> moved = new ArrayList<Long>();
+        final Map<String, long[]> users = new HashMap<String, long[]>();
+        try {
+            Files.createDirectories( directory.toPath() );
+            try ( FileOutputStream out = new FileOutputStream( temp ) ) {
+                final GZIPOutputStream gzip = new GZIPOutputStream( out );
+                final Writer writer = new BufferedWriter( new OutputStreamWriter( gzip, StandardCharsets.UTF_8 ) );
+
+                // Anything archived before (ie, by a pass that was cut
+                // short) is kept, and not written twice
+                final Set<Long> written = new HashSet<Long>();
+                if ( target.exists() ) {
+                    read( target, entry -> {
+                        if ( written.add( entry.getId() ) ) {
+                            write( writer, entry );
+                            count( users, entry );
+                        }
+                    } );
+                }
+
+                final PageRequest request = new PageRequest( "time", true, PAGE_SIZE );
+                Page<LogEntry> page;
+                do {
+                    page = LogEntry.getStoredPage( start( month ), start( month.plusMonths( 1 ) ), request );
+                    for ( final LogEntry entry : page.getItems() ) {
+                        moved.add( entry.getId() );
+                        if ( written.add( entry.getId() ) ) {
+                            write( writer, entry );
+                            count( users, entry );
+                        }
+                    }
+                    request.setCursor( page.getNextCursor() );
+                }
+                while ( page.hasMore() );
+
+                writer.flush();
+                gzip.finish();
+                out.getFD().sync();
+            }
+        }
+        catch ( final IOException e ) {
+            temp.delete();
+            throw new IllegalStateException( "Could not archive log entries to " + target, e );
+        }
+
+        // The file is built without the lock, so that searches listing the
+        // archive are not held up by a pass; it is only taken to publish it
+        synchronized ( lock ) {
+            try {
+                Files.move( temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING );
+            }
+            catch ( final IOException e ) {
+                temp.delete();
+                throw new IllegalStateException( "Could not archive log entries to " + target, e );
+            }
+            months().add( month );
+            writeCounts( month, users, target );
+        }
+
+        // Only now that they are safely on disk
+        LogEntry.deleteStored( moved );
+        return moved.size();
+    }
+
+    /**
+     * Writes a single entry to an archive file
+     *
+     * @param writer
+     *            Where to write it
+     * @param entry
+     *            The entry to write
+     */
+    static private void write ( final Writer writer, final LogEntry entry ) {
+        try {
+            writer.write( gson.toJson( entry ) );
+            writer.write( '\n' );
+        }
+        catch ( final IOException e ) {
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Counts an entry towards its users' totals for the month
+     *
+     * @param users
+     *            The totals for each user: all entries, then patient-viewable
+     *            ones
+     * @param entry
+     *            The entry to count
+     */
+    static private void count ( final Map<String, long[]> users, final LogEntry entry ) {
+        final Set<String> keys = new HashSet<String>();
+        keys.add( key( entry.getPrimaryUser() ) );
+        if ( null != entry.getSecondaryUser() ) {
+            keys.add( key( entry.getSecondaryUser() ) );
+        }
+        for ( final String key : keys ) {
+            final long[] totals = users.computeIfAbsent( key, k -> new long[2] );
+            totals[0]++;
+            if ( entry.getLogCode().isPatientViewable() ) {
+                totals[1]++;
+            }
+        }
+    }
+
+    /**
+     * Records a month's counts per user next to its archive file. If they
+     * cannot be written, searches read the month and count it instead.
+     *
+     * @param month
+     *            The month
+     * @param users
+     *            The totals for each user
+     * @param archive
+     *            The archive file that was counted
+     */
+    static private void writeCounts ( final YearMonth month, final Map<String, long[]> users, final File archive ) {
+        final Counts written = new Counts();
+        written.size = archive.length();
+        written.modified = archive.lastModified();
+        written.users = users;
+        final File target = new File( directory, PREFIX + month + COUNTS );
+        final File temp = new File( target.getPath() + ".tmp" );
+        try {
+            try ( Writer writer = new OutputStreamWriter( new FileOutputStream( temp ), StandardCharsets.UTF_8 ) ) {
+                gson.toJson( written, writer );
+            }
+            Files.move( temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING );
+            counts.put( month, written );
+        }
+        catch ( final IOException e ) {
+            temp.delete();
+            System.out.println( "Could not write the counts for archived log entries to " + target );
+        }
+    }
+
+    /**
+     * Reads a month's counts per user
+     *
+     * @param month
+     *            The month
+     * @return The counts, or null if there are none (or they cannot be read)
+     */
+    static private Counts readCounts ( final YearMonth month ) {
+        final File file = new File( directory, PREFIX + month + COUNTS );
+        if ( !file.exists() ) {
+            return null;
+        }
+        try ( BufferedReader reader = new BufferedReader(
+                new InputStreamReader( new FileInputStream( file ), StandardCharsets.UTF_8 ) ) ) {
+            final Counts read = gson.fromJson( reader, Counts.class );
+            return null == read || null == read.users ? null : read;
+        }
+        catch ( final IOException | JsonParseException e ) {
+            return null;
+        }
+    }
+
+    /**
+     * The key a user's counts are kept under; usernames are matched ignoring
+     * case, as they are in the database
+     *
+     * @param user
+     *            The username
+     * @return Its key
+     */
+    static private String key ( final String user ) {
+        return user.toLowerCase( Locale.ROOT );
+    }
+
+    /**
+     * Reads every entry in an archive file
+     *
+     * @param file
+     *            The file to read
+     * @param action
+     *            What to do with each entry
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    static private void read ( final File file, final Consumer<LogEntry> action ) throws IOException {
+        try ( BufferedReader reader = new BufferedReader( new InputStreamReader(
+                new GZIPInputStream( new FileInputStream( file ) ), StandardCharsets.UTF_8 ) ) ) {
+            for ( String line; null != ( line = reader.readLine() ); ) {
+                try {
+                    if ( !line.trim().isEmpty() ) {
+                        action.accept( gson.fromJson( line, LogEntry.class ) );
+                    }
+                }
+                catch ( final JsonParseException e ) {
+                    System.out.println( "Skipping unreadable archived log entry: " + line );
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the archived months that overlap the range given
+     *
+     * @param start
+     *            Earliest time to check, or null for no lower bound
+     * @param end
+     *            Latest time to check, or null for no upper bound
+     * @return The months, oldest first
+     */
+    static private NavigableSet<YearMonth> archivedMonths ( final ZonedDateTime start, final ZonedDateTime end ) {
+        NavigableSet<YearMonth> archived = months();
+        if ( null != start && null != end && start.isAfter( end ) ) {
+            return Collections.emptyNavigableSet();
+        }
+        if ( null != start ) {
+            archived = archived.tailSet( YearMonth.from( start.withZoneSameInstant( ZONE ) ), true );
+        }
+        if ( null != end ) {
+            archived = archived.headSet( YearMonth.from( end.withZoneSameInstant( ZONE ) ), true );
+        }
+        return archived;
+    }
+
+    /**
+     * Retrieves the months that have been archived, listing the archive
+     * directory the first time and then every so often, in case another
+     * server has archived more
+     *
+     * @return The archived months
+     */
+    static private NavigableSet<YearMonth> months () {
+        NavigableSet<YearMonth> archived = months;
+        if ( null != archived && System.currentTimeMillis() - listed < LISTING ) {
+            return archived;
+        }
+        synchronized ( lock ) {
+            if ( null == months || System.currentTimeMillis() - listed >= LISTING ) {
+                archived = new ConcurrentSkipListSet<YearMonth>();
+                final File[] files = directory.listFiles();
+                for ( final File file : null == files ? new File[0] : files ) {
+                    final String name = file.getName();
+                    if ( name.startsWith( PREFIX ) && name.endsWith( SUFFIX ) ) {
+                        try {
+                            archived.add( YearMonth
+                                    .parse( name.substring( PREFIX.length(), name.length() - SUFFIX.length() ) ) );
+                        }
+                        catch ( final DateTimeParseException e ) {
+                            // Not one of ours
+                        }
+                    }
+                }
+                months = archived;
+                listed = System.currentTimeMillis();
+            }
+            return months;
+        }
+    }
+
+    /**
+     * Takes the archiving lock, if no other server has it
+     *
+     * @param conn
+     *            Connection to hold the lock on
+     * @return True if the lock was taken
+     * @throws SQLException
+     *             If the lock cannot be asked for
+     */
+    static private boolean lock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement stmt = conn.prepareStatement( "SELECT GET_LOCK(?, 0)" ) ) {
+            stmt.setString( 1, DB_LOCK );
+            try ( final ResultSet rs = stmt.executeQuery() ) {
+                return rs.next() && rs.getInt( 1 ) == 1;
+            }
+        }
+    }
+
+    /**
+     * Releases the archiving lock
+     *
+     * @param conn
+     *            Connection holding the lock
+     * @throws SQLException
+     *             If the lock cannot be released
+     */
+    static private void unlock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement stmt = conn.prepareStatement( "SELECT RELEASE_LOCK(?)" ) ) {
+            stmt.setString( 1, DB_LOCK );
+            stmt.executeQuery().close();
+        }
+    }
+
+    /**
+     * The archive file for a month
+     *
+     * @param month
+     *            The month
+     * @return Where its entries are archived
+     */
+    static private File file ( final YearMonth month ) {
+        return new File( directory, PREFIX + month + SUFFIX );
+    }
+
+    /**
+     * The time a month starts, in the server's time zone
+     *
+     * @param month
+     *            The month
+     * @return Its first instant
+     */
+    static private ZonedDateTime start ( final YearMonth month ) {
+        return month.atDay( 1 ).atStartOfDay( ZONE );
+    }
+
+    /**
+     * A month's counts per user, as recorded next to its archive file
+     */
+    static private class Counts {
+
+        /** Size of the archive file the counts are for */
+        long                size;
+
+        /** When the archive file the counts are for was written */
+        long                modified;
+
+        /** All entries, then patient-viewable ones, for each user */
+        Map<String, long[]> users;
+
+        /**
+         * Whether these are the counts for the archive file as it is now,
+         * rather than left over from before it was archived again
+         *
+         * @param archive
+         *            The archive file
+         * @return True if the counts can be used
+         */
+        boolean isFor ( final File archive ) {
+            return size == archive.length() && modified == archive.lastModified();
+        }
+
+    }
+
+}
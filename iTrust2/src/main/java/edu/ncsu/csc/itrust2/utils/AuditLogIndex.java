@@ -0,0 +1,1079 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+
+/**
+ * An in-memory inverted index over the log entries, so that investigators can
+ * search the text of every log entry (its users and its message, ie "Fetched
+ * Emergency Record for user X") without the database reading all of them.
+ * The index maps each word to the log entries it appears in (and where in
+ * them), along with the time and type of each log entry so that searches can
+ * be narrowed down by these too. Only the IDs of the matches are kept; the
+ * log entries on the page asked for are then read from the database (or the
+ * archive, see {@link AuditLogArchive}).
+ *
+ * Searches are made up of words (ie `emergency`), prefixes (`emerg*`) and
+ * phrases (`"emergency record"`), all of which must match. Words are compared
+ * ignoring case, and anything that is not a letter or a digit separates words
+ * (so `patient_1` is the phrase `"patient 1"`).
+ *
+ * Log entries are added to the index as they are saved on this server (see
+ * {@link AuditLogWriter}). The index is built from the database (and archive)
+ * the first time it is needed. In the web application, it also catches up on
+ * the log entries saved to the database by other servers every so often, and
+ * is saved to disk every so often and when the application stops, and loaded
+ * from there when it starts again, catching up on whatever was saved in the
+ * meantime.
+ *
+ * A catch-up reads the log entries with an ID above (or a little below, as
+ * each server hands out IDs from a block of its own) the highest one it read
+ * last time, or logged from a minute before the last catch-up onwards. So a
+ * log entry saved by another server is found by searches within one catch-up
+ * interval, as long as it was saved within a minute of being logged, or its ID
+ * is no more than a thousand below the highest one already read. One that is
+ * neither (ie, replayed from another server's spill file long after a database
+ * outage, with an old ID block) is only found once the index is rebuilt.
+ * Log entries that are deleted stay in the index, but are left out when a page
+ * of results is read (so the total may count a few too many).
+ *
+ * Settings, all in db.properties:
+ *
+ * `audit.index` - whether to save the index to disk (default true).
+ *
+ * `audit.indexDir` - where the index is saved (default audit-index in the
+ * working directory). If the database is replaced, delete this directory, or
+ * the index may be loaded for the wrong log entries.
+ *
+ * `audit.indexSnapshotMinutes` - how often the index is saved, if it has
+ * changed (default 15).
+ *
+ * `audit.indexCatchUpSeconds` - how often the index catches up on log entries
+ * saved by other servers (default 60).
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogIndex {
+
+    /** Name of the file the index is saved in */
+    static private final String                FILE            = "LogEntryIndex.bin.gz";
+
+    /** Start of every index file; changes if the format does */
+    static private final int                   MAGIC           = 0x4c454931;
+
+    /** Positions skipped between fields, so that phrases never span two */
+    static private final int                   FIELD_GAP       = 1000;
+
+    /**
+     * How long before the index was saved to look for log entries it may have
+     * missed (ie, ones that were still being written at the time)
+     */
+    static private final long                  CATCH_UP_MILLIS = TimeUnit.MINUTES.toMillis( 10 );
+
+    /**
+     * How long before the last periodic catch-up to look for log entries it
+     * may have missed (ie, ones that were still queued to be written); shorter
+     * than when the index is loaded, as this is read again every catch-up
+     */
+    static private final long                  RECENT_MILLIS   = TimeUnit.MINUTES.toMillis( 1 );
+
+    /**
+     * How far below the highest ID read by the last catch-up to look for log
+     * entries it may have missed (ie, ones given an ID from an older block by
+     * another server)
+     */
+    static private final long                  CATCH_UP_IDS    = 1000;
+
+    /** Times are converted in the server's time zone */
+    static private final ZoneId                ZONE            = ZoneId.systemDefault();
+
+    /** Separates the words of a field */
+    static private final Pattern               SEPARATORS      = Pattern.compile( "[^\\p{L}\\p{N}]+" );
+
+    /** A quoted phrase, or anything else up to the next space */
+    static private final Pattern               CLAUSES         = Pattern.compile( "\"([^\"]*)\"?|([^\\s\"]+)" );
+
+    /** Makes sure the index is only loaded or saved by one thread at a time */
+    static private final Object                lock            = new Object();
+
+    /** Where the index is saved */
+    static private volatile File               directory       = new File(
+            DBUtil.getAuditSetting( "indexDir", "audit-index" ) );
+
+    /** Whether the index is loaded from disk, rather than always built */
+    static private volatile boolean            persistent;
+
+    /** The index in use; null until it is first needed */
+    static private volatile AuditLogIndex      current;
+
+    /** Saves the index in the background, or null if it is not running */
+    static private ScheduledExecutorService    indexer;
+
+    /** Guards everything below */
+    private final ReadWriteLock                rwLock          = new ReentrantReadWriteLock();
+
+    /** Position of each log entry in the arrays below, by ID */
+    private final Map<Long, Integer>           ordinals        = new HashMap<Long, Integer>();
+
+    /** ID of each log entry */
+    private long[]                             ids             = new long[1024];
+
+    /** Time of each log entry, in milliseconds */
+    private long[]                             times           = new long[1024];
+
+    /** Code of the TransactionType of each log entry */
+    private int[]                              codes           = new int[1024];
+
+    /** Number of log entries in the index */
+    private int                                size;
+
+    /** Where each word appears, in alphabetical order of the words */
+    private final NavigableMap<String, Postings> terms         = new TreeMap<String, Postings>();
+
+    /** Highest log entry ID in the index */
+    private long                               maxId;
+
+    /** When the index was saved (for one that was loaded from disk) */
+    private long                               savedAt;
+
+    /** Highest log entry ID read from the database by the last catch-up */
+    private long                               caughtUpId;
+
+    /** When the last catch-up started, in milliseconds */
+    private long                               caughtUpAt;
+
+    /** Set when log entries are added, cleared when the index is saved */
+    private volatile boolean                   changed;
+
+    /**
+     * Starts saving the index to disk in the background, with the settings
+     * from db.properties. Does nothing if `audit.index` is false there, or if
+     * this is already running.
+     */
+    static synchronized public void start () {
+        if ( !Boolean.parseBoolean( DBUtil.getAuditSetting( "index", "true" ) ) ) {
+            return;
+        }
+        start( directory, DBUtil.getAuditSetting( "indexSnapshotMinutes", 15 ),
+                DBUtil.getAuditSetting( "indexCatchUpSeconds", 60 ) );
+    }
+
+    /**
+     * Starts saving the index to disk, and catching up on log entries saved
+     * by other servers, in the background. The index is loaded (or built)
+     * straight away, in the background so as not to slow down startup;
+     * searches made in the meantime wait for it. Does nothing if this is
+     * already running.
+     *
+     * @param dir
+     *            Where to save the index
+     * @param snapshotMinutes
+     *            How often to save the index
+     * @param catchUpSeconds
+     *            How often to catch up on log entries saved by other servers
+     */
+    static synchronized public void start ( final File dir, final long snapshotMinutes,
+            final long catchUpSeconds ) {
+        if ( snapshotMinutes < 1 || catchUpSeconds < 1 ) {
+            throw new IllegalArgumentException( "The snapshot and catch-up intervals must be positive" );
+        }
+        if ( null != indexer ) {
+            return;
+        }
+        setDirectory( dir );
+        persistent = true;
+        indexer = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-audit-indexer" );
+            t.setDaemon( true );
+            return t;
+        } );
+        indexer.execute( () -> {
+            try {
+                index();
+            }
+            catch ( final RuntimeException e ) {
+                // Tried again by the first search
+                e.printStackTrace( System.out );
+            }
+        } );
+        indexer.scheduleWithFixedDelay( () -> {
+            try {
+                catchUp();
+            }
+            catch ( final RuntimeException e ) {
+                // Whatever was missed is read next time
+                e.printStackTrace( System.out );
+            }
+        }, catchUpSeconds, catchUpSeconds, TimeUnit.SECONDS );
+        indexer.scheduleWithFixedDelay( () -> {
+            try {
+                snapshot();
+            }
+            catch ( final RuntimeException e ) {
+                e.printStackTrace( System.out );
+            }
+        }, snapshotMinutes, snapshotMinutes, TimeUnit.MINUTES );
+    }
+
+    /**
+     * Stops saving the index in the background, and saves it one last time
+     */
+    static synchronized public void stop () {
+        if ( null == indexer ) {
+            return;
+        }
+        indexer.shutdown();
+        try {
+            indexer.awaitTermination( 1, TimeUnit.MINUTES );
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        indexer = null;
+        try {
+            snapshot();
+        }
+        catch ( final RuntimeException e ) {
+            // Caught up on from the database next time
+            e.printStackTrace( System.out );
+        }
+        persistent = false;
+    }
+
+    /**
+     * Changes where the index is saved (and loaded from)
+     *
+     * @param dir
+     *            The directory to use
+     */
+    static public void setDirectory ( final File dir ) {
+        directory = dir;
+    }
+
+    /**
+     * Retrieves where the index is saved
+     *
+     * @return The index directory
+     */
+    static public File getDirectory () {
+        return directory;
+    }
+
+    /**
+     * Adds log entries that have just been saved to the index. Does nothing if
+     * the index has not been built yet, as it will read them from the database
+     * when it is.
+     *
+     * @param entries
+     *            The log entries to add
+     */
+    static public void add ( final Collection<LogEntry> entries ) {
+        final AuditLogIndex index = current;
+        if ( null != index ) {
+            for ( final LogEntry entry : entries ) {
+                index.add( entry );
+            }
+        }
+    }
+
+    /**
+     * Searches the log entries, newest first
+     *
+     * @param query
+     *            What to search for: words, prefixes (ending in `*`) and
+     *            phrases (in quotes), all of which must match
+     * @param start
+     *            Earliest time to include, or null for no lower bound
+     * @param end
+     *            Time to stop at (exclusive), or null for no upper bound
+     * @param code
+     *            Type of log entries to include, or null for all of them
+     * @param offset
+     *            Number of matches to skip
+     * @param limit
+     *            Most matches to return
+     * @return The matching log entries, and how many there are in total
+     * @throws IllegalArgumentException
+     *             If there is nothing to search for, or the offset or limit
+     *             are out of range
+     */
+    static public Hits search ( final String query, final ZonedDateTime start, final ZonedDateTime end,
+            final TransactionType code, final int offset, final int limit ) {
+        if ( offset < 0 || limit < 1 || limit > Integer.MAX_VALUE - offset ) {
+            throw new IllegalArgumentException( "Offset cannot be negative, and the limit must be positive" );
+        }
+        final List<Clause> clauses = parse( query );
+        final long from = null == start ? Long.MIN_VALUE : start.toInstant().toEpochMilli();
+        final long to = null == end ? Long.MAX_VALUE : end.toInstant().toEpochMilli();
+        final Matches matches = index().find( clauses, from, to, code, offset, limit );
+        if ( matches.ids.isEmpty() ) {
+            return new Hits( new ArrayList<LogEntry>(), matches.total );
+        }
+
+        // Each log entry is checked again, in case it is not the one that was
+        // indexed (ie, if the database has been replaced since)
+        final Map<Long, LogEntry> found = new HashMap<Long, LogEntry>();
+        for ( final LogEntry entry : LogEntry.getByIds( matches.ids, time( matches.earliest ),
+                time( matches.latest ) ) ) {
+            final long time = entry.getTime().toInstant().toEpochMilli();
+            if ( time >= from && time < to && ( null == code || code == entry.getLogCode() )
+                    && matches( clauses, entry ) ) {
+                found.put( entry.getId(), entry );
+            }
+        }
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        for ( final Long id : matches.ids ) {
+            final LogEntry entry = found.get( id );
+            if ( null != entry ) {
+                entries.add( entry );
+            }
+        }
+        return new Hits( entries, matches.total );
+    }
+
+    /**
+     * Saves the index to disk, if it has changed since it was last saved. It
+     * is copied first, so that log entries can still be added while it is
+     * being written.
+     */
+    static public void snapshot () {
+        final AuditLogIndex index = current;
+        if ( null == index || !index.changed ) {
+            return;
+        }
+        synchronized ( lock ) {
+            final AuditLogIndex copy = index.copy();
+            try {
+                write( copy, new File( directory, FILE ) );
+            }
+            catch ( final RuntimeException e ) {
+                index.changed = true;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Adds the log entries saved to the database since the last catch-up (ie,
+     * by other servers) to the index. Does nothing if the index has not been
+     * built yet.
+     */
+    static public void catchUp () {
+        synchronized ( lock ) {
+            final AuditLogIndex index = current;
+            if ( null != index ) {
+                index.catchUp( index.caughtUpAt, RECENT_MILLIS );
+            }
+        }
+    }
+
+    /**
+     * Replaces the index with the one saved on disk, catching up on the log
+     * entries saved since. The index is built from the database (and archive)
+     * instead if nothing has been saved.
+     */
+    static public void load () {
+        synchronized ( lock ) {
+            open( true );
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database (and archive). The old index is
+     * still searched until the new one is ready.
+     */
+    static public void rebuild () {
+        synchronized ( lock ) {
+            open( false );
+        }
+    }
+
+    /**
+     * Retrieves the index, loading or building it the first time
+     *
+     * @return The index
+     */
+    static private AuditLogIndex index () {
+        final AuditLogIndex index = current;
+        if ( null != index ) {
+            return index;
+        }
+        synchronized ( lock ) {
+            if ( null == current ) {
+                open( persistent );
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Loads or builds the index, and puts it in use. Must hold the lock.
+     *
+     * @param fromDisk
+     *            Whether to start from the index saved on disk, if there is
+     *            one
+     */
+    static private void open ( final boolean fromDisk ) {
+        final long started = System.currentTimeMillis();
+        AuditLogIndex index = fromDisk ? read( new File( directory, FILE ) ) : null;
+        final long since;
+        if ( null == index ) {
+            index = new AuditLogIndex();
+            LogEntry.forEach( index::add );
+            since = started;
+        }
+        else {
+            since = index.savedAt;
+        }
+        // From here on log entries are added as they are saved. Those that
+        // were saved while the index was being built are caught up on here
+        // (any that are added twice are only indexed once)
+        current = index;
+        index.caughtUpId = index.maxId;
+        index.catchUp( since, CATCH_UP_MILLIS );
+    }
+
+    /**
+     * Adds the log entries saved to the database since a catch-up (or the
+     * index being built or saved) to the index. Must hold the lock.
+     *
+     * @param since
+     *            When the catch-up (or the building or saving) started, in
+     *            milliseconds
+     * @param margin
+     *            How long before then to look for log entries, in milliseconds
+     */
+    private void catchUp ( final long since, final long margin ) {
+        final long started = System.currentTimeMillis();
+        final long[] highest = { caughtUpId };
+        LogEntry.forEachSince( Math.max( 0, caughtUpId - CATCH_UP_IDS ), time( since - margin ), entry -> {
+            add( entry );
+            highest[0] = Math.max( highest[0], entry.getId() );
+        } );
+        caughtUpId = highest[0];
+        caughtUpAt = started;
+    }
+
+    /**
+     * Adds a log entry to the index, unless it is already there
+     *
+     * @param entry
+     *            The log entry to add
+     */
+    private void add ( final LogEntry entry ) {
+        if ( null == entry.getId() ) {
+            return;
+        }
+        rwLock.writeLock().lock();
+        try {
+            if ( ordinals.containsKey( entry.getId() ) ) {
+                return;
+            }
+            if ( size == ids.length ) {
+                ids = Arrays.copyOf( ids, size * 2 );
+                times = Arrays.copyOf( times, size * 2 );
+                codes = Arrays.copyOf( codes, size * 2 );
+            }
+            final int doc = size++;
+            ids[doc] = entry.getId();
+            times[doc] = entry.getTime().toInstant().toEpochMilli();
+            codes[doc] = entry.getLogCode().getCode();
+            ordinals.put( entry.getId(), doc );
+            maxId = Math.max( maxId, entry.getId() );
+            forEachWord( entry, ( word, position ) -> {
+                Postings postings = terms.get( word );
+                if ( null == postings ) {
+                    postings = new Postings( 1 );
+                    terms.put( word, postings );
+                }
+                postings.add( key( doc, position ) );
+            } );
+            changed = true;
+        }
+        finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the log entries matching a search
+     *
+     * @param clauses
+     *            What to search for
+     * @param from
+     *            Earliest time to include, in milliseconds
+     * @param to
+     *            Time to stop at (exclusive), in milliseconds
+     * @param code
+     *            Type of log entries to include, or null for all of them
+     * @param offset
+     *            Number of matches to skip
+     * @param limit
+     *            Most matches to return
+     * @return The IDs of the matches on the page, newest first, and how many
+     *         there are in total
+     */
+    private Matches find ( final List<Clause> clauses, final long from, final long to, final TransactionType code,
+            final int offset, final int limit ) {
+        rwLock.readLock().lock();
+        try {
+            BitSet docs = null;
+            for ( final Clause clause : clauses ) {
+                if ( null == docs ) {
+                    docs = find( clause );
+                }
+                else {
+                    docs.and( find( clause ) );
+                }
+                if ( docs.isEmpty() ) {
+                    break;
+                }
+            }
+
+            // Only the newest matches, up to the end of the page, are kept
+            // in order; the oldest of these is always at the head
+            final Comparator<Integer> oldestFirst = ( a, b ) -> 0 != Long.compare( times[a], times[b] )
+                    ? Long.compare( times[a], times[b] ) : Long.compare( ids[a], ids[b] );
+            final PriorityQueue<Integer> newest = new PriorityQueue<Integer>( oldestFirst );
+            final Matches matches = new Matches();
+            for ( int doc = docs.nextSetBit( 0 ); doc >= 0; doc = docs.nextSetBit( doc + 1 ) ) {
+                if ( times[doc] >= from && times[doc] < to && ( null == code || codes[doc] == code.getCode() ) ) {
+                    matches.total++;
+                    newest.offer( doc );
+                    if ( newest.size() > offset + limit ) {
+                        newest.poll();
+                    }
+                }
+            }
+
+            final List<Integer> page = new ArrayList<Integer>( newest.size() );
+            while ( !newest.isEmpty() ) {
+                page.add( newest.poll() );
+            }
+            Collections.reverse( page );
+            for ( final int doc : page.subList( Math.min( offset, page.size() ), page.size() ) ) {
+                matches.ids.add( ids[doc] );
+                matches.earliest = Math.min( matches.earliest, times[doc] );
+                matches.latest = Math.max( matches.latest, times[doc] );
+            }
+            return matches;
+        }
+        finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the log entries matching one part of a search. Must hold the read
+     * lock.
+     *
+     * @param clause
+     *            The word, prefix or phrase to find
+     * @return The positions of the matching log entries
+     */
+    private BitSet find ( final Clause clause ) {
+        final BitSet docs = new BitSet( size );
+        final String first = clause.words.get( 0 );
+        if ( clause.prefix ) {
+            for ( final Postings postings : terms.subMap( first, true, first + Character.MAX_VALUE, false )
+                    .values() ) {
+                postings.addDocs( docs );
+            }
+            return docs;
+        }
+
+        final List<Postings> phrase = new ArrayList<Postings>();
+        for ( final String word : clause.words ) {
+            final Postings postings = terms.get( word );
+            if ( null == postings ) {
+                return docs;
+            }
+            phrase.add( postings );
+        }
+        if ( 1 == phrase.size() ) {
+            phrase.get( 0 ).addDocs( docs );
+            return docs;
+        }
+        // Each word of the phrase must come straight after the one before
+        next: for ( int i = 0; i < phrase.get( 0 ).size; i++ ) {
+            final long key = phrase.get( 0 ).keys[i];
+            for ( int j = 1; j < phrase.size(); j++ ) {
+                if ( !phrase.get( j ).contains( key + j ) ) {
+                    continue next;
+                }
+            }
+            docs.set( doc( key ) );
+        }
+        return docs;
+    }
+
+    /**
+     * Copies the index so that it can be saved. The copy cannot be searched
+     * or added to.
+     *
+     * @return The copy
+     */
+    private AuditLogIndex copy () {
+        rwLock.readLock().lock();
+        try {
+            final AuditLogIndex copy = new AuditLogIndex();
+            copy.ids = Arrays.copyOf( ids, size );
+            copy.times = Arrays.copyOf( times, size );
+            copy.codes = Arrays.copyOf( codes, size );
+            copy.size = size;
+            copy.maxId = maxId;
+            for ( final Map.Entry<String, Postings> term : terms.entrySet() ) {
+                copy.terms.put( term.getKey(), term.getValue().copy() );
+            }
+            copy.savedAt = System.currentTimeMillis();
+            changed = false;
+            return copy;
+        }
+        finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Saves an index to disk. It is written to a temporary file which is then
+     * moved into place, so the file is never left half written.
+     *
+     * @param index
+     *            The index to save
+     * @param target
+     *            Where to save it
+     */
+    static private void write ( final AuditLogIndex index, final File target ) {
+        final File temp = new File( target.getPath() + ".tmp" );
+        try {
+            Files.createDirectories( target.getParentFile().toPath() );
+            try ( FileOutputStream out = new FileOutputStream( temp ) ) {
+                final GZIPOutputStream gzip = new GZIPOutputStream( out );
+                final DataOutputStream data = new DataOutputStream( new BufferedOutputStream( gzip ) );
+                data.writeInt( MAGIC );
+                data.writeLong( index.savedAt );
+                data.writeLong( index.maxId );
+                data.writeInt( index.size );
+                for ( int i = 0; i < index.size; i++ ) {
+                    data.writeLong( index.ids[i] );
+                    data.writeLong( index.times[i] );
+                    data.writeInt( index.codes[i] );
+                }
+                data.writeInt( index.terms.size() );
+                for ( final Map.Entry<String, Postings> term : index.terms.entrySet() ) {
+                    data.writeUTF( term.getKey() );
+                    data.writeInt( term.getValue().size );
+                    for ( int i = 0; i < term.getValue().size; i++ ) {
+                        data.writeLong( term.getValue().keys[i] );
+                    }
+                }
+                data.flush();
+                gzip.finish();
+                out.getFD().sync();
+            }
+            Files.move( temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING );
+        }
+        catch ( final IOException e ) {
+            temp.delete();
+            throw new IllegalStateException( "Could not save the log entry index to " + target, e );
+        }
+    }
+
+    /**
+     * Loads an index saved to disk
+     *
+     * @param file
+     *            Where it was saved
+     * @return The index, or null if there is none (or it cannot be used)
+     */
+    static private AuditLogIndex read ( final File file ) {
+        if ( !file.exists() ) {
+            return null;
+        }
+        final AuditLogIndex index = new AuditLogIndex();
+        try ( DataInputStream data = new DataInputStream(
+                new BufferedInputStream( new GZIPInputStream( new FileInputStream( file ) ) ) ) ) {
+            if ( MAGIC != data.readInt() ) {
+                return null;
+            }
+            index.savedAt = data.readLong();
+            index.maxId = data.readLong();
+            index.size = data.readInt();
+            index.ids = new long[Math.max( 1024, index.size )];
+            index.times = new long[index.ids.length];
+            index.codes = new int[index.ids.length];
+            for ( int i = 0; i < index.size; i++ ) {
+                index.ids[i] = data.readLong();
+                index.times[i] = data.readLong();
+                index.codes[i] = data.readInt();
+                index.ordinals.put( index.ids[i], i );
+            }
+            for ( int remaining = data.readInt(); remaining > 0; remaining-- ) {
+                final String word = data.readUTF();
+                final int count = data.readInt();
+                final Postings postings = new Postings( count );
+                for ( int i = 0; i < count; i++ ) {
+                    postings.add( data.readLong() );
+                }
+                index.terms.put( word, postings );
+            }
+        }
+        catch ( final IOException | RuntimeException e ) {
+            // Built from the database instead
+            e.printStackTrace( System.out );
+            return null;
+        }
+        // If the newest log entry indexed is gone, the database has most
+        // likely been replaced since the index was saved
+        if ( index.size > 0 && null == LogEntry.getById( index.maxId ) ) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Breaks a search up into the words, prefixes and phrases to find
+     *
+     * @param query
+     *            The search
+     * @return The parts of the search
+     * @throws IllegalArgumentException
+     *             If there is nothing to search for
+     */
+    static private List<Clause> parse ( final String query ) {
+        final List<Clause> clauses = new ArrayList<Clause>();
+        final Matcher m = CLAUSES.matcher( null == query ? "" : query );
+        while ( m.find() ) {
+            final boolean quoted = null != m.group( 1 );
+            final String text = quoted ? m.group( 1 ) : m.group( 2 );
+            final List<String> words = words( text );
+            if ( !words.isEmpty() ) {
+                clauses.add( new Clause( words, !quoted && 1 == words.size() && text.endsWith( "*" ) ) );
+            }
+        }
+        if ( clauses.isEmpty() ) {
+            throw new IllegalArgumentException( "Nothing to search for" );
+        }
+        return clauses;
+    }
+
+    /**
+     * Checks a log entry against a search, the same way the index does
+     *
+     * @param clauses
+     *            The parts of the search
+     * @param entry
+     *            The log entry to check
+     * @return True if it matches every part
+     */
+    static private boolean matches ( final List<Clause> clauses, final LogEntry entry ) {
+        final Map<String, Set<Integer>> positions = new HashMap<String, Set<Integer>>();
+        forEachWord( entry, ( word, position ) -> positions.computeIfAbsent( word, w -> new HashSet<Integer>() )
+                .add( position ) );
+        next: for ( final Clause clause : clauses ) {
+            if ( clause.prefix ) {
+                for ( final String word : positions.keySet() ) {
+                    if ( word.startsWith( clause.words.get( 0 ) ) ) {
+                        continue next;
+                    }
+                }
+                return false;
+            }
+            final Set<Integer> starts = positions.get( clause.words.get( 0 ) );
+            for ( final int start : null == starts ? Collections.<Integer> emptySet() : starts ) {
+                boolean found = true;
+                for ( int j = 1; j < clause.words.size() && found; j++ ) {
+                    final Set<Integer> at = positions.get( clause.words.get( j ) );
+                    found = null != at && at.contains( start + j );
+                }
+                if ( found ) {
+                    continue next;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Goes through the words of a log entry's users and message, along with
+     * their positions
+     *
+     * @param entry
+     *            The log entry
+     * @param action
+     *            What to do with each word and its position
+     */
+    static private void forEachWord ( final LogEntry entry, final ObjIntConsumer<String> action ) {
+        int position = 0;
+        for ( final String field : new String[] { entry.getPrimaryUser(), entry.getSecondaryUser(),
+                entry.getMessage() } ) {
+            for ( final String word : words( field ) ) {
+                action.accept( word, position++ );
+            }
+            position += FIELD_GAP;
+        }
+    }
+
+    /**
+     * Splits text into lower-case words
+     *
+     * @param text
+     *            The text, or null
+     * @return The words
+     */
+    static private List<String> words ( final String text ) {
+        final List<String> words = new ArrayList<String>();
+        if ( null != text ) {
+            for ( final String word : SEPARATORS.split( text.toLowerCase( Locale.ROOT ) ) ) {
+                if ( !word.isEmpty() ) {
+                    words.add( word );
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Combines the position of a log entry in the index and the position of
+     * a word in it into a single key, which sorts by the first and then by the
+     * second
+     *
+     * @param doc
+     *            Position of the log entry
+     * @param position
+     *            Position of the word
+     * @return The key
+     */
+    static private long key ( final int doc, final int position ) {
+        return ( (long) doc << 32 ) | position;
+    }
+
+    /**
+     * Retrieves the position of the log entry from a key
+     *
+     * @param key
+     *            The key
+     * @return Position of the log entry in the index
+     */
+    static private int doc ( final long key ) {
+        return (int) ( key >>> 32 );
+    }
+
+    /**
+     * Converts a time in milliseconds to the server's time zone
+     *
+     * @param millis
+     *            The time
+     * @return The time, zoned
+     */
+    static private ZonedDateTime time ( final long millis ) {
+        return Instant.ofEpochMilli( millis ).atZone( ZONE );
+    }
+
+    /**
+     * A page of search results
+     *
+     * @author Kai Presler-Marshall
+     *
+     */
+    static public class Hits {
+
+        /** The log entries on the page, newest first */
+        private final List<LogEntry> entries;
+
+        /** Number of matches, on every page */
+        private final long           total;
+
+        /**
+         * Creates a page of search results
+         *
+         * @param entries
+         *            The log entries on the page
+         * @param total
+         *            Number of matches, on every page
+         */
+        Hits ( final List<LogEntry> entries, final long total ) {
+            this.entries = entries;
+            this.total = total;
+        }
+
+        /**
+         * Retrieves the log entries on the page
+         *
+         * @return The log entries, newest first
+         */
+        public List<LogEntry> getEntries () {
+            return entries;
+        }
+
+        /**
+         * Retrieves the number of matches, on every page
+         *
+         * @return The number of matches
+         */
+        public long getTotal () {
+            return total;
+        }
+
+    }
+
+    /**
+     * The matches found in the index for a page of results
+     */
+    static private class Matches {
+
+        /** IDs of the log entries on the page, newest first */
+        private final List<Long> ids      = new ArrayList<Long>();
+
+        /** Number of matches, on every page */
+        private long             total;
+
+        /** Time of the oldest log entry on the page */
+        private long             earliest = Long.MAX_VALUE;
+
+        /** Time of the newest log entry on the page */
+        private long             latest   = Long.MIN_VALUE;
+
+    }
+
+    /**
+     * One part of a search: a word, a prefix or a phrase
+     */
+    static private class Clause {
+
+        /** The words to find, in order */
+        private final List<String> words;
+
+        /** Whether the (single) word is a prefix */
+        private final boolean      prefix;
+
+        /**
+         * Creates a part of a search
+         *
+         * @param words
+         *            The words to find, in order
+         * @param prefix
+         *            Whether the (single) word is a prefix
+         */
+        Clause ( final List<String> words, final boolean prefix ) {
+            this.words = words;
+            this.prefix = prefix;
+        }
+
+    }
+
+    /**
+     * Everywhere one word appears: the keys (log entry and position) of each
+     * time it does, in order
+     */
+    static private class Postings {
+
+        /** The keys, in order */
+        private long[] keys;
+
+        /** Number of keys */
+        private int    size;
+
+        /**
+         * Creates an empty list of postings
+         *
+         * @param capacity
+         *            Number of keys to make room for
+         */
+        Postings ( final int capacity ) {
+            keys = new long[Math.max( 1, capacity )];
+        }
+
+        /**
+         * Adds a key, which must come after all of the others
+         *
+         * @param key
+         *            The key to add
+         */
+        void add ( final long key ) {
+            if ( size == keys.length ) {
+                keys = Arrays.copyOf( keys, size * 2 );
+            }
+            keys[size++] = key;
+        }
+
+        /**
+         * Whether the word appears at a key
+         *
+         * @param key
+         *            The key to look for
+         * @return True if it does
+         */
+        boolean contains ( final long key ) {
+            return Arrays.binarySearch( keys, 0, size, key ) >= 0;
+        }
+
+        /**
+         * Marks every log entry the word appears in
+         *
+         * @param docs
+         *            Where to mark them
+         */
+        void addDocs ( final BitSet docs ) {
+            for ( int i = 0; i < size; i++ ) {
+                docs.set( doc( keys[i] ) );
+            }
+        }
+
+        /**
+         * Copies the postings
+         *
+         * @return The copy
+         */
+        Postings copy () {
+            final Postings copy = new Postings( 0 );
+            copy.keys = Arrays.copyOf( keys, size );
+            copy.size = size;
+            return copy;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects statistics about the {@link AuditLogWriter}: how many log entries
+ * are waiting to be written, how long it takes to write them, and how often
+ * they had to be set aside in the spill file instead. Only cheap counters are
+ * kept here, as they are updated for every event that is logged.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogMetrics {
+
+    /** Number of log entries accepted by the writer */
+    private final LongAdder  submitted       = new LongAdder();
+
+    /** Number of log entries written to the database */
+    private final LongAdder  written         = new LongAdder();
+
+    /** Number of batches written to the database */
+    private final LongAdder  flushes         = new LongAdder();
+
+    /** Total time (ns) spent writing batches */
+    private final LongAdder  flushNanos      = new LongAdder();
+
+    /** Longest time (ns) spent writing a single batch */
+    private final AtomicLong maxFlushNanos   = new AtomicLong();
+
+    /** Number of batches that could not be written */
+    private final LongAdder  failedFlushes   = new LongAdder();
+
+    /** Number of times a log entry arrived while the queue was full */
+    private final LongAdder  overflows       = new LongAdder();
+
+    /** Number of log entries written to the spill file */
+    private final LongAdder  spilled         = new LongAdder();
+
+    /** Number of log entries read back from the spill file and written */
+    private final LongAdder  replayed        = new LongAdder();
+
+    /** Log entries currently waiting in the queue */
+    private final AtomicLong queueDepth      = new AtomicLong();
+
+    /**
+     * Records that a log entry was added to the queue
+     */
+    void recordSubmitted () {
+        submitted.increment();
+        queueDepth.incrementAndGet();
+    }
+
+    /**
+     * Records that a log entry was taken off of the queue to be written
+     */
+    void recordDequeued () {
+        queueDepth.decrementAndGet();
+    }
+
+    /**
+     * Records a batch that was written to the database
+     *
+     * @param size
+     *            Number of log entries in the batch
+     * @param nanos
+     *            How long writing the batch took
+     */
+    void recordFlush ( final int size, final long nanos ) {
+        written.add( size );
+        flushes.increment();
+        flushNanos.add( nanos );
+        maxFlushNanos.accumulateAndGet( nanos, Math::max );
+    }
+
+    /**
+     * Records a batch that could not be written to the database
+     */
+    void recordFailedFlush () {
+        failedFlushes.increment();
+    }
+
+    /**
+     * Records a log entry that arrived while the queue was full
+     */
+    void recordOverflow () {
+        overflows.increment();
+    }
+
+    /**
+     * Records log entries that were written to the spill file
+     *
+     * @param count
+     *            Number of log entries spilled
+     */
+    void recordSpilled ( final int count ) {
+        spilled.add( count );
+    }
+
+    /**
+     * Records log entries that were read back from the spill file
+     *
+     * @param count
+     *            Number of log entries replayed
+     */
+    void recordReplayed ( final int count ) {
+        replayed.add( count );
+    }
+
+    /**
+     * Number of log entries that have been accepted by the writer
+     *
+     * @return number of log entries submitted
+     */
+    public long getSubmittedCount () {
+        return submitted.sum();
+    }
+
+    /**
+     * Number of log entries waiting in the queue right now
+     *
+     * @return queue depth
+     */
+    public long getQueueDepth () {
+        return queueDepth.get();
+    }
+
+    /**
+     * Number of log entries that have been written to the database
+     *
+     * @return number of log entries written
+     */
+    public long getWrittenCount () {
+        return written.sum();
+    }
+
+    /**
+     * Number of batches that have been written to the database
+     *
+     * @return number of flushes
+     */
+    public long getFlushCount () {
+        return flushes.sum();
+    }
+
+    /**
+     * Average time, in milliseconds, needed to write a batch
+     *
+     * @return average flush latency in milliseconds
+     */
+    public double getAverageFlushMillis () {
+        final long count = flushes.sum();
+        return 0 == count ? 0 : (double) flushNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    /**
+     * Longest time, in milliseconds, needed to write a batch
+     *
+     * @return maximum flush latency in milliseconds
+     */
+    public double getMaxFlushMillis () {
+        return (double) maxFlushNanos.get() / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    /**
+     * Number of batches that could not be written to the database (and were
+     * spilled instead)
+     *
+     * @return number of failed flushes
+     */
+    public long getFailedFlushCount () {
+        return failedFlushes.sum();
+    }
+
+    /**
+     * Number of times a log entry arrived while the queue was full
+     *
+     * @return number of overflows
+     */
+    public long getOverflowCount () {
+        return overflows.sum();
+    }
+
+    /**
+     * Number of log entries that have been written to the spill file
+     *
+     * @return number of log entries spilled
+     */
+    public long getSpilledCount () {
+        return spilled.sum();
+    }
+
+    /**
+     * Number of log entries that have been read back from the spill file and
+     * written to the database
+     *
+     * @return number of log entries replayed
+     */
+    public long getReplayedCount () {
+        return replayed.sum();
+    }
+
+    @Override
+    public String toString () {
+        return String.format(
+                "queued=%d, submitted=%d, written=%d, flushes=%d, avgFlush=%.2fms, maxFlush=%.2fms, failed=%d, overflows=%d, spilled=%d, replayed=%d",
+                getQueueDepth(), getSubmittedCount(), getWrittenCount(), getFlushCount(), getAverageFlushMillis(),
+                getMaxFlushMillis(), getFailedFlushCount(), getOverflowCount(), getSpilledCount(),
+                getReplayedCount() );
+    }
+
+}
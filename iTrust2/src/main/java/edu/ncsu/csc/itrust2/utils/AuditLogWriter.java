@@ -0,0 +1,828 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntryRollup;
+
+/**
+ * Writes log entries to the database in the background, so that recording an
+ * event does not add a transaction of its own to the request that caused it.
+ * {@link LoggerUtil} hands every new LogEntry to {@link #write(LogEntry)}; the
+ * entries are queued and a single writer thread saves them in batches (one
+ * transaction and one JDBC batch per batch of entries). Each batch is counted
+ * in the daily {@link LogEntryRollup}s in the same transaction, and added to
+ * the {@link AuditLogIndex} once it has been saved.
+ *
+ * So that no entry is lost if the process crashes, write() does not return
+ * until its entry is on disk: the writer thread appends whatever has been
+ * queued to a journal file (the spill file's name with `.journal` added) and
+ * forces it to disk, once for all of the entries that were waiting, before
+ * letting their callers carry on. The entries are then saved to the database
+ * in batches as usual, and the journal is cleared once everything in it has
+ * been saved. If the process dies in between, the journal is replayed like the
+ * spill file (see below) when the writer is next started.
+ *
+ * The writer is only running in the web application (it is started and
+ * stopped by ContextListener). Everywhere else, including the tests, it is
+ * synchronous: each entry is saved before write() returns, exactly as if it
+ * had been saved directly. It can also be kept synchronous in the web
+ * application by setting `audit.async=false` in db.properties. When an entry
+ * is saved synchronously while a unit of work is active (ie, on a request
+ * thread), it is saved as part of that unit of work, so that the request does
+ * not need a second connection from the pool; it is then only kept if the
+ * request's work is.
+ *
+ * Settings (all in db.properties):
+ *
+ * `audit.queueCapacity` - how many entries can be waiting at once
+ * (default 10000).
+ *
+ * `audit.batchSize` - the most entries saved in one transaction (default 100).
+ * The writer saves early when this many have been journaled.
+ *
+ * `audit.flushIntervalMillis` - the longest that journaled entries wait before
+ * being saved to the database (default 200).
+ *
+ * `audit.overflowPolicy` - what to do with an entry when the queue is full:
+ * BLOCK (wait for room), CALLER_RUNS (save it right away, on the thread that
+ * logged it) or SPILL (append it to the spill file; the default).
+ *
+ * `audit.spillFile` - where entries are set aside when they cannot be saved
+ * (default audit-spill.log in the working directory).
+ *
+ * Entries that cannot be saved (ie, the database is down) are appended to the
+ * spill file, one JSON object per line, and forced to disk. The writer tries
+ * to save them again every flush interval, and when it is next started.
+ * Replaying is at-least-once: if the process dies after saving journaled or
+ * spilled entries but before clearing the file, they are saved again.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogWriter {
+
+    /**
+     * What to do with a log entry when the queue is full
+     */
+    public enum OverflowPolicy {
+        /** Wait until the writer has made room */
+        BLOCK,
+        /** Save the entry right away, on the thread that logged it */
+        CALLER_RUNS,
+        /** Append the entry to the spill file, to be saved later */
+        SPILL
+    }
+
+    /** The writer that is running, or null if log entries are saved directly */
+    static private volatile AuditLogWriter running;
+
+    /** Statistics on the writer; kept across restarts */
+    static private final AuditLogMetrics   metrics      = new AuditLogMetrics();
+
+    /** Serializes log entries in the spill file */
+    static private final Gson              gson         = new Gson();
+
+    /** Removes the running writer (saving everything) when the JVM exits */
+    static private Thread                  shutdownHook;
+
+    /** Entries waiting to be journaled */
+    private final Queue<Queued>            queue        = new ConcurrentLinkedQueue<Queued>();
+
+    /**
+     * Number of entries in the queue. Room is reserved here before an entry
+     * is added, which keeps the queue bounded without a lock.
+     */
+    private final AtomicInteger            depth        = new AtomicInteger();
+
+    /** Number of entries taken off of the queue but not yet saved or spilled */
+    private final AtomicInteger            inFlight     = new AtomicInteger();
+
+    /** Set once entries have been spilled and not yet replayed */
+    private final AtomicBoolean            spillPending = new AtomicBoolean();
+
+    /** Most entries that can be waiting at once */
+    private final int                      capacity;
+
+    /** Most entries saved in one transaction */
+    private final int                      batchSize;
+
+    /** Longest that journaled entries wait before being saved */
+    private final long                     flushIntervalNanos;
+
+    /** What to do when the queue is full */
+    private final OverflowPolicy           policy;
+
+    /** Where entries that could not be saved are set aside */
+    private final File                     spillFile;
+
+    /** Where entries are written before write() returns */
+    private final File                     journalFile;
+
+    /** The thread saving the entries */
+    private final Thread                   thread;
+
+    /** Cleared to tell the writer thread to finish */
+    private volatile boolean               active       = true;
+
+    /** Set to have the writer save everything journaled straight away */
+    private volatile boolean               flushRequested;
+
+    /**
+     * Creates a writer; it is started by {@link #start()}
+     *
+     * @param capacity
+     *            Most entries that can be waiting at once
+     * @param batchSize
+     *            Most entries saved in one transaction
+     * @param flushIntervalMillis
+     *            How long the writer waits between batches
+     * @param policy
+     *            What to do when the queue is full
+     * @param spillFile
+     *            Where entries that could not be saved are set aside
+     */
+    private AuditLogWriter ( final int capacity, final int batchSize, final long flushIntervalMillis,
+            final OverflowPolicy policy, final File spillFile ) {
+        if ( capacity < 1 || batchSize < 1 || flushIntervalMillis < 1 ) {
+            throw new IllegalArgumentException( "Capacity, batch size and flush interval must all be positive" );
+        }
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos( flushIntervalMillis );
+        this.policy = policy;
+        this.spillFile = spillFile;
+        this.journalFile = new File( spillFile.getPath() + ".journal" );
+        this.thread = new Thread( this::run, "iTrust2-audit-writer" );
+        this.thread.setDaemon( true );
+    }
+
+    /**
+     * Starts saving log entries in the background, with the settings from
+     * db.properties. Does nothing if `audit.async` is false there, or if the
+     * writer is already running.
+     */
+    static synchronized public void start () {
+        if ( !Boolean.parseBoolean( DBUtil.getAuditSetting( "async", "true" ) ) ) {
+            return;
+        }
+        start( DBUtil.getAuditSetting( "queueCapacity", 10000 ), DBUtil.getAuditSetting( "batchSize", 100 ),
+                DBUtil.getAuditSetting( "flushIntervalMillis", 200 ),
+                OverflowPolicy.valueOf( DBUtil.getAuditSetting( "overflowPolicy", OverflowPolicy.SPILL.name() ) ),
+                new File( DBUtil.getAuditSetting( "spillFile", "audit-spill.log" ) ) );
+    }
+
+    /**
+     * Starts saving log entries in the background. Anything left in the
+     * journal or the spill file is saved first. Does nothing if the writer is already running.
+     *
+     * @param capacity
+     *            Most entries that can be waiting at once
+     * @param batchSize
+     *            Most entries saved in one transaction
+     * @param flushIntervalMillis
+     *            How long the writer waits between batches
+     * @param policy
+     *            What to do when the queue is full
+     * @param spillFile
+     *            Where entries that could not be saved are set aside
+     */
+    static synchronized public void start ( final int capacity, final int batchSize, final long flushIntervalMillis,
+            final OverflowPolicy policy, final File spillFile ) {
+        if ( null != running ) {
+            return;
+        }
+        final AuditLogWriter writer = new AuditLogWriter( capacity, batchSize, flushIntervalMillis, policy,
+                spillFile );
+        writer.spillPending.set( true );
+        writer.thread.start();
+        running = writer;
+        if ( null == shutdownHook ) {
+            shutdownHook = new Thread( AuditLogWriter::stop, "iTrust2-audit-shutdown" );
+            Runtime.getRuntime().addShutdownHook( shutdownHook );
+        }
+    }
+
+    /**
+     * Stops the background writer, saving everything that is still queued
+     * (or spilling it, if that fails). Log entries are saved directly again
+     * afterwards.
+     */
+    static synchronized public void stop () {
+        final AuditLogWriter writer = running;
+        if ( null == writer ) {
+            return;
+        }
+        // New entries are saved directly from now on; the writer finishes
+        // off whatever has already been queued
+        running = null;
+        writer.active = false;
+        LockSupport.unpark( writer.thread );
+        try {
+            writer.thread.join();
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        if ( null != shutdownHook && Thread.currentThread() != shutdownHook ) {
+            Runtime.getRuntime().removeShutdownHook( shutdownHook );
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * Whether log entries are being saved in the background
+     *
+     * @return True if the writer is running
+     */
+    static public boolean isRunning () {
+        return null != running;
+    }
+
+    /**
+     * Records a log entry. If the writer is running, the entry is queued to be
+     * saved shortly, and this returns once it has been journaled; otherwise it
+     * is saved before this returns.
+     *
+     * @param entry
+     *            The entry to record
+     */
+    static public void write ( final LogEntry entry ) {
+        final AuditLogWriter writer = running;
+        if ( null == writer ) {
+            persist( Collections.singletonList( entry ) );
+        }
+        else {
+            writer.submit( entry );
+        }
+    }
+
+    /**
+     * Waits until everything queued so far has been saved (or spilled). Used
+     * by the tests to see the entries they logged.
+     */
+    static public void flush () {
+        final AuditLogWriter writer = running;
+        if ( null == writer ) {
+            return;
+        }
+        writer.flushRequested = true;
+        while ( ( writer.depth.get() > 0 || writer.inFlight.get() > 0 ) && writer.thread.isAlive() ) {
+            LockSupport.unpark( writer.thread );
+            LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+        }
+        writer.drain();
+    }
+
+    /**
+     * Retrieve statistics on the writer (queue depth, flush latency, etc)
+     *
+     * @return audit log writer metrics
+     */
+    static public AuditLogMetrics getMetrics () {
+        return metrics;
+    }
+
+    /**
+     * Adds an entry to the queue, or applies the overflow policy if it is
+     * full, and waits until it has been journaled (or saved, or spilled).
+     *
+     * @param entry
+     *            The entry to add
+     */
+    private void submit ( final LogEntry entry ) {
+        final Queued queued = new Queued( entry );
+        boolean overflowed = false;
+        while ( !enqueue( queued ) ) {
+            if ( !overflowed ) {
+                metrics.recordOverflow();
+                overflowed = true;
+            }
+            if ( OverflowPolicy.BLOCK != policy || !active ) {
+                if ( OverflowPolicy.SPILL == policy ) {
+                    spill( Collections.singletonList( entry ) );
+                }
+                else {
+                    persist( Collections.singletonList( entry ) );
+                }
+                return;
+            }
+            LockSupport.unpark( thread );
+            LockSupport.parkNanos( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+        }
+        LockSupport.unpark( thread );
+        while ( !queued.done ) {
+            // The writer may have finished (and had its last look at the
+            // queue) in the meantime, in which case nobody else will save
+            // the entry
+            if ( !active || !thread.isAlive() ) {
+                drain();
+            }
+            if ( !queued.done ) {
+                LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( 1 ) );
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the queue if there is room for it
+     *
+     * @param entry
+     *            The entry to add
+     * @return True if the entry was queued, false if the queue is full
+     */
+    private boolean enqueue ( final Queued entry ) {
+        for ( int queued = depth.get(); queued < capacity; queued = depth.get() ) {
+            if ( depth.compareAndSet( queued, queued + 1 ) ) {
+                queue.offer( entry );
+                metrics.recordSubmitted();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Body of the writer thread: journals whatever has been queued as soon as
+     * it is woken, and saves what has been journaled every flush interval (or
+     * sooner if a full batch is waiting), until stopped.
+     */
+    private void run () {
+        final List<Queued> journaled = new ArrayList<Queued>();
+        long due = 0;
+        try {
+            recoverJournal();
+        }
+        catch ( final RuntimeException e ) {
+            e.printStackTrace( System.out );
+        }
+        while ( active ) {
+            final boolean flushing = flushRequested;
+            flushRequested = false;
+            try {
+                replaySpilled();
+                final int before = journaled.size();
+                journal( journaled );
+                if ( 0 == before && !journaled.isEmpty() ) {
+                    due = System.nanoTime() + flushIntervalNanos;
+                }
+                if ( !journaled.isEmpty() && ( flushing || journaled.size() >= batchSize
+                        || System.nanoTime() - due >= 0 ) ) {
+                    saveJournaled( journaled );
+                }
+            }
+            catch ( final RuntimeException e ) {
+                // Only happens if the spill file cannot be written either;
+                // keep going, in case it is a temporary problem
+                e.printStackTrace( System.out );
+            }
+            if ( active && depth.get() == 0 ) {
+                LockSupport.parkNanos( this, journaled.isEmpty() ? flushIntervalNanos
+                        : Math.max( 0, due - System.nanoTime() ) );
+            }
+        }
+        drain();
+        saveJournaled( journaled );
+        replaySpilled();
+    }
+
+    /**
+     * Takes everything that is currently queued, appends it to the journal
+     * (forcing it to disk once), and lets the callers waiting on it carry on.
+     * If the journal cannot be written, the entries are saved right away
+     * instead.
+     *
+     * @param journaled
+     *            List of entries journaled but not yet saved, to add to
+     */
+    private void journal ( final List<Queued> journaled ) {
+        final List<Queued> taken = new ArrayList<Queued>();
+        for ( List<Queued> batch = take(); !batch.isEmpty(); batch = take() ) {
+            taken.addAll( batch );
+        }
+        if ( taken.isEmpty() ) {
+            return;
+        }
+        try {
+            append( journalFile, entries( taken ) );
+        }
+        catch ( final IOException e ) {
+            e.printStackTrace( System.out );
+            for ( int i = 0; i < taken.size(); i += batchSize ) {
+                saveOrSpill( taken.subList( i, Math.min( i + batchSize, taken.size() ) ) );
+            }
+            return;
+        }
+        journaled.addAll( taken );
+        for ( final Queued queued : taken ) {
+            queued.finish();
+        }
+    }
+
+    /**
+     * Saves everything that has been journaled, a batch at a time, and clears
+     * the journal once it is all in the database (or the spill file).
+     *
+     * @param journaled
+     *            The entries journaled but not yet saved; emptied
+     */
+    private void saveJournaled ( final List<Queued> journaled ) {
+        if ( journaled.isEmpty() ) {
+            return;
+        }
+        final List<Queued> saving = new ArrayList<Queued>( journaled );
+        journaled.clear();
+        try {
+            for ( int i = 0; i < saving.size(); i += batchSize ) {
+                store( entries( saving.subList( i, Math.min( i + batchSize, saving.size() ) ) ) );
+            }
+            journalFile.delete();
+        }
+        finally {
+            release( saving );
+        }
+    }
+
+    /**
+     * Saves everything that is currently queued, a batch at a time, without
+     * journaling it first. Called by the writer thread as it finishes, and by
+     * {@link #flush()} and callers waiting on a writer that has finished.
+     */
+    private void drain () {
+        for ( List<Queued> batch = take(); !batch.isEmpty(); batch = take() ) {
+            saveOrSpill( batch );
+        }
+    }
+
+    /**
+     * Takes up to a batch of entries off of the queue. They count as in flight
+     * until they are saved or spilled.
+     *
+     * @return The entries taken; empty if the queue is
+     */
+    private List<Queued> take () {
+        final List<Queued> batch = new ArrayList<Queued>( batchSize );
+        while ( batch.size() < batchSize ) {
+            // Counted before it is taken, so that flush() never sees an
+            // entry that is neither queued nor in flight
+            inFlight.incrementAndGet();
+            final Queued entry = queue.poll();
+            if ( null == entry ) {
+                inFlight.decrementAndGet();
+                break;
+            }
+            depth.decrementAndGet();
+            metrics.recordDequeued();
+            batch.add( entry );
+        }
+        return batch;
+    }
+
+    /**
+     * Saves a batch of entries that were taken off of the queue, or spills
+     * them if they cannot be saved, and lets anyone waiting on them carry on
+     *
+     * @param batch
+     *            The entries to save
+     */
+    private void saveOrSpill ( final List<Queued> batch ) {
+        try {
+            store( entries( batch ) );
+        }
+        finally {
+            release( batch );
+        }
+    }
+
+    /**
+     * Saves a batch of entries, or spills them if they cannot be saved
+     *
+     * @param entries
+     *            The entries to save
+     */
+    private void store ( final List<LogEntry> entries ) {
+        try {
+            save( entries );
+        }
+        catch ( final RuntimeException e ) {
+            e.printStackTrace( System.out );
+            metrics.recordFailedFlush();
+            spill( entries );
+        }
+    }
+
+    /**
+     * Marks entries taken off of the queue as no longer in flight, and lets
+     * anyone waiting on them carry on
+     *
+     * @param batch
+     *            The entries
+     */
+    private void release ( final List<Queued> batch ) {
+        inFlight.addAndGet( -batch.size() );
+        for ( final Queued queued : batch ) {
+            queued.finish();
+        }
+    }
+
+    /**
+     * Saves a batch of entries in a single transaction
+     *
+     * @param batch
+     *            The entries to save
+     */
+    private void save ( final List<LogEntry> batch ) {
+        final long start = System.nanoTime();
+        persist( batch );
+        metrics.recordFlush( batch.size(), System.nanoTime() - start );
+    }
+
+    /**
+     * Saves log entries, and counts them in the daily rollups, in a single
+     * transaction: either both happen or neither does. If a unit of work is
+     * active (ie, when an entry is saved on a request thread because the
+     * writer is not running or the queue is full) they are saved as part of
+     * it, rather than on a second connection that the request would be holding
+     * its own connection while waiting for. The entries are then added to the
+     * search index.
+     *
+     * @param entries
+     *            The entries to save
+     */
+    static private void persist ( final List<LogEntry> entries ) {
+        if ( null != UnitOfWork.current() ) {
+            DomainObject.saveAll( entries );
+            LogEntryRollup.record( entries );
+        }
+        else {
+            UnitOfWork.separately( () -> {
+                DomainObject.saveAll( entries );
+                LogEntryRollup.record( entries );
+                return null;
+            } );
+        }
+        AuditLogIndex.add( entries );
+    }
+
+    /**
+     * Appends entries to the spill file, one per line, and forces them to disk
+     * before returning.
+     *
+     * @param entries
+     *            The entries to set aside
+     */
+    private void spill ( final List<LogEntry> entries ) {
+        synchronized ( spillFile ) {
+            try {
+                append( spillFile, entries );
+            }
+            catch ( final IOException e ) {
+                // Nowhere left to put them; at least leave a trace
+                System.out.print( "Audit log entries could not be saved: " + lines( entries ) );
+                throw new IllegalStateException( "Could not write to spill file " + spillFile, e );
+            }
+        }
+        metrics.recordSpilled( entries.size() );
+        spillPending.set( true );
+    }
+
+    /**
+     * Appends entries to a file, one per line, and forces them to disk before
+     * returning
+     *
+     * @param file
+     *            The file to append to
+     * @param entries
+     *            The entries to write
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    static private void append ( final File file, final List<LogEntry> entries ) throws IOException {
+        write( file, lines( entries ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Appends bytes to a file, and forces them to disk before returning
+     *
+     * @param file
+     *            The file to append to
+     * @param bytes
+     *            What to write
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    static private void write ( final File file, final byte[] bytes ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND ) ) {
+            final ByteBuffer buffer = ByteBuffer.wrap( bytes );
+            while ( buffer.hasRemaining() ) {
+                channel.write( buffer );
+            }
+            channel.force( false );
+        }
+    }
+
+    /**
+     * Formats entries for the journal or spill file: one JSON object per line
+     *
+     * @param entries
+     *            The entries to format
+     * @return The lines
+     */
+    static private String lines ( final List<LogEntry> entries ) {
+        final StringBuilder lines = new StringBuilder();
+        for ( final LogEntry entry : entries ) {
+            // Saving may have assigned an ID even though the transaction
+            // failed; a new one is assigned when the entry is replayed
+            final JsonObject json = gson.toJsonTree( entry ).getAsJsonObject();
+            json.remove( "id" );
+            lines.append( json ).append( '\n' );
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Picks the log entries out of queued entries
+     *
+     * @param queued
+     *            The queued entries
+     * @return Their log entries
+     */
+    static private List<LogEntry> entries ( final List<Queued> queued ) {
+        final List<LogEntry> entries = new ArrayList<LogEntry>( queued.size() );
+        for ( final Queued entry : queued ) {
+            entries.add( entry.entry );
+        }
+        return entries;
+    }
+
+    /**
+     * Moves whatever was left in the journal (ie, by a crash) to the spill
+     * file, to be replayed with it
+     */
+    private void recoverJournal () {
+        if ( !journalFile.exists() ) {
+            return;
+        }
+        synchronized ( spillFile ) {
+            try {
+                byte[] bytes = Files.readAllBytes( journalFile.toPath() );
+                // A line cut short by the crash must not run into the next
+                if ( bytes.length > 0 && bytes[bytes.length - 1] != '\n' ) {
+                    bytes = Arrays.copyOf( bytes, bytes.length + 1 );
+                    bytes[bytes.length - 1] = '\n';
+                }
+                write( spillFile, bytes );
+                journalFile.delete();
+            }
+            catch ( final IOException e ) {
+                throw new IllegalStateException( "Could not replay journal " + journalFile, e );
+            }
+        }
+        spillPending.set( true );
+    }
+
+    /**
+     * Saves the entries in the spill file, if there are any, and clears it.
+     * Entries that still cannot be saved are spilled again.
+     */
+    private void replaySpilled () {
+        if ( !spillPending.compareAndSet( true, false ) ) {
+            return;
+        }
+        final File replaying = new File( spillFile.getPath() + ".replay" );
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        synchronized ( spillFile ) {
+            try {
+                // A file left over from a replay that was interrupted is
+                // finished off first; new spills wait for the next round
+                if ( replaying.exists() ) {
+                    spillPending.set( spillFile.exists() );
+                }
+                else if ( spillFile.exists() ) {
+                    Files.move( spillFile.toPath(), replaying.toPath(), StandardCopyOption.ATOMIC_MOVE );
+                }
+                else {
+                    return;
+                }
+                read( replaying, entries );
+            }
+            catch ( final IOException | RuntimeException e ) {
+                e.printStackTrace( System.out );
+                spillPending.set( true );
+                return;
+            }
+        }
+        if ( entries.isEmpty() ) {
+            replaying.delete();
+            return;
+        }
+
+        for ( int i = 0; i < entries.size(); i += batchSize ) {
+            final List<LogEntry> batch = entries.subList( i, Math.min( i + batchSize, entries.size() ) );
+            try {
+                save( batch );
+                metrics.recordReplayed( batch.size() );
+            }
+            catch ( final RuntimeException e ) {
+                // Still cannot be saved; put the rest back for next time
+                metrics.recordFailedFlush();
+                try {
+                    spill( new ArrayList<LogEntry>( entries.subList( i, entries.size() ) ) );
+                }
+                catch ( final RuntimeException e2 ) {
+                    // Keep the file being replayed, and try it again next time
+                    spillPending.set( true );
+                    throw e2;
+                }
+                break;
+            }
+        }
+        replaying.delete();
+    }
+
+    /**
+     * Reads the entries in a spill file
+     *
+     * @param file
+     *            The file to read
+     * @param entries
+     *            List to add the entries to
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    private void read ( final File file, final List<LogEntry> entries ) throws IOException {
+        try ( BufferedReader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 ) ) {
+            for ( String line; null != ( line = reader.readLine() ); ) {
+                try {
+                    if ( !line.trim().isEmpty() ) {
+                        entries.add( gson.fromJson( line, LogEntry.class ) );
+                    }
+                }
+                catch ( final JsonParseException e ) {
+                    // ie, a line cut short by a crash; nothing can be done
+                    System.out.println( "Skipping unreadable audit log entry: " + line );
+                }
+            }
+        }
+    }
+
+    /**
+     * A log entry waiting in the queue, along with whether the caller that
+     * logged it can carry on yet
+     */
+    static private class Queued {
+
+        /** The entry */
+        final LogEntry           entry;
+
+        /** The thread that logged the entry */
+        private final Thread     waiter = Thread.currentThread();
+
+        /** Set once the entry has been journaled, saved or spilled */
+        volatile boolean         done;
+
+        /**
+         * Queues an entry for the current thread
+         *
+         * @param entry
+         *            The entry
+         */
+        Queued ( final LogEntry entry ) {
+            this.entry = entry;
+        }
+
+        /**
+         * Lets the thread that logged the entry carry on
+         */
+        void finish () {
+            done = true;
+            LockSupport.unpark( waiter );
+        }
+
+    }
+
+}
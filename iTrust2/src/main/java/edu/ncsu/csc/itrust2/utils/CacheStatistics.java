@@ -0,0 +1,110 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.statistics.StatisticsGateway;
+
+/**
+ * A snapshot of the statistics for a single region of the Hibernate
+ * second-level cache (ie, the cached ICD codes, or the cached results of
+ * queries). Used to report how well the cache is doing through the REST API.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class CacheStatistics {
+
+    /** Name of the cache region */
+    private final String region;
+
+    /** Number of entries currently stored in the region */
+    private final long   size;
+
+    /** Number of lookups that were answered from the region */
+    private final long   hits;
+
+    /** Number of lookups that had to go to the database */
+    private final long   misses;
+
+    /** Number of entries evicted to stay within the size limit */
+    private final long   evictions;
+
+    /** Number of entries dropped because they were too old */
+    private final long   expirations;
+
+    /**
+     * Takes a snapshot of the statistics of the cache provided
+     *
+     * @param cache
+     *            The cache to read the statistics of
+     */
+    CacheStatistics ( final Ehcache cache ) {
+        final StatisticsGateway stats = cache.getStatistics();
+        this.region = cache.getName();
+        this.size = stats.getSize();
+        this.hits = stats.cacheHitCount();
+        this.misses = stats.cacheMissCount();
+        this.evictions = stats.cacheEvictedCount();
+        this.expirations = stats.cacheExpiredCount();
+    }
+
+    /**
+     * Retrieves the name of the cache region
+     *
+     * @return The name of the region
+     */
+    public String getRegion () {
+        return region;
+    }
+
+    /**
+     * Retrieves the number of entries currently stored in the region
+     *
+     * @return The number of entries
+     */
+    public long getSize () {
+        return size;
+    }
+
+    /**
+     * Retrieves the number of lookups that were answered from the region
+     *
+     * @return The number of hits
+     */
+    public long getHits () {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that were not found in the region
+     *
+     * @return The number of misses
+     */
+    public long getMisses () {
+        return misses;
+    }
+
+    /**
+     * Retrieves the number of entries evicted to make room for new ones
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions () {
+        return evictions;
+    }
+
+    /**
+     * Retrieves the number of entries that were dropped after expiring
+     *
+     * @return The number of expirations
+     */
+    public long getExpirations () {
+        return expirations;
+    }
+
+    @Override
+    public String toString () {
+        return String.format( "%s: size=%d, hits=%d, misses=%d, evictions=%d, expirations=%d", region, size, hits,
+                misses, evictions, expirations );
+    }
+
+}
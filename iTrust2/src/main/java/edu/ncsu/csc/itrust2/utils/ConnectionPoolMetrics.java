@@ -0,0 +1,184 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Collects statistics about the database connection pool that is handed out by
+ * {@link DBUtil}. HikariCP calls into this class every time a connection is
+ * created, acquired, returned or times out, so we keep only cheap counters
+ * here. The numbers can be read at any time for monitoring or debugging
+ * purposes (ie, how long are requests waiting to get a connection?).
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    /** Number of connections handed out by the pool */
+    private final LongAdder  acquired         = new LongAdder();
+
+    /** Total time (ns) callers spent waiting on the pool for a connection */
+    private final LongAdder  acquireNanos     = new LongAdder();
+
+    /** Longest single wait (ns) for a connection */
+    private final AtomicLong maxAcquireNanos  = new AtomicLong();
+
+    /** Number of times a caller gave up waiting for a connection */
+    private final LongAdder  timeouts         = new LongAdder();
+
+    /** Number of connections returned to the pool */
+    private final LongAdder  released         = new LongAdder();
+
+    /** Total time (ms) connections were held before being returned */
+    private final LongAdder  usageMillis      = new LongAdder();
+
+    /** Number of physical connections that have been opened to the DB */
+    private final LongAdder  created          = new LongAdder();
+
+    /** Total time (ms) spent opening physical connections */
+    private final LongAdder  creationMillis   = new LongAdder();
+
+    /** Live view of the pool provided by Hikari; null until pool starts */
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create ( final String poolName, final PoolStats stats ) {
+        this.poolStats = stats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis ( final long connectionCreatedMillis ) {
+                created.increment();
+                creationMillis.add( connectionCreatedMillis );
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos ( final long elapsedAcquiredNanos ) {
+                acquired.increment();
+                acquireNanos.add( elapsedAcquiredNanos );
+                maxAcquireNanos.accumulateAndGet( elapsedAcquiredNanos, Math::max );
+            }
+
+            @Override
+            public void recordConnectionUsageMillis ( final long elapsedBorrowedMillis ) {
+                released.increment();
+                usageMillis.add( elapsedBorrowedMillis );
+            }
+
+            @Override
+            public void recordConnectionTimeout () {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Number of connections that have been handed out by the pool
+     *
+     * @return number of acquisitions
+     */
+    public long getAcquireCount () {
+        return acquired.sum();
+    }
+
+    /**
+     * Average time, in milliseconds, that a caller waited on the pool before
+     * receiving a connection.
+     *
+     * @return average wait in milliseconds
+     */
+    public double getAverageAcquireMillis () {
+        final long count = acquired.sum();
+        return 0 == count ? 0 : (double) acquireNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    /**
+     * Longest time, in milliseconds, that a caller waited on the pool before
+     * receiving a connection.
+     *
+     * @return maximum wait in milliseconds
+     */
+    public double getMaxAcquireMillis () {
+        return (double) maxAcquireNanos.get() / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    /**
+     * Number of times a caller timed out waiting for a connection
+     *
+     * @return number of timeouts
+     */
+    public long getTimeoutCount () {
+        return timeouts.sum();
+    }
+
+    /**
+     * Average time, in milliseconds, that a connection was borrowed for
+     *
+     * @return average usage in milliseconds
+     */
+    public double getAverageUsageMillis () {
+        final long count = released.sum();
+        return 0 == count ? 0 : (double) usageMillis.sum() / count;
+    }
+
+    /**
+     * Number of physical connections that have been opened to the database
+     *
+     * @return number of connections created
+     */
+    public long getCreatedCount () {
+        return created.sum();
+    }
+
+    /**
+     * Average time, in milliseconds, needed to open a physical connection
+     *
+     * @return average creation time in milliseconds
+     */
+    public double getAverageCreationMillis () {
+        final long count = created.sum();
+        return 0 == count ? 0 : (double) creationMillis.sum() / count;
+    }
+
+    /**
+     * Number of connections currently in use
+     *
+     * @return active connections
+     */
+    public int getActiveConnections () {
+        return null == poolStats ? 0 : poolStats.getActiveConnections();
+    }
+
+    /**
+     * Number of connections currently sitting idle in the pool
+     *
+     * @return idle connections
+     */
+    public int getIdleConnections () {
+        return null == poolStats ? 0 : poolStats.getIdleConnections();
+    }
+
+    /**
+     * Number of threads currently blocked waiting for a connection
+     *
+     * @return waiting threads
+     */
+    public int getPendingThreads () {
+        return null == poolStats ? 0 : poolStats.getPendingThreads();
+    }
+
+    @Override
+    public String toString () {
+        return String.format(
+                "active=%d, idle=%d, waiting=%d, acquired=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, avgHeld=%.2fms, created=%d",
+                getActiveConnections(), getIdleConnections(), getPendingThreads(), getAcquireCount(),
+                getAverageAcquireMillis(), getMaxAcquireMillis(), getTimeoutCount(), getAverageUsageMillis(),
+                getCreatedCount() );
+    }
+
+}
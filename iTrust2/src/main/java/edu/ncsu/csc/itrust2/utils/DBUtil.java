@@ -5,16 +5,39 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import javax.sql.DataSource;
 
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
 /**
  * A bit of helper logic for interfacing with the DB manually rather than just
  * using Hibernate. This is necessary for the Spring security login process.
  *
+ * All connections to the database (Spring Security's login queries and every
+ * Hibernate session) are handed out from a single, bounded connection pool
+ * managed here. The size and timeouts of the pool can be tuned by adding
+ * `pool.*` entries to db.properties; sensible defaults are used otherwise.
+ *
+ * Read-only work can be sent to read replicas of the database by listing them
+ * (comma-separated JDBC URLs) under `replica.urls` in db.properties. The
+ * replicas are connected to as `replica.username` / `replica.password`, or as
+ * the primary user if these are not set. Further tuning:
+ * `replica.healthCheckMillis` (how often replicas are checked),
+ * `replica.maxLagSeconds` (how far behind a replica can fall before it is
+ * taken out of rotation; not checked if unset) and `replica.stickyMillis` (how
+ * long a user's reads stay on the primary after they have saved something, so
+ * that they always see their own changes).
+ *
+ * The {@link AuditLogWriter} that records log entries in the background, the
+ * {@link AuditLogArchive} that moves old ones out of the database and the
+ * {@link AuditLogIndex} used to search them are tuned with `audit.*` entries
+ * (see there for what they are).
+ *
  * @author Kai Presler-Marshall
  * @author Andrew Hayes
  *
@@ -26,6 +49,36 @@ public class DBUtil {
     static private String username = null;
     static private String password = null;
 
+    /**
+     * Settings for the connection pool; overridden by db.properties
+     */
+    static private final Properties poolProperties = new Properties();
+
+    /**
+     * Settings for the read replicas, if any; from db.properties
+     */
+    static private final Properties replicaProperties = new Properties();
+
+    /**
+     * Settings for the background audit log writer; from db.properties
+     */
+    static private final Properties auditProperties = new Properties();
+
+    /**
+     * The shared connection pool. Created lazily on first use.
+     */
+    static private HikariDataSource dataSource;
+
+    /**
+     * Sends read-only work to the replicas. Only created if there are any.
+     */
+    static private ReplicaRoutingDataSource routingDataSource;
+
+    /**
+     * Statistics on how the connection pool is being used
+     */
+    static private final ConnectionPoolMetrics metrics = new ConnectionPoolMetrics();
+
     static {
         InputStream input = null;
         final Properties properties = new Properties();
@@ -38,6 +91,17 @@ public class DBUtil {
             url = properties.getProperty( "url" );
             username = properties.getProperty( "username" );
             password = properties.getProperty( "password" );
+            for ( final String key : properties.stringPropertyNames() ) {
+                if ( key.startsWith( "pool." ) ) {
+                    poolProperties.setProperty( key, properties.getProperty( key ) );
+                }
+                else if ( key.startsWith( "replica." ) ) {
+                    replicaProperties.setProperty( key, properties.getProperty( key ) );
+                }
+                else if ( key.startsWith( "audit." ) ) {
+                    auditProperties.setProperty( key, properties.getProperty( key ) );
+                }
+            }
 
         }
         catch ( final Exception e ) {
@@ -66,15 +130,211 @@ public class DBUtil {
      * in production and this should not be emulated, but it makes it easier to
      * share among teammates and Jenkins.
      *
+     * The same pooled DataSource is returned on every call, so Spring Security
+     * and Hibernate share one set of connections rather than opening a new one
+     * for every query.
+     *
+     * @return data source
+     */
+    static synchronized public DataSource dataSource () {
+        if ( null == dataSource || dataSource.isClosed() ) {
+            final HikariConfig config = new HikariConfig();
+            config.setPoolName( "iTrust2" );
+            config.setDriverClassName( "com.mysql.jdbc.Driver" );
+            config.setJdbcUrl( url );
+            config.setUsername( username );
+            config.setPassword( password );
+
+            config.setMaximumPoolSize( poolSetting( "maximumPoolSize", 20 ) );
+            config.setMinimumIdle( poolSetting( "minimumIdle", 5 ) );
+            /* How long a caller will wait for a connection before failing */
+            config.setConnectionTimeout( poolSetting( "connectionTimeoutMillis", 10000 ) );
+            /* Connections are checked with Connection.isValid() on checkout */
+            config.setValidationTimeout( poolSetting( "validationTimeoutMillis", 3000 ) );
+            config.setIdleTimeout( poolSetting( "idleTimeoutMillis", 600000 ) );
+            /* Retire connections before MySQL's wait_timeout closes them */
+            config.setMaxLifetime( poolSetting( "maxLifetimeMillis", 1800000 ) );
+            /* Log a stack trace for any connection held longer than this */
+            config.setLeakDetectionThreshold( poolSetting( "leakDetectionThresholdMillis", 30000 ) );
+            /*
+             * Let the MySQL driver turn a JDBC batch of INSERTs into a single
+             * multi-row INSERT, rather than sending each one separately
+             */
+            config.addDataSourceProperty( "rewriteBatchedStatements", "true" );
+
+            config.setMetricsTrackerFactory( metrics );
+            config.setRegisterMbeans( true );
+
+            dataSource = new HikariDataSource( config );
+        }
+        return dataSource;
+    }
+
+    /**
+     * DataSource for Hibernate. If read replicas have been configured in
+     * db.properties, this sends read-only work (see
+     * {@link ReplicaRoutingDataSource#readOnly(java.util.function.Supplier)})
+     * to them and everything else to the primary pool; otherwise it is just
+     * the primary pool.
+     *
      * @return data source
      */
-    static public DataSource dataSource () {
-        final DriverManagerDataSource driverManagerDataSource = new DriverManagerDataSource();
-        driverManagerDataSource.setDriverClassName( "com.mysql.jdbc.Driver" );
-        driverManagerDataSource.setUrl( url );
-        driverManagerDataSource.setUsername( username );
-        driverManagerDataSource.setPassword( password );
-        return driverManagerDataSource;
+    static synchronized public DataSource routingDataSource () {
+        if ( !hasReplicas() ) {
+            return dataSource();
+        }
+        if ( null == routingDataSource ) {
+            final List<HikariDataSource> replicas = new ArrayList<HikariDataSource>();
+            int i = 0;
+            for ( final String replicaUrl : replicaProperties.getProperty( "replica.urls" ).split( "," ) ) {
+                if ( replicaUrl.trim().isEmpty() ) {
+                    continue;
+                }
+                final HikariConfig config = new HikariConfig();
+                config.setPoolName( "iTrust2-replica-" + i++ );
+                config.setDriverClassName( "com.mysql.jdbc.Driver" );
+                config.setJdbcUrl( replicaUrl.trim() );
+                config.setUsername( replicaProperties.getProperty( "replica.username", username ) );
+                config.setPassword( replicaProperties.getProperty( "replica.password", password ) );
+                config.setReadOnly( true );
+
+                config.setMaximumPoolSize( poolSetting( "maximumPoolSize", 20 ) );
+                config.setMinimumIdle( poolSetting( "minimumIdle", 5 ) );
+                /*
+                 * Fail fast; a read that cannot get a replica connection
+                 * quickly is sent to the primary instead
+                 */
+                config.setConnectionTimeout( replicaSetting( "connectionTimeoutMillis", 1000 ) );
+                config.setValidationTimeout( poolSetting( "validationTimeoutMillis", 3000 ) );
+                config.setIdleTimeout( poolSetting( "idleTimeoutMillis", 600000 ) );
+                config.setMaxLifetime( poolSetting( "maxLifetimeMillis", 1800000 ) );
+                config.setLeakDetectionThreshold( poolSetting( "leakDetectionThresholdMillis", 30000 ) );
+                /* Do not refuse to start just because a replica is down */
+                config.setInitializationFailTimeout( -1 );
+
+                replicas.add( new HikariDataSource( config ) );
+            }
+            routingDataSource = new ReplicaRoutingDataSource( dataSource(), replicas,
+                    replicaSetting( "healthCheckMillis", 5000 ), replicaSetting( "maxLagSeconds", 0 ) );
+        }
+        return routingDataSource;
+    }
+
+    /**
+     * Whether any read replicas have been configured in db.properties
+     *
+     * @return True if read-only work can be sent to a replica
+     */
+    static public boolean hasReplicas () {
+        final String urls = replicaProperties.getProperty( "replica.urls" );
+        return null != urls && !urls.trim().isEmpty();
+    }
+
+    /**
+     * How long (ms) after saving something a user's reads are kept on the
+     * primary database, so that they are not shown data from a replica that
+     * has not caught up with their change yet.
+     *
+     * @return The sticky period, in milliseconds
+     */
+    static public long getReplicaStickyMillis () {
+        return replicaSetting( "stickyMillis", 5000 );
+    }
+
+    /**
+     * Reads a numeric setting for the read replicas from db.properties,
+     * falling back to the default if it is not present or cannot be parsed.
+     *
+     * @param name
+     *            Name of the setting, without the `replica.` prefix
+     * @param defaultValue
+     *            Value to use if nothing has been configured
+     * @return The value to use
+     */
+    static private int replicaSetting ( final String name, final int defaultValue ) {
+        try {
+            return Integer.parseInt( replicaProperties.getProperty( "replica." + name ).trim() );
+        }
+        catch ( final Exception e ) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a setting for the audit log writer from db.properties, falling
+     * back to the default if it is not present.
+     *
+     * @param name
+     *            Name of the setting, without the `audit.` prefix
+     * @param defaultValue
+     *            Value to use if nothing has been configured
+     * @return The value to use
+     */
+    static public String getAuditSetting ( final String name, final String defaultValue ) {
+        final String value = auditProperties.getProperty( "audit." + name );
+        return null == value || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Reads a numeric setting for the audit log writer from db.properties,
+     * falling back to the default if it is not present or cannot be parsed.
+     *
+     * @param name
+     *            Name of the setting, without the `audit.` prefix
+     * @param defaultValue
+     *            Value to use if nothing has been configured
+     * @return The value to use
+     */
+    static public int getAuditSetting ( final String name, final int defaultValue ) {
+        try {
+            return Integer.parseInt( getAuditSetting( name, null ) );
+        }
+        catch ( final Exception e ) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a numeric setting for the connection pool from db.properties,
+     * falling back to the default if it is not present or cannot be parsed.
+     *
+     * @param name
+     *            Name of the setting, without the `pool.` prefix
+     * @param defaultValue
+     *            Value to use if nothing has been configured
+     * @return The value to use
+     */
+    static private int poolSetting ( final String name, final int defaultValue ) {
+        try {
+            return Integer.parseInt( poolProperties.getProperty( "pool." + name ).trim() );
+        }
+        catch ( final Exception e ) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Retrieve statistics on how the connection pool is being used (how many
+     * connections are busy, how long callers have to wait for one, etc).
+     *
+     * @return connection pool metrics
+     */
+    static public ConnectionPoolMetrics getPoolMetrics () {
+        return metrics;
+    }
+
+    /**
+     * Close all connections in the pool. Should only be done when the
+     * application is shutting down.
+     */
+    static synchronized public void shutdown () {
+        if ( null != routingDataSource ) {
+            routingDataSource.close();
+            routingDataSource = null;
+        }
+        if ( null != dataSource ) {
+            dataSource.close();
+        }
     }
 
     /**
@@ -1,9 +1,19 @@
 package edu.ncsu.csc.itrust2.utils;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.hibernate.CacheMode;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+
+import net.sf.ehcache.CacheManager;
 
 /**
  * A utility class for setting up the Hibernate SessionFactory
@@ -16,7 +26,13 @@ public class HibernateUtil {
     /**
      * SeesionFactory used
      */
-    private static SessionFactory sessionFactory = buildSessionFactory();
+    private static SessionFactory          sessionFactory = buildSessionFactory();
+
+    /**
+     * When work outside of a unit of work last wrote to the database from this
+     * thread; its reads stay on the primary for a while afterwards
+     */
+    private static final ThreadLocal<Long> lastWrite      = new ThreadLocal<Long>();
 
     /**
      * Creates a SessionFactory
@@ -29,14 +45,22 @@ public class HibernateUtil {
             final Configuration c = new Configuration();
             c.configure();
 
-            c.setProperty( "hibernate.connection.url", DBUtil.getUrl() );
-            c.setProperty( "hibernate.connection.username", DBUtil.getUsername() );
-            c.setProperty( "hibernate.connection.password", DBUtil.getPassword() );
+            // Borrow connections from the same pool used by Spring Security.
+            // The credentials are deliberately _not_ passed along, as
+            // Hibernate would then try to open connections as a specific
+            // user, which the pool does not support. Read-only work goes to
+            // a replica, if any are configured.
+            c.getProperties().put( AvailableSettings.DATASOURCE, DBUtil.routingDataSource() );
 
-            return c.buildSessionFactory();
+            final SessionFactory factory = c.buildSessionFactory();
             // return new Configuration().configure().buildSessionFactory();
+
+            // hbm2ddl has now created any new tables; bring the rest of the
+            // schema up to date before anything uses it
+            SchemaMigrations.migrate();
+            return factory;
         }
-        catch ( final HibernateException ex ) {
+        catch ( final HibernateException | SQLException ex ) {
             // Make sure you log the exception, as it might be swallowed
             System.err.println( "Initial SessionFactory creation failed." + ex );
             throw new ExceptionInInitializerError( ex );
@@ -63,6 +87,133 @@ public class HibernateUtil {
         return getSessionFactory().openSession();
     }
 
+    /**
+     * Retrieve a Session for reading from a replica. It reads from the
+     * second-level and query caches as usual, but never puts anything into
+     * them: a replica may be behind the primary, and whatever it returns would
+     * otherwise be served from the cache to everyone (including requests that
+     * must see the primary's data) until it expires.
+     *
+     * @return The Session retrieved from the SessionFactory
+     * @throws HibernateException
+     *             If a session cannot be opened
+     */
+    public static Session openReplicaSession () throws HibernateException {
+        final Session session = openSession();
+        session.setCacheMode( CacheMode.GET );
+        return session;
+    }
+
+    /**
+     * Retrieves the number of statements that Hibernate sends to the database
+     * together in a single JDBC batch (hibernate.jdbc.batch_size).
+     *
+     * @return The JDBC batch size
+     */
+    public static int getBatchSize () {
+        return Math.max( 1, getSessionFactory().getSessionFactoryOptions().getJdbcBatchSize() );
+    }
+
+    /**
+     * Performs some work against the database inside of a transaction. If a
+     * {@link UnitOfWork} is active on the current thread (ie, we are serving
+     * an HTTP request) the work joins its Session and transaction; otherwise a
+     * Session is opened, committed and closed just for this piece of work.
+     *
+     * Work that does not write is run against a read replica, if any are
+     * configured, unless this thread has written something recently. What is
+     * read from a replica is not added to the second-level cache (see
+     * {@link #openReplicaSession()}).
+     *
+     * @param write
+     *            Whether the work modifies the database
+     * @param work
+     *            The work to perform with the Session
+     * @param <T>
+     *            Type of the result of the work
+     * @return The result of the work
+     */
+    public static <T> T inTransaction ( final boolean write, final Function<Session, T> work ) {
+        final UnitOfWork uow = UnitOfWork.current();
+        if ( null != uow ) {
+            return uow.execute( write, work );
+        }
+
+        if ( write ) {
+            if ( DBUtil.hasReplicas() ) {
+                lastWrite.set( System.currentTimeMillis() );
+            }
+            return runInSession( false, work );
+        }
+        final Long wrote = lastWrite.get();
+        if ( null != wrote && System.currentTimeMillis() - wrote < DBUtil.getReplicaStickyMillis() ) {
+            return runInSession( false, work );
+        }
+        lastWrite.remove();
+        if ( !DBUtil.hasReplicas() ) {
+            return runInSession( false, work );
+        }
+        return ReplicaRoutingDataSource.readOnly( () -> runInSession( true, work ) );
+    }
+
+    /**
+     * Opens a Session and performs some work inside of a transaction on it,
+     * committing and closing it afterwards.
+     *
+     * @param replica
+     *            Whether the Session reads from a replica
+     * @param work
+     *            The work to perform with the Session
+     * @param <T>
+     *            Type of the result of the work
+     * @return The result of the work
+     */
+    private static <T> T runInSession ( final boolean replica, final Function<Session, T> work ) {
+        final Session session = replica ? openReplicaSession() : openSession();
+        try {
+            session.beginTransaction();
+            final T result = work.apply( session );
+            session.getTransaction().commit();
+            return result;
+        }
+        catch ( final RuntimeException e ) {
+            if ( session.getTransaction().getStatus() == TransactionStatus.ACTIVE ) {
+                session.getTransaction().rollback();
+            }
+            throw e;
+        }
+        finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Retrieves the current statistics (hits, misses, evictions, etc) for
+     * every region of the second-level cache.
+     *
+     * @return The statistics for each region
+     */
+    public static List<CacheStatistics> getCacheStatistics () {
+        // The SessionFactory is built when this class is loaded, so the
+        // singleton CacheManager has already been set up by Hibernate
+        final CacheManager manager = CacheManager.getInstance();
+        final List<CacheStatistics> stats = new ArrayList<CacheStatistics>();
+        for ( final String name : manager.getCacheNames() ) {
+            stats.add( new CacheStatistics( manager.getEhcache( name ) ) );
+        }
+        return stats;
+    }
+
+    /**
+     * Empties every region of the second-level cache. Hibernate keeps the
+     * cache up to date with anything written through a Session; this is only
+     * needed when data is changed some other way (ie, directly in the
+     * database, or when a write is rolled back after it was flushed).
+     */
+    public static void evictCaches () {
+        getSessionFactory().getCache().evictAllRegions();
+    }
+
     /**
      * Close the SessionFactory
      */
@@ -0,0 +1,257 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
+import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
+
+/**
+ * Keeps track, in memory, of which IP addresses are banned or locked out, so
+ * that IPFilter can check every request (static resources included) without
+ * going to the database. Checking an address is a lookup in a concurrent map,
+ * without any locking.
+ *
+ * The banned and locked out addresses are read from the database the first
+ * time they are needed. From then on, bans and lockouts saved or cleared on
+ * this server are applied straight away (by {@link LoginBan} and
+ * {@link LoginLockout} themselves), and everything is read again every so
+ * often to pick up those made by other servers. Lockouts expire on their own.
+ *
+ * A change made on this server is kept for a minute even if it is not (yet)
+ * in the database when it is read again, as it may not have been committed at
+ * the time.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class IPBlockRegistry {
+
+    /** How often to read the bans and lockouts again, by default */
+    static private final long                         REFRESH_SECONDS = 30;
+
+    /** How long changes made on this server are kept over the database */
+    static private final long                         GRACE_MILLIS    = TimeUnit.MINUTES.toMillis( 1 );
+
+    /** Makes sure changes are applied one at a time */
+    static private final Object                       lock            = new Object();
+
+    /** Banned addresses; null until they are first needed */
+    static private volatile Set<String>               bans;
+
+    /** Locked out addresses, with when (in milliseconds) the lockout ends */
+    static private volatile ConcurrentMap<String, Long> lockouts;
+
+    /** Addresses changed on this server, with when they were changed */
+    static private final Map<String, Long>            changed         = new ConcurrentHashMap<String, Long>();
+
+    /** Reads the bans and lockouts in the background, or null if not running */
+    static private ScheduledExecutorService           refresher;
+
+    /**
+     * Starts reading the bans and lockouts in the background, right away and
+     * then every 30 seconds. Does nothing if this is already running.
+     */
+    static synchronized public void start () {
+        start( REFRESH_SECONDS );
+    }
+
+    /**
+     * Starts reading the bans and lockouts in the background, right away and
+     * then every so often. Does nothing if this is already running.
+     *
+     * @param refreshSeconds
+     *            How often to read them again
+     */
+    static synchronized public void start ( final long refreshSeconds ) {
+        if ( refreshSeconds < 1 ) {
+            throw new IllegalArgumentException( "The refresh interval must be positive" );
+        }
+        if ( null != refresher ) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-ip-block-refresher" );
+            t.setDaemon( true );
+            return t;
+        } );
+        refresher.scheduleWithFixedDelay( () -> {
+            try {
+                refresh();
+            }
+            catch ( final RuntimeException e ) {
+                // Keep what we have; try again next time
+                e.printStackTrace( System.out );
+            }
+        }, 0, refreshSeconds, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Stops reading the bans and lockouts in the background
+     */
+    static synchronized public void stop () {
+        if ( null == refresher ) {
+            return;
+        }
+        refresher.shutdownNow();
+        refresher = null;
+    }
+
+    /**
+     * Checks whether an IP address is banned
+     *
+     * @param addr
+     *            The IP address to check
+     * @return True if it is banned
+     */
+    static public boolean isBanned ( final String addr ) {
+        load();
+        return bans.contains( addr );
+    }
+
+    /**
+     * Checks whether an IP address is currently locked out
+     *
+     * @param addr
+     *            The IP address to check
+     * @return True if it is locked out
+     */
+    static public boolean isLocked ( final String addr ) {
+        load();
+        final ConcurrentMap<String, Long> locked = lockouts;
+        final Long until = locked.get( addr );
+        if ( null == until ) {
+            return false;
+        }
+        if ( until > System.currentTimeMillis() ) {
+            return true;
+        }
+        locked.remove( addr, until );
+        return false;
+    }
+
+    /**
+     * Records that an IP address has been banned
+     *
+     * @param addr
+     *            The IP address
+     */
+    static public void banned ( final String addr ) {
+        synchronized ( lock ) {
+            if ( null != bans ) {
+                bans.add( addr );
+                changed.put( addr, System.currentTimeMillis() );
+            }
+        }
+    }
+
+    /**
+     * Records that the bans on an IP address have been cleared
+     *
+     * @param addr
+     *            The IP address
+     */
+    static public void unbanned ( final String addr ) {
+        synchronized ( lock ) {
+            if ( null != bans ) {
+                bans.remove( addr );
+                changed.put( addr, System.currentTimeMillis() );
+            }
+        }
+    }
+
+    /**
+     * Records that an IP address has been locked out
+     *
+     * @param addr
+     *            The IP address
+     * @param until
+     *            When the lockout ends
+     */
+    static public void lockedOut ( final String addr, final ZonedDateTime until ) {
+        synchronized ( lock ) {
+            if ( null != lockouts ) {
+                lockouts.merge( addr, until.toInstant().toEpochMilli(), Math::max );
+                changed.put( addr, System.currentTimeMillis() );
+            }
+        }
+    }
+
+    /**
+     * Records that the lockouts on an IP address have been cleared
+     *
+     * @param addr
+     *            The IP address
+     */
+    static public void unlocked ( final String addr ) {
+        synchronized ( lock ) {
+            if ( null != lockouts ) {
+                lockouts.remove( addr );
+                changed.put( addr, System.currentTimeMillis() );
+            }
+        }
+    }
+
+    /**
+     * Reads the banned and locked out addresses from the database again,
+     * replacing those in memory (apart from recent changes made on this
+     * server)
+     */
+    static public void refresh () {
+        final Set<String> newBans = ConcurrentHashMap.newKeySet();
+        newBans.addAll( LoginBan.getBannedIPs() );
+        final ConcurrentMap<String, Long> newLockouts = new ConcurrentHashMap<String, Long>();
+        for ( final LoginLockout lockout : LoginLockout.getActiveIPLockouts() ) {
+            newLockouts.merge( lockout.getIp(), lockout.getExpiry().toInstant().toEpochMilli(), Math::max );
+        }
+
+        synchronized ( lock ) {
+            final long cutoff = System.currentTimeMillis() - GRACE_MILLIS;
+            for ( final Iterator<Map.Entry<String, Long>> it = changed.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<String, Long> change = it.next();
+                final String addr = change.getKey();
+                if ( change.getValue() < cutoff || null == bans ) {
+                    it.remove();
+                    continue;
+                }
+                if ( bans.contains( addr ) ) {
+                    newBans.add( addr );
+                }
+                else {
+                    newBans.remove( addr );
+                }
+                final Long until = lockouts.get( addr );
+                if ( null != until ) {
+                    newLockouts.put( addr, until );
+                }
+                else {
+                    newLockouts.remove( addr );
+                }
+            }
+            lockouts = newLockouts;
+            bans = newBans;
+        }
+    }
+
+    /**
+     * Reads the bans and lockouts from the database, if this has not been
+     * done yet
+     */
+    static private void load () {
+        if ( null == bans ) {
+            synchronized ( lock ) {
+                if ( null == bans ) {
+                    refresh();
+                }
+            }
+        }
+    }
+
+}
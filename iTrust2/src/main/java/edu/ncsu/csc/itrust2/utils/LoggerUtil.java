@@ -1,11 +1,14 @@
 package edu.ncsu.csc.itrust2.utils;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntryRollup;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 
 /**
@@ -13,6 +16,11 @@ import edu.ncsu.csc.itrust2.models.persistent.User;
  * that previously occurred. All actions that need to be logged (as defined in
  * the iTrust Wiki) should be logged using one of the three `Log` methods here.
  *
+ * In the web application, events are saved in the background a batch at a
+ * time, rather than as part of the request that logged them (see
+ * {@link AuditLogWriter}). As they are saved, they are also counted in the
+ * daily totals kept for each type of event (see {@link LogEntryRollup}).
+ *
  * @author Kai Presler-Marshall
  *
  */
@@ -34,8 +42,7 @@ public class LoggerUtil {
      */
     static public void log ( final TransactionType code, final String primaryUser, final String secondaryUser,
             final String message ) {
-        final LogEntry le = new LogEntry( code, primaryUser, secondaryUser, message );
-        le.save();
+        AuditLogWriter.write( new LogEntry( code, primaryUser, secondaryUser, message ) );
     }
 
     /**
@@ -105,22 +112,15 @@ public class LoggerUtil {
      *            User to find LogEntries for
      * @param top
      *            Number of events to find
-     * @return A List of the LogEntry Entries for the user. If the number of
-     *         Entries is less than `top`, returns all
+     * @return A List of the LogEntry Entries for the user, oldest first. If the
+     *         number of Entries is less than `top`, returns all. Only those
+     *         still in the database (not archived) are included.
      */
     static public List<LogEntry> getTopForUser ( final String user, final Integer top ) {
-        final List<LogEntry> all = getAllForUser( user );
-        all.sort( ( x1, x2 ) -> x1.getTime().compareTo( x2.getTime() ) );
-        try {
-            return all.subList( 0, top );
-        }
-        catch ( final IndexOutOfBoundsException e ) { /*
-                                                       * If num < top (ie, fewer
-                                                       * records exist than were
-                                                       * requested) return all
-                                                       */
-            return all;
+        if ( top < 1 ) {
+            return new ArrayList<LogEntry>();
         }
+        return LogEntry.getPageForUser( user, null, null, false, new PageRequest( "time", true, top ) ).getItems();
     }
 
     /**
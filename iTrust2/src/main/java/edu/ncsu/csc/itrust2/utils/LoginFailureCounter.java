@@ -0,0 +1,241 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts failed log in attempts, in memory, over a sliding window of time. One
+ * counter is kept for IP addresses ({@link #BY_IP}) and one for usernames
+ * ({@link #BY_USER}), so that a burst of failures costs a few increments rather
+ * than a row in the database each. Only the lockouts and bans that result are
+ * saved.
+ *
+ * The window is split into buckets of time. Each bucket holds the failures
+ * counted during it, along with which stretch of time that was, packed together
+ * in a single long so that it can be moved on and counted into with one
+ * compare-and-set. Failures older than the window simply stop being counted.
+ * The keys are spread over several maps (stripes), and each stripe is swept of
+ * keys with nothing left in their window every so often, so that addresses and
+ * usernames seen once are not kept forever.
+ *
+ * The counts are kept per server; they are lost on restart, and are not shared
+ * between servers.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class LoginFailureCounter {
+
+    /** Failures counted by IP address, over the last day */
+    static public final LoginFailureCounter BY_IP       = new LoginFailureCounter( TimeUnit.DAYS.toMillis( 1 ), 24 );
+
+    /** Failures counted by username, over the last day */
+    static public final LoginFailureCounter BY_USER     = new LoginFailureCounter( TimeUnit.DAYS.toMillis( 1 ), 24 );
+
+    /** Number of maps the keys are spread over; a power of two */
+    static private final int                STRIPES     = 16;
+
+    /** Bits of a bucket used for its count; the rest say when it is for */
+    static private final int                COUNT_BITS  = 24;
+
+    /** Mask to pick the count out of a bucket */
+    static private final long               COUNT_MASK  = ( 1L << COUNT_BITS ) - 1;
+
+    /** The keys counted, spread over several maps */
+    private final ConcurrentMap<String, Window>[] stripes;
+
+    /** When each stripe is next due to be swept, in milliseconds */
+    private final AtomicLong[]              nextSweep;
+
+    /** Length of each bucket of time, in milliseconds */
+    private final long                      bucketMillis;
+
+    /** Number of buckets in the window */
+    private final int                       buckets;
+
+    /**
+     * Creates a counter over a sliding window of time
+     *
+     * @param windowMillis
+     *            How long failures are counted for, in milliseconds
+     * @param buckets
+     *            How many buckets the window is split into; the more there are,
+     *            the more smoothly failures stop being counted
+     */
+    @SuppressWarnings ( "unchecked" )
+    public LoginFailureCounter ( final long windowMillis, final int buckets ) {
+        if ( buckets < 1 || windowMillis < buckets ) {
+            throw new IllegalArgumentException( "The window must hold at least one millisecond per bucket" );
+        }
+        this.buckets = buckets;
+        this.bucketMillis = windowMillis / buckets;
+        stripes = new ConcurrentMap[STRIPES];
+        nextSweep = new AtomicLong[STRIPES];
+        for ( int i = 0; i < STRIPES; i++ ) {
+            stripes[i] = new ConcurrentHashMap<String, Window>();
+            nextSweep[i] = new AtomicLong( System.currentTimeMillis() + windowMillis );
+        }
+    }
+
+    /**
+     * Counts a failure for the given key
+     *
+     * @param key
+     *            The IP address or username that failed
+     * @return The number of failures in the window, including this one
+     */
+    public int add ( final String key ) {
+        final long now = System.currentTimeMillis();
+        final int index = stripeFor( key );
+        sweep( index, now );
+        final ConcurrentMap<String, Window> stripe = stripes[index];
+        while ( true ) {
+            final Window window = stripe.computeIfAbsent( key, k -> new Window( buckets ) );
+            window.add( now / bucketMillis );
+            // Swept away in the meantime? Then count it again in a window that
+            // is still there.
+            if ( stripe.get( key ) == window ) {
+                return window.count( now / bucketMillis );
+            }
+        }
+    }
+
+    /**
+     * Returns the number of failures for the given key in the window
+     *
+     * @param key
+     *            The IP address or username to check
+     * @return The number of failures
+     */
+    public int get ( final String key ) {
+        final Window window = stripes[stripeFor( key )].get( key );
+        return null == window ? 0 : window.count( System.currentTimeMillis() / bucketMillis );
+    }
+
+    /**
+     * Forgets the failures for the given key, such as after a successful log
+     * in or once they have resulted in a lockout
+     *
+     * @param key
+     *            The IP address or username to clear
+     */
+    public void clear ( final String key ) {
+        stripes[stripeFor( key )].remove( key );
+    }
+
+    /**
+     * Returns the number of keys currently held, including any with nothing
+     * left in their window that have not been swept yet
+     *
+     * @return number of keys
+     */
+    public int size () {
+        int size = 0;
+        for ( final ConcurrentMap<String, Window> stripe : stripes ) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Works out which stripe a key is kept in
+     *
+     * @param key
+     *            The IP address or username
+     * @return The index of its stripe
+     */
+    private int stripeFor ( final String key ) {
+        final int h = key.hashCode();
+        return ( h ^ ( h >>> 16 ) ) & ( STRIPES - 1 );
+    }
+
+    /**
+     * Removes the keys with nothing left in their window from a stripe, if it
+     * is due. Only one thread sweeps a stripe at a time; the others carry on.
+     *
+     * @param index
+     *            The index of the stripe to sweep
+     * @param now
+     *            The current time, in milliseconds
+     */
+    private void sweep ( final int index, final long now ) {
+        final long when = nextSweep[index].get();
+        if ( now < when || !nextSweep[index].compareAndSet( when, now + bucketMillis ) ) {
+            return;
+        }
+        final ConcurrentMap<String, Window> stripe = stripes[index];
+        final long stamp = now / bucketMillis;
+        for ( final Map.Entry<String, Window> entry : stripe.entrySet() ) {
+            if ( 0 == entry.getValue().count( stamp ) ) {
+                stripe.remove( entry.getKey(), entry.getValue() );
+            }
+        }
+    }
+
+    /**
+     * The failures for a single key, one bucket per stretch of time in the
+     * window. A bucket is reused once the stretch of time it was for has left
+     * the window.
+     */
+    static private class Window {
+
+        /** Each bucket's stretch of time, above its count */
+        private final AtomicLongArray slots;
+
+        /**
+         * Creates an empty window
+         *
+         * @param buckets
+         *            Number of buckets the window is split into
+         */
+        Window ( final int buckets ) {
+            slots = new AtomicLongArray( buckets );
+        }
+
+        /**
+         * Counts one more failure in the bucket for a stretch of time. If the
+         * bucket was last used for an earlier stretch, it starts again from
+         * zero; if it is full, the failure is not counted.
+         *
+         * @param stamp
+         *            The stretch of time the failure happened in (the time
+         *            divided by the length of a bucket)
+         */
+        void add ( final long stamp ) {
+            final int i = (int) ( stamp % slots.length() );
+            while ( true ) {
+                final long slot = slots.get( i );
+                final long count = slot >>> COUNT_BITS == stamp ? slot & COUNT_MASK : 0;
+                if ( COUNT_MASK == count
+                        || slots.compareAndSet( i, slot, ( stamp << COUNT_BITS ) | ( count + 1 ) ) ) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Adds up the failures in the buckets that are still in the window
+         *
+         * @param stamp
+         *            The current stretch of time (the time divided by the
+         *            length of a bucket)
+         * @return The number of failures in the window
+         */
+        int count ( final long stamp ) {
+            long total = 0;
+            for ( int i = 0; i < slots.length(); i++ ) {
+                final long slot = slots.get( i );
+                if ( stamp - ( slot >>> COUNT_BITS ) < slots.length() ) {
+                    total += slot & COUNT_MASK;
+                }
+            }
+            return (int) Math.min( Integer.MAX_VALUE, total );
+        }
+
+    }
+
+}
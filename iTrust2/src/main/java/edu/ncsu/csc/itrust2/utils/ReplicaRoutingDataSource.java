@@ -0,0 +1,281 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * DataSource that sends read-only work to read replicas of the database, and
+ * everything else to the primary. Reports, histories and lists can then be
+ * served without competing with clinical writes for the primary.
+ *
+ * Whether a connection is for read-only work is decided by the thread asking
+ * for it: connections requested inside of {@link #readOnly(Supplier)} come
+ * from a replica (picked round-robin), all others from the primary. The
+ * routing is done when the connection is handed out, so a Hibernate Session
+ * keeps whichever connection it got for its whole transaction.
+ *
+ * Replicas are checked in the background. One that cannot be reached, has
+ * stopped replicating, or has fallen too far behind the primary is taken out
+ * of rotation until it passes a check again; while no replica is healthy,
+ * read-only work simply goes to the primary.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class ReplicaRoutingDataSource implements DataSource {
+
+    /** Set on threads doing read-only work */
+    static private final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<Boolean>();
+
+    /** Where writes (and reads when no replica is healthy) go */
+    private final DataSource                  primary;
+
+    /** The read replicas */
+    private final List<Replica>               replicas;
+
+    /** Used to spread reads across the replicas */
+    private final AtomicInteger               next     = new AtomicInteger();
+
+    /**
+     * Maximum replication lag, in seconds, before a replica is taken out of
+     * rotation; 0 to not check lag
+     */
+    private final int                         maxLagSeconds;
+
+    /** Runs the health checks */
+    private final ScheduledExecutorService    checker;
+
+    /**
+     * Creates a ReplicaRoutingDataSource
+     *
+     * @param primary
+     *            The primary database
+     * @param replicas
+     *            Connection pools for each of the read replicas
+     * @param healthCheckMillis
+     *            How often to check the health of the replicas
+     * @param maxLagSeconds
+     *            How far behind the primary a replica can fall before being
+     *            taken out of rotation; 0 to not check. Checking lag needs
+     *            the REPLICATION CLIENT privilege.
+     */
+    public ReplicaRoutingDataSource ( final DataSource primary, final List<HikariDataSource> replicas,
+            final long healthCheckMillis, final int maxLagSeconds ) {
+        this.primary = primary;
+        final List<Replica> list = new ArrayList<Replica>();
+        for ( final HikariDataSource pool : replicas ) {
+            list.add( new Replica( pool ) );
+        }
+        this.replicas = Collections.unmodifiableList( list );
+        this.maxLagSeconds = maxLagSeconds;
+
+        this.checker = Executors.newSingleThreadScheduledExecutor( r -> {
+            final Thread t = new Thread( r, "iTrust2-replica-health" );
+            t.setDaemon( true );
+            return t;
+        } );
+        checker.scheduleWithFixedDelay( this::checkReplicas, healthCheckMillis, healthCheckMillis,
+                TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Performs some read-only work. Any connection obtained while doing it
+     * comes from a replica, if a healthy one is available.
+     *
+     * @param work
+     *            The work to perform
+     * @param <T>
+     *            Type of the result of the work
+     * @return The result of the work
+     */
+    static public <T> T readOnly ( final Supplier<T> work ) {
+        if ( Boolean.TRUE.equals( READ_ONLY.get() ) ) {
+            return work.get();
+        }
+        READ_ONLY.set( Boolean.TRUE );
+        try {
+            return work.get();
+        }
+        finally {
+            READ_ONLY.remove();
+        }
+    }
+
+    @Override
+    public Connection getConnection () throws SQLException {
+        if ( Boolean.TRUE.equals( READ_ONLY.get() ) ) {
+            for ( int i = 0; i < replicas.size(); i++ ) {
+                final Replica replica = replicas
+                        .get( Math.floorMod( next.getAndIncrement(), replicas.size() ) );
+                if ( !replica.healthy ) {
+                    continue;
+                }
+                try {
+                    return replica.pool.getConnection();
+                }
+                catch ( final SQLException e ) {
+                    // Eject it now rather than waiting for the next check;
+                    // the read can still be served by another database.
+                    replica.healthy = false;
+                    System.err.println( "Replica " + replica + " taken out of rotation: " + e.getMessage() );
+                }
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection ( final String username, final String password ) throws SQLException {
+        throw new SQLFeatureNotSupportedException( "Connections are always opened with the configured user" );
+    }
+
+    /**
+     * Number of replicas that are currently in rotation
+     *
+     * @return healthy replicas
+     */
+    public int getHealthyReplicas () {
+        return (int) replicas.stream().filter( replica -> replica.healthy ).count();
+    }
+
+    /**
+     * Checks every replica right away, rather than waiting for the next
+     * scheduled check
+     */
+    public void checkReplicas () {
+        for ( final Replica replica : replicas ) {
+            final boolean healthy = isHealthy( replica );
+            if ( healthy != replica.healthy ) {
+                System.err.println(
+                        "Replica " + replica + ( healthy ? " back in rotation" : " taken out of rotation" ) );
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * Checks whether a replica can be reached and, if configured, is keeping
+     * up with the primary
+     *
+     * @param replica
+     *            The replica to check
+     * @return True if reads can be sent to the replica
+     */
+    private boolean isHealthy ( final Replica replica ) {
+        try ( final Connection conn = replica.pool.getConnection() ) {
+            if ( !conn.isValid( 2 ) ) {
+                return false;
+            }
+            if ( maxLagSeconds <= 0 ) {
+                return true;
+            }
+            try ( final Statement stmt = conn.createStatement();
+                    final ResultSet rs = stmt.executeQuery( "SHOW SLAVE STATUS" ) ) {
+                if ( !rs.next() ) {
+                    return false; // not replicating at all
+                }
+                final long lag = rs.getLong( "Seconds_Behind_Master" );
+                // NULL means replication has stopped
+                return !rs.wasNull() && lag <= maxLagSeconds;
+            }
+        }
+        catch ( final SQLException e ) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops the health checks and closes the replica connection pools. The
+     * primary is left alone.
+     */
+    public void close () {
+        checker.shutdownNow();
+        for ( final Replica replica : replicas ) {
+            replica.pool.close();
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter () throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter ( final PrintWriter out ) throws SQLException {
+        primary.setLogWriter( out );
+    }
+
+    @Override
+    public void setLoginTimeout ( final int seconds ) throws SQLException {
+        primary.setLoginTimeout( seconds );
+    }
+
+    @Override
+    public int getLoginTimeout () throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger () throws SQLFeatureNotSupportedException {
+        return primary.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap ( final Class<T> iface ) throws SQLException {
+        if ( iface.isInstance( this ) ) {
+            return iface.cast( this );
+        }
+        return primary.unwrap( iface );
+    }
+
+    @Override
+    public boolean isWrapperFor ( final Class< ? > iface ) throws SQLException {
+        return iface.isInstance( this ) || primary.isWrapperFor( iface );
+    }
+
+    /**
+     * A read replica and whether it is currently in rotation
+     */
+    static private class Replica {
+
+        /** Connection pool for the replica */
+        final HikariDataSource pool;
+
+        /** Whether reads are currently sent to the replica */
+        volatile boolean       healthy = true;
+
+        /**
+         * Creates a Replica
+         *
+         * @param pool
+         *            Connection pool for the replica
+         */
+        Replica ( final HikariDataSource pool ) {
+            this.pool = pool;
+        }
+
+        @Override
+        public String toString () {
+            return pool.getJdbcUrl();
+        }
+
+    }
+
+}
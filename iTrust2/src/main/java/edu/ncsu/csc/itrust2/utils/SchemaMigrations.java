@@ -0,0 +1,330 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Applies versioned changes to the database schema. Each change is a SQL
+ * script on the classpath at db/migration/V{version}__{description}.sql; the
+ * scripts are run in order of their version, and each one is only ever run
+ * once against a database. The versions that have been applied are recorded
+ * in the SchemaMigrations table.
+ *
+ * Hibernate (hbm2ddl) still creates the tables and columns for new entities,
+ * so migrations are run right after the SessionFactory is built, and can also
+ * be run on their own at deploy time through {@link #main(String[])}. Use them
+ * for everything that hbm2ddl will not do for an existing database: indexes,
+ * renames, changed column types, moving data around and so on.
+ *
+ * Once a script has been applied it must not be edited; make a new one with
+ * the next version number instead. This is enforced with a checksum.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class SchemaMigrations {
+
+    /** Where the migration scripts are found */
+    static private final String  LOCATION       = "classpath*:db/migration/V*__*.sql";
+
+    /** Name of a migration script: its version and description */
+    static private final Pattern NAME           = Pattern.compile( "V(\\d+)__(\\w+)\\.sql" );
+
+    /** Table recording which migrations have been applied */
+    static private final String  HISTORY_TABLE  = "SchemaMigrations";
+
+    /**
+     * Name of the database lock held while migrating, so that two instances
+     * starting up at the same time do not both apply the same migration
+     */
+    static private final String  LOCK           = "iTrust2.SchemaMigrations";
+
+    /** How long (s) to wait for another instance to finish migrating */
+    static private final int     LOCK_TIMEOUT   = 300;
+
+    /** MySQL error code for creating an index with a name already in use */
+    static private final int     ER_DUP_KEYNAME = 1061;
+
+    /**
+     * Applies all of the migrations that have not yet been applied to the
+     * database.
+     *
+     * @return The number of migrations that were applied
+     * @throws SQLException
+     *             If a migration fails. The migrations before it stay applied.
+     * @throws IllegalStateException
+     *             If a migration that was already applied has been changed
+     *             since
+     */
+    static public int migrate () throws SQLException {
+        final List<Migration> migrations = load();
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            conn.setAutoCommit( true );
+            lock( conn );
+            try {
+                createHistoryTable( conn );
+                final Map<Integer, Long> applied = getApplied( conn );
+
+                int count = 0;
+                for ( final Migration migration : migrations ) {
+                    final Long checksum = applied.get( migration.version );
+                    if ( null == checksum ) {
+                        apply( conn, migration );
+                        count++;
+                    }
+                    else if ( checksum != migration.checksum ) {
+                        throw new IllegalStateException( "Migration " + migration
+                                + " has been changed since it was applied; make a new migration instead" );
+                    }
+                }
+                return count;
+            }
+            finally {
+                unlock( conn );
+            }
+        }
+    }
+
+    /**
+     * Finds all of the migration scripts on the classpath
+     *
+     * @return The migrations, sorted by version
+     */
+    static private List<Migration> load () {
+        final List<Migration> migrations = new ArrayList<Migration>();
+        try {
+            for ( final Resource resource : new PathMatchingResourcePatternResolver().getResources( LOCATION ) ) {
+                final Matcher m = NAME.matcher( resource.getFilename() );
+                if ( !m.matches() ) {
+                    throw new IllegalStateException( "Badly named migration " + resource.getFilename() );
+                }
+                try ( final InputStream in = resource.getInputStream() ) {
+                    migrations.add( new Migration( Integer.parseInt( m.group( 1 ) ), m.group( 2 ),
+                            StreamUtils.copyToString( in, StandardCharsets.UTF_8 ) ) );
+                }
+            }
+        }
+        catch ( final IOException e ) {
+            throw new IllegalStateException( "Could not read migrations", e );
+        }
+        migrations.sort( Comparator.comparingInt( migration -> migration.version ) );
+        for ( int i = 1; i < migrations.size(); i++ ) {
+            if ( migrations.get( i ).version == migrations.get( i - 1 ).version ) {
+                throw new IllegalStateException( "Two migrations have version " + migrations.get( i ).version );
+            }
+        }
+        return migrations;
+    }
+
+    /**
+     * Runs every statement of a migration, then records it as applied
+     *
+     * @param conn
+     *            Connection to run the migration on
+     * @param migration
+     *            The migration to apply
+     * @throws SQLException
+     *             If a statement fails
+     */
+    static private void apply ( final Connection conn, final Migration migration ) throws SQLException {
+        try ( final Statement stmt = conn.createStatement() ) {
+            for ( final String sql : migration.getStatements() ) {
+                try {
+                    stmt.execute( sql );
+                }
+                catch ( final SQLException e ) {
+                    // hbm2ddl creates the indexes declared on an entity along
+                    // with its table, so on a new database they are already
+                    // there by the time the migration adding them runs
+                    if ( e.getErrorCode() != ER_DUP_KEYNAME ) {
+                        throw new SQLException( "Migration " + migration + " failed on: " + sql, e );
+                    }
+                }
+            }
+        }
+        try ( final PreparedStatement stmt = conn.prepareStatement( "INSERT INTO " + HISTORY_TABLE
+                + " (version, description, checksum, applied) VALUES (?, ?, ?, ?)" ) ) {
+            stmt.setInt( 1, migration.version );
+            stmt.setString( 2, migration.description );
+            stmt.setLong( 3, migration.checksum );
+            stmt.setTimestamp( 4, new Timestamp( System.currentTimeMillis() ) );
+            stmt.executeUpdate();
+        }
+        System.out.println( "Applied database migration " + migration );
+    }
+
+    /**
+     * Creates the table recording applied migrations, if it does not exist
+     *
+     * @param conn
+     *            Connection to use
+     * @throws SQLException
+     *             If the table cannot be created
+     */
+    static private void createHistoryTable ( final Connection conn ) throws SQLException {
+        try ( final Statement stmt = conn.createStatement() ) {
+            stmt.execute( "CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " (version INT NOT NULL PRIMARY KEY, "
+                    + "description VARCHAR(255) NOT NULL, checksum BIGINT NOT NULL, applied DATETIME NOT NULL)" );
+        }
+    }
+
+    /**
+     * Retrieves the migrations that have been applied
+     *
+     * @param conn
+     *            Connection to use
+     * @return The checksum of each applied migration, by version
+     * @throws SQLException
+     *             If the history cannot be read
+     */
+    static private Map<Integer, Long> getApplied ( final Connection conn ) throws SQLException {
+        final Map<Integer, Long> applied = new HashMap<Integer, Long>();
+        try ( final Statement stmt = conn.createStatement();
+                final ResultSet rs = stmt.executeQuery( "SELECT version, checksum FROM " + HISTORY_TABLE ) ) {
+            while ( rs.next() ) {
+                applied.put( rs.getInt( 1 ), rs.getLong( 2 ) );
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Waits to take the migration lock
+     *
+     * @param conn
+     *            Connection to hold the lock on
+     * @throws SQLException
+     *             If the lock cannot be taken in time
+     */
+    static private void lock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement stmt = conn.prepareStatement( "SELECT GET_LOCK(?, ?)" ) ) {
+            stmt.setString( 1, LOCK );
+            stmt.setInt( 2, LOCK_TIMEOUT );
+            try ( final ResultSet rs = stmt.executeQuery() ) {
+                if ( !rs.next() || rs.getInt( 1 ) != 1 ) {
+                    throw new SQLException( "Timed out waiting for another instance to finish migrating" );
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the migration lock
+     *
+     * @param conn
+     *            Connection holding the lock
+     * @throws SQLException
+     *             If the lock cannot be released
+     */
+    static private void unlock ( final Connection conn ) throws SQLException {
+        try ( final PreparedStatement stmt = conn.prepareStatement( "SELECT RELEASE_LOCK(?)" ) ) {
+            stmt.setString( 1, LOCK );
+            stmt.executeQuery().close();
+        }
+    }
+
+    /**
+     * Applies any outstanding migrations to the database configured in
+     * db.properties. Run this as part of a deployment, before starting the
+     * new version of the application.
+     *
+     * @param args
+     *            Unused
+     * @throws SQLException
+     *             If a migration fails
+     */
+    public static void main ( final String[] args ) throws SQLException {
+        System.out.println( "Applied " + migrate() + " database migration(s)" );
+    }
+
+    /**
+     * A single migration script
+     */
+    static private class Migration {
+
+        /** Version of the migration; migrations are applied in this order */
+        final int    version;
+
+        /** What the migration does */
+        final String description;
+
+        /** Contents of the script */
+        final String script;
+
+        /** Checksum of the script, used to detect changes */
+        final long   checksum;
+
+        /**
+         * Creates a Migration
+         *
+         * @param version
+         *            Version of the migration
+         * @param description
+         *            What the migration does
+         * @param script
+         *            Contents of the script
+         */
+        Migration ( final int version, final String description, final String script ) {
+            this.version = version;
+            this.description = description;
+            this.script = script;
+            final CRC32 crc = new CRC32();
+            crc.update( script.getBytes( StandardCharsets.UTF_8 ) );
+            this.checksum = crc.getValue();
+        }
+
+        /**
+         * Splits the script into the statements to run. Statements end with a
+         * semicolon at the end of a line; lines starting with `--` are
+         * comments.
+         *
+         * @return The statements of the script
+         */
+        List<String> getStatements () {
+            final List<String> statements = new ArrayList<String>();
+            StringBuilder current = new StringBuilder();
+            for ( final String line : script.split( "\r?\n" ) ) {
+                final String trimmed = line.trim();
+                if ( trimmed.isEmpty() || trimmed.startsWith( "--" ) ) {
+                    continue;
+                }
+                current.append( line ).append( '\n' );
+                if ( trimmed.endsWith( ";" ) ) {
+                    final String sql = current.toString().trim();
+                    statements.add( sql.substring( 0, sql.length() - 1 ) );
+                    current = new StringBuilder();
+                }
+            }
+            if ( current.toString().trim().length() > 0 ) {
+                statements.add( current.toString().trim() );
+            }
+            return statements;
+        }
+
+        @Override
+        public String toString () {
+            return "V" + version + " (" + description + ")";
+        }
+
+    }
+
+}
@@ -0,0 +1,470 @@
+package edu.ncsu.csc.itrust2.utils;
+
+import java.io.Serializable;
+import java.sql.Savepoint;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.hibernate.Session;
+
+/**
+ * A unit of work groups together every database operation performed on a
+ * thread (typically, everything that happens while serving a single HTTP
+ * request) so that they share one Session, one connection and one
+ * transaction, which is committed once at the end.
+ *
+ * While a unit of work is active, the DomainObject methods (getWhere, save,
+ * delete, etc) transparently join it instead of opening their own Session.
+ * Outside of a unit of work (unit tests, the data generator, batch jobs) they
+ * keep opening and committing a Session per call.
+ *
+ * To behave the same way as the per-call code path, objects never stay
+ * attached to the shared Session between operations: everything that is
+ * retrieved is detached once the operation finishes, and each write is flushed
+ * immediately inside of a savepoint. This means that a failed save is rolled
+ * back on its own (and the exception reported to the caller right away)
+ * without discarding the rest of the work done in the request. If the database
+ * rolls back the whole transaction instead (ie, on a deadlock), the earlier
+ * work is gone too; the unit of work is then marked rollback-only, and every
+ * operation after that (and the commit) fails, so that the request fails as a
+ * whole rather than committing only part of what it did.
+ *
+ * If read replicas are configured, reads are served from a second Session on a
+ * replica until the first write; from then on everything (reads included) uses
+ * the primary, so that the request always sees its own changes. A unit of work
+ * can also be told to stay on the primary from the start, which is how a user
+ * is kept from reading stale data from a replica just after they saved
+ * something (see UnitOfWorkFilter). Reads from a replica are answered from the
+ * second-level cache when possible, but never added to it, so a lagging replica
+ * cannot leave stale data in the cache for everyone else.
+ *
+ * Records looked up by their ID are also remembered for the rest of the unit
+ * of work (an identity map), so asking for the same record again does not go
+ * back to the database and returns the very same object. The map is emptied by
+ * every write, so a record is never served from it after anything may have
+ * changed it. As with any identity map, an object that is modified but not
+ * saved will be seen modified by the next lookup in the same unit of work.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class UnitOfWork {
+
+    /** The unit of work bound to the current thread, if any */
+    static private final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<UnitOfWork>();
+
+    /** Session shared by all operations; opened on first use */
+    private Session                              session;
+
+    /**
+     * Session on a read replica, used for reads until the first write; opened
+     * on first use
+     */
+    private Session                              readSession;
+
+    /** Whether all work must go to the primary database */
+    private final boolean                        primaryOnly;
+
+    /** Set once anything has been written in this unit of work */
+    private boolean                              wrote;
+
+    /** Records retrieved by ID since the last write, by type and then ID */
+    private final Map<Class< ? >, Map<Serializable, Object>> identityMap = new HashMap<Class< ? >,
+            Map<Serializable, Object>>();
+
+    /**
+     * Set when a write was rolled back to its savepoint after being flushed,
+     * meaning the second-level cache may be handed data that was never saved
+     */
+    private boolean                              staleCache;
+
+    /**
+     * Set when the database rolled back the whole transaction; nothing more
+     * can be done in the unit of work
+     */
+    private boolean                              rollbackOnly;
+
+    /**
+     * Units of work are created through {@link #begin()}
+     *
+     * @param primaryOnly
+     *            Whether all work must go to the primary database
+     */
+    private UnitOfWork ( final boolean primaryOnly ) {
+        this.primaryOnly = primaryOnly;
+    }
+
+    /**
+     * Starts a new unit of work on the current thread. No connection is taken
+     * from the pool until the first database operation is performed.
+     *
+     * @return The unit of work that was started
+     * @throws IllegalStateException
+     *             If a unit of work is already active on this thread
+     */
+    static public UnitOfWork begin () {
+        return begin( false );
+    }
+
+    /**
+     * Starts a new unit of work on the current thread. No connection is taken
+     * from the pool until the first database operation is performed.
+     *
+     * @param primaryOnly
+     *            True to do all reads on the primary database, even if read
+     *            replicas are available
+     * @return The unit of work that was started
+     * @throws IllegalStateException
+     *             If a unit of work is already active on this thread
+     */
+    static public UnitOfWork begin ( final boolean primaryOnly ) {
+        if ( null != CURRENT.get() ) {
+            throw new IllegalStateException( "A unit of work is already active on this thread" );
+        }
+        final UnitOfWork uow = new UnitOfWork( primaryOnly );
+        CURRENT.set( uow );
+        return uow;
+    }
+
+    /**
+     * Performs some work in a unit of work of its own, which is committed (or,
+     * if the work fails, rolled back) before this returns. If a unit of work
+     * is already active on this thread it is set aside in the meantime, and
+     * is unaffected by the work: it neither sees it as a write, nor takes it
+     * along if it is rolled back. Used for work that must be saved whatever
+     * happens to the request, such as log entries.
+     *
+     * @param work
+     *            The work to perform
+     * @param <T>
+     *            Type of the result of the work
+     * @return The result of the work
+     */
+    static public <T> T separately ( final Supplier<T> work ) {
+        final UnitOfWork outer = CURRENT.get();
+        CURRENT.remove();
+        try {
+            final UnitOfWork uow = begin( true );
+            final T result;
+            boolean done = false;
+            try {
+                result = work.get();
+                done = true;
+            }
+            finally {
+                if ( !done ) {
+                    uow.rollback();
+                }
+            }
+            uow.commit();
+            return result;
+        }
+        finally {
+            if ( null != outer ) {
+                CURRENT.set( outer );
+            }
+        }
+    }
+
+    /**
+     * Retrieves the unit of work active on the current thread.
+     *
+     * @return The active unit of work, or null if there is none
+     */
+    static public UnitOfWork current () {
+        return CURRENT.get();
+    }
+
+    /**
+     * Retrieves the shared Session, opening it and starting the transaction if
+     * this is the first operation in the unit of work.
+     *
+     * @return The Session to use
+     */
+    private Session session () {
+        if ( null == session ) {
+            session = HibernateUtil.openSession();
+            session.beginTransaction();
+        }
+        return session;
+    }
+
+    /**
+     * Retrieves the Session to read from. This is on a read replica if there
+     * is one, until something has been written.
+     *
+     * @return The Session to use
+     */
+    private Session readSession () {
+        if ( primaryOnly || wrote || !DBUtil.hasReplicas() ) {
+            return session();
+        }
+        if ( null == readSession ) {
+            // The connection is taken when the transaction is started, so
+            // that is what has to happen inside of readOnly
+            readSession = ReplicaRoutingDataSource.readOnly( () -> {
+                final Session s = HibernateUtil.openReplicaSession();
+                try {
+                    s.beginTransaction();
+                }
+                catch ( final RuntimeException e ) {
+                    s.close();
+                    throw e;
+                }
+                return s;
+            } );
+        }
+        return readSession;
+    }
+
+    /**
+     * Whether any database work has been performed in this unit of work
+     *
+     * @return True if a Session has been opened
+     */
+    public boolean isStarted () {
+        return null != session || null != readSession;
+    }
+
+    /**
+     * Whether anything has been written (or attempted to be) in this unit of
+     * work
+     *
+     * @return True if a write was performed
+     */
+    public boolean hasWritten () {
+        return wrote;
+    }
+
+    /**
+     * Whether the whole transaction has been rolled back by the database, so
+     * that the unit of work can only be rolled back
+     *
+     * @return True if the unit of work cannot be committed
+     */
+    public boolean isRollbackOnly () {
+        return rollbackOnly;
+    }
+
+    /**
+     * Retrieves a record that has already been retrieved by its ID in this
+     * unit of work, and not written to since.
+     *
+     * @param type
+     *            Type the record was retrieved as
+     * @param id
+     *            ID of the record
+     * @param <T>
+     *            Type the record was retrieved as
+     * @return The record, or null if it is not known
+     */
+    public <T> T getIdentity ( final Class<T> type, final Serializable id ) {
+        final Map<Serializable, Object> byId = identityMap.get( type );
+        return null == byId ? null : type.cast( byId.get( id ) );
+    }
+
+    /**
+     * Remembers a record retrieved by its ID, so that it does not have to be
+     * retrieved again in this unit of work
+     *
+     * @param type
+     *            Type the record was retrieved as
+     * @param id
+     *            ID of the record
+     * @param record
+     *            The record
+     */
+    public void putIdentity ( final Class< ? > type, final Serializable id, final Object record ) {
+        identityMap.computeIfAbsent( type, t -> new HashMap<Serializable, Object>() ).put( id, record );
+    }
+
+    /**
+     * Performs a single operation as part of this unit of work.
+     *
+     * @param write
+     *            Whether the operation modifies the database. Writes are
+     *            flushed immediately and run inside of a savepoint so that a
+     *            failure only undoes this one operation.
+     * @param work
+     *            The operation to perform
+     * @param <T>
+     *            Type of the result of the operation
+     * @return The result of the operation
+     * @throws IllegalStateException
+     *             If the unit of work has been marked rollback-only
+     */
+    public <T> T execute ( final boolean write, final Function<Session, T> work ) {
+        checkUsable();
+        if ( !write ) {
+            final Session s = readSession();
+            try {
+                return work.apply( s );
+            }
+            finally {
+                s.clear();
+            }
+        }
+
+        // Whatever is about to be written may be in the identity map
+        identityMap.clear();
+        if ( !wrote ) {
+            wrote = true;
+            // Everything from now on is read from the primary
+            closeReadSession();
+        }
+        final Session s = session();
+        final Savepoint savepoint = s.doReturningWork( connection -> connection.setSavepoint() );
+        try {
+            final T result = work.apply( s );
+            s.flush();
+            s.doWork( connection -> connection.releaseSavepoint( savepoint ) );
+            return result;
+        }
+        catch ( final RuntimeException e ) {
+            s.clear();
+            try {
+                s.doWork( connection -> connection.rollback( savepoint ) );
+            }
+            catch ( final RuntimeException e2 ) {
+                // The database gave up on the whole transaction (ie, a
+                // deadlock), undoing everything written before this too.
+                // Carrying on in a new transaction would commit only part
+                // of the request, so nothing else may be done.
+                rollbackOnly = true;
+                discard();
+            }
+            // Hibernate does not know about the savepoint, so it will still
+            // put whatever was flushed into the second-level cache when the
+            // transaction completes.
+            staleCache = true;
+            throw e;
+        }
+        finally {
+            if ( null != session ) {
+                session.clear();
+            }
+        }
+    }
+
+    /**
+     * Commits everything done in the unit of work and releases its connection.
+     * The unit of work is finished afterwards.
+     *
+     * @throws IllegalStateException
+     *             If the unit of work has been marked rollback-only; it is
+     *             rolled back instead
+     */
+    public void commit () {
+        try {
+            checkUsable();
+            if ( null != session ) {
+                session.getTransaction().commit();
+            }
+        }
+        finally {
+            closeSession();
+            closeReadSession();
+            unbind();
+            if ( staleCache ) {
+                HibernateUtil.evictCaches();
+            }
+        }
+    }
+
+    /**
+     * Rolls back everything done in the unit of work and releases its
+     * connection. The unit of work is finished afterwards.
+     */
+    public void rollback () {
+        try {
+            discard();
+        }
+        finally {
+            closeReadSession();
+            unbind();
+            if ( staleCache ) {
+                HibernateUtil.evictCaches();
+            }
+        }
+    }
+
+    /**
+     * Fails if the unit of work has been marked rollback-only
+     */
+    private void checkUsable () {
+        if ( rollbackOnly ) {
+            throw new IllegalStateException( "The transaction was rolled back by the database" );
+        }
+    }
+
+    /**
+     * Rolls back and closes the current Session, if any
+     */
+    private void discard () {
+        if ( null == session ) {
+            return;
+        }
+        try {
+            session.getTransaction().rollback();
+        }
+        catch ( final RuntimeException e ) {
+            e.printStackTrace( System.out );
+            // Continue; the connection is released either way
+        }
+        finally {
+            closeSession();
+        }
+    }
+
+    /**
+     * Closes the Session, if one was opened, returning its connection to the
+     * pool.
+     */
+    private void closeSession () {
+        try {
+            if ( null != session ) {
+                session.close();
+            }
+        }
+        finally {
+            session = null;
+        }
+    }
+
+    /**
+     * Ends the transaction on the read replica Session, if one was opened, and
+     * closes it. Nothing was written through it, so there is nothing to
+     * commit.
+     */
+    private void closeReadSession () {
+        if ( null == readSession ) {
+            return;
+        }
+        try {
+            readSession.getTransaction().rollback();
+        }
+        catch ( final RuntimeException e ) {
+            e.printStackTrace( System.out );
+        }
+        finally {
+            try {
+                readSession.close();
+            }
+            finally {
+                readSession = null;
+            }
+        }
+    }
+
+    /**
+     * Unbinds this unit of work from the current thread
+     */
+    private void unbind () {
+        if ( CURRENT.get() == this ) {
+            CURRENT.remove();
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+-- Indexes for the columns our most frequent queries filter and sort on.
+-- These match the indexes declared on the entities, which hbm2ddl already
+-- creates on a brand new database; this script adds them to existing ones.
+
+-- Audit log, searched by user and time range
+CREATE INDEX idx_logentries_primary_time ON LogEntries (primaryUser, time);
+CREATE INDEX idx_logentries_secondary_time ON LogEntries (secondaryUser, time);
+
+-- Failed login tracking, checked on every login
+CREATE INDEX idx_loginattempts_ip ON LoginAttempts (ip);
+CREATE INDEX idx_loginattempts_user ON LoginAttempts (user_id);
+CREATE INDEX idx_loginlockouts_ip_time ON LoginLockouts (ip, time);
+CREATE INDEX idx_loginlockouts_user_time ON LoginLockouts (user_id, time);
+CREATE INDEX idx_loginbans_ip ON LoginBans (ip);
+CREATE INDEX idx_loginbans_user ON LoginBans (user_id);
+
+-- Patient-entered data, listed per patient by date
+CREATE INDEX idx_bloodsugardata_patient_date ON BloodSugarData (patient, date);
+CREATE INDEX idx_fooddiaryentry_patient_date ON FoodDiaryEntry (patient, date);
+
+-- Records listed per patient (and per lab tech)
+CREATE INDEX idx_prescriptions_patient ON Prescriptions (patient_id);
+CREATE INDEX idx_labprocedures_patient ON LabProcedures (patient);
+CREATE INDEX idx_labprocedures_labtech_patient ON LabProcedures (labtech, patient);
+
+-- Office visits, listed per patient and per HCP by date
+CREATE INDEX idx_generalcheckups_patient_date ON GeneralCheckups (patient_id, date);
+CREATE INDEX idx_generalcheckups_hcp_date ON GeneralCheckups (hcp_id, date);
+CREATE INDEX idx_generalophthalmology_patient_date ON GeneralOphthalmology (patient_id, date);
+CREATE INDEX idx_generalophthalmology_hcp_date ON GeneralOphthalmology (hcp_id, date);
+CREATE INDEX idx_ophthalmologysurgery_patient_date ON OphthalmologySurgery (patient_id, date);
+CREATE INDEX idx_ophthalmologysurgery_hcp_date ON OphthalmologySurgery (hcp_id, date);
@@ -0,0 +1,3 @@
+-- Index for reading the audit log by time alone, as the search index's
+-- catch-up, the rollup backfill and the archiver all do.
+CREATE INDEX idx_logentries_time ON LogEntries (time);
@@ -0,0 +1,12 @@
+-- One row per day, type and role in the event counts, so that counts can be
+-- added with INSERT ... ON DUPLICATE KEY UPDATE. Rows that two servers
+-- created at once are merged into the oldest of them first, and the counts
+-- without a role are stored as NONE rather than NULL (which a unique key
+-- would not treat as equal).
+UPDATE LogEntryRollups r JOIN (SELECT MIN(id) AS id, SUM(total) AS total FROM LogEntryRollups
+    GROUP BY day, logCode, role HAVING COUNT(*) > 1) d ON r.id = d.id SET r.total = d.total;
+DELETE r FROM LogEntryRollups r JOIN LogEntryRollups k
+    ON r.day = k.day AND r.logCode = k.logCode AND r.role <=> k.role AND r.id > k.id;
+UPDATE LogEntryRollups SET role = 'NONE' WHERE role IS NULL;
+ALTER TABLE LogEntryRollups MODIFY role VARCHAR(255) NOT NULL;
+CREATE UNIQUE INDEX uk_logentryrollups_day_code_role ON LogEntryRollups (day, logCode, role);
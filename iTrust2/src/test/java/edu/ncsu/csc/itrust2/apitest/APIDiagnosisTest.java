@@ -9,6 +9,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -195,6 +196,33 @@ public class APIDiagnosisTest {
         }
         assertTrue( flag );
 
+        // restrict the patient's diagnoses to a single code, then to windows
+        // of time with and without the visit
+        final List<Diagnosis> withCode = Diagnosis.getForPatient( User.getByName( "patient" ), null, null,
+                d.getCode() );
+        flag = false;
+        for ( final Diagnosis dd : withCode ) {
+            assertTrue( dd.getCode().equals( d.getCode() ) );
+            if ( dd.getNote().equals( d.getNote() ) && dd.getVisit().getId().equals( visit.getId() ) ) {
+                flag = true;
+            }
+        }
+        assertTrue( flag );
+        final ZonedDateTime visitDate = ZonedDateTime.parse( "2048-04-16T09:50:00.000-04:00" );
+        List<Diagnosis> inWindow = Diagnosis.getForPatient( User.getByName( "patient" ), visitDate,
+                visitDate.plusDays( 1 ), null );
+        flag = false;
+        for ( final Diagnosis dd : inWindow ) {
+            if ( dd.getVisit().getId().equals( visit.getId() ) ) {
+                flag = true;
+            }
+        }
+        assertTrue( flag );
+        inWindow = Diagnosis.getForPatient( User.getByName( "patient" ), visitDate.plusDays( 1 ), null, null );
+        for ( final Diagnosis dd : inWindow ) {
+            assertTrue( !dd.getVisit().getId().equals( visit.getId() ) );
+        }
+
         // edit a diagnosis within the editing of office visit and check they
         // work.
         form.setId( visit.getId() + "" );
@@ -0,0 +1,105 @@
+package edu.ncsu.csc.itrust2.apitest;
+
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.LocalDate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.google.gson.Gson;
+
+import edu.ncsu.csc.itrust2.config.RootConfiguration;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntryRollup;
+import edu.ncsu.csc.itrust2.mvc.config.WebMvcConfiguration;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+
+/**
+ * Test for the API for daily counts of logged events
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+@RunWith ( SpringJUnit4ClassRunner.class )
+@ContextConfiguration ( classes = { RootConfiguration.class, WebMvcConfiguration.class } )
+@WebAppConfiguration
+public class APILogEntryRollupTest {
+
+    private MockMvc               mvc;
+
+    private final Gson            gson = new Gson();
+
+    @Autowired
+    private WebApplicationContext context;
+
+    /**
+     * Sets up test
+     */
+    @Before
+    public void setup () {
+        mvc = MockMvcBuilders.webAppContextSetup( context ).build();
+    }
+
+    /**
+     * Tests retrieving the counts for a range of days, and recounting them
+     *
+     * @throws Exception
+     *             If the requests fail
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testRollups () throws Exception {
+        LoggerUtil.log( TransactionType.USER_LOCKOUT, "admin" );
+        final String today = LocalDate.now().toString();
+
+        final String content = mvc
+                .perform( get( "/api/v1/logentries/rollups" ).param( "startDate", today ).param( "endDate", today )
+                        .param( "code", TransactionType.USER_LOCKOUT.name() ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final LogEntryRollup[] rollups = gson.fromJson( content, LogEntryRollup[].class );
+        assertTrue( rollups.length > 0 );
+        for ( final LogEntryRollup rollup : rollups ) {
+            assertTrue( rollup.getTotal() > 0 );
+            assertTrue( TransactionType.USER_LOCKOUT == rollup.getLogCode() );
+        }
+
+        mvc.perform( get( "/api/v1/logentries/rollups" ).param( "startDate", today ).param( "endDate", today )
+                .param( "code", "NOT_A_CODE" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/logentries/rollups" ).param( "startDate", today ).param( "endDate", "2000-01-01" ) )
+                .andExpect( status().isNotAcceptable() );
+
+        final String yesterday = LocalDate.now().minusDays( 1 ).toString();
+        mvc.perform( post( "/api/v1/logentries/rollups/backfill" ).param( "startDate", yesterday ).param( "endDate",
+                yesterday ) ).andExpect( status().isAccepted() );
+        mvc.perform( post( "/api/v1/logentries/rollups/backfill" ).param( "startDate", today ).param( "endDate",
+                today ) ).andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests that only admins can see the counts
+     *
+     * @throws Exception
+     *             If the request fails
+     */
+    @WithMockUser ( username = "patient", roles = { "USER", "PATIENT" } )
+    @Test
+    public void testRollupsForbidden () throws Exception {
+        final String today = LocalDate.now().toString();
+        mvc.perform( get( "/api/v1/logentries/rollups" ).param( "startDate", today ).param( "endDate", today ) )
+                .andExpect( status().isForbidden() );
+    }
+
+}
@@ -1,6 +1,11 @@
 package edu.ncsu.csc.itrust2.apitest;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDate;
@@ -13,6 +18,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -22,12 +28,16 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import edu.ncsu.csc.itrust2.config.RootConfiguration;
+import edu.ncsu.csc.itrust2.controllers.api.APILogEntryController;
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryRequestBody;
+import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntrySearchPage;
+import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTablePage;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.mvc.config.WebMvcConfiguration;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
 /**
  * Test for API functionality for interacting with log entries.
@@ -95,8 +105,139 @@ public class APILogEntryTest {
         temp.setPage( 6 );
         temp.setPageLength( 10 );
 
+        final String cursor = mvc
+                .perform( post( "/api/v1/logentries/range" ).content( gson.toJson( temp ) )
+                        .contentType( MediaType.APPLICATION_JSON ) )
+                .andExpect( status().isOk() ).andExpect( header().exists( APILogEntryController.CONTINUATION_HEADER ) )
+                .andReturn().getResponse().getHeader( APILogEntryController.CONTINUATION_HEADER );
+
+        // The page comes with the total number of entries, counted once
+        final String content = mvc
+                .perform( post( "/api/v1/logentries/range" ).content( gson.toJson( temp ) )
+                        .contentType( MediaType.APPLICATION_JSON ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final LogEntryTablePage page = gson.fromJson( content, LogEntryTablePage.class );
+        assertEquals( 6, page.getPage() );
+        assertEquals( 10, page.getRows().size() );
+        assertTrue( page.getTotal() >= 500 );
+        assertEquals( ( page.getTotal() + 9 ) / 10, page.getNumPages() );
+
+        // Resume from where the previous page left off
+        temp.setPage( 7 );
+        temp.setCursor( cursor );
         mvc.perform( post( "/api/v1/logentries/range" ).content( gson.toJson( temp ) )
                 .contentType( MediaType.APPLICATION_JSON ) ).andExpect( status().isOk() );
+
+        // Tokens that were not handed out by the server are rejected
+        temp.setCursor( "not-a-token" );
+        mvc.perform( post( "/api/v1/logentries/range" ).content( gson.toJson( temp ) )
+                .contentType( MediaType.APPLICATION_JSON ) ).andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests exporting your own log entries, as CSV and as JSON
+     */
+    @WithMockUser ( username = "logexporttest", roles = { "USER", "PATIENT" } )
+    @Test
+    public void testExport () throws Exception {
+        final User user = new User( "logexporttest", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
+                Role.ROLE_PATIENT, 1 );
+        user.save();
+        LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "logexporttest", "Logged in, \"again\"" );
+        LoggerUtil.log( TransactionType.VIEW_USERS, "logexporttest" );
+        final long viewable = LogEntry.countForUser( "logexporttest", null, null, true );
+
+        final MockHttpServletResponse csv = mvc.perform( get( "/api/v1/logentries/export" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse();
+        assertTrue( csv.getContentType().startsWith( "text/csv" ) );
+        final String[] lines = csv.getContentAsString().split( "\n" );
+        assertEquals( "id,time,code,description,primaryUser,secondaryUser,message", lines[0] );
+        // Exporting is logged too, before the export is written
+        assertEquals( viewable + 1, lines.length - 1 );
+        assertTrue( csv.getContentAsString().contains( ",\"Logged in, \"\"again\"\"\"" ) );
+        // Patients only get the events they are allowed to see
+        assertFalse( csv.getContentAsString().contains( TransactionType.VIEW_USERS.getDescription() ) );
+
+        final String json = mvc.perform( get( "/api/v1/logentries/export" ).param( "format", "ndjson" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final String[] entries = json.split( "\n" );
+        assertEquals( viewable + 2, entries.length );
+        for ( final String entry : entries ) {
+            final LogEntry le = gson.fromJson( entry, LogEntry.class );
+            assertEquals( "logexporttest", le.getPrimaryUser() );
+            assertTrue( le.getLogCode().isPatientViewable() );
+        }
+
+        // Only administrators can export someone else's log entries
+        mvc.perform( get( "/api/v1/logentries/export" ).param( "user", "admin" ) )
+                .andExpect( status().isForbidden() );
+        mvc.perform( get( "/api/v1/logentries/export" ).param( "format", "xml" ) )
+                .andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests an administrator exporting another user's log entries
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testExportOtherUser () throws Exception {
+        final User user = new User( "logexporttest", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
+                Role.ROLE_PATIENT, 1 );
+        user.save();
+        LoggerUtil.log( TransactionType.VIEW_USERS, "logexporttest" );
+
+        final String csv = mvc
+                .perform( get( "/api/v1/logentries/export" ).param( "user", "logexporttest" )
+                        .param( "startDate", LocalDate.now().toString() )
+                        .param( "endDate", LocalDate.now().toString() ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        assertTrue( csv.contains( TransactionType.VIEW_USERS.getDescription() ) );
+
+        mvc.perform( get( "/api/v1/logentries/export" ).param( "user", "nosuchlogexportuser" ) )
+                .andExpect( status().isNotFound() );
+    }
+
+    /**
+     * Tests searching the text of the log entries
+     *
+     * @throws Exception
+     *             If the requests fail
+     */
+    @WithMockUser ( username = "admin", roles = { "USER", "ADMIN" } )
+    @Test
+    public void testSearch () throws Exception {
+        LoggerUtil.log( TransactionType.VIEW_USERS, "admin", null, "Logsearchapitest viewed the users" );
+
+        final String content = mvc
+                .perform( get( "/api/v1/logentries/search" ).param( "query", "\"logsearchapitest viewed\"" )
+                        .param( "startDate", LocalDate.now().toString() )
+                        .param( "endDate", LocalDate.now().toString() ).param( "code", "VIEW_USERS" ) )
+                .andExpect( status().isOk() ).andReturn().getResponse().getContentAsString();
+        final LogEntrySearchPage page = gson.fromJson( content, LogEntrySearchPage.class );
+        assertTrue( page.getTotal() >= 1 );
+        assertEquals( 1, page.getPage() );
+        assertEquals( "Logsearchapitest viewed the users", page.getEntries().get( 0 ).getMessage() );
+
+        mvc.perform( get( "/api/v1/logentries/search" ).param( "query", "logsearch*" ).param( "code",
+                "VIEW_USER" ) ).andExpect( status().isOk() );
+        mvc.perform( get( "/api/v1/logentries/search" ).param( "query", " " ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/logentries/search" ).param( "query", "logsearchapitest" ).param( "code",
+                "NOT_A_CODE" ) ).andExpect( status().isBadRequest() );
+        mvc.perform( get( "/api/v1/logentries/search" ).param( "query", "logsearchapitest" ).param( "page", "0" ) )
+                .andExpect( status().isBadRequest() );
+    }
+
+    /**
+     * Tests that only administrators can search everybody's log entries
+     *
+     * @throws Exception
+     *             If the request fails
+     */
+    @WithMockUser ( username = "logexporttest", roles = { "USER", "PATIENT" } )
+    @Test
+    public void testSearchForbidden () throws Exception {
+        mvc.perform( get( "/api/v1/logentries/search" ).param( "query", "emergency" ) )
+                .andExpect( status().isForbidden() );
     }
 
 }
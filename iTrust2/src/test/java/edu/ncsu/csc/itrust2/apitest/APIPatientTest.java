@@ -244,7 +244,7 @@ public class APIPatientTest {
         mvc.perform( get( "/api/v1/patient/representatives/jerry/bobbo" ) ).andExpect( status().isOk() )
                 .andExpect( content().contentType( MediaType.APPLICATION_JSON_UTF8_VALUE ) );
 
-        final Patient bob = Patient.getByName( "bobbo" );
+        final Patient bob = Patient.getWithRepresentatives( "bobbo" );
 
         assertEquals( bob.getRepresentatives().size(), 2 );
         assertEquals( bob.getRepresented().size(), 2 );
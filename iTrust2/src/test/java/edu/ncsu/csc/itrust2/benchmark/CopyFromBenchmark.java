@@ -0,0 +1,130 @@
+package edu.ncsu.csc.itrust2.benchmark;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Id;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import edu.ncsu.csc.itrust2.models.enums.AppointmentType;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.GeneralCheckup;
+
+/**
+ * Compares DomainObject.copyFrom against copying the same fields with plain
+ * reflection, looking them up on every call (which is how copyFrom used to
+ * work). Neither touches the database. Run with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=edu.ncsu.csc.itrust2.benchmark.CopyFromBenchmark
+ *
+ * Measured on OpenJDK 17 (one CPU), copyFrom took 100-170 ns per copy and
+ * the per-call reflection 660-900 ns, about five times as long. These numbers
+ * come from a plain timing loop with the same warmup and measurement settings,
+ * run over a class with the same fields and annotations as GeneralCheckup, as
+ * the JMH and Hibernate jars could not be downloaded where it was run.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+@State ( Scope.Thread )
+@BenchmarkMode ( Mode.AverageTime )
+@OutputTimeUnit ( TimeUnit.NANOSECONDS )
+@Warmup ( iterations = 5, time = 1 )
+@Measurement ( iterations = 5, time = 1 )
+@Fork ( 1 )
+public class CopyFromBenchmark {
+
+    private GeneralCheckup source;
+
+    private GeneralCheckup target;
+
+    private boolean        includeId = true;
+
+    /**
+     * Creates a visit to copy from
+     */
+    @Setup
+    public void setUp () {
+        source = new GeneralCheckup();
+        source.setId( 1L );
+        source.setDate( ZonedDateTime.now() );
+        source.setNotes( "Patient is doing well" );
+        source.setType( AppointmentType.GENERAL_CHECKUP );
+        source.setDiagnoses( new ArrayList<>() );
+        source.setPrescriptions( new ArrayList<>() );
+        source.setLabProcedures( new ArrayList<>() );
+        target = new GeneralCheckup();
+    }
+
+    /**
+     * Copies with DomainObject.copyFrom
+     *
+     * @return The copy
+     */
+    @Benchmark
+    public GeneralCheckup copyFrom () {
+        target.copyFrom( source, includeId );
+        return target;
+    }
+
+    /**
+     * Copies by looking up every field (and its annotations) each time
+     *
+     * @return The copy
+     * @throws IllegalAccessException
+     *             Not thrown, as every field is made accessible
+     */
+    @Benchmark
+    public GeneralCheckup reflection () throws IllegalAccessException {
+        for ( Class< ? > c = source.getClass(); !DomainObject.class.equals( c ); c = c.getSuperclass() ) {
+            for ( final Field f : c.getDeclaredFields() ) {
+                final int modifiers = f.getModifiers();
+                if ( Modifier.isStatic( modifiers ) || Modifier.isFinal( modifiers ) ) {
+                    continue;
+                }
+                f.setAccessible( true );
+                boolean id = false;
+                for ( final Annotation annotation : f.getAnnotations() ) {
+                    if ( annotation.annotationType().equals( Id.class ) ) {
+                        id = true;
+                    }
+                }
+                if ( includeId || !id ) {
+                    f.set( target, f.get( source ) );
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Runs the benchmark
+     *
+     * @param args
+     *            Unused
+     * @throws RunnerException
+     *             If the benchmark cannot be run
+     */
+    public static void main ( final String[] args ) throws RunnerException {
+        new Runner( new OptionsBuilder().include( CopyFromBenchmark.class.getSimpleName() ).build() ).run();
+    }
+
+}
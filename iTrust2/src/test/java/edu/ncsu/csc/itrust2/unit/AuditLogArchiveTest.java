@@ -0,0 +1,206 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
+import edu.ncsu.csc.itrust2.utils.AuditLogArchive;
+
+/**
+ * Tests for moving old log entries out of the database and into the archive
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogArchiveTest {
+
+    private static final String USER = "archiveUser";
+
+    private File                previousDirectory;
+
+    private File                directory;
+
+    /**
+     * Archives to a directory of its own, and clears out log entries from
+     * previous runs
+     *
+     * @throws IOException
+     *             If a temporary directory cannot be created
+     */
+    @Before
+    public void setUp () throws IOException {
+        previousDirectory = AuditLogArchive.getDirectory();
+        directory = Files.createTempDirectory( "audit-archive" ).toFile();
+        AuditLogArchive.setDirectory( directory );
+        for ( final LogEntry le : LogEntry.getAllForUser( USER ) ) {
+            le.delete();
+        }
+    }
+
+    /**
+     * Removes the archive created by the test
+     */
+    @After
+    public void tearDown () {
+        for ( final File file : directory.listFiles() ) {
+            file.delete();
+        }
+        directory.delete();
+        AuditLogArchive.setDirectory( previousDirectory );
+    }
+
+    /**
+     * Tests that old months are moved out of the database, and are still
+     * found by searches afterwards
+     */
+    @Test
+    public void testArchive () {
+        final LogEntry january = create( 1990, 1 );
+        final LogEntry february = create( 1990, 2 );
+        final LogEntry recent = new LogEntry( TransactionType.LOGIN_SUCCESS, USER, null, "Recent" );
+        january.save();
+        february.save();
+        recent.save();
+
+        final ZonedDateTime march = month( 1990, 3 );
+        assertFalse( AuditLogArchive.isArchived( null, null ) );
+        assertEquals( 2, AuditLogArchive.archiveBefore( march ) );
+        assertTrue( new File( directory, "LogEntries-1990-01.ndjson.gz" ).exists() );
+        assertTrue( new File( directory, "LogEntries-1990-02.ndjson.gz" ).exists() );
+        assertTrue( new File( directory, "LogEntries-1990-01.counts.json" ).exists() );
+        assertEquals( march, AuditLogArchive.getArchivedUntil() );
+
+        // Gone from the database...
+        assertNull( LogEntry.getById( january.getId() ) );
+        assertNull( LogEntry.getById( february.getId() ) );
+        assertEquals( recent.getId(), LogEntry.getById( recent.getId() ).getId() );
+
+        // ...but not from searches that go back far enough
+        final ZonedDateTime start = month( 1989, 1 );
+        assertEquals( 3, LogEntry.getAllForUser( USER ).size() );
+        assertEquals( 3, LogEntry.countForUser( USER, start, null, false ) );
+        assertEquals( 1, LogEntry.countForUser( USER, march, null, false ) );
+        assertEquals( 1, LogEntry.countForUser( USER, month( 1990, 2 ), march, false ) );
+
+        // The default view is only what is still in the database
+        assertEquals( 1, LogEntry.countForUser( USER, null, null, false ) );
+        final List<LogEntry> hot = LogEntry
+                .getPageForUser( USER, null, null, false, new PageRequest( "time", true, 3 ) ).getItems();
+        assertEquals( 1, hot.size() );
+        assertEquals( recent.getId(), hot.get( 0 ).getId() );
+
+        // Newest first, a page at a time
+        final PageRequest request = new PageRequest( "time", false, 2 );
+        Page<LogEntry> page = LogEntry.getPageForUser( USER, start, null, false, request );
+        assertEquals( 2, page.getItems().size() );
+        assertEquals( recent.getId(), page.getItems().get( 0 ).getId() );
+        assertEquals( february.getId(), page.getItems().get( 1 ).getId() );
+        assertEquals( "Archived", page.getItems().get( 1 ).getMessage() );
+        assertTrue( page.hasMore() );
+        request.setCursor( page.getNextCursor() );
+        page = LogEntry.getPageForUser( USER, start, null, false, request );
+        assertEquals( 1, page.getItems().size() );
+        assertEquals( january.getId(), page.getItems().get( 0 ).getId() );
+        assertFalse( page.hasMore() );
+
+        // By page number
+        final PageRequest second = new PageRequest( "time", false, 2 );
+        second.setOffset( 2 );
+        assertEquals( january.getId(),
+                LogEntry.getPageForUser( USER, start, null, false, second ).getItems().get( 0 ).getId() );
+
+        // Oldest first
+        final List<LogEntry> oldest = LogEntry
+                .getPageForUser( USER, start, null, false, new PageRequest( "time", true, 3 ) ).getItems();
+        assertEquals( january.getId(), oldest.get( 0 ).getId() );
+        assertEquals( february.getId(), oldest.get( 1 ).getId() );
+        assertEquals( recent.getId(), oldest.get( 2 ).getId() );
+    }
+
+    /**
+     * Tests that archiving a month again keeps what was archived before
+     */
+    @Test
+    public void testArchiveAgain () {
+        create( 1990, 1 ).save();
+        assertEquals( 1, AuditLogArchive.archiveBefore( month( 1990, 3 ) ) );
+
+        // ie, a straggler that was saved late
+        create( 1990, 1 ).save();
+        assertEquals( 1, AuditLogArchive.archiveBefore( month( 1990, 3 ) ) );
+        assertEquals( 0, AuditLogArchive.archiveBefore( month( 1990, 3 ) ) );
+
+        assertEquals( 2, LogEntry.countForUser( USER, month( 1990, 1 ), null, false ) );
+        assertEquals( 2, LogEntry.getAllForUser( USER ).size() );
+    }
+
+    /**
+     * Tests that entries left both in the archive and in the database, by an
+     * archiving pass that was cut short, are only returned once
+     *
+     * @throws IOException
+     *             If the archive file cannot be written
+     */
+    @Test
+    public void testArchiveCutShort () throws IOException {
+        final LogEntry january = create( 1990, 1 );
+        january.save();
+        final LogEntry february = create( 1990, 2 );
+        february.save();
+        assertEquals( 1, AuditLogArchive.archiveBefore( month( 1990, 2 ) ) );
+
+        // As if February had been written out, but not yet deleted
+        try ( Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream( new FileOutputStream( new File( directory, "LogEntries-1990-02.ndjson.gz" ) ) ),
+                StandardCharsets.UTF_8 ) ) {
+            writer.write( new Gson().toJson( february ) + "\n" );
+        }
+        AuditLogArchive.setDirectory( directory );
+        assertEquals( month( 1990, 3 ), AuditLogArchive.getArchivedUntil() );
+
+        final List<Long> exported = new ArrayList<Long>();
+        LogEntry.forEachForUser( USER, null, null, false, le -> exported.add( le.getId() ) );
+        assertEquals( 2, exported.size() );
+        assertEquals( january.getId(), exported.get( 0 ) );
+        assertEquals( february.getId(), exported.get( 1 ) );
+
+        assertEquals( 2, LogEntry.countForUser( USER, month( 1990, 1 ), null, false ) );
+        assertEquals( 2, LogEntry.getPageForUser( USER, month( 1990, 1 ), null, false,
+                new PageRequest( "time", false, 5 ) ).getItems().size() );
+    }
+
+    private static ZonedDateTime month ( final int year, final int month ) {
+        return ZonedDateTime.of( year, month, 1, 0, 0, 0, 0, ZoneId.systemDefault() );
+    }
+
+    private static LogEntry create ( final int year, final int month ) {
+        final LogEntry le = new LogEntry( TransactionType.LOGIN_SUCCESS, USER, null, "Archived" );
+        le.setTime( month( year, month ).plusDays( 10 ) );
+        return le;
+    }
+
+}
@@ -0,0 +1,170 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.utils.AuditLogIndex;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+
+/**
+ * Tests for searching the text of the log entries
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogIndexTest {
+
+    private static final String USER = "indexUser";
+
+    private File                previousDirectory;
+
+    private File                directory;
+
+    /**
+     * Saves the index to a directory of its own, clears out log entries from
+     * previous runs, and builds the index from what is left
+     *
+     * @throws IOException
+     *             If a temporary directory cannot be created
+     */
+    @Before
+    public void setUp () throws IOException {
+        previousDirectory = AuditLogIndex.getDirectory();
+        directory = Files.createTempDirectory( "audit-index" ).toFile();
+        AuditLogIndex.setDirectory( directory );
+        for ( final LogEntry le : LogEntry.getAllForUser( USER ) ) {
+            le.delete();
+        }
+        AuditLogIndex.rebuild();
+    }
+
+    /**
+     * Removes the index saved by the test
+     */
+    @After
+    public void tearDown () {
+        for ( final File file : directory.listFiles() ) {
+            file.delete();
+        }
+        directory.delete();
+        AuditLogIndex.setDirectory( previousDirectory );
+    }
+
+    /**
+     * Tests finding log entries by words, prefixes and phrases, as they are
+     * logged
+     */
+    @Test
+    public void testSearch () {
+        LoggerUtil.log( TransactionType.VIEW_DEMOGRAPHICS, USER, "indexPatient_1",
+                "Fetched Emergency Record for user indexPatient_1" );
+        LoggerUtil.log( TransactionType.EDIT_DEMOGRAPHICS, USER, "indexPatient2", "Record emergency fetched" );
+        LoggerUtil.log( TransactionType.VIEW_DEMOGRAPHICS, USER, null, "Emergency contacts viewed" );
+
+        // Newest first
+        List<LogEntry> found = search( "emergency", null, 10 );
+        assertEquals( 3, found.size() );
+        assertEquals( "Emergency contacts viewed", found.get( 0 ).getMessage() );
+        assertEquals( "Fetched Emergency Record for user indexPatient_1", found.get( 2 ).getMessage() );
+
+        found = search( "\"emergency record\"", null, 10 );
+        assertEquals( 1, found.size() );
+        assertEquals( "indexPatient_1", found.get( 0 ).getSecondaryUser() );
+
+        // Usernames are searched too, ignoring case
+        assertEquals( 1, search( "INDEXPATIENT_1", null, 10 ).size() );
+        assertEquals( 2, search( "indexpatient*", null, 10 ).size() );
+        assertEquals( 2, search( "emerg*", TransactionType.VIEW_DEMOGRAPHICS, 10 ).size() );
+        assertEquals( 0, search( "\"record fetched\"", null, 10 ).size() );
+        // Phrases do not run from one field into the next
+        assertEquals( 0, search( "\"indexpatient2 record\"", null, 10 ).size() );
+
+        // A page at a time
+        final AuditLogIndex.Hits hits = AuditLogIndex.search( USER + " emergency", null, null, null, 1, 1 );
+        assertEquals( 3, hits.getTotal() );
+        assertEquals( "Record emergency fetched", hits.getEntries().get( 0 ).getMessage() );
+
+        // By time
+        final ZonedDateTime tomorrow = ZonedDateTime.now( ZoneId.systemDefault() ).plusDays( 1 );
+        assertEquals( 0, AuditLogIndex.search( USER, tomorrow, null, null, 0, 10 ).getTotal() );
+        assertEquals( 3, AuditLogIndex.search( USER, null, tomorrow, null, 0, 10 ).getTotal() );
+
+        try {
+            AuditLogIndex.search( " \"\" ", null, null, null, 0, 10 );
+            fail( "There is nothing to search for" );
+        }
+        catch ( final IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that log entries deleted from the database are no longer found
+     */
+    @Test
+    public void testDeleted () {
+        LoggerUtil.log( TransactionType.VIEW_DEMOGRAPHICS, USER, null, "Soon to be forgotten" );
+        assertEquals( 1, search( "forgotten", null, 10 ).size() );
+        for ( final LogEntry le : LogEntry.getAllForUser( USER ) ) {
+            le.delete();
+        }
+        assertEquals( 0, search( "forgotten", null, 10 ).size() );
+    }
+
+    /**
+     * Tests saving the index, and loading it again along with what was logged
+     * in the meantime
+     */
+    @Test
+    public void testSnapshot () {
+        LoggerUtil.log( TransactionType.VIEW_DEMOGRAPHICS, USER, null, "Before the snapshot" );
+        AuditLogIndex.snapshot();
+        assertTrue( directory.listFiles().length > 0 );
+
+        LogEntry late = new LogEntry( TransactionType.VIEW_DEMOGRAPHICS, USER, null, "After the snapshot" );
+        // Saved directly, so only found by catching up on the database
+        late.save();
+        AuditLogIndex.load();
+
+        assertEquals( 2, search( "snapshot", null, 10 ).size() );
+        late = search( "after", null, 10 ).get( 0 );
+        assertEquals( "After the snapshot", late.getMessage() );
+    }
+
+    /**
+     * Tests catching up on log entries saved without going through the index
+     * (ie, by another server)
+     */
+    @Test
+    public void testCatchUp () {
+        LoggerUtil.log( TransactionType.VIEW_DEMOGRAPHICS, USER, null, "Logged here" );
+        final LogEntry elsewhere = new LogEntry( TransactionType.VIEW_DEMOGRAPHICS, USER, null,
+                "Logged elsewhere" );
+        // Saved directly, so only found by catching up on the database
+        elsewhere.save();
+        assertEquals( 0, search( "elsewhere", null, 10 ).size() );
+
+        AuditLogIndex.catchUp();
+        assertEquals( 1, search( "elsewhere", null, 10 ).size() );
+        assertEquals( 2, search( "logged", null, 10 ).size() );
+    }
+
+    private static List<LogEntry> search ( final String query, final TransactionType code, final int limit ) {
+        return AuditLogIndex.search( USER + " " + query, null, null, code, 0, limit ).getEntries();
+    }
+
+}
@@ -0,0 +1,217 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.utils.AuditLogMetrics;
+import edu.ncsu.csc.itrust2.utils.AuditLogWriter;
+import edu.ncsu.csc.itrust2.utils.AuditLogWriter.OverflowPolicy;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+import edu.ncsu.csc.itrust2.utils.UnitOfWork;
+
+/**
+ * Tests for writing log entries in the background
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class AuditLogWriterTest {
+
+    private File spillFile;
+
+    /**
+     * Picks a spill file for the test
+     *
+     * @throws IOException
+     *             If a temporary file cannot be created
+     */
+    @Before
+    public void setUp () throws IOException {
+        spillFile = File.createTempFile( "audit-spill", ".log" );
+        spillFile.delete();
+    }
+
+    /**
+     * Makes sure that the writer is not left running for the other tests
+     */
+    @After
+    public void tearDown () {
+        AuditLogWriter.stop();
+        spillFile.delete();
+        new File( spillFile.getPath() + ".journal" ).delete();
+    }
+
+    /**
+     * Tests that queued entries are saved in batches, and that flush() waits
+     * for them
+     */
+    @Test
+    public void testBackgroundWriting () {
+        final AuditLogMetrics metrics = AuditLogWriter.getMetrics();
+        final int before = LogEntry.getAllForUser( "auditAsync" ).size();
+        final long written = metrics.getWrittenCount();
+
+        AuditLogWriter.start( 100, 10, 50, OverflowPolicy.SPILL, spillFile );
+        assertTrue( AuditLogWriter.isRunning() );
+        for ( int i = 0; i < 25; i++ ) {
+            LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "auditAsync", "Entry " + i );
+        }
+        AuditLogWriter.flush();
+
+        assertEquals( 25, LogEntry.getAllForUser( "auditAsync" ).size() - before );
+        assertEquals( 25, metrics.getWrittenCount() - written );
+        assertEquals( 0, metrics.getQueueDepth() );
+        assertFalse( spillFile.exists() );
+
+        // Once stopped, entries are saved straight away again
+        AuditLogWriter.stop();
+        assertFalse( AuditLogWriter.isRunning() );
+        LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "auditAsync", "Synchronous" );
+        assertEquals( 26, LogEntry.getAllForUser( "auditAsync" ).size() - before );
+    }
+
+    /**
+     * Tests that entries saved directly during a unit of work are saved as
+     * part of it, rather than on a connection of their own
+     */
+    @Test
+    public void testInUnitOfWork () {
+        final int before = LogEntry.getAllForUser( "auditInUnit" ).size();
+
+        UnitOfWork uow = UnitOfWork.begin();
+        try {
+            LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "auditInUnit", "Rolled back" );
+            assertTrue( uow.hasWritten() );
+            assertSame( uow, UnitOfWork.current() );
+        }
+        finally {
+            uow.rollback();
+        }
+        assertEquals( 0, LogEntry.getAllForUser( "auditInUnit" ).size() - before );
+
+        uow = UnitOfWork.begin();
+        LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "auditInUnit", "Kept" );
+        uow.commit();
+        assertEquals( 1, LogEntry.getAllForUser( "auditInUnit" ).size() - before );
+    }
+
+    /**
+     * Tests that a queued entry is on disk, in the journal, by the time it has
+     * been logged, and that the journal is cleared once it has been saved
+     *
+     * @throws IOException
+     *             If the journal cannot be read
+     */
+    @Test
+    public void testJournal () throws IOException {
+        final int before = LogEntry.getAllForUser( "auditJournal" ).size();
+        final File journal = new File( spillFile.getPath() + ".journal" );
+
+        // The writer will not save anything on its own during the test
+        AuditLogWriter.start( 100, 10, 60000, OverflowPolicy.SPILL, spillFile );
+        LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "auditJournal", "Journaled" );
+        assertEquals( 1, Files.readAllLines( journal.toPath(), StandardCharsets.UTF_8 ).size() );
+        assertEquals( 0, LogEntry.getAllForUser( "auditJournal" ).size() - before );
+
+        AuditLogWriter.flush();
+        assertEquals( 1, LogEntry.getAllForUser( "auditJournal" ).size() - before );
+        assertFalse( journal.exists() );
+    }
+
+    /**
+     * Tests that entries left in the journal (ie, by a crash) are saved when
+     * the writer is started, along with a line that was cut short
+     *
+     * @throws IOException
+     *             If the journal cannot be written
+     */
+    @Test
+    public void testJournalReplayOnStart () throws IOException {
+        final int before = LogEntry.getAllForUser( "auditJournalReplay" ).size();
+        final File journal = new File( spillFile.getPath() + ".journal" );
+        final LogEntry entry = new LogEntry( TransactionType.LOGIN_SUCCESS, "auditJournalReplay", null, "Journaled" );
+        Files.write( journal.toPath(), ( new Gson().toJson( entry ) + "\n{\"logCode\":\"LOGI" )
+                .getBytes( StandardCharsets.UTF_8 ) );
+
+        AuditLogWriter.start( 100, 10, 50, OverflowPolicy.SPILL, spillFile );
+        AuditLogWriter.stop();
+
+        assertEquals( 1, LogEntry.getAllForUser( "auditJournalReplay" ).size() - before );
+        assertFalse( journal.exists() );
+        assertFalse( spillFile.exists() );
+    }
+
+    /**
+     * Tests that entries that do not fit in the queue are spilled to disk, and
+     * saved from there when the writer is stopped
+     *
+     * @throws Exception
+     *             If the spill file cannot be read
+     */
+    @Test
+    public void testSpill () throws Exception {
+        final AuditLogMetrics metrics = AuditLogWriter.getMetrics();
+        final int before = LogEntry.getAllForUser( "auditSpill" ).size();
+        final long spilled = metrics.getSpilledCount();
+        final long overflows = metrics.getOverflowCount();
+
+        // Each caller waits for its entry to be journaled, so the queue only
+        // fills up with several logging at once
+        AuditLogWriter.start( 1, 10, 60000, OverflowPolicy.SPILL, spillFile );
+        final Thread[] threads = new Thread[20];
+        for ( int i = 0; i < threads.length; i++ ) {
+            final String message = "Entry " + i;
+            threads[i] = new Thread( () -> LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "auditSpill", message ) );
+            threads[i].start();
+        }
+        for ( final Thread thread : threads ) {
+            thread.join();
+        }
+
+        // Whatever did not fit was spilled (and may have been replayed since)
+        assertEquals( metrics.getSpilledCount() - spilled, metrics.getOverflowCount() - overflows );
+
+        AuditLogWriter.stop();
+        assertEquals( threads.length, LogEntry.getAllForUser( "auditSpill" ).size() - before );
+        assertFalse( spillFile.exists() );
+    }
+
+    /**
+     * Tests that entries left in the spill file (ie, by a crash) are saved
+     * when the writer is started
+     *
+     * @throws IOException
+     *             If the spill file cannot be written
+     */
+    @Test
+    public void testReplayOnStart () throws IOException {
+        final int before = LogEntry.getAllForUser( "auditReplay" ).size();
+        final LogEntry entry = new LogEntry( TransactionType.LOGIN_SUCCESS, "auditReplay", null, "Spilled" );
+        Files.write( spillFile.toPath(), Arrays.asList( new Gson().toJson( entry ), "{\"logCode\":\"LOGI" ),
+                StandardCharsets.UTF_8 );
+
+        AuditLogWriter.start( 100, 10, 50, OverflowPolicy.SPILL, spillFile );
+        AuditLogWriter.stop();
+
+        assertEquals( 1, LogEntry.getAllForUser( "auditReplay" ).size() - before );
+        assertEquals( "Spilled", LogEntry.getAllForUser( "auditReplay" ).get( 0 ).getMessage() );
+        assertFalse( spillFile.exists() );
+    }
+
+}
@@ -0,0 +1,38 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+
+/**
+ * Tests for the shared connection pool handed out by DBUtil.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class DBUtilTest {
+
+    /**
+     * Every caller should get the same pool rather than a new DataSource, and
+     * borrowing a connection should show up in the pool's metrics.
+     *
+     * @throws Exception
+     *             If a connection cannot be obtained
+     */
+    @Test
+    public void testSharedPool () throws Exception {
+        assertSame( DBUtil.dataSource(), DBUtil.dataSource() );
+
+        final long before = DBUtil.getPoolMetrics().getAcquireCount();
+        try ( final Connection conn = DBUtil.getConnection() ) {
+            assertTrue( conn.isValid( 1 ) );
+        }
+        assertTrue( DBUtil.getPoolMetrics().getAcquireCount() > before );
+    }
+
+}
@@ -1,19 +1,34 @@
 package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 
 import edu.ncsu.csc.itrust2.models.enums.State;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.Drug;
+import edu.ncsu.csc.itrust2.models.persistent.GeneralCheckup;
 import edu.ncsu.csc.itrust2.models.persistent.Hospital;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.utils.CacheStatistics;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.UnitOfWork;
 
 public class DomainObjectTest {
 
@@ -86,6 +101,33 @@ public class DomainObjectTest {
         assertEquals( h2.getName(), ( (Hospital) Hospital.getById( Hospital.class, h.getId() ) ).getName() );
     }
 
+    @Test
+    public void testCopyInheritedFields () {
+        final GeneralCheckup visit = new GeneralCheckup();
+        visit.setId( 42L );
+        visit.setNotes( "Copied from OfficeVisit" );
+        visit.setDate( ZonedDateTime.now() );
+        visit.setDiagnoses( new ArrayList<>() );
+
+        final GeneralCheckup copy = new GeneralCheckup();
+        copy.copyFrom( visit, false );
+        assertEquals( visit.getNotes(), copy.getNotes() );
+        assertEquals( visit.getDate(), copy.getDate() );
+        assertEquals( visit.getDiagnoses(), copy.getDiagnoses() );
+        assertNull( copy.getId() );
+
+        copy.copyFrom( visit, true );
+        assertEquals( visit.getId(), copy.getId() );
+
+        try {
+            copy.copyFrom( new Hospital(), true );
+            fail( "Copying between types should not be allowed" );
+        }
+        catch ( final IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
     @Test
     public void testGetBy () {
         assertNull( DomainObject.getBy( User.class, "a", "b" ) );
@@ -93,4 +135,207 @@ public class DomainObjectTest {
         assertNotNull( DomainObject.getBy( User.class, "username", "hcp" ) );
     }
 
+    @Test
+    public void testUnitOfWork () {
+        final String name = "iTrust Test Hospital 3: Unit of Work";
+        final Hospital h = new Hospital();
+        h.setAddress( "1 Transaction Way, Raleigh" );
+        h.setState( State.NC );
+        h.setZip( "27607" );
+        h.setName( name );
+
+        // Work that is rolled back should disappear, but be visible while the
+        // unit of work is still in progress
+        UnitOfWork uow = UnitOfWork.begin();
+        h.save();
+        assertNotNull( Hospital.getByName( name ) );
+        uow.rollback();
+        assertNull( UnitOfWork.current() );
+        assertNull( Hospital.getByName( name ) );
+
+        // A failed write should not undo the rest of the unit of work
+        uow = UnitOfWork.begin();
+        h.save();
+        try {
+            final Hospital invalid = new Hospital();
+            invalid.save();
+        }
+        catch ( final Exception e ) {
+            // expected; a Hospital needs a name
+        }
+        uow.commit();
+        assertNotNull( Hospital.getByName( name ) );
+        h.delete();
+    }
+
+    @Test
+    public void testUnitOfWorkRolledBack () {
+        final String name = "iTrust Test Hospital 4: Rolled Back";
+        final Hospital h = new Hospital();
+        h.setAddress( "2 Transaction Way, Raleigh" );
+        h.setState( State.NC );
+        h.setZip( "27607" );
+        h.setName( name );
+
+        final UnitOfWork uow = UnitOfWork.begin();
+        try {
+            h.save();
+            try {
+                HibernateUtil.inTransaction( true, session -> {
+                    // As the database does on a deadlock
+                    session.doWork( connection -> connection.rollback() );
+                    throw new IllegalArgumentException( "Deadlock" );
+                } );
+                fail( "The write should have failed" );
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+
+            // The earlier save is gone, so nothing else may be done
+            assertTrue( uow.isRollbackOnly() );
+            try {
+                Hospital.getByName( name );
+                fail( "The unit of work can only be rolled back" );
+            }
+            catch ( final IllegalStateException e ) {
+                // expected
+            }
+            try {
+                uow.commit();
+                fail( "The unit of work can only be rolled back" );
+            }
+            catch ( final IllegalStateException e ) {
+                // expected
+            }
+        }
+        finally {
+            if ( UnitOfWork.current() == uow ) {
+                uow.rollback();
+            }
+        }
+        assertNull( UnitOfWork.current() );
+        assertNull( Hospital.getByName( name ) );
+    }
+
+    @Test
+    public void testFindById () {
+        final LogEntry le = new LogEntry();
+        le.setLogCode( TransactionType.LOGIN_SUCCESS );
+        le.setMessage( "Identity map" );
+        le.setPrimaryUser( "test" );
+        le.setTime( ZonedDateTime.now() );
+        le.save();
+
+        assertFalse( DomainObject.findById( LogEntry.class, null ).isPresent() );
+        assertFalse( DomainObject.findById( LogEntry.class, -1L ).isPresent() );
+        assertNull( LogEntry.getById( -1L ) );
+        assertEquals( "Identity map", LogEntry.getById( le.getId() ).getMessage() );
+
+        // Within a unit of work, a record is only retrieved once...
+        final UnitOfWork uow = UnitOfWork.begin();
+        try {
+            final LogEntry first = LogEntry.getById( le.getId() );
+            assertSame( first, LogEntry.getById( le.getId() ) );
+            assertSame( first, DomainObject.findById( LogEntry.class, le.getId() ).get() );
+
+            // ...until something is written
+            first.setMessage( "Changed" );
+            first.save();
+            final LogEntry second = LogEntry.getById( le.getId() );
+            assertNotSame( first, second );
+            assertEquals( "Changed", second.getMessage() );
+        }
+        finally {
+            uow.rollback();
+        }
+        assertEquals( "Identity map", LogEntry.getById( le.getId() ).getMessage() );
+        le.delete();
+    }
+
+    @Test
+    public void testReferenceDataCache () {
+        final Drug drug = new Drug();
+        drug.setCode( "9876-5432-10" );
+        drug.setName( "Cachetamol" );
+        drug.setDescription( "Before" );
+        drug.save();
+
+        // Repeated lookups should be answered from the cache
+        Drug.getAll();
+        final long hits = cacheHits( Drug.class.getName() );
+        Drug.getAll();
+        assertNotNull( Drug.getById( drug.getId() ) );
+        assertTrue( cacheHits( Drug.class.getName() ) > hits );
+
+        // ...but writes must be seen straight away
+        drug.setDescription( "After" );
+        drug.save();
+        assertEquals( "After", Drug.getById( drug.getId() ).getDescription() );
+        assertEquals( "After", Drug.getByCode( "9876-5432-10" ).getDescription() );
+
+        drug.delete();
+        assertNull( Drug.getByCode( "9876-5432-10" ) );
+        assertNull( Drug.getById( drug.getId() ) );
+    }
+
+    @Test
+    public void testSaveAll () {
+        final String user = "saveAllUser";
+        LogEntry.deleteStored( ids( LogEntry.getAllForUser( user ) ) );
+
+        // More than a single JDBC batch
+        final List<LogEntry> entries = new ArrayList<LogEntry>();
+        for ( int i = 0; i < 120; i++ ) {
+            entries.add( new LogEntry( TransactionType.LOGIN_SUCCESS, user, null, "saveAll " + i ) );
+        }
+        DomainObject.saveAll( entries );
+
+        assertEquals( 120, LogEntry.getAllForUser( user ).size() );
+        final Set<Long> ids = ids( entries );
+        assertEquals( 120, ids.size() );
+        assertFalse( ids.contains( null ) );
+        LogEntry.deleteStored( ids );
+
+        // Types with their own save logic must not be bulk-saved
+        try {
+            DomainObject.saveAll( Arrays.asList( new GeneralCheckup() ) );
+            fail( "Office visits cannot be saved through saveAll" );
+        }
+        catch ( final IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    /**
+     * Number of hits recorded for a region of the second-level cache
+     *
+     * @param region
+     *            Name of the region
+     * @return The number of hits, or -1 if there is no such region
+     */
+    private long cacheHits ( final String region ) {
+        for ( final CacheStatistics stats : HibernateUtil.getCacheStatistics() ) {
+            if ( stats.getRegion().equals( region ) ) {
+                return stats.getHits();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * IDs of the log entries given
+     *
+     * @param entries
+     *            The log entries
+     * @return Their IDs
+     */
+    private Set<Long> ids ( final List<LogEntry> entries ) {
+        final Set<Long> ids = new HashSet<Long>();
+        for ( final LogEntry entry : entries ) {
+            ids.add( entry.getId() );
+        }
+        return ids;
+    }
+
 }
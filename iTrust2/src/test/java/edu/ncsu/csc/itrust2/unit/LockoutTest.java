@@ -16,7 +16,9 @@ import edu.ncsu.csc.itrust2.models.persistent.LoginAttempt;
 import edu.ncsu.csc.itrust2.models.persistent.LoginBan;
 import edu.ncsu.csc.itrust2.models.persistent.LoginLockout;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.utils.IPBlockRegistry;
 
+@SuppressWarnings ( "deprecation" ) // LoginAttempt is only kept for its table
 public class LockoutTest {
 
     @Test
@@ -63,10 +65,14 @@ public class LockoutTest {
         lockout.setTime( ZonedDateTime.now().minusMinutes( 61 ) );
         lockout.save();
         assertEquals( 0, LoginAttempt.getUserFailures( user ) );
+        assertFalse( LoginLockout.isUserLocked( user ) );
+        assertEquals( 1, LoginLockout.getRecentUserLockouts( user ) );
         lockout = new LoginLockout();
         lockout.setTime( ZonedDateTime.now() );
         lockout.setUser( user );
         lockout.save();
+        assertTrue( LoginLockout.isUserLocked( user ) );
+        assertEquals( 2, LoginLockout.getRecentUserLockouts( user ) );
         LoginLockout.clearUser( user );
         assertFalse( LoginLockout.isUserLocked( user ) );
 
@@ -120,10 +126,14 @@ public class LockoutTest {
         lockout.setTime( ZonedDateTime.now().minusMinutes( 61 ) );
         lockout.save();
         assertEquals( 0, LoginAttempt.getIPFailures( ip ) );
+        assertFalse( LoginLockout.isIPLocked( ip ) );
+        assertEquals( 1, LoginLockout.getRecentIPLockouts( ip ) );
         lockout = new LoginLockout();
         lockout.setTime( ZonedDateTime.now() );
         lockout.setIp( ip );
         lockout.save();
+        assertTrue( LoginLockout.isIPLocked( ip ) );
+        assertEquals( 2, LoginLockout.getRecentIPLockouts( ip ) );
         LoginLockout.clearIP( ip );
         assertFalse( LoginLockout.isIPLocked( ip ) );
 
@@ -140,4 +150,72 @@ public class LockoutTest {
 
         assertNull( ban.getUser() );
     }
+
+    @Test
+    public void testIPBlockRegistry () {
+
+        final String ip = "111.111.111.112";
+
+        LoginLockout.clearIP( ip );
+        LoginBan.clearIP( ip );
+        IPBlockRegistry.refresh();
+        assertFalse( IPBlockRegistry.isLocked( ip ) );
+        assertFalse( IPBlockRegistry.isBanned( ip ) );
+
+        // Expired lockouts do not count
+        LoginLockout lockout = new LoginLockout();
+        lockout.setIp( ip );
+        lockout.setTime( ZonedDateTime.now().minusMinutes( 61 ) );
+        lockout.save();
+        assertFalse( IPBlockRegistry.isLocked( ip ) );
+
+        lockout = new LoginLockout();
+        lockout.setIp( ip );
+        lockout.setTime( ZonedDateTime.now() );
+        lockout.save();
+        assertTrue( IPBlockRegistry.isLocked( ip ) );
+        // Still there once read back from the database
+        IPBlockRegistry.refresh();
+        assertTrue( IPBlockRegistry.isLocked( ip ) );
+        LoginLockout.clearIP( ip );
+        assertFalse( IPBlockRegistry.isLocked( ip ) );
+
+        final LoginBan ban = new LoginBan();
+        ban.setIp( ip );
+        ban.setTime( ZonedDateTime.ofInstant( Instant.ofEpochMilli( 0 ), ZoneOffset.UTC ) );
+        ban.save();
+        assertTrue( IPBlockRegistry.isBanned( ip ) );
+        IPBlockRegistry.refresh();
+        assertTrue( IPBlockRegistry.isBanned( ip ) );
+        LoginBan.clearIP( ip );
+        assertFalse( IPBlockRegistry.isBanned( ip ) );
+        IPBlockRegistry.refresh();
+        assertFalse( IPBlockRegistry.isBanned( ip ) );
+    }
+
+    @Test
+    public void testClearManyLockouts () {
+        final String ip = "111.111.111.112";
+        final String other = "111.111.111.113";
+        LoginLockout.clearIP( ip );
+        LoginLockout.clearIP( other );
+
+        for ( int i = 0; i < 25; i++ ) {
+            final LoginLockout lockout = new LoginLockout();
+            lockout.setTime( ZonedDateTime.now() );
+            lockout.setIp( ip );
+            lockout.save();
+        }
+        final LoginLockout lockout = new LoginLockout();
+        lockout.setTime( ZonedDateTime.now() );
+        lockout.setIp( other );
+        lockout.save();
+        assertEquals( 25, LoginLockout.getRecentIPLockouts( ip ) );
+
+        // Only the lockouts for the IP cleared should be removed
+        LoginLockout.clearIP( ip );
+        assertEquals( 0, LoginLockout.getRecentIPLockouts( ip ) );
+        assertEquals( 1, LoginLockout.getRecentIPLockouts( other ) );
+        LoginLockout.clearIP( other );
+    }
 }
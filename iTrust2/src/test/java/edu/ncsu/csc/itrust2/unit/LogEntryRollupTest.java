@@ -0,0 +1,123 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.models.enums.Role;
+import edu.ncsu.csc.itrust2.models.enums.TransactionType;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.LogEntryRollup;
+import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.utils.LoggerUtil;
+
+/**
+ * Tests for the daily counts of logged events
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class LogEntryRollupTest {
+
+    private static final String USER = "rollupPatient";
+
+    /**
+     * Creates the user whose events are counted, and clears out their log
+     * entries from previous runs
+     */
+    @Before
+    public void setUp () {
+        new User( USER, "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.", Role.ROLE_PATIENT, 1 )
+                .save();
+        for ( final LogEntry le : LogEntry.getAllForUser( USER ) ) {
+            le.delete();
+        }
+    }
+
+    /**
+     * Tests that events are counted as they are logged
+     */
+    @Test
+    public void testRecord () {
+        final LocalDate today = LocalDate.now();
+        final long patients = total(
+                LogEntryRollup.getCounts( today, today, TransactionType.LOGIN_SUCCESS, Role.ROLE_PATIENT ) );
+        final long everyone = total( LogEntryRollup.getCounts( today, today, TransactionType.LOGIN_SUCCESS, null ) );
+
+        for ( int i = 0; i < 3; i++ ) {
+            LoggerUtil.log( TransactionType.LOGIN_SUCCESS, USER );
+        }
+        // Users that do not exist are counted without a role
+        LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "rollupNobody" );
+        LoggerUtil.log( TransactionType.LOGIN_SUCCESS, "rollupNobody" );
+
+        assertEquals( 3, total( LogEntryRollup.getCounts( today, today, TransactionType.LOGIN_SUCCESS,
+                Role.ROLE_PATIENT ) ) - patients );
+        assertEquals( 5,
+                total( LogEntryRollup.getCounts( today, today, TransactionType.LOGIN_SUCCESS, null ) ) - everyone );
+        // Counts are always added to the one row for the day, type and role
+        assertEquals( 1, LogEntryRollup.getCounts( today, today, TransactionType.LOGIN_SUCCESS, Role.ROLE_PATIENT )
+                .size() );
+    }
+
+    /**
+     * Tests recounting days from the log entries themselves
+     */
+    @Test
+    public void testBackfill () {
+        final LocalDate from = LocalDate.of( 1985, 6, 1 );
+        final LocalDate to = LocalDate.of( 1985, 6, 30 );
+        // Saved directly, so they are not counted yet
+        create( LocalDate.of( 1985, 6, 10 ) ).save();
+        create( LocalDate.of( 1985, 6, 10 ) ).save();
+        create( LocalDate.of( 1985, 6, 11 ) ).save();
+
+        assertTrue( LogEntryRollup.backfill( from, to ) >= 3 );
+        // Counting again replaces the counts, rather than adding to them
+        LogEntryRollup.backfill( from, to );
+
+        final List<LogEntryRollup> counts = LogEntryRollup.getCounts( from, to, TransactionType.LOGIN_SUCCESS,
+                Role.ROLE_PATIENT );
+        assertEquals( 2, counts.size() );
+        assertEquals( LocalDate.of( 1985, 6, 10 ), counts.get( 0 ).getDay() );
+        assertEquals( 2, (long) counts.get( 0 ).getTotal() );
+        assertEquals( LocalDate.of( 1985, 6, 11 ), counts.get( 1 ).getDay() );
+        assertEquals( 1, (long) counts.get( 1 ).getTotal() );
+
+        // A range over several months is counted a month at a time
+        create( LocalDate.of( 1985, 7, 1 ) ).save();
+        LogEntryRollup.backfill( LocalDate.of( 1985, 5, 15 ), LocalDate.of( 1985, 7, 1 ) );
+        assertEquals( 4, total( LogEntryRollup.getCounts( LocalDate.of( 1985, 5, 15 ), LocalDate.of( 1985, 7, 1 ),
+                TransactionType.LOGIN_SUCCESS, Role.ROLE_PATIENT ) ) );
+
+        try {
+            LogEntryRollup.backfill( LocalDate.now(), LocalDate.now() );
+            fail( "Today's events are still being counted" );
+        }
+        catch ( final IllegalArgumentException e ) {
+            // expected
+        }
+    }
+
+    private static long total ( final List<LogEntryRollup> counts ) {
+        long total = 0;
+        for ( final LogEntryRollup count : counts ) {
+            total += count.getTotal();
+        }
+        return total;
+    }
+
+    private static LogEntry create ( final LocalDate day ) {
+        final LogEntry le = new LogEntry( TransactionType.LOGIN_SUCCESS, USER, null, null );
+        le.setTime( day.atTime( 12, 0 ).atZone( ZoneId.systemDefault() ) );
+        return le;
+    }
+
+}
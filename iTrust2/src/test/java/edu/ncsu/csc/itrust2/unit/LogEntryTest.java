@@ -2,8 +2,11 @@ package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
+import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTablePage;
 import edu.ncsu.csc.itrust2.controllers.api.comm.LogEntryTableRow;
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 
@@ -13,14 +16,11 @@ public class LogEntryTest {
     public void testLogEntryTableRow () {
         final LogEntryTableRow row = new LogEntryTableRow();
 
-        row.setNumPages( 12 );
         row.setPatient( true );
         row.setPrimary( "patient" );
         row.setSecondary( "hcp" );
         row.setTransactionType( TransactionType.APPOINTMENT_REQUEST_APPROVED.toString() );
 
-        assertEquals( 12, row.getNumPages() );
-
         assertEquals( true, row.isPatient() );
 
         assertEquals( "patient", row.getPrimary() );
@@ -29,6 +29,15 @@ public class LogEntryTest {
 
         assertEquals( TransactionType.APPOINTMENT_REQUEST_APPROVED.toString(), row.getTransactionType() );
 
+        final LogEntryTablePage page = new LogEntryTablePage( Arrays.asList( row ), 2, 10, 111 );
+        assertEquals( 2, page.getPage() );
+        assertEquals( 111, page.getTotal() );
+        assertEquals( 12, page.getNumPages() );
+        assertEquals( row, page.getRows().get( 0 ) );
+
+        // An exactly full last page, and no entries at all
+        assertEquals( 11, new LogEntryTablePage( Arrays.asList( row ), 1, 10, 110 ).getNumPages() );
+        assertEquals( 1, new LogEntryTablePage( Arrays.asList(), 1, 10, 0 ).getNumPages() );
     }
 
 }
@@ -1,12 +1,19 @@
 package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Test;
 
 import edu.ncsu.csc.itrust2.models.enums.TransactionType;
 import edu.ncsu.csc.itrust2.models.persistent.LogEntry;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 import edu.ncsu.csc.itrust2.utils.LoggerUtil;
 
@@ -65,4 +72,44 @@ public class LogTest {
         assertEquals( null, sameUserEntry.getSecondaryUser() );
 
     }
+
+    /**
+     * Tests walking through a user's log entries a page at a time, using the
+     * continuation token returned with each page
+     */
+    @Test
+    public void testPaging () {
+        final String user = "logPagingUser";
+        final long initial = LogEntry.countForUser( user, null, null, false );
+        for ( int i = 0; i < 25; i++ ) {
+            LoggerUtil.log( TransactionType.LOGIN_SUCCESS, user, "paging test " + i );
+        }
+        final long total = LogEntry.countForUser( user, null, null, false );
+        assertEquals( 25, total - initial );
+
+        // Entries logged within the same second share a timestamp, so this
+        // also checks that ties are broken consistently
+        final Set<Long> seen = new HashSet<Long>();
+        LogEntry previous = null;
+        final PageRequest request = new PageRequest( "time", false, 10 );
+        Page<LogEntry> page;
+        do {
+            page = LogEntry.getPageForUser( user, null, null, false, request );
+            assertTrue( page.getItems().size() <= 10 );
+            for ( final LogEntry le : page.getItems() ) {
+                assertTrue( seen.add( le.getId() ) );
+                if ( null != previous ) {
+                    assertFalse( le.getTime().isAfter( previous.getTime() ) );
+                }
+                previous = le;
+            }
+            request.setCursor( page.getNextCursor() );
+        }
+        while ( page.hasMore() );
+        assertEquals( total, seen.size() );
+
+        // Patients only see some types of events
+        LoggerUtil.log( TransactionType.VIEW_USERS, user );
+        assertEquals( total, LogEntry.countForUser( user, null, null, true ) );
+    }
 }
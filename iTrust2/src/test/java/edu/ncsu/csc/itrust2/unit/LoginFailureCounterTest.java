@@ -0,0 +1,77 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.utils.LoginFailureCounter;
+
+/**
+ * Tests for counting failed log in attempts in memory
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class LoginFailureCounterTest {
+
+    @Test
+    public void testCounts () {
+        final LoginFailureCounter counter = new LoginFailureCounter( 60000, 6 );
+        assertEquals( 0, counter.get( "111.111.111.113" ) );
+        assertEquals( 1, counter.add( "111.111.111.113" ) );
+        assertEquals( 2, counter.add( "111.111.111.113" ) );
+        assertEquals( 1, counter.add( "111.111.111.114" ) );
+        assertEquals( 2, counter.get( "111.111.111.113" ) );
+        assertEquals( 2, counter.size() );
+
+        counter.clear( "111.111.111.113" );
+        assertEquals( 0, counter.get( "111.111.111.113" ) );
+        assertEquals( 1, counter.get( "111.111.111.114" ) );
+    }
+
+    @Test
+    public void testExpiry () throws InterruptedException {
+        final LoginFailureCounter counter = new LoginFailureCounter( 400, 4 );
+        counter.add( "lockoutUser" );
+        counter.add( "lockoutUser" );
+        assertEquals( 2, counter.get( "lockoutUser" ) );
+
+        // Failures older than the window are no longer counted
+        Thread.sleep( 600 );
+        assertEquals( 0, counter.get( "lockoutUser" ) );
+        assertEquals( 1, counter.add( "lockoutUser" ) );
+
+        // ...and keys with nothing left are swept away as new failures come in
+        Thread.sleep( 600 );
+        for ( int i = 0; i < 100; i++ ) {
+            counter.add( "user" + i );
+        }
+        assertEquals( 100, counter.size() );
+    }
+
+    @Test
+    public void testConcurrent () throws InterruptedException {
+        final LoginFailureCounter counter = new LoginFailureCounter( 60000, 6 );
+        final List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < 8; i++ ) {
+            final Thread t = new Thread( () -> {
+                for ( int j = 0; j < 1000; j++ ) {
+                    counter.add( "111.111.111.115" );
+                    counter.add( "user" + ( j % 50 ) );
+                }
+            } );
+            threads.add( t );
+            t.start();
+        }
+        for ( final Thread t : threads ) {
+            t.join();
+        }
+        assertEquals( 8000, counter.get( "111.111.111.115" ) );
+        assertEquals( 160, counter.get( "user0" ) );
+        assertEquals( 51, counter.size() );
+    }
+
+}
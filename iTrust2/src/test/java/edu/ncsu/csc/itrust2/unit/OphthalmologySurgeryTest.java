@@ -1,9 +1,12 @@
 package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.text.ParseException;
 import java.time.ZonedDateTime;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -12,10 +15,15 @@ import edu.ncsu.csc.itrust2.models.enums.AppointmentType;
 import edu.ncsu.csc.itrust2.models.enums.EyeSurgeryType;
 import edu.ncsu.csc.itrust2.models.enums.HouseholdSmokingStatus;
 import edu.ncsu.csc.itrust2.models.enums.PatientSmokingStatus;
+import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.persistent.BasicHealthMetrics;
 import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
+import edu.ncsu.csc.itrust2.models.persistent.GeneralOphthalmology;
 import edu.ncsu.csc.itrust2.models.persistent.Hospital;
+import edu.ncsu.csc.itrust2.models.persistent.OfficeVisit;
 import edu.ncsu.csc.itrust2.models.persistent.OphthalmologySurgery;
+import edu.ncsu.csc.itrust2.models.persistent.Page;
+import edu.ncsu.csc.itrust2.models.persistent.PageRequest;
 import edu.ncsu.csc.itrust2.models.persistent.User;
 
 /**
@@ -148,4 +156,77 @@ public class OphthalmologySurgeryTest {
         assertEquals( visit.getHcp(), ov.getHcp().getUsername() );
         assertEquals( visit.getPatient(), ov.getPatient().getUsername() );
     }
+
+    /**
+     * Visits of different types are stored in different tables, but should
+     * come back from one query sorted by date, and page as one list.
+     */
+    @Test
+    public void testVisitsOfAllTypes () {
+        final User patient = new User( "visitTypesPatient", "123456", Role.ROLE_PATIENT, 1 );
+        patient.save();
+        final Hospital hosp = new Hospital( "Visit Types Hospital", "123 Main St", "12345", "NC" );
+        hosp.save();
+
+        final ZonedDateTime now = ZonedDateTime.now().withNano( 0 );
+
+        final OphthalmologySurgery surgery = new OphthalmologySurgery();
+        surgery.setBasicHealthMetrics( metricsFor( patient ) );
+        surgery.setType( AppointmentType.OPHTHALMOLOGY_SURGERY );
+        surgery.setSurgeryType( EyeSurgeryType.LASER );
+        surgery.setHospital( hosp );
+        surgery.setPatient( patient );
+        surgery.setHcp( User.getByName( "bobbyOD" ) );
+        surgery.setDate( now );
+        surgery.save();
+
+        final GeneralOphthalmology exam = new GeneralOphthalmology();
+        exam.setBasicHealthMetrics( metricsFor( patient ) );
+        exam.setType( AppointmentType.GENERAL_OPHTHALMOLOGY );
+        exam.setHospital( hosp );
+        exam.setPatient( patient );
+        exam.setHcp( User.getByName( "bobbyOD" ) );
+        exam.setDate( now.minusDays( 7 ) );
+        exam.save();
+
+        final List<OfficeVisit> visits = OfficeVisit.getForPatient( "visitTypesPatient" );
+        assertEquals( 2, visits.size() );
+        assertTrue( visits.get( 0 ) instanceof GeneralOphthalmology );
+        assertEquals( exam.getId(), visits.get( 0 ).getId() );
+        assertTrue( visits.get( 1 ) instanceof OphthalmologySurgery );
+        assertEquals( surgery.getId(), visits.get( 1 ).getId() );
+
+        final PageRequest request = new PageRequest( "date", true, 1 );
+        Page<OfficeVisit> page = OfficeVisit.getForPatient( "visitTypesPatient", request );
+        assertEquals( exam.getId(), page.getItems().get( 0 ).getId() );
+        assertTrue( page.hasMore() );
+
+        request.setCursor( page.getNextCursor() );
+        page = OfficeVisit.getForPatient( "visitTypesPatient", request );
+        assertEquals( 1, page.getItems().size() );
+        assertEquals( surgery.getId(), page.getItems().get( 0 ).getId() );
+        assertFalse( page.hasMore() );
+
+        surgery.delete();
+        exam.delete();
+    }
+
+    /**
+     * Creates and saves the basic health metrics every visit needs
+     *
+     * @param patient
+     *            the patient the metrics are for
+     * @return the metrics
+     */
+    private BasicHealthMetrics metricsFor ( final User patient ) {
+        final BasicHealthMetrics bhm = new BasicHealthMetrics();
+        bhm.setHcp( User.getByName( "bobbyOD" ) );
+        bhm.setPatient( patient );
+        bhm.setHeight( 75f );
+        bhm.setWeight( 130f );
+        bhm.setHouseSmokingStatus( HouseholdSmokingStatus.NONSMOKING );
+        bhm.setPatientSmokingStatus( PatientSmokingStatus.NEVER );
+        bhm.save();
+        return bhm;
+    }
 }
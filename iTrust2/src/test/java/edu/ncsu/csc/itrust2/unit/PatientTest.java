@@ -1,6 +1,8 @@
 package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -8,8 +10,11 @@ import java.text.ParseException;
 import java.time.LocalDate;
 import java.util.function.Consumer;
 
+import org.hibernate.Hibernate;
 import org.junit.Test;
 
+import com.google.gson.Gson;
+
 import edu.ncsu.csc.itrust2.forms.hcp_patient.PatientForm;
 import edu.ncsu.csc.itrust2.models.enums.BloodType;
 import edu.ncsu.csc.itrust2.models.enums.Ethnicity;
@@ -18,6 +23,8 @@ import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.State;
 import edu.ncsu.csc.itrust2.models.persistent.Patient;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.models.summary.PatientSummary;
+import edu.ncsu.csc.itrust2.models.summary.UserSummary;
 
 /**
  * Unit tests for the Patient class
@@ -264,6 +271,23 @@ public class PatientTest {
         assertTrue( testPatient.getRepresented().isEmpty() );
         assertTrue( testRep.getRepresentatives().isEmpty() );
 
+        // Representatives are only loaded when asked for...
+        final Patient plain = Patient.getByName( patient.getUsername() );
+        assertFalse( Hibernate.isInitialized( plain.getRepresentatives() ) );
+        assertFalse( new Gson().toJson( plain ).contains( "representativeList" ) );
+        final Patient withReps = Patient.getWithRepresentatives( patient.getUsername() );
+        assertEquals( 1, withReps.getRepresentatives().size() );
+        assertEquals( rep.getUsername(), withReps.getRepresentatives().iterator().next().getSelf().getUsername() );
+        assertTrue( withReps.getRepresented().isEmpty() );
+
+        // ...and can be removed through a freshly retrieved copy
+        final Patient repWithReps = Patient.getWithRepresentatives( rep.getUsername() );
+        assertEquals( 1, repWithReps.getRepresented().size() );
+        withReps.removeRepresentative( repWithReps );
+        withReps.save();
+        repWithReps.save();
+        assertTrue( Patient.getWithRepresentatives( patient.getUsername() ).getRepresentatives().isEmpty() );
+
         testPatient.removeRepresentative( testRep );
         testPatient.save();
         testRep.save();
@@ -292,4 +316,34 @@ public class PatientTest {
         }
     }
 
+    /**
+     * The patient list is built from just a few columns of each patient;
+     * check that they make it into the summaries.
+     */
+    @Test
+    public void testSummaries () {
+        final User user = new User( "patientSummaryTest", "123456", Role.ROLE_PATIENT, 1 );
+        user.save();
+        final Patient patient = new Patient();
+        patient.setSelf( user );
+        patient.setFirstName( "Summary" );
+        patient.setLastName( "McSummaryface" );
+        patient.setDateOfBirth( LocalDate.parse( "1990-05-17" ) );
+        patient.save();
+
+        final PatientSummary summary = Patient.getSummaries().stream()
+                .filter( p -> p.getSelf().getUsername().equals( "patientSummaryTest" ) ).findFirst().get();
+        assertEquals( "Summary", summary.getFirstName() );
+        assertEquals( "McSummaryface", summary.getLastName() );
+        assertNull( summary.getPreferredName() );
+        assertEquals( LocalDate.parse( "1990-05-17" ), summary.getDateOfBirth() );
+
+        final UserSummary userSummary = User.getSummariesByRole( Role.ROLE_PATIENT ).stream()
+                .filter( u -> u.getUsername().equals( "patientSummaryTest" ) ).findFirst().get();
+        assertEquals( Role.ROLE_PATIENT, userSummary.getRole() );
+        assertEquals( (Integer) 1, userSummary.getEnabled() );
+        assertTrue( User.getSummariesByRole( Role.ROLE_HCP ).stream()
+                .noneMatch( u -> u.getUsername().equals( "patientSummaryTest" ) ) );
+    }
+
 }
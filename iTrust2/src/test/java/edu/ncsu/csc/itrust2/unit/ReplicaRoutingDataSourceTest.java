@@ -0,0 +1,132 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+import edu.ncsu.csc.itrust2.utils.ReplicaRoutingDataSource;
+
+/**
+ * Tests for sending read-only work to read replicas. The "replica" is just
+ * the regular database opened through a second, read-only pool, and a second
+ * replica that can never be reached stands in for one that has gone down.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private ReplicaRoutingDataSource routing;
+
+    /**
+     * Sets up a routing DataSource with one working and one broken replica
+     */
+    @Before
+    public void setUp () {
+        routing = new ReplicaRoutingDataSource( DBUtil.dataSource(),
+                Arrays.asList( replica( "down", "jdbc:mysql://localhost:1/iTrust2" ),
+                        replica( "up", DBUtil.getUrl() ) ),
+                60000, 0 );
+    }
+
+    /**
+     * Closes the replica pools
+     */
+    @After
+    public void tearDown () {
+        routing.close();
+    }
+
+    /**
+     * Creates a read-only connection pool for a replica
+     *
+     * @param name
+     *            Name of the pool
+     * @param url
+     *            Where the replica is
+     * @return The pool
+     */
+    private HikariDataSource replica ( final String name, final String url ) {
+        final HikariConfig config = new HikariConfig();
+        config.setPoolName( "test-replica-" + name );
+        config.setJdbcUrl( url );
+        config.setUsername( DBUtil.getUsername() );
+        config.setPassword( DBUtil.getPassword() );
+        config.setReadOnly( true );
+        config.setMaximumPoolSize( 2 );
+        config.setConnectionTimeout( 250 );
+        config.setInitializationFailTimeout( -1 );
+        return new HikariDataSource( config );
+    }
+
+    /**
+     * Reads go to a (read-only) replica, skipping the one that is down, and
+     * everything else goes to the primary.
+     *
+     * @throws SQLException
+     *             If no connection can be obtained
+     */
+    @Test
+    public void testRouting () throws SQLException {
+        try ( final Connection conn = routing.getConnection() ) {
+            assertFalse( conn.isReadOnly() );
+        }
+
+        for ( int i = 0; i < 3; i++ ) {
+            final boolean readOnly = ReplicaRoutingDataSource.readOnly( () -> {
+                try ( final Connection conn = routing.getConnection() ) {
+                    return conn.isReadOnly();
+                }
+                catch ( final SQLException e ) {
+                    throw new RuntimeException( e );
+                }
+            } );
+            assertTrue( readOnly );
+        }
+        /* The broken replica was taken out of rotation on first use */
+        assertEquals( 1, routing.getHealthyReplicas() );
+
+        routing.checkReplicas();
+        assertEquals( 1, routing.getHealthyReplicas() );
+    }
+
+    /**
+     * With no healthy replica left, reads fall back to the primary.
+     *
+     * @throws SQLException
+     *             If no connection can be obtained
+     */
+    @Test
+    public void testFallBackToPrimary () throws SQLException {
+        final ReplicaRoutingDataSource allDown = new ReplicaRoutingDataSource( DBUtil.dataSource(),
+                Arrays.asList( replica( "down2", "jdbc:mysql://localhost:1/iTrust2" ) ), 60000, 0 );
+        try {
+            final boolean readOnly = ReplicaRoutingDataSource.readOnly( () -> {
+                try ( final Connection conn = allDown.getConnection() ) {
+                    return conn.isReadOnly();
+                }
+                catch ( final SQLException e ) {
+                    throw new RuntimeException( e );
+                }
+            } );
+            assertFalse( readOnly );
+            assertEquals( 0, allDown.getHealthyReplicas() );
+        }
+        finally {
+            allDown.close();
+        }
+    }
+
+}
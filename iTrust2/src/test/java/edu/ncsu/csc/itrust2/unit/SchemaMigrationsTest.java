@@ -0,0 +1,49 @@
+package edu.ncsu.csc.itrust2.unit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+import edu.ncsu.csc.itrust2.utils.DBUtil;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.SchemaMigrations;
+
+/**
+ * Tests for the versioned schema migrations.
+ *
+ * @author Kai Presler-Marshall
+ *
+ */
+public class SchemaMigrationsTest {
+
+    /**
+     * Migrations are applied when Hibernate starts up, and only ever once;
+     * the indexes they add should be in place afterwards.
+     *
+     * @throws Exception
+     *             If the database cannot be queried
+     */
+    @Test
+    public void testMigrationsApplied () throws Exception {
+        // Starts Hibernate, and with it the migrations
+        HibernateUtil.getBatchSize();
+
+        assertEquals( 0, SchemaMigrations.migrate() );
+
+        try ( final Connection conn = DBUtil.getConnection(); final Statement stmt = conn.createStatement() ) {
+            try ( final ResultSet rs = stmt.executeQuery( "SELECT version FROM SchemaMigrations WHERE version = 1" ) ) {
+                assertTrue( rs.next() );
+            }
+            try ( final ResultSet rs = stmt
+                    .executeQuery( "SHOW INDEX FROM LogEntries WHERE Key_name = 'idx_logentries_primary_time'" ) ) {
+                assertTrue( rs.next() );
+            }
+        }
+    }
+
+}
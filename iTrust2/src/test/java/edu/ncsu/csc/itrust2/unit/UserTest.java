@@ -2,12 +2,21 @@ package edu.ncsu.csc.itrust2.unit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
 import org.junit.Test;
 
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.persistent.User;
+import edu.ncsu.csc.itrust2.utils.CacheStatistics;
+import edu.ncsu.csc.itrust2.utils.HibernateUtil;
+import edu.ncsu.csc.itrust2.utils.UnitOfWork;
 
 /**
  * Unit tests for the User class.
@@ -49,4 +58,82 @@ public class UserTest {
         assertTrue( u1.equals( u2 ) );
     }
 
+    /**
+     * Tests that users looked up by name are cached, and that the cache
+     * follows changes made to them
+     */
+    @Test
+    public void testGetByNameCache () {
+        final User user = new User( "cacheduser", "123456", Role.ROLE_PATIENT, 1 );
+        user.save();
+
+        // Repeated lookups should be answered from the cache
+        assertEquals( Role.ROLE_PATIENT, User.getByName( "cacheduser" ).getRole() );
+        final long hits = cacheHits( User.class.getName() );
+        assertEquals( "cacheduser", User.getByName( "cacheduser" ).getUsername() );
+        assertTrue( cacheHits( User.class.getName() ) > hits );
+
+        // Usernames are matched ignoring case, but always come back as stored
+        assertEquals( "cacheduser", User.getByName( "CachedUser" ).getUsername() );
+
+        // ...and within a unit of work, give back the same object
+        final UnitOfWork uow = UnitOfWork.begin();
+        try {
+            assertSame( User.getByName( "cacheduser" ), User.getByNameAndRole( "cacheduser", Role.ROLE_PATIENT ) );
+            assertSame( User.getByName( "cacheduser" ), User.getByName( "CACHEDUSER" ) );
+        }
+        finally {
+            uow.commit();
+        }
+
+        // ...but changes must be seen straight away
+        user.setRole( Role.ROLE_HCP );
+        user.save();
+        assertEquals( Role.ROLE_HCP, User.getByName( "cacheduser" ).getRole() );
+        assertNull( User.getByNameAndRole( "cacheduser", Role.ROLE_PATIENT ) );
+        assertEquals( "cacheduser", User.getByNameAndRole( "cacheduser", Role.ROLE_HCP ).getUsername() );
+
+        user.delete();
+        assertNull( User.getByName( "cacheduser" ) );
+        assertNull( User.getByNameAndRole( "cacheduser", Role.ROLE_HCP ) );
+    }
+
+    /**
+     * Tests looking up the roles of several users at once
+     */
+    @Test
+    public void testGetRoles () {
+        final User patient = new User( "rolespatient", "123456", Role.ROLE_PATIENT, 1 );
+        patient.save();
+        final User hcp = new User( "roleshcp", "123456", Role.ROLE_HCP, 1 );
+        hcp.save();
+
+        final Map<String, Role> roles = User.getRoles( Arrays.asList( "rolespatient", "ROLESHCP", "rolesnobody" ) );
+        assertEquals( 2, roles.size() );
+        assertEquals( Role.ROLE_PATIENT, roles.get( "rolespatient" ) );
+        assertEquals( Role.ROLE_HCP, roles.get( "roleshcp" ) );
+        assertFalse( roles.containsKey( "rolesnobody" ) );
+
+        assertTrue( User.getRoles( Collections.<String> emptyList() ).isEmpty() );
+
+        patient.delete();
+        hcp.delete();
+    }
+
+    /**
+     * Number of hits recorded for a region of the second-level cache
+     *
+     * @param region
+     *            Name of the region
+     * @return The number of hits, or -1 if there is no such region
+     */
+    private long cacheHits ( final String region ) {
+        for ( final CacheStatistics stats : HibernateUtil.getCacheStatistics() ) {
+            if ( stats.getRegion().equals( region ) ) {
+                return stats.getHits();
+            }
+        }
+        return -1;
+    }
+
 }
@@ -3,11 +3,13 @@ package edu.ncsu.csc.itrust2.utils;
 import java.text.ParseException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.hibernate.boot.MetadataSources;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.boot.spi.MetadataImplementor;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 
 import edu.ncsu.csc.itrust2.forms.admin.ICDCodeForm;
@@ -20,6 +22,7 @@ import edu.ncsu.csc.itrust2.models.enums.PatientSmokingStatus;
 import edu.ncsu.csc.itrust2.models.enums.Role;
 import edu.ncsu.csc.itrust2.models.enums.State;
 import edu.ncsu.csc.itrust2.models.persistent.Diagnosis;
+import edu.ncsu.csc.itrust2.models.persistent.DomainObject;
 import edu.ncsu.csc.itrust2.models.persistent.Drug;
 import edu.ncsu.csc.itrust2.models.persistent.GeneralCheckup;
 import edu.ncsu.csc.itrust2.models.persistent.Hospital;
@@ -73,9 +76,7 @@ public class HibernateDataGenerator {
 
         final StandardServiceRegistryBuilder ssrb = new StandardServiceRegistryBuilder();
         ssrb.configure( "/hibernate.cfg.xml" );
-        ssrb.applySetting( "hibernate.connection.url", DBUtil.getUrl() );
-        ssrb.applySetting( "hibernate.connection.username", DBUtil.getUsername() );
-        ssrb.applySetting( "hibernate.connection.password", DBUtil.getPassword() );
+        ssrb.applySetting( AvailableSettings.DATASOURCE, DBUtil.dataSource() );
         final SchemaExport export = new SchemaExport(
                 (MetadataImplementor) new MetadataSources( ssrb.build() ).buildMetadata() );
         export.drop( true, true );
@@ -264,28 +265,25 @@ public class HibernateDataGenerator {
         l.setCommonName( "manual count of white blood cells in cerebral spinal fluid specimen" );
         l.setComponent( "white blood cells" );
         l.setProperty( "manual count" );
-        l.save();
 
         final LOINC l2 = new LOINC();
         l2.setCode( "49689-3" );
         l2.setCommonName( "Oral Glucose Tolerance Test" );
         l2.setComponent( "Glucose tolerance^post 100 g glucose PO" );
         l2.setProperty( "Imp" );
-        l2.save();
 
         final LOINC l3 = new LOINC();
         l3.setCode( "49689-4" );
         l3.setCommonName( "Fasting Blood Glucose" );
         l3.setComponent( "Glucose tolerance^post 100 g glucose PO" );
         l3.setProperty( "Imp" );
-        l3.save();
 
         final LOINC l4 = new LOINC();
         l4.setCode( "49689-5" );
         l4.setCommonName( "Gestational Diabetes Test" );
         l4.setComponent( "Glucose tolerance^post 100 g glucose PO" );
         l4.setProperty( "Imp" );
-        l4.save();
+        DomainObject.saveAll( Arrays.asList( l, l2, l3, l4 ) );
 
     }
 
@@ -302,73 +300,64 @@ public class HibernateDataGenerator {
         siegward.setFirstName( "SiegwardOf" );
         final User siegwardUser = new User( "onionman", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
                 Role.ROLE_PATIENT, 1 );
-        siegwardUser.save();
         siegward.setSelf( siegwardUser );
         siegward.setLastName( "Catarina" );
         siegward.setGender( Gender.Male );
         siegward.setBloodType( BloodType.OPos );
         siegward.setDateOfBirth( LocalDate.now().minusYears( 30 ) ); // 30 years
                                                                      // old
-        siegward.save();
 
         final Patient king1 = new Patient();
         king1.setFirstName( "King" );
         final User king1User = new User( "kingone", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
                 Role.ROLE_PATIENT, 1 );
-        king1User.save();
         king1.setSelf( king1User );
         king1.setLastName( "One" );
         king1.setGender( Gender.Male );
         king1.setBloodType( BloodType.OPos );
         king1.setDateOfBirth( LocalDate.now().minusYears( 30 ) ); // 30 years
                                                                   // old
-        king1.save();
 
         final Patient king2 = new Patient();
         king2.setFirstName( "King" );
         final User king2User = new User( "kingtwo", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
                 Role.ROLE_PATIENT, 1 );
-        king2User.save();
         king2.setSelf( king2User );
         king2.setLastName( "Two" );
         king2.setGender( Gender.Male );
         king2.setBloodType( BloodType.OPos );
         king2.setDateOfBirth( LocalDate.now().minusYears( 30 ) ); // 30 years
                                                                   // old
-        king2.save();
 
         final Patient king3 = new Patient();
         king3.setFirstName( "King" );
         final User king3User = new User( "kingthree", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
                 Role.ROLE_PATIENT, 1 );
-        king3User.save();
         king3.setSelf( king3User );
         king3.setLastName( "Three" );
         king3.setGender( Gender.Male );
         king3.setBloodType( BloodType.OPos );
         king3.setDateOfBirth( LocalDate.now().minusYears( 30 ) ); // 30 years
                                                                   // old
-        king3.save();
 
         final Patient king4 = new Patient();
         king4.setFirstName( "King" );
         final User king4User = new User( "kingfour", "$2a$10$EblZqNptyYvcLm/VwDCVAuBjzZOI7khzdyGPBr08PpIi0na624b8.",
                 Role.ROLE_PATIENT, 1 );
-        king4User.save();
         king4.setSelf( king4User );
         king4.setLastName( "Four" );
         king4.setGender( Gender.Male );
         king4.setBloodType( BloodType.OPos );
         king4.setDateOfBirth( LocalDate.now().minusYears( 30 ) ); // 30 years
                                                                   // old
-        king4.save();
+        DomainObject.saveAll( Arrays.asList( siegwardUser, king1User, king2User, king3User, king4User ) );
+        DomainObject.saveAll( Arrays.asList( siegward, king1, king2, king3, king4 ) );
 
         // First Prescription for APIEmergencyRecordFormTest
         final Drug estus = new Drug();
         estus.setCode( "1111-2222-33" );
         estus.setName( "Sunny D" );
         estus.setDescription( "Estus to heal up those wounds!" );
-        estus.save();
 
         final Prescription estusPresc = new Prescription();
         estusPresc.setDosage( 1 );
@@ -380,14 +369,12 @@ public class HibernateDataGenerator {
         estusPresc.setEndDate( LocalDate.now().plusDays( 60 ) ); // Ends in 60
                                                                  // days
         estusPresc.setPatient( siegwardUser );
-        estusPresc.save();
 
         // Second Prescription for APIEmergencyRecordFormTest
         final Drug purpMoss = new Drug();
         purpMoss.setCode( "3333-2222-11" );
         purpMoss.setName( "Purple Moss" );
         purpMoss.setDescription( "Medicinal purple moss clump.\n" + "Reduces poison build-up. Cures poison." );
-        purpMoss.save();
 
         final Prescription purpMossPresc = new Prescription();
         purpMossPresc.setDosage( 1 );
@@ -401,28 +388,27 @@ public class HibernateDataGenerator {
         purpMossPresc.setEndDate( LocalDate.now().plusDays( 30 ) ); // Ends in
                                                                     // 30 days
         purpMossPresc.setPatient( siegwardUser );
-        purpMossPresc.save();
+        DomainObject.saveAll( Arrays.asList( estus, purpMoss ) );
+        DomainObject.saveAll( Arrays.asList( estusPresc, purpMossPresc ) );
 
         // Set First Diagnosis Code for APIEmergencyRecordFormTest
         ICDCodeForm codeForm = new ICDCodeForm();
         codeForm.setCode( "T49" );
         codeForm.setDescription( "Poisoned by topical agents.  Probably in Blighttown" );
         final ICDCode poisoned = new ICDCode( codeForm );
-        poisoned.save();
 
         // Create Second Diagnosis Code for APIEmergencyRecordFormTest
         codeForm = new ICDCodeForm();
         codeForm.setCode( "S34" );
         codeForm.setDescription( "Injury of lumbar and sacral spinal cord.  Probably carrying teammates." );
         final ICDCode backPain = new ICDCode( codeForm );
-        backPain.save();
 
         // Create Third Diagnosis Code for diabetes
         codeForm = new ICDCodeForm();
         codeForm.setCode( "D11" );
         codeForm.setDescription( "Diabetes Diagnosis" );
         final ICDCode diabDiag = new ICDCode( codeForm );
-        diabDiag.save();
+        DomainObject.saveAll( Arrays.asList( poisoned, backPain, diabDiag ) );
 
         // Create an office visit with two diagnoses
         final GeneralCheckupForm form = new GeneralCheckupForm();